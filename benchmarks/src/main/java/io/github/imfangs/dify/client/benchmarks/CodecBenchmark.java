@@ -0,0 +1,89 @@
+package io.github.imfangs.dify.client.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.event.NodeFinishedEvent;
+import io.github.imfangs.dify.client.event.TtsMessageEvent;
+import io.github.imfangs.dify.client.model.datasets.DocumentListResponse;
+import io.github.imfangs.dify.client.util.JsonCodecs;
+import io.github.imfangs.dify.client.util.JsonUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 编解码器注册表前后对比
+ * <ul>
+ *     <li>adHocString：改造前的路径，响应体先转字符串再 {@code ObjectMapper.readValue(String, Class)}</li>
+ *     <li>adHocBytes：同一个 ObjectMapper 直接读字节，区分字符串拷贝与根类型查找的开销</li>
+ *     <li>codecBytes：{@link JsonCodecs} 缓存的 ObjectReader 直接读字节数组</li>
+ *     <li>codecStream：{@link JsonCodecs} 缓存的 ObjectReader 直接读字节流（启用 jackson-optimizer profile 时包含 Blackbird/Afterburner）</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"message", "node_finished", "tts_message", "document_list"})
+    public String payload;
+
+    private ObjectMapper adHocMapper;
+    private Class<?> type;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        // 与 JsonUtils 相同的配置，但不使用任何缓存或优化模块
+        adHocMapper = new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+                .setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        switch (payload) {
+            case "message":
+                type = MessageEvent.class;
+                break;
+            case "node_finished":
+                type = NodeFinishedEvent.class;
+                break;
+            case "tts_message":
+                type = TtsMessageEvent.class;
+                break;
+            default:
+                type = DocumentListResponse.class;
+        }
+        bytes = Payloads.bytes(payload + ".json");
+        JsonCodecs.warmUp();
+    }
+
+    @Benchmark
+    public Object adHocString() throws IOException {
+        return adHocMapper.readValue(new String(bytes, StandardCharsets.UTF_8), type);
+    }
+
+    @Benchmark
+    public Object adHocBytes() throws IOException {
+        return adHocMapper.readValue(bytes, type);
+    }
+
+    @Benchmark
+    public Object codecBytes() throws IOException {
+        return JsonCodecs.reader(type).readValue(bytes);
+    }
+
+    @Benchmark
+    public Object codecStream() throws IOException {
+        return JsonUtils.readJson(new ByteArrayInputStream(bytes), type);
+    }
+}
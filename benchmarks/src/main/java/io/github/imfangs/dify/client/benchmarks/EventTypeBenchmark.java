@@ -0,0 +1,42 @@
+package io.github.imfangs.dify.client.benchmarks;
+
+import io.github.imfangs.dify.client.enums.EventType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventType#fromValue(String)} 查找开销，覆盖高频事件名、末尾枚举项与未知事件名
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventTypeBenchmark {
+
+    private String[] values;
+
+    @Setup
+    public void setup() {
+        EventType[] types = EventType.values();
+        // 新建字符串，模拟从响应体解码出来的事件名，避免命中常量池的同一实例
+        values = new String[]{
+                new String("message".toCharArray()),
+                new String("text_chunk".toCharArray()),
+                new String("node_finished".toCharArray()),
+                new String(types[types.length - 1].getValue().toCharArray()),
+                new String("unknown_event".toCharArray())
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public void fromValue(Blackhole blackhole) {
+        for (String value : values) {
+            blackhole.consume(EventType.fromValue(value));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.imfangs.dify.client.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 录制的 Dify 响应样本，位于 classpath 的 payloads 目录
+ */
+public final class Payloads {
+
+    private Payloads() {
+    }
+
+    /**
+     * 读取样本字节
+     *
+     * @param name 文件名
+     * @return UTF-8 字节
+     */
+    public static byte[] bytes(String name) {
+        try (InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("样本不存在: " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 读取样本文本
+     *
+     * @param name 文件名
+     * @return 文本
+     */
+    public static String string(String name) {
+        return new String(bytes(name), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,104 @@
+package io.github.imfangs.dify.client.benchmarks;
+
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.datasets.CreateSegmentsRequest;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunRequest;
+import io.github.imfangs.dify.client.util.JsonUtils;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求模型的 JSON 往返
+ * <ul>
+ *     <li>chat：单条对话请求</li>
+ *     <li>workflow：携带 50 个输入变量（含长文本）的工作流请求</li>
+ *     <li>segments：200 个分段的批量新增分段请求</li>
+ * </ul>
+ * toJson 为发送前旧的整串序列化路径，writeJson 为直接写入连接 sink 的路径，fromJson 为反向解析。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class RequestModelBenchmark {
+
+    @Param({"chat", "workflow", "segments"})
+    public String model;
+
+    private Object request;
+    private String json;
+    private final Buffer sink = new Buffer();
+
+    @Setup
+    public void setup() {
+        switch (model) {
+            case "chat":
+                request = ChatMessage.builder()
+                        .query("Dify 的工作流支持哪些节点类型？")
+                        .user("benchmark-user")
+                        .conversationId("7c0fb4e4-2d2b-4a4f-9c33-bd1d6e3fa0a1")
+                        .responseMode(ResponseMode.STREAMING)
+                        .build();
+                break;
+            case "workflow":
+                Map<String, Object> inputs = new HashMap<>();
+                for (int i = 0; i < 50; i++) {
+                    inputs.put("var_" + i, i % 5 == 0 ? repeat("长文本输入，", 200) : "value-" + i);
+                }
+                request = WorkflowRunRequest.builder()
+                        .inputs(inputs)
+                        .user("benchmark-user")
+                        .responseMode(ResponseMode.STREAMING)
+                        .build();
+                break;
+            default:
+                List<CreateSegmentsRequest.SegmentInfo> segments = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    segments.add(CreateSegmentsRequest.SegmentInfo.builder()
+                            .content(repeat("分段内容 " + i + "。", 20))
+                            .answer("答案 " + i)
+                            .keywords(Arrays.asList("dify", "segment", "k" + i))
+                            .build());
+                }
+                request = CreateSegmentsRequest.builder().segments(segments).build();
+        }
+        json = JsonUtils.toJson(request);
+    }
+
+    @Benchmark
+    public String toJson() {
+        return JsonUtils.toJson(request);
+    }
+
+    @Benchmark
+    public long writeJson() throws IOException {
+        JsonUtils.writeJson(sink.outputStream(), request);
+        long size = sink.size();
+        sink.clear();
+        return size;
+    }
+
+    @Benchmark
+    public Object fromJson() {
+        return JsonUtils.fromJson(json, request.getClass());
+    }
+
+    private static String repeat(String value, int times) {
+        StringBuilder builder = new StringBuilder(value.length() * times);
+        for (int i = 0; i < times; i++) {
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+}
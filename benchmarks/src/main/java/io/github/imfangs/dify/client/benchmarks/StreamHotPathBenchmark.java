@@ -0,0 +1,223 @@
+package io.github.imfangs.dify.client.benchmarks;
+
+import io.github.imfangs.dify.client.callback.ChatflowStreamCallback;
+import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
+import io.github.imfangs.dify.client.event.*;
+import io.github.imfangs.dify.client.impl.DecodedEvent;
+import io.github.imfangs.dify.client.impl.SseFrame;
+import io.github.imfangs.dify.client.impl.SseFrameReader;
+import io.github.imfangs.dify.client.impl.StreamEventDecoder;
+import io.github.imfangs.dify.client.impl.StreamEventDispatcher;
+import io.github.imfangs.dify.client.metrics.StreamStats;
+import io.github.imfangs.dify.client.util.JsonCodecs;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 流式热路径基准，每次调用处理一整段录制的 SSE 响应
+ * <ul>
+ *     <li>chat：约 200 个短 message token 帧，夹带 ping，message_end 收尾</li>
+ *     <li>workflow：5 个约 32KB 的 node_finished 帧与 100 个 text_chunk 帧</li>
+ *     <li>tts：message 帧与约 24KB base64 音频的 tts_message 帧交替</li>
+ * </ul>
+ * 分为三段：SSE 分帧、事件解码与回调分发、以及二者串联的端到端路径。
+ * 每次调用的帧数固定，ops/s 乘以帧数即为帧吞吐；配合 {@code -prof gc} 观察每次调用的分配字节数。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class StreamHotPathBenchmark {
+
+    @Param({"chat", "workflow", "tts"})
+    public String stream;
+
+    private byte[] body;
+    private List<byte[]> frames;
+
+    @Setup
+    public void setup() throws IOException {
+        body = Payloads.bytes(stream + "_stream.sse");
+        frames = new ArrayList<>();
+        SseFrameReader reader = new SseFrameReader(new Buffer().write(body));
+        SseFrame frame;
+        while ((frame = reader.next()) != null) {
+            if (frame.hasData()) {
+                frames.add(frame.getData().readByteArray());
+            }
+        }
+        JsonCodecs.warmUp();
+    }
+
+    /**
+     * 仅 SSE 分帧：按行切分并拼接 data 字段，不做 JSON 解码
+     */
+    @Benchmark
+    public void frame(Blackhole blackhole) throws IOException {
+        SseFrameReader reader = new SseFrameReader(new Buffer().write(body));
+        SseFrame frame;
+        while ((frame = reader.next()) != null) {
+            blackhole.consume(frame.getData().size());
+            frame.getData().clear();
+        }
+    }
+
+    /**
+     * 事件类型识别、按类型绑定事件对象并分发到回调，输入为已分好帧的 data 字节
+     */
+    @Benchmark
+    public void decodeAndDispatch(Blackhole blackhole) throws IOException {
+        ConsumingCallback callback = new ConsumingCallback(blackhole);
+        for (int i = 0; i < frames.size(); i++) {
+            dispatch(callback, StreamEventDecoder.decode(frames.get(i)));
+        }
+    }
+
+    /**
+     * 与生产路径一致：分帧后直接从帧缓冲区解码，再分发到回调
+     */
+    @Benchmark
+    public void endToEnd(Blackhole blackhole) throws IOException {
+        ConsumingCallback callback = new ConsumingCallback(blackhole);
+        SseFrameReader reader = new SseFrameReader(new Buffer().write(body));
+        SseFrame frame;
+        while ((frame = reader.next()) != null) {
+            if (frame.hasData()) {
+                dispatch(callback, StreamEventDecoder.decode(frame.getData().inputStream()));
+                frame.getData().clear();
+            }
+        }
+    }
+
+    private void dispatch(ConsumingCallback callback, DecodedEvent event) {
+        if ("workflow".equals(stream)) {
+            StreamEventDispatcher.dispatchWorkflowEvent(callback, event);
+        } else {
+            StreamEventDispatcher.dispatchChatFlowEvent(callback, event);
+        }
+    }
+
+    /**
+     * 把每个事件交给 Blackhole，防止解码结果被 JIT 消除
+     */
+    private static final class ConsumingCallback implements ChatflowStreamCallback, WorkflowStreamCallback {
+        private final Blackhole blackhole;
+
+        private ConsumingCallback(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void onMessage(MessageEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onMessageEnd(MessageEndEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onTTSMessage(TtsMessageEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onTTSMessageEnd(TtsMessageEndEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onTtsMessage(TtsMessageEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onTtsMessageEnd(TtsMessageEndEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onWorkflowStarted(WorkflowStartedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onNodeStarted(NodeStartedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onNodeFinished(NodeFinishedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onWorkflowFinished(WorkflowFinishedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onWorkflowFinished(WorkflowFinishedEvent event, StreamStats stats) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onWorkflowTextChunk(WorkflowTextChunkEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onNodeRetry(NodeRetryEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onIterationStarted(IterationStartedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onIterationNext(IterationNextEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onIterationCompleted(IterationCompletedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onLoopStarted(LoopStartedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onLoopNext(LoopNextEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onLoopCompleted(LoopCompletedEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onAgentLog(AgentLogEvent event) {
+            blackhole.consume(event);
+        }
+
+        @Override
+        public void onException(Throwable throwable) {
+            throw new IllegalStateException("录制样本分发失败", throwable);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.imfangs.dify.client;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+
+import java.io.IOException;
+
+/**
+ * 异步调用描述
+ * 在lambda中调用一次客户端的阻塞API，由客户端改为基于回调的异步执行，例如
+ * {@code client.async(c -> c.sendChatMessage(message))}
+ * <p>
+ * lambda 只负责描述要发出的请求：执行时阻塞API并不发出请求，而是返回null，因此只能直接返回其结果，
+ * 不能读取或转换返回值（如 {@code c -> c.getDataset(id).getName()}），这类用法会以
+ * {@link IllegalArgumentException} 失败；需要转换时对返回的future使用 {@code thenApply}
+ *
+ * @param <C> 客户端类型
+ * @param <T> 返回值类型
+ */
+@FunctionalInterface
+public interface DifyCall<C, T> {
+
+    /**
+     * 调用客户端的阻塞API
+     *
+     * @param client 客户端
+     * @return 返回值
+     * @throws IOException      IO异常
+     * @throws DifyApiException API异常
+     */
+    T call(C client) throws IOException, DifyApiException;
+}
@@ -1,9 +1,13 @@
 package io.github.imfangs.dify.client;
 
 import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.event.BaseEvent;
 import io.github.imfangs.dify.client.exception.DifyApiException;
 import io.github.imfangs.dify.client.model.chat.*;
 import io.github.imfangs.dify.client.model.common.SimpleResponse;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import org.reactivestreams.Publisher;
 
 import java.io.File;
 import java.io.IOException;
@@ -31,10 +35,33 @@ public interface DifyChatClient extends DifyBaseClient {
      *
      * @param message  消息
      * @param callback 回调
+     * @return 流句柄，可取消请求（同时调用停止对话消息接口）或等待流结束
      * @throws IOException      IO异常
      * @throws DifyApiException API异常
      */
-    void sendChatMessageStream(ChatMessage message, ChatStreamCallback callback) throws IOException, DifyApiException;
+    StreamHandle sendChatMessageStream(ChatMessage message, ChatStreamCallback callback) throws IOException, DifyApiException;
+
+    /**
+     * 发送对话消息（流式模式，Reactive Streams）
+     * 仅在订阅者请求时才从连接读取下一个事件，取消订阅会中止HTTP调用；
+     * 对话型应用读到流结束为止，Chatflow 应用读到 workflow_finished 为止
+     *
+     * @param message 消息
+     * @return 事件发布者，只允许订阅一次，订阅后首次请求时才发起HTTP调用
+     */
+    Publisher<BaseEvent> sendChatMessagePublisher(ChatMessage message);
+
+    /**
+     * 发送对话消息（流式模式，拉取式迭代）
+     * 在调用线程上建立连接，之后每次迭代才读取并解码下一个事件；
+     * 对话型应用读到流结束为止，Chatflow 应用读到 workflow_finished 为止
+     *
+     * @param message 消息
+     * @return 事件迭代器，使用完毕或提前退出时需关闭
+     * @throws IOException IO异常
+     * @throws DifyApiException API异常
+     */
+    EventStream<BaseEvent> openChatStream(ChatMessage message) throws IOException, DifyApiException;
 
     /**
      * 停止对话消息
@@ -3,6 +3,7 @@ package io.github.imfangs.dify.client;
 import io.github.imfangs.dify.client.callback.ChatflowStreamCallback;
 import io.github.imfangs.dify.client.exception.DifyApiException;
 import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.stream.StreamHandle;
 
 import java.io.IOException;
 
@@ -18,8 +19,9 @@ public interface DifyChatflowClient extends DifyChatClient {
      *
      * @param message  消息
      * @param callback 工作流编排对话回调
+     * @return 流句柄，可取消请求（同时调用停止对话消息接口）或等待流结束
      * @throws IOException IO异常
      * @throws DifyApiException API异常
      */
-    void sendChatMessageStream(ChatMessage message, ChatflowStreamCallback callback) throws IOException, DifyApiException;
+    StreamHandle sendChatMessageStream(ChatMessage message, ChatflowStreamCallback callback) throws IOException, DifyApiException;
 }
@@ -1,9 +1,22 @@
 package io.github.imfangs.dify.client;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Dify API 客户端接口
  * 继承所有细分客户端接口，提供完整的功能
  */
 public interface DifyClient extends DifyChatClient, DifyChatflowClient, DifyCompletionClient, DifyWorkflowClient {
     // 继承所有细分客户端接口的方法
+
+    /**
+     * 异步调用任意一个阻塞API，例如 {@code client.async(c -> c.sendChatMessage(message))}
+     * 请求在调用线程上构建，通过 OkHttp 异步调用发送，响应在回调线程上解码，不占用调用线程；
+     * 取消返回的future会取消HTTP调用。流式接口不支持此方式，请使用 Publisher 或 EventStream 变体
+     *
+     * @param call 调用描述，必须且只能调用一次阻塞API
+     * @param <T>  返回值类型
+     * @return 异步结果，失败时以 {@link java.io.IOException} 或 {@link io.github.imfangs.dify.client.exception.DifyApiException} 异常完成
+     */
+    <T> CompletableFuture<T> async(DifyCall<DifyClient, T> call);
 }
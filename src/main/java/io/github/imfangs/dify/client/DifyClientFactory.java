@@ -3,7 +3,6 @@ package io.github.imfangs.dify.client;
 import io.github.imfangs.dify.client.impl.DefaultDifyClient;
 import io.github.imfangs.dify.client.impl.DefaultDifyDatasetsClient;
 import io.github.imfangs.dify.client.model.DifyConfig;
-import io.github.imfangs.dify.client.util.HttpClientUtils;
 import okhttp3.OkHttpClient;
 
 /**
@@ -11,29 +10,16 @@ import okhttp3.OkHttpClient;
  */
 public class DifyClientFactory {
 
-    /**
-     * 从配置创建HTTP客户端
-     *
-     * @param config 配置
-     * @return HTTP客户端
-     */
-    private static OkHttpClient createHttpClient(DifyConfig config) {
-        return HttpClientUtils.createClient(
-                config.getConnectTimeout(),
-                config.getReadTimeout(),
-                config.getWriteTimeout()
-        );
-    }
-
     /**
      * 创建完整的Dify客户端
+     * 同主机的客户端共享连接池和调度器，调用 {@link DifyClient#close()} 释放
      *
      * @param baseUrl 基础URL
      * @param apiKey  API密钥
      * @return Dify客户端
      */
     public static DifyClient createClient(String baseUrl, String apiKey) {
-        return createClient(baseUrl, apiKey, HttpClientUtils.createDefaultClient());
+        return new DefaultDifyClient(baseUrl, apiKey);
     }
 
     /**
@@ -50,12 +36,13 @@ public class DifyClientFactory {
 
     /**
      * 使用配置创建完整的Dify客户端
+     * 同主机、同超时配置的客户端共享连接池和调度器，调用 {@link DifyClient#close()} 释放
      *
      * @param config 配置
      * @return Dify客户端
      */
     public static DifyClient createClient(DifyConfig config) {
-        return new DefaultDifyClient(config.getBaseUrl(), config.getApiKey(), createHttpClient(config));
+        return new DefaultDifyClient(config);
     }
 
     /**
@@ -198,7 +185,7 @@ public class DifyClientFactory {
      * @return 知识库客户端
      */
     public static DifyDatasetsClient createDatasetsClient(String baseUrl, String apiKey) {
-        return createDatasetsClient(baseUrl, apiKey, HttpClientUtils.createDefaultClient());
+        return new DefaultDifyDatasetsClient(baseUrl, apiKey);
     }
 
     /**
@@ -220,6 +207,6 @@ public class DifyClientFactory {
      * @return 知识库客户端
      */
     public static DifyDatasetsClient createDatasetsClient(DifyConfig config) {
-        return new DefaultDifyDatasetsClient(config.getBaseUrl(), config.getApiKey(), createHttpClient(config));
+        return new DefaultDifyDatasetsClient(config);
     }
 }
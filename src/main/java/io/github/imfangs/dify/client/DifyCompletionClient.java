@@ -1,10 +1,14 @@
 package io.github.imfangs.dify.client;
 
 import io.github.imfangs.dify.client.callback.CompletionStreamCallback;
+import io.github.imfangs.dify.client.event.BaseEvent;
 import io.github.imfangs.dify.client.exception.DifyApiException;
 import io.github.imfangs.dify.client.model.common.SimpleResponse;
 import io.github.imfangs.dify.client.model.completion.CompletionRequest;
 import io.github.imfangs.dify.client.model.completion.CompletionResponse;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import org.reactivestreams.Publisher;
 
 import java.io.IOException;
 
@@ -29,10 +33,31 @@ public interface DifyCompletionClient extends DifyBaseClient {
      *
      * @param request  请求
      * @param callback 回调
+     * @return 流句柄，可取消请求（同时调用停止文本生成接口）或等待流结束
      * @throws IOException IO异常
      * @throws DifyApiException API异常
      */
-    void sendCompletionMessageStream(CompletionRequest request, CompletionStreamCallback callback) throws IOException, DifyApiException;
+    StreamHandle sendCompletionMessageStream(CompletionRequest request, CompletionStreamCallback callback) throws IOException, DifyApiException;
+
+    /**
+     * 发送文本生成请求（流式模式，Reactive Streams）
+     * 仅在订阅者请求时才从连接读取下一个事件，取消订阅会中止HTTP调用
+     *
+     * @param request 请求
+     * @return 事件发布者，只允许订阅一次，订阅后首次请求时才发起HTTP调用
+     */
+    Publisher<BaseEvent> sendCompletionMessagePublisher(CompletionRequest request);
+
+    /**
+     * 发送文本生成请求（流式模式，拉取式迭代）
+     * 在调用线程上建立连接，之后每次迭代才读取并解码下一个事件
+     *
+     * @param request 请求
+     * @return 事件迭代器，使用完毕或提前退出时需关闭
+     * @throws IOException IO异常
+     * @throws DifyApiException API异常
+     */
+    EventStream<BaseEvent> openCompletionStream(CompletionRequest request) throws IOException, DifyApiException;
 
     /**
      * 停止文本生成
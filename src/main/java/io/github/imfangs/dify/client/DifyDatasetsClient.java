@@ -8,12 +8,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Dify 知识库客户端接口
  * 提供知识库相关的操作
  */
-public interface DifyDatasetsClient {
+public interface DifyDatasetsClient extends AutoCloseable {
 
     /**
      * 创建空知识库
@@ -538,4 +539,22 @@ public interface DifyDatasetsClient {
      * @throws DifyApiException API异常
      */
     TagListResponse getDatasetTags(String datasetId) throws IOException, DifyApiException;
+
+    /**
+     * 关闭客户端资源
+     * 重写AutoCloseable.close()方法，确保不抛出受检异常
+     */
+    @Override
+    void close();
+
+    /**
+     * 异步调用任意一个阻塞API，例如 {@code client.async(c -> c.retrieveDataset(datasetId, request))}
+     * 请求在调用线程上构建，通过 OkHttp 异步调用发送，响应在回调线程上解码，不占用调用线程；
+     * 取消返回的future会取消HTTP调用
+     *
+     * @param call 调用描述，必须且只能调用一次阻塞API
+     * @param <T>  返回值类型
+     * @return 异步结果，失败时以 {@link IOException} 或 {@link DifyApiException} 异常完成
+     */
+    <T> CompletableFuture<T> async(DifyCall<DifyDatasetsClient, T> call);
 }
@@ -1,8 +1,12 @@
 package io.github.imfangs.dify.client;
 
 import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
+import io.github.imfangs.dify.client.event.BaseEvent;
 import io.github.imfangs.dify.client.exception.DifyApiException;
 import io.github.imfangs.dify.client.model.workflow.*;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import org.reactivestreams.Publisher;
 
 import java.io.IOException;
 
@@ -38,10 +42,31 @@ public interface DifyWorkflowClient extends DifyBaseClient {
      *
      * @param request  请求
      * @param callback 回调
+     * @return 流句柄，可取消请求（同时调用停止工作流接口）或等待流结束
      * @throws IOException IO异常
      * @throws DifyApiException API异常
      */
-    void runWorkflowStream(WorkflowRunRequest request, WorkflowStreamCallback callback) throws IOException, DifyApiException;
+    StreamHandle runWorkflowStream(WorkflowRunRequest request, WorkflowStreamCallback callback) throws IOException, DifyApiException;
+
+    /**
+     * 执行工作流（流式模式，Reactive Streams）
+     * 仅在订阅者请求时才从连接读取下一个事件，取消订阅会中止HTTP调用
+     *
+     * @param request 请求
+     * @return 事件发布者，只允许订阅一次，订阅后首次请求时才发起HTTP调用
+     */
+    Publisher<BaseEvent> runWorkflowPublisher(WorkflowRunRequest request);
+
+    /**
+     * 执行工作流（流式模式，拉取式迭代）
+     * 在调用线程上建立连接，之后每次迭代才读取并解码下一个事件
+     *
+     * @param request 请求
+     * @return 事件迭代器，使用完毕或提前退出时需关闭
+     * @throws IOException IO异常
+     * @throws DifyApiException API异常
+     */
+    EventStream<BaseEvent> openWorkflowStream(WorkflowRunRequest request) throws IOException, DifyApiException;
 
     /**
      * 停止工作流
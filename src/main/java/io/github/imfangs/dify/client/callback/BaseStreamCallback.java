@@ -1,13 +1,28 @@
 package io.github.imfangs.dify.client.callback;
 
+import io.github.imfangs.dify.client.enums.EventType;
 import io.github.imfangs.dify.client.event.ErrorEvent;
 import io.github.imfangs.dify.client.event.PingEvent;
 
+import java.util.Set;
+
 /**
  * 对话流式回调接口
  */
 public interface BaseStreamCallback {
 
+    /**
+     * 声明回调需要处理的事件类型
+     * 未声明的事件在 JSON token 层面即被跳过，不会构建事件对象，也不会触发回调。
+     * {@link EventType#ERROR} 始终分发；流的终止判断不受订阅影响。
+     * 例如仅关心回答文本的对话界面可返回 {@code EnumSet.of(EventType.MESSAGE, EventType.MESSAGE_END)}。
+     *
+     * @return 订阅的事件类型，返回null表示订阅全部事件（默认）
+     */
+    default Set<EventType> subscribedEvents() {
+        return null;
+    }
+
     /**
      * 错误事件
      *
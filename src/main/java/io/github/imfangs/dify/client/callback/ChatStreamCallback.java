@@ -1,6 +1,7 @@
 package io.github.imfangs.dify.client.callback;
 
 import io.github.imfangs.dify.client.event.*;
+import io.github.imfangs.dify.client.metrics.StreamStats;
 
 /**
  * 对话流式回调接口
@@ -23,6 +24,17 @@ public interface ChatStreamCallback extends BaseStreamCallback {
     default void onMessageEnd(MessageEndEvent event) {
     }
 
+    /**
+     * 消息结束，附带本次流的时延统计
+     * 默认转发到 {@link #onMessageEnd(MessageEndEvent)}
+     *
+     * @param event 事件
+     * @param stats 流统计，直接调用 StreamEventDispatcher 分发时为 null
+     */
+    default void onMessageEnd(MessageEndEvent event, StreamStats stats) {
+        onMessageEnd(event);
+    }
+
     /**
      * 收到消息文件
      *
@@ -1,6 +1,7 @@
 package io.github.imfangs.dify.client.callback;
 
 import io.github.imfangs.dify.client.event.*;
+import io.github.imfangs.dify.client.metrics.StreamStats;
 
 /**
  * 工作流编排对话型应用流式回调接口
@@ -47,6 +48,17 @@ public interface ChatflowStreamCallback extends ChatStreamCallback {
     default void onWorkflowFinished(WorkflowFinishedEvent event) {
     }
 
+    /**
+     * 工作流执行结束，附带本次流的时延统计
+     * 默认转发到 {@link #onWorkflowFinished(WorkflowFinishedEvent)}
+     *
+     * @param event 事件
+     * @param stats 流统计，直接调用 StreamEventDispatcher 分发时为 null
+     */
+    default void onWorkflowFinished(WorkflowFinishedEvent event, StreamStats stats) {
+        onWorkflowFinished(event);
+    }
+
     /**
      * 迭代器开始执行事件
      *
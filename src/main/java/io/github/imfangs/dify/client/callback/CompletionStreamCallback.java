@@ -1,6 +1,7 @@
 package io.github.imfangs.dify.client.callback;
 
 import io.github.imfangs.dify.client.event.*;
+import io.github.imfangs.dify.client.metrics.StreamStats;
 
 /**
  * 文本生成流式响应回调接口
@@ -22,6 +23,17 @@ public interface CompletionStreamCallback extends BaseStreamCallback {
     default void onMessageEnd(MessageEndEvent event) {
     }
 
+    /**
+     * 消息结束，附带本次流的时延统计
+     * 默认转发到 {@link #onMessageEnd(MessageEndEvent)}
+     *
+     * @param event 事件
+     * @param stats 流统计，直接调用 StreamEventDispatcher 分发时为 null
+     */
+    default void onMessageEnd(MessageEndEvent event, StreamStats stats) {
+        onMessageEnd(event);
+    }
+
     /**
      * TTS 消息事件
      *
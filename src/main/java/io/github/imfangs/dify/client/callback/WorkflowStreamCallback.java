@@ -1,6 +1,7 @@
 package io.github.imfangs.dify.client.callback;
 
 import io.github.imfangs.dify.client.event.*;
+import io.github.imfangs.dify.client.metrics.StreamStats;
 
 /**
  * Workflow 流式响应回调接口
@@ -46,6 +47,17 @@ public interface WorkflowStreamCallback extends BaseStreamCallback {
     default void onWorkflowFinished(WorkflowFinishedEvent event) {
     }
 
+    /**
+     * 工作流执行结束，附带本次流的时延统计
+     * 默认转发到 {@link #onWorkflowFinished(WorkflowFinishedEvent)}
+     *
+     * @param event 事件
+     * @param stats 流统计，直接调用 StreamEventDispatcher 分发时为 null
+     */
+    default void onWorkflowFinished(WorkflowFinishedEvent event, StreamStats stats) {
+        onWorkflowFinished(event);
+    }
+
     /**
      * 迭代器开始执行事件
      *
@@ -3,6 +3,9 @@ package io.github.imfangs.dify.client.enums;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Dify API 事件类型枚举
  */
@@ -48,6 +51,14 @@ public enum EventType {
 
     private final String value;
 
+    private static final Map<String, EventType> BY_VALUE = new HashMap<>();
+
+    static {
+        for (EventType type : values()) {
+            BY_VALUE.put(type.value, type);
+        }
+    }
+
     /**
      * 根据事件值获取对应的枚举
      *
@@ -55,11 +66,6 @@ public enum EventType {
      * @return 对应的枚举，如果不存在则返回null
      */
     public static EventType fromValue(String value) {
-        for (EventType type : EventType.values()) {
-            if (type.value.equals(value)) {
-                return type;
-            }
-        }
-        return null;
+        return value != null ? BY_VALUE.get(value) : null;
     }
 }
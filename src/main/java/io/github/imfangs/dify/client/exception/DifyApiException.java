@@ -23,6 +23,11 @@ public class DifyApiException extends Exception {
      */
     private final String errorMessage;
 
+    /**
+     * 服务端通过 Retry-After 要求的等待时间（毫秒），未返回时为 -1
+     */
+    private final long retryAfterMillis;
+
     /**
      * 构造函数
      *
@@ -31,10 +36,23 @@ public class DifyApiException extends Exception {
      * @param errorMessage 错误消息
      */
     public DifyApiException(int statusCode, String errorCode, String errorMessage) {
+        this(statusCode, errorCode, errorMessage, -1);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param statusCode       HTTP 状态码
+     * @param errorCode        错误代码
+     * @param errorMessage     错误消息
+     * @param retryAfterMillis Retry-After 等待时间（毫秒），未返回时为 -1
+     */
+    public DifyApiException(int statusCode, String errorCode, String errorMessage, long retryAfterMillis) {
         super(String.format("API 错误: %s (%d) - %s", errorCode, statusCode, errorMessage));
         this.statusCode = statusCode;
         this.errorCode = errorCode;
         this.errorMessage = errorMessage;
+        this.retryAfterMillis = retryAfterMillis;
     }
 
 }
@@ -0,0 +1,23 @@
+package io.github.imfangs.dify.client.exception;
+
+/**
+ * 请求被熔断器拒绝
+ * 目标接口近期失败率或慢调用率过高而熔断，或处于半开状态且探测名额已用完时抛出，请求不会发送到服务端
+ */
+public class DifyCircuitOpenException extends DifyApiException {
+
+    /**
+     * 熔断拒绝的错误代码
+     */
+    public static final String ERROR_CODE = "client_circuit_open";
+
+    /**
+     * 构造函数
+     *
+     * @param errorMessage     错误消息
+     * @param retryAfterMillis 距离熔断器进入半开的剩余时间（毫秒），未知时为 -1
+     */
+    public DifyCircuitOpenException(String errorMessage, long retryAfterMillis) {
+        super(503, ERROR_CODE, errorMessage, retryAfterMillis);
+    }
+}
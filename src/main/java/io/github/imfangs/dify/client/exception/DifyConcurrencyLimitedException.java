@@ -0,0 +1,22 @@
+package io.github.imfangs.dify.client.exception;
+
+/**
+ * 请求被自适应并发限制拒绝
+ * 接口的在途请求数已达到当前并发上限且等待超时（或不允许等待）时抛出，请求不会发送到服务端
+ */
+public class DifyConcurrencyLimitedException extends DifyApiException {
+
+    /**
+     * 并发限制拒绝的错误代码
+     */
+    public static final String ERROR_CODE = "client_concurrency_limited";
+
+    /**
+     * 构造函数
+     *
+     * @param errorMessage 错误消息
+     */
+    public DifyConcurrencyLimitedException(String errorMessage) {
+        super(429, ERROR_CODE, errorMessage);
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.imfangs.dify.client.exception;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * 响应体JSON解码失败
+ * 响应内容与目标类型不匹配或JSON格式错误时抛出，取代此前解码失败时静默返回null的行为
+ */
+@Getter
+public class DifyDecodeException extends IOException {
+
+    /**
+     * 目标类型
+     */
+    private final String targetType;
+
+    /**
+     * 构造函数
+     *
+     * @param targetType 目标类型
+     * @param cause      原始异常
+     */
+    public DifyDecodeException(String targetType, Throwable cause) {
+        super("JSON解码失败: " + targetType + ", " + cause.getMessage(), cause);
+        this.targetType = targetType;
+    }
+}
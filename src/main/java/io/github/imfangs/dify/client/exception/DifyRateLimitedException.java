@@ -0,0 +1,23 @@
+package io.github.imfangs.dify.client.exception;
+
+/**
+ * 请求被客户端限流器拒绝
+ * 令牌不足且所需等待时间超过限流策略允许的最长等待时抛出，请求不会发送到服务端
+ */
+public class DifyRateLimitedException extends DifyApiException {
+
+    /**
+     * 客户端限流的错误代码
+     */
+    public static final String ERROR_CODE = "client_rate_limited";
+
+    /**
+     * 构造函数
+     *
+     * @param errorMessage     错误消息
+     * @param retryAfterMillis 预计取得令牌所需的等待时间（毫秒）
+     */
+    public DifyRateLimitedException(String errorMessage, long retryAfterMillis) {
+        super(429, ERROR_CODE, errorMessage, retryAfterMillis);
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.imfangs.dify.client.exception;
+
+/**
+ * 流式请求被客户端调度器拒绝
+ * 当并发流达到上限且饱和策略为拒绝（或排队已满）时抛出，请求不会发送到服务端
+ */
+public class DifyStreamRejectedException extends DifyApiException {
+
+    /**
+     * 客户端拒绝的错误代码
+     */
+    public static final String ERROR_CODE = "client_stream_rejected";
+
+    /**
+     * 构造函数
+     *
+     * @param errorMessage 错误消息
+     */
+    public DifyStreamRejectedException(String errorMessage) {
+        super(429, ERROR_CODE, errorMessage);
+    }
+}
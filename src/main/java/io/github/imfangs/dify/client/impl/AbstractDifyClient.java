@@ -1,17 +1,53 @@
 package io.github.imfangs.dify.client.impl;
 
+import io.github.imfangs.dify.client.DifyCall;
 import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyCircuitOpenException;
+import io.github.imfangs.dify.client.exception.DifyConcurrencyLimitedException;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import io.github.imfangs.dify.client.exception.DifyRateLimitedException;
+import io.github.imfangs.dify.client.metrics.CallTimings;
+import io.github.imfangs.dify.client.metrics.DifyMetrics;
+import io.github.imfangs.dify.client.metrics.EndpointTemplates;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.chat.ChatMessageResponse;
+import io.github.imfangs.dify.client.model.completion.CompletionRequest;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunRequest;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunResponse;
+import io.github.imfangs.dify.client.transport.AdaptiveConcurrencyLimiter;
+import io.github.imfangs.dify.client.transport.AdaptiveLimit;
+import io.github.imfangs.dify.client.transport.CircuitBreaker;
+import io.github.imfangs.dify.client.transport.CircuitBreakerRegistry;
+import io.github.imfangs.dify.client.transport.HttpTransportRegistry;
+import io.github.imfangs.dify.client.transport.LoadBalancer;
+import io.github.imfangs.dify.client.transport.RateLimiter;
+import io.github.imfangs.dify.client.transport.RequestHedger;
+import io.github.imfangs.dify.client.transport.RetryPolicy;
 import io.github.imfangs.dify.client.util.HttpClientUtils;
+import io.github.imfangs.dify.client.util.JsonCodecs;
+import io.github.imfangs.dify.client.util.JsonRequestBody;
 import io.github.imfangs.dify.client.util.JsonUtils;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Dify API 客户端抽象基类
@@ -23,18 +59,46 @@ public abstract class AbstractDifyClient {
     protected static final MediaType OCTET_STREAM = MediaType.parse("application/octet-stream");
     protected static final MediaType AUDIO = MediaType.parse("audio/*");
 
+    /**
+     * 当前线程正在进行的异步调用捕获
+     */
+    private static final ThreadLocal<AsyncCapture> ASYNC_CAPTURE = new ThreadLocal<>();
+
     protected final OkHttpClient httpClient;
     protected final String baseUrl;
     protected final String apiKey;
+    protected final DifyConfig config;
+
+    /**
+     * API基础URL中的路径前缀，计量时从请求路径中去除
+     */
+    private final String basePath;
+
+    /**
+     * 共享传输层租约，使用外部传入的HTTP客户端时为null
+     */
+    private final HttpTransportRegistry.Lease transportLease;
+
+    /**
+     * 非流式异步调用的准入控制
+     */
+    private final AsyncAdmission asyncAdmission;
 
     /**
      * 构造函数
+     * 使用默认超时配置，与同主机的其他客户端共享连接池和调度器
      *
      * @param baseUrl API基础URL
      * @param apiKey  API密钥
      */
     public AbstractDifyClient(String baseUrl, String apiKey) {
-        this(baseUrl, apiKey, HttpClientUtils.createDefaultClient());
+        this(DifyConfig.builder()
+                .baseUrl(baseUrl)
+                .apiKey(apiKey)
+                .connectTimeout(HttpClientUtils.DEFAULT_CONNECT_TIMEOUT)
+                .readTimeout(HttpClientUtils.DEFAULT_READ_TIMEOUT)
+                .writeTimeout(HttpClientUtils.DEFAULT_WRITE_TIMEOUT)
+                .build());
     }
 
     /**
@@ -45,9 +109,56 @@ public abstract class AbstractDifyClient {
      * @param httpClient HTTP客户端
      */
     public AbstractDifyClient(String baseUrl, String apiKey, OkHttpClient httpClient) {
-        this.baseUrl = baseUrl;
-        this.apiKey = apiKey;
+        this(DifyConfig.builder().baseUrl(baseUrl).apiKey(apiKey).build(), httpClient);
+    }
+
+    /**
+     * 构造函数
+     * 使用调用方提供的 HTTP 客户端，配置中的超时设置不生效
+     *
+     * @param config     客户端配置
+     * @param httpClient HTTP客户端
+     */
+    public AbstractDifyClient(DifyConfig config, OkHttpClient httpClient) {
+        this(config, httpClient, null);
+    }
+
+    /**
+     * 构造函数
+     * 与同主机、同超时配置的其他客户端共享连接池和调度器
+     *
+     * @param config 客户端配置
+     */
+    public AbstractDifyClient(DifyConfig config) {
+        this(config, HttpTransportRegistry.getInstance().acquire(
+                primaryBaseUrl(config), config.getConnectTimeout(), config.getReadTimeout(), config.getWriteTimeout(),
+                config.isVirtualThreads()));
+    }
+
+    private AbstractDifyClient(DifyConfig config, HttpTransportRegistry.Lease lease) {
+        this(config, lease.getClient(), lease);
+    }
+
+    private AbstractDifyClient(DifyConfig config, OkHttpClient httpClient, HttpTransportRegistry.Lease transportLease) {
+        this.config = config;
+        this.baseUrl = primaryBaseUrl(config);
+        this.apiKey = config.getApiKey();
         this.httpClient = httpClient;
+        this.transportLease = transportLease;
+        this.basePath = basePath(baseUrl);
+        this.asyncAdmission = new AsyncAdmission(config.getMaxAsyncRequests());
+        // 进程内首次创建客户端时在后台预热模型与事件类型的编解码器
+        JsonCodecs.warmUpAsync();
+    }
+
+    /**
+     * 关闭客户端
+     * 释放共享传输层租约，最后一个客户端关闭时回收连接池和调度线程
+     */
+    public void close() {
+        if (transportLease != null) {
+            transportLease.close();
+        }
     }
 
     /**
@@ -78,7 +189,25 @@ public abstract class AbstractDifyClient {
      */
     protected <T> T executePost(String path, Object body, Class<T> responseClass) throws IOException, DifyApiException {
         RequestBody requestBody = createJsonRequestBody(body);
-        Request request = createPostRequest(path, requestBody);
+        Request request = withAffinity(withEndUser(createPostRequest(path, requestBody), body), body);
+        return executeRequest(request, responseClass);
+    }
+
+    /**
+     * 执行幂等的POST请求
+     * 用于检索等只读语义的POST接口，失败时与GET请求一样按重试策略重试
+     *
+     * @param path 请求路径
+     * @param body 请求体
+     * @param responseClass 响应类型
+     * @param <T> 响应类型
+     * @return 响应对象
+     * @throws IOException IO异常
+     * @throws DifyApiException API异常
+     */
+    protected <T> T executeIdempotentPost(String path, Object body, Class<T> responseClass) throws IOException, DifyApiException {
+        RequestBody requestBody = createJsonRequestBody(body);
+        Request request = withEndUser(createPostRequest(path, requestBody).newBuilder().tag(Idempotent.class, Idempotent.INSTANCE).build(), body);
         return executeRequest(request, responseClass);
     }
 
@@ -95,7 +224,7 @@ public abstract class AbstractDifyClient {
      */
     protected <T> T executePatch(String path, Object body, Class<T> responseClass) throws IOException, DifyApiException {
         RequestBody requestBody = createJsonRequestBody(body);
-        Request request = createPatchRequest(path, requestBody);
+        Request request = withEndUser(createPatchRequest(path, requestBody), body);
         return executeRequest(request, responseClass);
     }
 
@@ -112,7 +241,7 @@ public abstract class AbstractDifyClient {
      */
     protected <T> T executePut(String path, Object body, Class<T> responseClass) throws IOException, DifyApiException {
         RequestBody requestBody = createJsonRequestBody(body);
-        Request request = createPutRequest(path, requestBody);
+        Request request = withEndUser(createPutRequest(path, requestBody), body);
         return executeRequest(request, responseClass);
     }
 
@@ -129,7 +258,7 @@ public abstract class AbstractDifyClient {
      */
     protected <T> T executeDelete(String path, Object body, Class<T> responseClass) throws IOException, DifyApiException {
         RequestBody requestBody = createJsonRequestBody(body);
-        Request request = createDeleteRequest(path, requestBody);
+        Request request = withEndUser(createDeleteRequest(path, requestBody), body);
         return executeRequest(request, responseClass);
     }
 
@@ -144,14 +273,913 @@ public abstract class AbstractDifyClient {
      * @throws DifyApiException API异常
      */
     protected <T> T executeRequest(Request request, Class<T> responseClass) throws IOException, DifyApiException {
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "";
-                throw createApiException(response.code(), errorBody);
+        return exchange(request, httpResponse -> {
+            try (Response response = httpResponse) {
+                if (!response.isSuccessful()) {
+                    throw createApiException(response);
+                }
+
+                // 直接从响应字节流解码，不经过中间字符串
+                return JsonUtils.readJson(Objects.requireNonNull(response.body()).byteStream(), responseClass);
+            }
+        });
+    }
+
+    /**
+     * 执行一次HTTP交换
+     * 所有阻塞API都经由此方法发出请求；在 {@link #executeAsync} 捕获期间只记录请求和处理器并返回null，
+     * 由异步调用改用 {@link Call#enqueue} 执行。因此阻塞API必须原样返回此方法的结果，
+     * 对结果的转换应放在 {@code handler} 中，否则在异步调用下会得到null
+     *
+     * @param request 请求对象
+     * @param handler 响应处理器，负责关闭响应
+     * @param <T>     响应类型
+     * @return 响应对象
+     * @throws IOException      IO异常
+     * @throws DifyApiException API异常
+     */
+    protected <T> T exchange(Request request, ResponseHandler<T> handler) throws IOException, DifyApiException {
+        AsyncCapture capture = ASYNC_CAPTURE.get();
+        if (capture != null) {
+            capture.record(httpClient, request, handler);
+            return null;
+        }
+        RequestHedger hedger = hedger(request);
+        if (hedger != null) {
+            return awaitHedged(request, handler, hedger);
+        }
+        RetryPolicy policy = retryPolicy(request);
+        if (policy == null) {
+            return exchangeOnce(request, handler);
+        }
+        policy.getBudget().onRequest();
+        long delay = 0;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return exchangeOnce(request, handler);
+            } catch (IOException | DifyApiException e) {
+                delay = retryDelay(policy, request, attempt, e, delay);
+                if (delay < 0) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待重试被中断");
+            }
+        }
+    }
+
+    /**
+     * 执行一次HTTP交换，不重试
+     */
+    private <T> T exchangeOnce(Request request, ResponseHandler<T> handler) throws IOException, DifyApiException {
+        awaitRateLimit(apiPath(request), endUser(request));
+        AdaptiveLimit.Permit slot = acquireConcurrency(request.method(), apiPath(request), true);
+        LoadBalancer.Permit replica = selectReplica(false, affinityKey(request));
+        try {
+            Request routed = route(request, replica);
+            CircuitBreaker.Permit permit = acquireCircuit(routed);
+            RequestMeter meter = startMeter(request);
+            Call call = httpClient.newCall(meter.meter(routed));
+            Response response;
+            try {
+                response = call.execute();
+            } catch (IOException | RuntimeException e) {
+                meter.failure(e);
+                if (call.isCanceled()) {
+                    // 被取消的调用不计入熔断、限流与副本的结果，也不再重试
+                    permit.onCancel();
+                    slot.onCancel();
+                    InterruptedIOException canceled = new InterruptedIOException("请求已取消");
+                    canceled.initCause(e);
+                    throw canceled;
+                }
+                permit.onError(e);
+                slot.onError(e);
+                replica.onError(e);
+                throw e;
             }
+            permit.onResponse(response.code());
+            slot.onResponse(response.code());
+            replica.onResponse(response.code());
+            T result = handle(handler, meter, response);
+            bindAffinity(result, replica);
+            return result;
+        } finally {
+            replica.release();
+            slot.release();
+        }
+    }
 
-            String responseBody = Objects.requireNonNull(response.body()).string();
-            return JsonUtils.fromJson(responseBody, responseClass);
+    /**
+     * 处理响应并记录请求指标
+     */
+    private static <T> T handle(ResponseHandler<T> handler, RequestMeter meter, Response response) throws IOException, DifyApiException {
+        try {
+            T result = handler.handle(meter.meter(response));
+            meter.success();
+            return result;
+        } catch (IOException | DifyApiException | RuntimeException e) {
+            meter.failure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 获取请求适用的重试策略，只有GET与标记为幂等的请求会重试
+     *
+     * @param request 请求
+     * @return 重试策略，不重试时为null
+     */
+    private RetryPolicy retryPolicy(Request request) {
+        RetryPolicy policy = config.getRetryPolicy();
+        if (policy == null || !policy.isEnabled()) {
+            return null;
+        }
+        return isIdempotent(request) ? policy : null;
+    }
+
+    /**
+     * 获取请求适用的对冲，只有GET与标记为幂等的请求会对冲
+     *
+     * @param request 请求
+     * @return 对冲，不对冲时为null
+     */
+    private RequestHedger hedger(Request request) {
+        RequestHedger hedger = config.getHedger();
+        return hedger != null && isIdempotent(request) ? hedger : null;
+    }
+
+    private static boolean isIdempotent(Request request) {
+        return "GET".equals(request.method()) || "HEAD".equals(request.method()) || request.tag(Idempotent.class) != null;
+    }
+
+    /**
+     * 以对冲方式执行请求并在调用线程上等待结果
+     * 两份请求都经由异步路径发送，达到并发上限时不等待名额
+     */
+    private <T> T awaitHedged(Request request, ResponseHandler<T> handler, RequestHedger hedger) throws IOException, DifyApiException {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        new HedgedExchange<>(httpClient, request, handler, future, retryPolicy(request), hedger).start();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待对冲请求被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof DifyApiException) {
+                throw (DifyApiException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * 计算下一次重试前的等待时间
+     *
+     * @param policy       重试策略
+     * @param request      请求
+     * @param attempt      已完成的尝试次数
+     * @param error        本次失败
+     * @param previousDelay 上一次等待时间
+     * @return 等待时间（毫秒），不再重试时为 -1
+     */
+    private static long retryDelay(RetryPolicy policy, Request request, int attempt, Exception error, long previousDelay) {
+        // 熔断、限流与并发限制的拒绝本身就是为了快速失败，不再重试
+        if (attempt >= policy.getMaxAttempts() || error instanceof DifyCircuitOpenException
+                || error instanceof DifyRateLimitedException || error instanceof DifyConcurrencyLimitedException) {
+            return -1;
+        }
+        long delay;
+        if (error instanceof DifyApiException) {
+            DifyApiException apiException = (DifyApiException) error;
+            if (!policy.isRetryable(apiException.getStatusCode(), apiException.getErrorCode())) {
+                return -1;
+            }
+            if (apiException.getRetryAfterMillis() > policy.getMaxRetryAfterMillis()) {
+                log.warn("Retry-After {}ms 超过上限，不再重试: {}", apiException.getRetryAfterMillis(), request.url().encodedPath());
+                return -1;
+            }
+            delay = apiException.getRetryAfterMillis() >= 0 ? apiException.getRetryAfterMillis() : policy.nextDelayMillis(previousDelay);
+        } else if (error instanceof IOException && policy.isRetryable((IOException) error)) {
+            delay = policy.nextDelayMillis(previousDelay);
+        } else {
+            return -1;
+        }
+        if (!policy.getBudget().tryAcquire()) {
+            log.warn("重试预算已耗尽，不再重试: {}", request.url().encodedPath());
+            return -1;
+        }
+        log.info("请求失败，{}ms 后进行第 {} 次重试: {}, {}", delay, attempt, request.url().encodedPath(), error.getMessage());
+        return delay;
+    }
+
+    /**
+     * 为请求创建计量器，按去除基础路径后的接口模板分组
+     *
+     * @param request 请求
+     * @return 计量器
+     */
+    RequestMeter startMeter(Request request) {
+        DifyMetrics metrics = config.getMetrics();
+        return RequestMeter.start(metrics, request.method(), apiPath(request), false, RequestMeter.isEnabled(metrics) ? newCallTimings() : null);
+    }
+
+    /**
+     * 取得请求所在接口与主机的熔断许可
+     *
+     * @param request 请求
+     * @return 许可，未启用熔断时为共享的空许可
+     * @throws DifyCircuitOpenException 熔断器拒绝请求
+     */
+    CircuitBreaker.Permit acquireCircuit(Request request) throws DifyCircuitOpenException {
+        CircuitBreakerRegistry registry = config.getCircuitBreakers();
+        if (registry == null) {
+            return CircuitBreaker.Permit.unguarded();
+        }
+        HttpUrl url = request.url();
+        CircuitBreaker breaker = registry.get(request.method(), EndpointTemplates.of(apiPath(request)), url.host() + ':' + url.port());
+        CircuitBreaker.Permit permit = breaker.tryAcquire(config.getMetrics());
+        if (permit == null) {
+            long remaining = breaker.getRemainingOpenMillis();
+            throw new DifyCircuitOpenException("接口已熔断: " + breaker.getMethod() + " " + breaker.getEndpoint() + " @ " + breaker.getHost(),
+                    remaining > 0 ? remaining : -1);
+        }
+        return permit;
+    }
+
+    /**
+     * 取得接口的自适应并发名额
+     *
+     * @param method HTTP方法
+     * @param path   请求路径（不含API基础URL的路径前缀）
+     * @param wait   达到上限时是否按策略在调用线程上等待
+     * @return 名额，未启用并发限制时为共享的空名额
+     * @throws DifyConcurrencyLimitedException 已达并发上限
+     * @throws InterruptedIOException          等待被中断
+     */
+    AdaptiveLimit.Permit acquireConcurrency(String method, String path, boolean wait) throws DifyConcurrencyLimitedException, InterruptedIOException {
+        AdaptiveConcurrencyLimiter limiter = config.getConcurrencyLimiter();
+        if (limiter == null) {
+            return AdaptiveLimit.Permit.unlimited();
+        }
+        AdaptiveLimit limit = limiter.get(method, EndpointTemplates.of(path));
+        AdaptiveLimit.Permit permit;
+        if (wait) {
+            try {
+                permit = limit.acquire(TimeUnit.MILLISECONDS.toNanos(limiter.getPolicy().getMaxWaitMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待并发名额被中断");
+            }
+        } else {
+            permit = limit.tryAcquire();
+        }
+        if (permit == null) {
+            throw new DifyConcurrencyLimitedException("已达并发上限: " + limit.getMethod() + " " + limit.getEndpoint()
+                    + ", limit=" + limit.getLimit() + ", inFlight=" + limit.getInFlight());
+        }
+        return permit;
+    }
+
+    /**
+     * 按限流策略取得令牌，令牌不足时在调用线程上等待
+     *
+     * @param path 请求路径（不含API基础URL的路径前缀）
+     * @param user 终端用户，没有时为 null
+     * @throws DifyRateLimitedException 所需等待时间超过限流策略允许的最长等待时间
+     * @throws InterruptedIOException   等待被中断
+     */
+    void awaitRateLimit(String path, String user) throws DifyRateLimitedException, InterruptedIOException {
+        RateLimiter limiter = config.getRateLimiter();
+        if (limiter == null) {
+            return;
+        }
+        long wait = limiter.reserve(apiKey, path, user);
+        if (wait <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待限流令牌被中断");
+        }
+    }
+
+    /**
+     * 按限流策略异步取得令牌，等待在限流器的计时线程上完成
+     *
+     * @param path 请求路径（不含API基础URL的路径前缀）
+     * @param user 终端用户，没有时为 null
+     * @return 取得令牌时完成，被拒绝时以 {@link DifyRateLimitedException} 异常完成
+     */
+    CompletableFuture<Void> acquireRateLimit(String path, String user) {
+        RateLimiter limiter = config.getRateLimiter();
+        return limiter != null ? limiter.acquireAsync(apiKey, path, user) : CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * 选择本次请求使用的副本
+     *
+     * @param streaming   是否为流式请求
+     * @param affinityKey 会话或任务标识，没有时为 null
+     * @return 副本许可，未配置负载均衡时为共享的空许可
+     */
+    LoadBalancer.Permit selectReplica(boolean streaming, String affinityKey) {
+        LoadBalancer balancer = config.getLoadBalancer();
+        return balancer != null ? balancer.select(streaming, affinityKey) : LoadBalancer.Permit.direct();
+    }
+
+    /**
+     * 将请求改写到选中的副本，保留API路径与查询参数
+     *
+     * @param request 按API基础URL创建的请求
+     * @param replica 副本许可
+     * @return 发往副本的请求
+     */
+    Request route(Request request, LoadBalancer.Permit replica) {
+        if (replica.getReplica() == null) {
+            return request;
+        }
+        String query = request.url().encodedQuery();
+        return request.newBuilder()
+                .url(replica.getReplica().getBaseUrl() + apiPath(request) + (query != null ? "?" + query : ""))
+                .build();
+    }
+
+    /**
+     * 配置了负载均衡时为请求附加请求体中的会话标识
+     */
+    private Request withAffinity(Request request, Object body) {
+        if (config.getLoadBalancer() == null) {
+            return request;
+        }
+        String key = affinityKey(body);
+        return key != null ? request.newBuilder().tag(Affinity.class, new Affinity(key)).build() : request;
+    }
+
+    /**
+     * 获取请求的会话或任务标识：请求体中的会话、查询参数 conversation_id、会话路径中的会话ID或停止接口路径中的任务ID
+     */
+    private static String affinityKey(Request request) {
+        Affinity affinity = request.tag(Affinity.class);
+        if (affinity != null) {
+            return affinity.key;
+        }
+        HttpUrl url = request.url();
+        String conversationId = url.queryParameter("conversation_id");
+        if (conversationId != null) {
+            return conversationId;
+        }
+        List<String> segments = url.pathSegments();
+        int size = segments.size();
+        if (size >= 2 && "stop".equals(segments.get(size - 1))) {
+            return segments.get(size - 2);
+        }
+        int index = segments.indexOf("conversations");
+        return index >= 0 && index + 1 < size ? segments.get(index + 1) : null;
+    }
+
+    /**
+     * 获取请求体中的会话标识
+     *
+     * @param body 请求体
+     * @return 会话ID，新会话或没有时为 null
+     */
+    static String affinityKey(Object body) {
+        if (body instanceof ChatMessage) {
+            String conversationId = ((ChatMessage) body).getConversationId();
+            return conversationId != null && !conversationId.isEmpty() ? conversationId : null;
+        }
+        return null;
+    }
+
+    /**
+     * 将响应中的会话与任务标识绑定到服务它的副本
+     */
+    private static void bindAffinity(Object result, LoadBalancer.Permit replica) {
+        if (result instanceof ChatMessageResponse) {
+            replica.bind(((ChatMessageResponse) result).getConversationId());
+        } else if (result instanceof WorkflowRunResponse) {
+            replica.bind(((WorkflowRunResponse) result).getTaskId());
+        }
+    }
+
+    /**
+     * 按用户限流时为请求附加请求体中的终端用户
+     */
+    private Request withEndUser(Request request, Object body) {
+        RateLimiter limiter = config.getRateLimiter();
+        if (limiter == null || !limiter.isPerUser()) {
+            return request;
+        }
+        String user = endUser(body);
+        return user != null ? request.newBuilder().tag(EndUser.class, new EndUser(user)).build() : request;
+    }
+
+    /**
+     * 获取请求的终端用户，优先取请求体中的 user 字段，其次取查询参数
+     */
+    private static String endUser(Request request) {
+        EndUser endUser = request.tag(EndUser.class);
+        return endUser != null ? endUser.id : request.url().queryParameter("user");
+    }
+
+    /**
+     * 获取请求体中的终端用户
+     *
+     * @param body 请求体
+     * @return 终端用户，没有时为 null
+     */
+    static String endUser(Object body) {
+        if (body instanceof ChatMessage) {
+            return ((ChatMessage) body).getUser();
+        }
+        if (body instanceof CompletionRequest) {
+            return ((CompletionRequest) body).getUser();
+        }
+        if (body instanceof WorkflowRunRequest) {
+            return ((WorkflowRunRequest) body).getUser();
+        }
+        if (body instanceof Map) {
+            Object user = ((Map<?, ?>) body).get("user");
+            return user != null ? user.toString() : null;
+        }
+        return null;
+    }
+
+    /**
+     * 获取去除API基础URL路径前缀后的请求路径
+     */
+    private String apiPath(Request request) {
+        String path = request.url().encodedPath();
+        if (!basePath.isEmpty() && path.startsWith(basePath)) {
+            path = path.substring(basePath.length());
+        }
+        return path;
+    }
+
+    /**
+     * 按采样比例创建连接阶段计时
+     *
+     * @return 计时，未被采样时为null
+     */
+    CallTimings newCallTimings() {
+        double rate = config.getCallTracingSampleRate();
+        if (rate <= 0 || (rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate)) {
+            return null;
+        }
+        return new CallTimings();
+    }
+
+    /**
+     * 获取客户端的API基础URL，未设置时取负载均衡的第一个副本
+     */
+    private static String primaryBaseUrl(DifyConfig config) {
+        if (config.getBaseUrl() != null || config.getLoadBalancer() == null) {
+            return config.getBaseUrl();
+        }
+        return config.getLoadBalancer().getReplicas().get(0).getBaseUrl();
+    }
+
+    private static String basePath(String baseUrl) {
+        HttpUrl url = baseUrl != null ? HttpUrl.parse(baseUrl) : null;
+        if (url == null) {
+            return "";
+        }
+        String path = url.encodedPath();
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * 异步执行一次阻塞API调用
+     * 先在调用线程上运行 {@code call} 以构建请求（不发生IO），再通过 {@link Call#enqueue} 发送，
+     * 响应在OkHttp回调线程上解码；取消返回的future会取消HTTP调用
+     *
+     * @param client 客户端
+     * @param call   调用描述，必须且只能调用一次阻塞API
+     * @param <C>    客户端类型
+     * @param <T>    返回值类型
+     * @return 异步结果
+     */
+    protected <C, T> CompletableFuture<T> executeAsync(C client, DifyCall<C, T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AsyncCapture capture = new AsyncCapture();
+        AsyncCapture previous = ASYNC_CAPTURE.get();
+        ASYNC_CAPTURE.set(capture);
+        Object returned;
+        try {
+            returned = call.call(client);
+        } catch (Exception e) {
+            future.completeExceptionally(capture.count > 0 ? misuse(e) : e);
+            return future;
+        } finally {
+            if (previous != null) {
+                ASYNC_CAPTURE.set(previous);
+            } else {
+                ASYNC_CAPTURE.remove();
+            }
+        }
+        if (capture.count != 1) {
+            future.completeExceptionally(new IllegalArgumentException("异步调用必须且只能包含一次阻塞API调用，实际: " + capture.count));
+            return future;
+        }
+        if (returned != null) {
+            future.completeExceptionally(misuse(null));
+            return future;
+        }
+
+        @SuppressWarnings("unchecked")
+        ResponseHandler<T> handler = (ResponseHandler<T>) capture.handler;
+        RequestHedger hedger = hedger(capture.request);
+        if (hedger != null) {
+            new HedgedExchange<>(capture.httpClient, capture.request, handler, future, retryPolicy(capture.request), hedger).start();
+        } else {
+            new AsyncExchange<>(capture.httpClient, capture.request, handler, future, retryPolicy(capture.request)).start();
+        }
+        return future;
+    }
+
+    /**
+     * 异步调用的lambda使用了阻塞API的返回值，捕获期间返回值为null，结果不可信
+     */
+    private static IllegalArgumentException misuse(Exception cause) {
+        return new IllegalArgumentException("异步调用只能直接返回阻塞API的结果，不能在lambda中使用或转换其返回值，请改用返回future的 thenApply", cause);
+    }
+
+    /**
+     * 确认当前不处于异步捕获中，流式接口自行管理连接，不能经由 {@link #executeAsync} 调用
+     */
+    protected static void ensureNotCapturingAsync() {
+        if (ASYNC_CAPTURE.get() != null) {
+            throw new IllegalStateException("流式接口不支持 async 调用，请使用 Publisher 或 EventStream 变体");
+        }
+    }
+
+    /**
+     * 响应处理器
+     *
+     * @param <T> 响应类型
+     */
+    @FunctionalInterface
+    protected interface ResponseHandler<T> {
+        /**
+         * 处理响应，实现方负责关闭响应
+         *
+         * @param response HTTP响应
+         * @return 响应对象
+         * @throws IOException      IO异常
+         * @throws DifyApiException API异常
+         */
+        T handle(Response response) throws IOException, DifyApiException;
+    }
+
+    /**
+     * 请求体中的终端用户，按用户限流时附加到请求上
+     */
+    private static final class EndUser {
+        private final String id;
+
+        private EndUser(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 请求体中的会话标识，配置了负载均衡时附加到请求上
+     */
+    private static final class Affinity {
+        private final String key;
+
+        private Affinity(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 幂等请求标记，带此标签的非GET请求也会按重试策略重试
+     */
+    private static final class Idempotent {
+        private static final Idempotent INSTANCE = new Idempotent();
+    }
+
+    /**
+     * 一次异步调用，经 {@link AsyncAdmission} 准入后发送，失败时按重试策略在计时线程上延迟后重新发送，结束时释放准入名额
+     *
+     * @param <T> 响应类型
+     */
+    private final class AsyncExchange<T> implements Callback {
+        private final OkHttpClient client;
+        private final Request request;
+        private final ResponseHandler<T> handler;
+        private final CompletableFuture<T> future;
+        private final RetryPolicy policy;
+        private final AtomicReference<Call> current = new AtomicReference<>();
+        private RequestMeter meter;
+        private CircuitBreaker.Permit permit;
+        private AdaptiveLimit.Permit slot;
+        private LoadBalancer.Permit replica;
+        private int attempt;
+        private long previousDelay;
+
+        private AsyncExchange(OkHttpClient client, Request request, ResponseHandler<T> handler, CompletableFuture<T> future, RetryPolicy policy) {
+            this.client = client;
+            this.request = request;
+            this.handler = handler;
+            this.future = future;
+            this.policy = policy;
+        }
+
+        private void start() {
+            future.whenComplete((result, error) -> {
+                Call call = current.get();
+                if (future.isCancelled() && call != null) {
+                    call.cancel();
+                }
+            });
+            asyncAdmission.submit(this::admitted);
+        }
+
+        private void admitted() {
+            future.whenComplete((result, error) -> asyncAdmission.release());
+            if (future.isDone()) {
+                return;
+            }
+            if (policy != null) {
+                policy.getBudget().onRequest();
+            }
+            send();
+        }
+
+        private void send() {
+            attempt++;
+            acquireRateLimit(apiPath(request), endUser(request)).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    dispatch();
+                }
+            });
+        }
+
+        private void dispatch() {
+            try {
+                // 回调线程上不能阻塞等待，达到并发上限时直接失败
+                slot = acquireConcurrency(request.method(), apiPath(request), false);
+            } catch (IOException | DifyApiException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            replica = selectReplica(false, affinityKey(request));
+            Request routed = route(request, replica);
+            try {
+                permit = acquireCircuit(routed);
+            } catch (DifyCircuitOpenException e) {
+                replica.release();
+                slot.release();
+                future.completeExceptionally(e);
+                return;
+            }
+            meter = startMeter(request);
+            Call call = client.newCall(meter.meter(routed));
+            current.set(call);
+            if (future.isCancelled()) {
+                permit.release();
+                replica.release();
+                slot.release();
+                call.cancel();
+                return;
+            }
+            call.enqueue(this);
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            meterFailure(call, e);
+            if (call.isCanceled() || future.isCancelled()) {
+                permit.onCancel();
+                slot.onCancel();
+            } else {
+                permit.onError(e);
+                slot.onError(e);
+                replica.onError(e);
+            }
+            slot.release();
+            replica.release();
+            retryOrFail(e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            permit.onResponse(response.code());
+            slot.onResponse(response.code());
+            replica.onResponse(response.code());
+            T result;
+            try {
+                result = handler.handle(meter.meter(response));
+                meter.success();
+            } catch (Exception e) {
+                meterFailure(call, e);
+                slot.release();
+                replica.release();
+                retryOrFail(e);
+                return;
+            }
+            slot.release();
+            replica.release();
+            bindAffinity(result, replica);
+            future.complete(result);
+        }
+
+        /**
+         * 主动取消的调用（调用方取消或对冲落败）不计为失败请求
+         */
+        private void meterFailure(Call call, Exception error) {
+            if (call.isCanceled() || future.isCancelled()) {
+                meter.cancel();
+            } else {
+                meter.failure(error);
+            }
+        }
+
+        private void retryOrFail(Exception error) {
+            long delay = policy != null && !future.isDone() ? retryDelay(policy, request, attempt, error, previousDelay) : -1;
+            if (delay < 0) {
+                future.completeExceptionally(error);
+                return;
+            }
+            previousDelay = delay;
+            RetryTimer.INSTANCE.schedule(this::send, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 一次对冲调用
+     * 原请求按重试策略以 {@link AsyncExchange} 发出；到达对冲延迟仍未完成且预算允许时，再发出一份不重试的相同请求。
+     * 先成功的一份完成结果并取消另一份的 {@link Call}；一份失败时等待另一份，两份都失败时以原请求的异常结束
+     *
+     * @param <T> 响应类型
+     */
+    private final class HedgedExchange<T> {
+        private final OkHttpClient client;
+        private final Request request;
+        private final ResponseHandler<T> handler;
+        private final CompletableFuture<T> future;
+        private final RetryPolicy policy;
+        private final RequestHedger hedger;
+        private final String endpoint;
+        private final CompletableFuture<T> primary = new CompletableFuture<>();
+        private CompletableFuture<T> hedge;
+        private long startNanos;
+        private int pending;
+        private boolean settled;
+        private Throwable primaryError;
+
+        private HedgedExchange(OkHttpClient client, Request request, ResponseHandler<T> handler, CompletableFuture<T> future,
+                               RetryPolicy policy, RequestHedger hedger) {
+            this.client = client;
+            this.request = request;
+            this.handler = handler;
+            this.future = future;
+            this.policy = policy;
+            this.hedger = hedger;
+            this.endpoint = EndpointTemplates.of(apiPath(request));
+        }
+
+        private void start() {
+            startNanos = System.nanoTime();
+            pending = 1;
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled()) {
+                    cancelAll();
+                }
+            });
+            hedger.onRequest();
+            primary.whenComplete((result, error) -> onComplete(primary, result, error));
+            new AsyncExchange<>(client, request, handler, primary, policy).start();
+            long delay = hedger.getDelayNanos(request.method(), endpoint);
+            if (delay >= 0) {
+                RetryTimer.INSTANCE.schedule(this::sendHedge, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private void sendHedge() {
+            CompletableFuture<T> copy;
+            synchronized (this) {
+                if (settled || pending == 0 || future.isDone() || !hedger.tryHedge()) {
+                    return;
+                }
+                pending++;
+                copy = new CompletableFuture<>();
+                hedge = copy;
+            }
+            log.debug("请求超过对冲延迟仍未返回，发出对冲请求: {} {}", request.method(), endpoint);
+            copy.whenComplete((result, error) -> onComplete(copy, result, error));
+            new AsyncExchange<>(client, request, handler, copy, null).start();
+        }
+
+        private void onComplete(CompletableFuture<T> copy, T result, Throwable error) {
+            CompletableFuture<T> other;
+            Throwable failure = error;
+            synchronized (this) {
+                pending--;
+                if (settled) {
+                    return;
+                }
+                if (error != null) {
+                    if (copy == primary) {
+                        primaryError = error;
+                    }
+                    if (pending > 0) {
+                        return;
+                    }
+                    failure = primaryError != null ? primaryError : error;
+                }
+                settled = true;
+                other = copy == primary ? hedge : primary;
+            }
+            if (failure != null) {
+                future.completeExceptionally(failure);
+                return;
+            }
+            // 对冲请求胜出时原请求的耗时至少为当前耗时，按此计入，避免分位被对冲结果拉低
+            hedger.record(request.method(), endpoint, System.nanoTime() - startNanos);
+            if (copy != primary) {
+                hedger.onHedgeWin();
+            }
+            future.complete(result);
+            if (other != null) {
+                other.cancel(false);
+            }
+        }
+
+        private void cancelAll() {
+            CompletableFuture<T> copy;
+            synchronized (this) {
+                copy = hedge;
+            }
+            primary.cancel(false);
+            if (copy != null) {
+                copy.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 在共享定时线程上延迟执行任务，任务应当很快返回
+     *
+     * @param task  任务
+     * @param delay 延迟
+     * @param unit  时间单位
+     * @return 定时任务
+     */
+    static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return RetryTimer.INSTANCE.schedule(task, delay, unit);
+    }
+
+    /**
+     * 异步重试、对冲与流式截止时间共用的计时线程，只负责到期后提交任务
+     */
+    private static final class RetryTimer {
+        private static final ScheduledExecutorService INSTANCE = createTimer();
+
+        private static ScheduledExecutorService createTimer() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "dify-retry-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+
+    /**
+     * 异步调用期间捕获的HTTP交换
+     */
+    private static final class AsyncCapture {
+        private OkHttpClient httpClient;
+        private Request request;
+        private ResponseHandler<?> handler;
+        private int count;
+
+        private void record(OkHttpClient httpClient, Request request, ResponseHandler<?> handler) {
+            this.httpClient = httpClient;
+            this.request = request;
+            this.handler = handler;
+            count++;
         }
     }
 
@@ -167,17 +1195,16 @@ public abstract class AbstractDifyClient {
      */
     protected <T> T handleResponse(Response response, Class<T> clazz) throws IOException, DifyApiException {
         if (!response.isSuccessful()) {
-            String errorBody = response.body() != null ? response.body().string() : "";
-            log.error("API请求失败: {}, 状态码: {}, 错误信息: {}", response.request().url(), response.code(), errorBody);
-            throw new DifyApiException(response.code(), "api_error", errorBody);
+            DifyApiException exception = createApiException(response);
+            log.error("API请求失败: {}, 状态码: {}, 错误信息: {}", response.request().url(), response.code(), exception.getErrorMessage());
+            throw exception;
         }
 
         if (response.body() == null) {
             return null;
         }
 
-        String responseBody = response.body().string();
-        return JsonUtils.fromJson(responseBody, clazz);
+        return JsonUtils.readJson(response.body().byteStream(), clazz);
     }
 
     /**
@@ -189,14 +1216,15 @@ public abstract class AbstractDifyClient {
      * @throws DifyApiException API异常
      */
     protected byte[] executeRequestForBytes(Request request) throws IOException, DifyApiException {
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "";
-                throw createApiException(response.code(), errorBody);
-            }
+        return exchange(request, httpResponse -> {
+            try (Response response = httpResponse) {
+                if (!response.isSuccessful()) {
+                    throw createApiException(response);
+                }
 
-            return Objects.requireNonNull(response.body()).bytes();
-        }
+                return Objects.requireNonNull(response.body()).bytes();
+            }
+        });
     }
 
     /**
@@ -286,6 +1314,7 @@ public abstract class AbstractDifyClient {
 
     /**
      * 创建JSON请求体
+     * 发送时直接序列化到连接，不在堆中生成完整的JSON字符串
      *
      * @param body 请求体对象
      * @return 请求体
@@ -294,7 +1323,20 @@ public abstract class AbstractDifyClient {
         if (body == null) {
             return null;
         }
-        return RequestBody.create(JSON, JsonUtils.toJson(body));
+        return new JsonRequestBody(body);
+    }
+
+    /**
+     * 根据失败响应创建API异常
+     * 错误体与正常响应一样直接按字节解码，无法解析为JSON时以原始文本作为错误消息
+     *
+     * @param response 失败的HTTP响应
+     * @return API异常
+     * @throws IOException 读取错误体失败
+     */
+    protected DifyApiException createApiException(Response response) throws IOException {
+        byte[] errorBody = response.body() != null ? response.body().bytes() : new byte[0];
+        return createApiException(response.code(), errorBody, RetryPolicy.parseRetryAfterMillis(response.header("Retry-After")));
     }
 
     /**
@@ -305,13 +1347,17 @@ public abstract class AbstractDifyClient {
      * @return API异常
      */
     protected DifyApiException createApiException(int code, String message) {
+        return createApiException(code, message != null ? message.getBytes(StandardCharsets.UTF_8) : new byte[0], -1);
+    }
+
+    private DifyApiException createApiException(int code, byte[] body, long retryAfterMillis) {
         String errorCode = "unknown_error";
-        String errorMessage = message;
+        String errorMessage = new String(body, StandardCharsets.UTF_8);
 
-        try {
-            // 尝试解析错误响应体为JSON
-            if (message != null && !message.isEmpty() && JsonUtils.isValidJson(message)) {
-                Map<String, Object> errorJson = JsonUtils.fromJson(message, Map.class);
+        if (body.length > 0) {
+            try {
+                // 尝试解析错误响应体为JSON
+                Map<?, ?> errorJson = JsonUtils.readJson(new ByteArrayInputStream(body), Map.class);
                 if (errorJson != null) {
                     if (errorJson.containsKey("error_code")) {
                         errorCode = (String) errorJson.get("error_code");
@@ -329,12 +1375,15 @@ public abstract class AbstractDifyClient {
                         errorMessage += " 【" + errorJson.get("params") + "】";
                     }
                 }
+            } catch (DifyDecodeException e) {
+                // 非JSON错误体（例如网关返回的HTML），保留原始文本
+                log.debug("错误响应体不是JSON: {}", errorMessage);
+            } catch (Exception e) {
+                log.warn("解析错误响应体失败: {}", errorMessage, e);
             }
-        } catch (Exception e) {
-            log.warn("解析错误响应体失败: {}", message, e);
         }
 
-        return new DifyApiException(code, errorCode, errorMessage);
+        return new DifyApiException(code, errorCode, errorMessage, retryAfterMillis);
     }
 
     /**
@@ -0,0 +1,77 @@
+package io.github.imfangs.dify.client.impl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 非流式异步调用的准入控制
+ * <p>
+ * 共享传输层的 Dispatcher 不限制并发，每个在途的异步调用都会占用一个调度线程。
+ * 超过上限的调用在此排队，排队期间不占用线程，由释放名额时在计时线程上依次启动。
+ */
+final class AsyncAdmission {
+
+    private final int maxInFlight;
+    private final Deque<Runnable> queue = new ArrayDeque<>();
+    private int inFlight;
+
+    /**
+     * 构造函数
+     *
+     * @param maxInFlight 最大在途调用数量，不大于 0 时不限制
+     */
+    AsyncAdmission(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 提交调用，有空闲名额时在当前线程立即启动，否则排队；启动后的调用结束时必须调用 {@link #release()}
+     *
+     * @param task 启动调用的任务，应当很快返回
+     */
+    void submit(Runnable task) {
+        synchronized (this) {
+            if (maxInFlight > 0 && inFlight >= maxInFlight) {
+                queue.addLast(task);
+                return;
+            }
+            inFlight++;
+        }
+        task.run();
+    }
+
+    /**
+     * 释放名额，有排队的调用时转交给队首
+     */
+    void release() {
+        Runnable next;
+        synchronized (this) {
+            next = queue.pollFirst();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        // 不在释放线程上直接启动，避免连续快速失败的调用在同一线程上层层递归
+        AbstractDifyClient.schedule(next, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 当前在途调用数量
+     *
+     * @return 在途数量
+     */
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * 当前排队调用数量
+     *
+     * @return 排队数量
+     */
+    synchronized int getQueued() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,196 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import okhttp3.Call;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于 OkHttp {@link Call} 的流式请求句柄
+ * <p>
+ * 在调度器中排队时被取消（含超过截止时间）的流立即从队列中撤回并结束；在限流期间被取消的流取得名额后直接结束，
+ * 不发出请求。task_id 与取消可能在不同线程先后到达，
+ * 两者在锁内交接，保证停止接口只调用一次。
+ */
+final class CallStreamHandle implements StreamHandle {
+
+    private final Consumer<String> stopper;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Call call;
+    private Runnable withdrawal;
+    private volatile String taskId;
+    private volatile boolean cancelled;
+    private volatile InterruptedIOException deadlineExceeded;
+    private ScheduledFuture<?> deadline;
+
+    /**
+     * 构造函数
+     *
+     * @param stopper 以任务 ID 调用停止接口
+     */
+    CallStreamHandle(Consumer<String> stopper) {
+        this.stopper = stopper;
+    }
+
+    @Override
+    public void cancel() {
+        Call current;
+        String stopTaskId;
+        Runnable queued;
+        synchronized (this) {
+            if (cancelled || isDone()) {
+                return;
+            }
+            cancelled = true;
+            current = call;
+            stopTaskId = taskId;
+            queued = withdrawal;
+            withdrawal = null;
+        }
+        if (queued != null) {
+            queued.run();
+        }
+        if (current != null) {
+            current.cancel();
+        }
+        if (stopTaskId != null) {
+            stopper.accept(stopTaskId);
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public String getTaskId() {
+        return taskId;
+    }
+
+    @Override
+    public void awaitCompletion() throws InterruptedException {
+        done.await();
+    }
+
+    @Override
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * 设置截止时间的定时任务，流结束时取消
+     *
+     * @param deadline 定时任务
+     */
+    synchronized void setDeadline(ScheduledFuture<?> deadline) {
+        if (isDone()) {
+            deadline.cancel(false);
+        } else {
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * 超过截止时间，取消流并记录超时异常
+     *
+     * @param timeoutMillis 截止时间（毫秒）
+     */
+    void expire(long timeoutMillis) {
+        if (cancelled || isDone()) {
+            return;
+        }
+        deadlineExceeded = new InterruptedIOException("流式请求超过截止时间: " + timeoutMillis + "ms");
+        cancel();
+    }
+
+    /**
+     * 超过截止时间时的异常
+     *
+     * @return 超时异常，未超时为 null
+     */
+    InterruptedIOException getDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    /**
+     * 流在调度器中排队，取消时执行撤回；已取消时立即执行
+     *
+     * @param withdrawal 从队列中撤回并结束流，已离开队列时应当无副作用
+     */
+    void onQueued(Runnable withdrawal) {
+        synchronized (this) {
+            if (!cancelled) {
+                this.withdrawal = withdrawal;
+                return;
+            }
+        }
+        withdrawal.run();
+    }
+
+    /**
+     * 关联已发出的HTTP调用，已取消时立即中止
+     *
+     * @param call HTTP调用
+     */
+    void attach(Call call) {
+        synchronized (this) {
+            withdrawal = null;
+            if (!cancelled) {
+                this.call = call;
+                return;
+            }
+        }
+        call.cancel();
+    }
+
+    /**
+     * 收到一个事件（含未订阅而跳过的事件），记录第一个出现的任务 ID；此前已取消时补发停止请求
+     *
+     * @param event 事件
+     */
+    void onDecoded(DecodedEvent event) {
+        String id = event.getTaskId();
+        if (id == null || taskId != null) {
+            return;
+        }
+        synchronized (this) {
+            if (taskId != null) {
+                return;
+            }
+            taskId = id;
+            if (!cancelled) {
+                return;
+            }
+        }
+        stopper.accept(id);
+    }
+
+    /**
+     * 流结束，重复调用只生效一次
+     */
+    void finish() {
+        ScheduledFuture<?> timer;
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            done.countDown();
+            timer = deadline;
+            call = null;
+            withdrawal = null;
+        }
+        if (timer != null) {
+            timer.cancel(false);
+        }
+    }
+}
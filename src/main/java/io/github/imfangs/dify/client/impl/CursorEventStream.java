@@ -0,0 +1,59 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.event.BaseEvent;
+import io.github.imfangs.dify.client.stream.EventStream;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于 {@link StreamCursor} 的拉取式事件迭代器
+ */
+final class CursorEventStream implements EventStream<BaseEvent> {
+
+    private final StreamCursor cursor;
+    private BaseEvent next;
+    private boolean done;
+
+    CursorEventStream(StreamCursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (done) {
+            return false;
+        }
+        try {
+            next = cursor.next();
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException(e);
+        }
+        if (next == null || cursor.isFinished()) {
+            // 终止事件已读出时立即归还连接，调用方无需再次调用 hasNext
+            close();
+        }
+        return next != null;
+    }
+
+    @Override
+    public BaseEvent next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        BaseEvent event = next;
+        next = null;
+        return event;
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        cursor.close();
+    }
+}
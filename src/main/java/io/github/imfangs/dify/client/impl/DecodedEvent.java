@@ -0,0 +1,138 @@
+package io.github.imfangs.dify.client.impl;
+
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.event.*;
+import io.github.imfangs.dify.client.util.JsonUtils;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 单次解析后的流式事件
+ * 保存事件类型与已缓冲的 JSON token，按需绑定为具体事件类，无需再次解析原始文本。
+ * 未被订阅的事件只保留事件类型与任务、会话标识，不缓冲 token。
+ */
+public final class DecodedEvent {
+
+    private static final Map<EventType, Class<? extends BaseEvent>> EVENT_CLASSES = new EnumMap<>(EventType.class);
+
+    static {
+        EVENT_CLASSES.put(EventType.MESSAGE, MessageEvent.class);
+        EVENT_CLASSES.put(EventType.MESSAGE_END, MessageEndEvent.class);
+        EVENT_CLASSES.put(EventType.MESSAGE_REPLACE, MessageReplaceEvent.class);
+        EVENT_CLASSES.put(EventType.TTS_MESSAGE, TtsMessageEvent.class);
+        EVENT_CLASSES.put(EventType.TTS_MESSAGE_END, TtsMessageEndEvent.class);
+        EVENT_CLASSES.put(EventType.ERROR, ErrorEvent.class);
+        EVENT_CLASSES.put(EventType.PING, PingEvent.class);
+        EVENT_CLASSES.put(EventType.AGENT_MESSAGE, AgentMessageEvent.class);
+        EVENT_CLASSES.put(EventType.AGENT_THOUGHT, AgentThoughtEvent.class);
+        EVENT_CLASSES.put(EventType.AGENT_LOG, AgentLogEvent.class);
+        EVENT_CLASSES.put(EventType.MESSAGE_FILE, MessageFileEvent.class);
+        EVENT_CLASSES.put(EventType.WORKFLOW_STARTED, WorkflowStartedEvent.class);
+        EVENT_CLASSES.put(EventType.NODE_STARTED, NodeStartedEvent.class);
+        EVENT_CLASSES.put(EventType.NODE_FINISHED, NodeFinishedEvent.class);
+        EVENT_CLASSES.put(EventType.NODE_RETRY, NodeRetryEvent.class);
+        EVENT_CLASSES.put(EventType.WORKFLOW_FINISHED, WorkflowFinishedEvent.class);
+        EVENT_CLASSES.put(EventType.ITERATION_STARTED, IterationStartedEvent.class);
+        EVENT_CLASSES.put(EventType.ITERATION_NEXT, IterationNextEvent.class);
+        EVENT_CLASSES.put(EventType.ITERATION_COMPLETED, IterationCompletedEvent.class);
+        EVENT_CLASSES.put(EventType.LOOP_STARTED, LoopStartedEvent.class);
+        EVENT_CLASSES.put(EventType.LOOP_NEXT, LoopNextEvent.class);
+        EVENT_CLASSES.put(EventType.LOOP_COMPLETED, LoopCompletedEvent.class);
+        EVENT_CLASSES.put(EventType.WORKFLOW_TEXT_CHUNK, WorkflowTextChunkEvent.class);
+    }
+
+    private final String event;
+    private final EventType type;
+    private final TokenBuffer tokens;
+    private final String taskId;
+    private final String conversationId;
+
+    DecodedEvent(String event, TokenBuffer tokens, String taskId, String conversationId) {
+        this.event = event;
+        this.type = event != null ? EventType.fromValue(event) : null;
+        this.tokens = tokens;
+        this.taskId = taskId;
+        this.conversationId = conversationId;
+    }
+
+    /**
+     * 原始事件名（JSON 中的 event 字段）
+     *
+     * @return 事件名，缺失时为null
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    /**
+     * 事件类型
+     *
+     * @return 事件类型，未知或缺失时为null
+     */
+    public EventType getType() {
+        return type;
+    }
+
+    /**
+     * 顶层 task_id 字段，未被订阅的事件同样读取
+     *
+     * @return 任务 ID，缺失时为null
+     */
+    public String getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * 顶层 conversation_id 字段，未被订阅的事件同样读取
+     *
+     * @return 会话 ID，缺失时为null
+     */
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    /**
+     * 事件是否因未被订阅而跳过解析
+     *
+     * @return 是否跳过
+     */
+    public boolean isSkipped() {
+        return tokens == null;
+    }
+
+    /**
+     * 从缓冲的 token 绑定具体事件对象
+     *
+     * @param clazz 事件类型
+     * @param <T>   事件类型
+     * @return 事件对象
+     * @throws IOException 绑定失败
+     */
+    public <T> T bind(Class<T> clazz) throws IOException {
+        if (tokens == null) {
+            throw new IllegalStateException("未订阅的事件未被解析: " + event);
+        }
+        return JsonUtils.readerFor(clazz).readValue(tokens.asParser());
+    }
+
+    /**
+     * 按事件类型绑定为对应的事件类
+     * 缺少 event 字段的数据块按文本生成的普通消息块处理，未知事件类型绑定为 {@link BaseEvent}
+     *
+     * @return 事件对象
+     * @throws IOException 绑定失败
+     */
+    public BaseEvent bindEvent() throws IOException {
+        if (event == null) {
+            return bind(MessageEvent.class);
+        }
+        Class<? extends BaseEvent> clazz = type != null ? EVENT_CLASSES.get(type) : null;
+        if (clazz == null) {
+            clazz = BaseEvent.class;
+        }
+        return bind(clazz);
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.imfangs.dify.client.impl;
 
+import io.github.imfangs.dify.client.DifyCall;
 import io.github.imfangs.dify.client.DifyClient;
 import io.github.imfangs.dify.client.callback.*;
 import io.github.imfangs.dify.client.enums.EventType;
@@ -7,22 +8,35 @@ import io.github.imfangs.dify.client.enums.ResponseMode;
 import io.github.imfangs.dify.client.event.BaseEvent;
 import io.github.imfangs.dify.client.event.PingEvent;
 import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyCircuitOpenException;
+import io.github.imfangs.dify.client.metrics.CallTimings;
+import io.github.imfangs.dify.client.metrics.StreamStatsRegistry;
+import io.github.imfangs.dify.client.model.DifyConfig;
 import io.github.imfangs.dify.client.model.chat.*;
 import io.github.imfangs.dify.client.model.common.SimpleResponse;
 import io.github.imfangs.dify.client.model.completion.CompletionRequest;
 import io.github.imfangs.dify.client.model.completion.CompletionResponse;
 import io.github.imfangs.dify.client.model.workflow.*;
-import io.github.imfangs.dify.client.util.JsonUtils;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import io.github.imfangs.dify.client.transport.AdaptiveLimit;
+import io.github.imfangs.dify.client.transport.CircuitBreaker;
+import io.github.imfangs.dify.client.transport.LoadBalancer;
+import io.github.imfangs.dify.client.transport.StreamPriority;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.reactivestreams.Publisher;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -33,11 +47,15 @@ import java.util.function.Consumer;
 public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient {
 
     // 流式响应相关常量
-    private static final String DATA_PREFIX = "data:";
-    private static final String PING_EVENT = "event: ping";
+    private static final String PING_EVENT = "ping";
     private static final Set<EventType> CHAT_TERMINAL_EVENTS = EnumSet.of(EventType.MESSAGE_END, EventType.ERROR);
     private static final Set<EventType> WORKFLOW_TERMINAL_EVENTS = EnumSet.of(EventType.WORKFLOW_FINISHED, EventType.ERROR);
 
+    /**
+     * 未配置应用名称时流统计使用的名称
+     */
+    private static final String DEFAULT_APP_NAME = "default";
+
     // API 路径常量
     // 对话型应用相关路径
     private static final String CHAT_MESSAGES_PATH = "/chat-messages";
@@ -94,7 +112,31 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
      * @param httpClient HTTP客户端
      */
     public DefaultDifyClient(String baseUrl, String apiKey, OkHttpClient httpClient) {
-        super(baseUrl, apiKey, httpClient);
+        this(DifyConfig.builder().baseUrl(baseUrl).apiKey(apiKey).build(), httpClient);
+    }
+
+    /**
+     * 构造函数
+     * 使用调用方提供的 HTTP 客户端，配置中的超时设置不生效
+     *
+     * @param config     客户端配置
+     * @param httpClient HTTP客户端
+     */
+    public DefaultDifyClient(DifyConfig config, OkHttpClient httpClient) {
+        super(config, httpClient);
+        if (httpClient.dispatcher().getMaxRequestsPerHost() < config.getStreamScheduler().getMaxStreamsPerHost()) {
+            log.info("自定义 OkHttpClient 的 Dispatcher 每主机并发上限为 {}，低于流式调度器上限 {}，超出部分将在 Dispatcher 中排队",
+                    httpClient.dispatcher().getMaxRequestsPerHost(), config.getStreamScheduler().getMaxStreamsPerHost());
+        }
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param config 客户端配置
+     */
+    public DefaultDifyClient(DifyConfig config) {
+        super(config);
     }
 
     // ==================== 对话型应用相关方法 ====================
@@ -106,27 +148,51 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
     }
 
     @Override
-    public void sendChatMessageStream(ChatMessage message, ChatStreamCallback callback) throws IOException, DifyApiException {
+    public StreamHandle sendChatMessageStream(ChatMessage message, ChatStreamCallback callback) throws IOException, DifyApiException {
         log.debug("发送流式对话消息: user={}, inputs={}", message.getUser(), message.getInputs() != null ? message.getInputs().keySet() : null);
         // 确保请求模式为流式
         message.setResponseMode(ResponseMode.STREAMING);
 
         // 执行流式请求
-        executeStreamRequest(CHAT_MESSAGES_PATH, message, (line) -> processStreamLine(line, callback, CHAT_TERMINAL_EVENTS, (data, eventType) -> {
-            StreamEventDispatcher.dispatchChatEvent(callback, data, eventType);
+        Set<EventType> subscribedEvents = resolveSubscribedEvents(callback);
+        StreamStatsTracker tracker = newStreamTracker(CHAT_MESSAGES_PATH);
+        CallStreamHandle handle = new CallStreamHandle(taskId -> stopTask(taskId, c -> c.stopChatMessage(taskId, message.getUser())));
+        executeStreamRequest(CHAT_MESSAGES_PATH, message, StreamPriority.INTERACTIVE, tracker, handle, (frame) -> processStreamFrame(frame, callback, subscribedEvents, CHAT_TERMINAL_EVENTS, tracker, handle, event -> {
+            StreamEventDispatcher.dispatchChatEvent(callback, event, tracker);
         }), callback::onException);
+        return handle;
     }
 
     @Override
-    public void sendChatMessageStream(ChatMessage message, ChatflowStreamCallback callback) throws IOException, DifyApiException {
+    public StreamHandle sendChatMessageStream(ChatMessage message, ChatflowStreamCallback callback) throws IOException, DifyApiException {
         log.debug("发送流式对话消息: user={}, inputs={}", message.getUser(), message.getInputs() != null ? message.getInputs().keySet() : null);
         // 确保请求模式为流式
         message.setResponseMode(ResponseMode.STREAMING);
 
         // 执行流式请求
-        executeStreamRequest(CHAT_MESSAGES_PATH, message, (line) -> processStreamLine(line, callback, WORKFLOW_TERMINAL_EVENTS, (data, eventType) -> {
-            StreamEventDispatcher.dispatchChatFlowEvent(callback, data, eventType);
+        Set<EventType> subscribedEvents = resolveSubscribedEvents(callback);
+        StreamStatsTracker tracker = newStreamTracker(CHAT_MESSAGES_PATH);
+        CallStreamHandle handle = new CallStreamHandle(taskId -> stopTask(taskId, c -> c.stopChatMessage(taskId, message.getUser())));
+        executeStreamRequest(CHAT_MESSAGES_PATH, message, StreamPriority.INTERACTIVE, tracker, handle, (frame) -> processStreamFrame(frame, callback, subscribedEvents, WORKFLOW_TERMINAL_EVENTS, tracker, handle, event -> {
+            StreamEventDispatcher.dispatchChatFlowEvent(callback, event, tracker);
         }), callback::onException);
+        return handle;
+    }
+
+    @Override
+    public Publisher<BaseEvent> sendChatMessagePublisher(ChatMessage message) {
+        log.debug("发送流式对话消息(Publisher): user={}, inputs={}", message.getUser(), message.getInputs() != null ? message.getInputs().keySet() : null);
+        message.setResponseMode(ResponseMode.STREAMING);
+        // 对话型应用以流结束收尾，Chatflow 应用在 message_end 之后仍会发送 workflow_finished
+        return new StreamEventPublisher(() -> openStreamCursor(CHAT_MESSAGES_PATH, message, StreamPriority.INTERACTIVE, WORKFLOW_TERMINAL_EVENTS),
+                httpClient.dispatcher().executorService());
+    }
+
+    @Override
+    public EventStream<BaseEvent> openChatStream(ChatMessage message) throws IOException, DifyApiException {
+        log.debug("发送流式对话消息(EventStream): user={}, inputs={}", message.getUser(), message.getInputs() != null ? message.getInputs().keySet() : null);
+        message.setResponseMode(ResponseMode.STREAMING);
+        return new CursorEventStream(openStreamCursor(CHAT_MESSAGES_PATH, message, StreamPriority.INTERACTIVE, WORKFLOW_TERMINAL_EVENTS));
     }
 
     @Override
@@ -285,16 +351,35 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
     }
 
     @Override
-    public void sendCompletionMessageStream(CompletionRequest request, CompletionStreamCallback callback) throws IOException, DifyApiException {
+    public StreamHandle sendCompletionMessageStream(CompletionRequest request, CompletionStreamCallback callback) throws IOException, DifyApiException {
         log.debug("发送流式文本生成请求: {}", request);
         // 确保请求模式为流式
         request.setResponseMode(ResponseMode.STREAMING);
 
         // 执行流式请求
-        executeStreamRequest(COMPLETION_MESSAGES_PATH, request, (line) -> processStreamLine(line, callback, CHAT_TERMINAL_EVENTS, (data, eventType) -> {
+        Set<EventType> subscribedEvents = resolveSubscribedEvents(callback);
+        StreamStatsTracker tracker = newStreamTracker(COMPLETION_MESSAGES_PATH);
+        CallStreamHandle handle = new CallStreamHandle(taskId -> stopTask(taskId, c -> c.stopCompletion(taskId, request.getUser())));
+        executeStreamRequest(COMPLETION_MESSAGES_PATH, request, StreamPriority.INTERACTIVE, tracker, handle, (frame) -> processStreamFrame(frame, callback, subscribedEvents, CHAT_TERMINAL_EVENTS, tracker, handle, event -> {
             // 分发事件
-            StreamEventDispatcher.dispatchCompletionEvent(callback, data);
+            StreamEventDispatcher.dispatchCompletionEvent(callback, event, tracker);
         }), callback::onException);
+        return handle;
+    }
+
+    @Override
+    public Publisher<BaseEvent> sendCompletionMessagePublisher(CompletionRequest request) {
+        log.debug("发送流式文本生成请求(Publisher): user={}", request.getUser());
+        request.setResponseMode(ResponseMode.STREAMING);
+        return new StreamEventPublisher(() -> openStreamCursor(COMPLETION_MESSAGES_PATH, request, StreamPriority.INTERACTIVE, CHAT_TERMINAL_EVENTS),
+                httpClient.dispatcher().executorService());
+    }
+
+    @Override
+    public EventStream<BaseEvent> openCompletionStream(CompletionRequest request) throws IOException, DifyApiException {
+        log.debug("发送流式文本生成请求(EventStream): user={}", request.getUser());
+        request.setResponseMode(ResponseMode.STREAMING);
+        return new CursorEventStream(openStreamCursor(COMPLETION_MESSAGES_PATH, request, StreamPriority.INTERACTIVE, CHAT_TERMINAL_EVENTS));
     }
 
     @Override
@@ -321,16 +406,35 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
     }
 
     @Override
-    public void runWorkflowStream(WorkflowRunRequest request, WorkflowStreamCallback callback) throws IOException, DifyApiException {
+    public StreamHandle runWorkflowStream(WorkflowRunRequest request, WorkflowStreamCallback callback) throws IOException, DifyApiException {
         log.debug("执行流式工作流: {}", request);
         // 确保请求模式为流式
         request.setResponseMode(ResponseMode.STREAMING);
 
         // 执行流式请求
-        executeStreamRequest(WORKFLOWS_RUN_PATH, request, (line) -> processStreamLine(line, callback, WORKFLOW_TERMINAL_EVENTS, (data, eventType) -> {
+        Set<EventType> subscribedEvents = resolveSubscribedEvents(callback);
+        StreamStatsTracker tracker = newStreamTracker(WORKFLOWS_RUN_PATH);
+        CallStreamHandle handle = new CallStreamHandle(taskId -> stopTask(taskId, c -> c.stopWorkflow(taskId, request.getUser())));
+        executeStreamRequest(WORKFLOWS_RUN_PATH, request, StreamPriority.BACKGROUND, tracker, handle, (frame) -> processStreamFrame(frame, callback, subscribedEvents, WORKFLOW_TERMINAL_EVENTS, tracker, handle, event -> {
             // 分发事件
-            StreamEventDispatcher.dispatchWorkflowEvent(callback, data);
+            StreamEventDispatcher.dispatchWorkflowEvent(callback, event, tracker);
         }), callback::onException);
+        return handle;
+    }
+
+    @Override
+    public Publisher<BaseEvent> runWorkflowPublisher(WorkflowRunRequest request) {
+        log.debug("执行流式工作流(Publisher): user={}", request.getUser());
+        request.setResponseMode(ResponseMode.STREAMING);
+        return new StreamEventPublisher(() -> openStreamCursor(WORKFLOWS_RUN_PATH, request, StreamPriority.BACKGROUND, WORKFLOW_TERMINAL_EVENTS),
+                httpClient.dispatcher().executorService());
+    }
+
+    @Override
+    public EventStream<BaseEvent> openWorkflowStream(WorkflowRunRequest request) throws IOException, DifyApiException {
+        log.debug("执行流式工作流(EventStream): user={}", request.getUser());
+        request.setResponseMode(ResponseMode.STREAMING);
+        return new CursorEventStream(openStreamCursor(WORKFLOWS_RUN_PATH, request, StreamPriority.BACKGROUND, WORKFLOW_TERMINAL_EVENTS));
     }
 
     @Override
@@ -388,122 +492,434 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
 
     /**
      * 执行流式请求
+     * 配置了限流器时先取得限流令牌，配置了负载均衡时选择副本，再经过 {@link StreamScheduler} 获取并发名额，
+     * 饱和时按调度器策略排队、拒绝或溢出到备用主机。配置了截止时间时从此刻开始计时
      *
      * @param path          请求路径
      * @param body          请求体
-     * @param lineProcessor 行处理器，返回false表示停止处理
-     * @param errorHandler  错误处理器
+     * @param priority      调度优先级
+     * @param tracker       流计时器
+     * @param handle        流句柄，流结束时标记完成
+     * @param frameProcessor 帧处理器，返回false表示停止处理
+     * @param errorHandler  错误处理器，主动取消的流不再回调
      */
-    private void executeStreamRequest(String path, Object body, LineProcessor lineProcessor, Consumer<Exception> errorHandler) {
-        // 创建请求
-        RequestBody requestBody = createJsonRequestBody(body);
-        Request httpRequest = new Request.Builder().url(baseUrl + path).post(requestBody).header("Authorization", "Bearer " + apiKey).header("Content-Type", "application/json").header("Accept", "text/event-stream").build();
+    private void executeStreamRequest(String path, Object body, StreamPriority priority, StreamStatsTracker tracker, CallStreamHandle handle,
+                                      FrameProcessor frameProcessor, Consumer<Exception> errorHandler) {
+        ensureNotCapturingAsync();
+        long deadlineMillis = config.getStreamDeadlineMillis();
+        if (deadlineMillis > 0) {
+            handle.setDeadline(schedule(() -> handle.expire(deadlineMillis), deadlineMillis, TimeUnit.MILLISECONDS));
+        }
+        RequestMeter meter = RequestMeter.start(config.getMetrics(), "POST", path, true, tracker.getCallTimings());
+        // 创建请求体
+        RequestBody requestBody = meter.meter(createJsonRequestBody(body));
+        Consumer<Exception> failureHandler = e -> {
+            tracker.finish(false);
+            meter.failure(e);
+            try {
+                if (!handle.isCancelled()) {
+                    errorHandler.accept(e);
+                } else if (handle.getDeadlineExceeded() != null) {
+                    errorHandler.accept(handle.getDeadlineExceeded());
+                }
+            } finally {
+                handle.finish();
+            }
+        };
 
-        // 执行请求并处理流式响应
-        Call call = httpClient.newCall(httpRequest);
-        call.enqueue(new Callback() {
-            @Override
-            public void onFailure(Call call, IOException e) {
-                log.error("流式请求失败: {}", e.getMessage());
-                errorHandler.accept(e);
+        // 先取得限流令牌再申请调度名额，等待令牌期间不占用并发流名额
+        acquireRateLimit(path, endUser(body)).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.warn("流式请求被限流: {}", error.getMessage());
+                failureHandler.accept((Exception) error);
+            } else {
+                submitStream(path, requestBody, priority, selectReplica(true, affinityKey(body)), tracker, handle, meter, frameProcessor, failureHandler);
             }
+        });
+    }
 
-            @Override
-            public void onResponse(Call call, Response response) {
-                if (!response.isSuccessful()) {
-                    try {
-                        String errorBody = response.body() != null ? response.body().string() : "";
-                        DifyApiException exception = createApiException(response.code(), errorBody);
-                        log.error("流式请求失败: {}", exception.getMessage());
-                        errorHandler.accept(exception);
-                    } catch (IOException e) {
-                        log.error("读取错误响应失败", e);
-                        errorHandler.accept(e);
+    /**
+     * 向调度器申请名额并发送流式请求
+     */
+    private void submitStream(String path, RequestBody requestBody, StreamPriority priority, LoadBalancer.Permit replica, StreamStatsTracker tracker,
+                              CallStreamHandle handle, RequestMeter meter, FrameProcessor frameProcessor, Consumer<Exception> failureHandler) {
+        String requestBaseUrl = replica.getReplica() != null ? replica.getReplica().getBaseUrl() : baseUrl;
+        StreamScheduler.Waiter waiter = config.getStreamScheduler().submit(requestBaseUrl, config.getStreamSpilloverBaseUrl(), priority, ticket -> {
+            if (handle.isCancelled()) {
+                // 限流期间已被取消，不再发出请求
+                ticket.release();
+                replica.release();
+                failureHandler.accept(new IOException("Canceled"));
+                return;
+            }
+            if (ticket.isSpillover()) {
+                // 溢出到备用主机的流不计入副本
+                replica.release();
+            } else {
+                tracker.bindReplica(replica);
+            }
+            if (ticket.getQueueWaitNanos() > 0) {
+                log.debug("流式请求排队等待: {}ms", ticket.getQueueWaitNanos() / 1_000_000);
+            }
+            tracker.onAdmitted(ticket.getQueueWaitNanos());
+            Request httpRequest = createStreamRequest(ticket.getBaseUrl(), path, requestBody, tracker.getCallTimings());
+            AdaptiveLimit.Permit concurrency;
+            try {
+                concurrency = acquireConcurrency("POST", path, false);
+            } catch (IOException | DifyApiException e) {
+                ticket.release();
+                replica.release();
+                log.warn("流式请求超出并发上限: {}", e.getMessage());
+                failureHandler.accept(e);
+                return;
+            }
+            // 以首个 token 的时延作为并发限制的样本
+            tracker.bindConcurrency(concurrency);
+            CircuitBreaker.Permit permit;
+            try {
+                permit = acquireCircuit(httpRequest);
+            } catch (DifyCircuitOpenException e) {
+                ticket.release();
+                concurrency.release();
+                replica.release();
+                log.warn("流式请求被熔断: {}", e.getMessage());
+                failureHandler.accept(e);
+                return;
+            }
+
+            // 执行请求并处理流式响应
+            Call call = httpClient.newCall(httpRequest);
+            handle.attach(call);
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    ticket.release();
+                    if (handle.isCancelled() || call.isCanceled()) {
+                        permit.onCancel();
+                        concurrency.onCancel();
+                    } else {
+                        permit.onError(e);
+                        concurrency.onError(e);
+                        replica.onError(e);
+                    }
+                    concurrency.release();
+                    replica.release();
+                    if (handle.isCancelled()) {
+                        log.debug("流式请求已取消: {}", e.getMessage());
+                    } else {
+                        log.error("流式请求失败: {}", e.getMessage());
                     }
-                    return;
+                    failureHandler.accept(e);
                 }
 
-                try (ResponseBody responseBody = response.body()) {
-                    if (responseBody == null) {
-                        IOException exception = new IOException("空响应体");
-                        log.error("流式请求失败: {}", exception.getMessage());
-                        errorHandler.accept(exception);
-                        return;
+                @Override
+                public void onResponse(Call call, Response response) {
+                    tracker.onResponseHeaders();
+                    // 流式请求按响应头计入熔断结果，生成耗时不算作慢调用
+                    permit.onResponse(response.code());
+                    replica.onResponse(response.code());
+                    if (!response.isSuccessful()) {
+                        concurrency.onResponse(response.code());
                     }
-
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(responseBody.byteStream(), StandardCharsets.UTF_8))) {
-                        String line;
-                        while ((line = reader.readLine()) != null) {
-                            if (line.isEmpty()) {
-                                continue;
-                            }
-
-                            // 处理行，如果返回false则停止处理
-                            if (!lineProcessor.process(line)) {
-                                break;
-                            }
-                        }
+                    try {
+                        readStreamResponse(meter.meter(response), handle, frameProcessor, failureHandler);
+                    } finally {
+                        // 未收到终止事件即结束的流按失败计入
+                        tracker.finish(false);
+                        meter.success();
+                        ticket.release();
+                        concurrency.release();
+                        replica.release();
+                        handle.finish();
                     }
-                } catch (Exception e) {
-                    log.error("处理流式响应失败: {}", e.getMessage(), e);
-                    errorHandler.accept(e);
                 }
+            });
+        }, e -> {
+            replica.release();
+            failureHandler.accept(e);
+        });
+        // 排队期间被取消或超过截止时间时立即撤回，不必等到其他流释放名额
+        handle.onQueued(() -> {
+            if (waiter.cancel()) {
+                replica.release();
+                failureHandler.accept(new IOException("Canceled"));
             }
         });
     }
 
     /**
-     * 行处理器接口
+     * 流被取消后异步通知服务端停止任务，失败只记录日志
+     *
+     * @param taskId 任务 ID
+     * @param stop   停止接口调用
+     */
+    private void stopTask(String taskId, DifyCall<DifyClient, ?> stop) {
+        log.info("流式请求已取消，通知服务端停止任务: taskId={}", taskId);
+        async(stop).whenComplete((response, error) -> {
+            if (error != null) {
+                log.warn("停止任务失败: taskId={}, error={}", taskId, error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 创建流计时器，聚合到配置的注册表中
+     *
+     * @param path 接口路径
+     * @return 流计时器
+     */
+    private StreamStatsTracker newStreamTracker(String path) {
+        String app = config.getAppName() != null ? config.getAppName() : DEFAULT_APP_NAME;
+        StreamStatsRegistry registry = config.getStreamStatsRegistry();
+        return new StreamStatsTracker(app, path, registry != null ? registry.latency(app, path) : null, newCallTimings());
+    }
+
+    /**
+     * 创建流式请求
+     *
+     * @param requestBaseUrl 调度器分配的API基础URL
+     * @param path           请求路径
+     * @param requestBody    请求体
+     * @param timings        连接阶段计时，未采样时为null
+     * @return 请求
+     */
+    private Request createStreamRequest(String requestBaseUrl, String path, RequestBody requestBody, CallTimings timings) {
+        return new Request.Builder().url(requestBaseUrl + path).post(requestBody).header("Authorization", "Bearer " + apiKey).header("Content-Type", "application/json").header("Accept", "text/event-stream").tag(CallTimings.class, timings).build();
+    }
+
+    /**
+     * 同步建立流式连接并返回拉取式游标
+     * 在调用线程上等待调度名额并执行请求，响应体交由游标按需读取
+     *
+     * @param path           请求路径
+     * @param body           请求体
+     * @param priority       调度优先级
+     * @param terminalEvents 流式读取终止事件
+     * @return 流游标
+     * @throws IOException      IO异常或等待名额被中断
+     * @throws DifyApiException API异常或流被调度器拒绝
+     */
+    StreamCursor openStreamCursor(String path, Object body, StreamPriority priority, Set<EventType> terminalEvents) throws IOException, DifyApiException {
+        ensureNotCapturingAsync();
+        CallTimings timings = RequestMeter.isEnabled(config.getMetrics()) ? newCallTimings() : null;
+        RequestMeter meter = RequestMeter.start(config.getMetrics(), "POST", path, true, timings);
+        RequestBody requestBody = meter.meter(createJsonRequestBody(body));
+        try {
+            awaitRateLimit(path, endUser(body));
+        } catch (DifyApiException | IOException e) {
+            meter.failure(e);
+            throw e;
+        }
+        LoadBalancer.Permit replica = selectReplica(true, affinityKey(body));
+        AdaptiveLimit.Permit concurrency = null;
+        try {
+            String requestBaseUrl = replica.getReplica() != null ? replica.getReplica().getBaseUrl() : baseUrl;
+            CompletableFuture<StreamScheduler.Ticket> slot = new CompletableFuture<>();
+            config.getStreamScheduler().submit(requestBaseUrl, config.getStreamSpilloverBaseUrl(), priority, ticket -> {
+                // 等待方已放弃时直接归还名额
+                if (!slot.complete(ticket)) {
+                    ticket.release();
+                }
+            }, slot::completeExceptionally);
+
+            StreamScheduler.Ticket ticket;
+            try {
+                ticket = slot.get();
+            } catch (InterruptedException e) {
+                slot.cancel(false);
+                Thread.currentThread().interrupt();
+                InterruptedIOException exception = new InterruptedIOException("等待流式请求名额被中断");
+                meter.failure(exception);
+                throw exception;
+            } catch (ExecutionException e) {
+                meter.failure(e.getCause());
+                if (e.getCause() instanceof DifyApiException) {
+                    throw (DifyApiException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            if (ticket.getQueueWaitNanos() > 0) {
+                log.debug("流式请求排队等待: {}ms", ticket.getQueueWaitNanos() / 1_000_000);
+            }
+            if (ticket.isSpillover()) {
+                replica.release();
+                replica = LoadBalancer.Permit.direct();
+            }
+            // 与回调式流一致，取得调度名额后再申请并发名额，排队时间不计入并发限制的延迟样本
+            try {
+                concurrency = acquireConcurrency("POST", path, true);
+            } catch (IOException | DifyApiException e) {
+                ticket.release();
+                meter.failure(e);
+                throw e;
+            }
+
+            Request httpRequest = createStreamRequest(ticket.getBaseUrl(), path, requestBody, timings);
+            CircuitBreaker.Permit permit;
+            try {
+                permit = acquireCircuit(httpRequest);
+            } catch (DifyCircuitOpenException e) {
+                ticket.release();
+                meter.failure(e);
+                throw e;
+            }
+            Call call = httpClient.newCall(httpRequest);
+            Response response;
+            try {
+                response = meter.meter(call.execute());
+            } catch (IOException | RuntimeException e) {
+                ticket.release();
+                meter.failure(e);
+                if (call.isCanceled()) {
+                    permit.onCancel();
+                    concurrency.onCancel();
+                    log.debug("流式请求已取消: {}", e.getMessage());
+                    throw e;
+                }
+                permit.onError(e);
+                concurrency.onError(e);
+                replica.onError(e);
+                log.error("流式请求失败: {}", e.getMessage());
+                throw e;
+            }
+            permit.onResponse(response.code());
+            concurrency.onResponse(response.code());
+            replica.onResponse(response.code());
+
+            if (!response.isSuccessful()) {
+                try {
+                    DifyApiException exception = createApiException(response);
+                    meter.failure(exception);
+                    log.error("流式请求失败: {}", exception.getMessage());
+                    throw exception;
+                } finally {
+                    response.close();
+                    ticket.release();
+                }
+            }
+            if (response.body() == null) {
+                response.close();
+                ticket.release();
+                IOException exception = new IOException("空响应体");
+                meter.failure(exception);
+                throw exception;
+            }
+            return new StreamCursor(call, response, ticket, terminalEvents, meter, concurrency, replica);
+        } catch (IOException | DifyApiException | RuntimeException e) {
+            // 建立连接失败时归还并发名额与副本，成功时随游标关闭归还
+            if (concurrency != null) {
+                concurrency.release();
+            }
+            replica.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 读取流式响应
+     *
+     * @param response      HTTP响应
+     * @param handle         流句柄
+     * @param frameProcessor 帧处理器，返回false表示停止处理
+     * @param errorHandler   错误处理器
+     */
+    private void readStreamResponse(Response response, CallStreamHandle handle, FrameProcessor frameProcessor, Consumer<Exception> errorHandler) {
+        if (!response.isSuccessful()) {
+            try {
+                DifyApiException exception = createApiException(response);
+                log.error("流式请求失败: {}", exception.getMessage());
+                errorHandler.accept(exception);
+            } catch (IOException e) {
+                log.error("读取错误响应失败", e);
+                errorHandler.accept(e);
+            }
+            return;
+        }
+
+        try (ResponseBody responseBody = response.body()) {
+            if (responseBody == null) {
+                IOException exception = new IOException("空响应体");
+                log.error("流式请求失败: {}", exception.getMessage());
+                errorHandler.accept(exception);
+                return;
+            }
+
+            SseFrameReader reader = new SseFrameReader(responseBody.source());
+            SseFrame frame;
+            while ((frame = reader.next()) != null) {
+                if (handle.isCancelled()) {
+                    // 取消后不再分发已读入缓冲区的事件
+                    throw new IOException("Canceled");
+                }
+                // 处理帧，如果返回false则停止处理
+                if (!frameProcessor.process(frame)) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            if (handle.isCancelled()) {
+                log.debug("流式请求已取消: {}", e.getMessage());
+            } else {
+                log.error("处理流式响应失败: {}", e.getMessage(), e);
+            }
+            errorHandler.accept(e);
+        }
+    }
+
+    /**
+     * 帧处理器接口
      */
     @FunctionalInterface
-    private interface LineProcessor {
+    private interface FrameProcessor {
         /**
-         * 处理一行数据
+         * 处理一个SSE事件帧
          *
-         * @param line 行数据
+         * @param frame 事件帧
          * @return 是否继续处理
+         * @throws IOException IO异常
          */
-        boolean process(String line);
+        boolean process(SseFrame frame) throws IOException;
     }
 
     /**
-     * 处理流式数据行
+     * 处理流式事件帧
      *
-     * @param line           数据行
-     * @param callback       回调接口
-     * @param terminalEvents 流式读取终止事件
-     * @param eventProcessor 事件处理器
+     * @param frame            事件帧
+     * @param callback         回调接口
+     * @param subscribedEvents 订阅的事件类型，null表示全部
+     * @param terminalEvents   流式读取终止事件
+     * @param tracker          流计时器
+     * @param handle           流句柄，从首个事件中记录任务 ID
+     * @param eventProcessor   事件处理器
      * @return 是否继续处理
+     * @throws IOException IO异常
      */
-    private boolean processStreamLine(String line, BaseStreamCallback callback, Set<EventType> terminalEvents, EventProcessor eventProcessor) {
-        if(line == null || line.trim().isEmpty()){
-            return true;
-        }
-        if (line.startsWith(DATA_PREFIX)) {
-            String data = line.substring(DATA_PREFIX.length()).trim();
-
+    private boolean processStreamFrame(SseFrame frame, BaseStreamCallback callback, Set<EventType> subscribedEvents, Set<EventType> terminalEvents,
+                                       StreamStatsTracker tracker, CallStreamHandle handle, EventProcessor eventProcessor) throws IOException {
+        if (frame.hasData()) {
             try {
-                // 解析事件类型
-                BaseEvent baseEvent = JsonUtils.fromJson(data, BaseEvent.class);
-                if (baseEvent == null) {
-                    log.warn("解析事件数据为null: {}", data);
-                    return true; // 继续处理
-                }
+                // 单次解析：读取事件类型并缓冲 token，分发时直接绑定具体事件类；未订阅的事件在 token 层面跳过
+                DecodedEvent event = StreamEventDecoder.decode(frame.getData().inputStream(), subscribedEvents);
+                EventType eventType = event.getType();
+                tracker.onFrame(eventType);
+                tracker.onDecoded(event);
+                handle.onDecoded(event);
 
                 // 处理事件
-                eventProcessor.process(data, baseEvent.getEvent());
+                eventProcessor.process(event);
                 // 不同 Dify 应用类型的最终事件不同，例如 Chatflow 的 message_end 后仍会继续发送 workflow_finished。
-                String eventTypeStr = baseEvent.getEvent();
-                EventType eventType = eventTypeStr != null ? EventType.fromValue(eventTypeStr) : null;
                 if (eventType != null && terminalEvents.contains(eventType)) {
+                    tracker.finish(eventType != EventType.ERROR);
                     return false;
                 }
             } catch (Exception e) {
-                log.error("解析事件数据失败: {}", data, e);
+                log.error("解析事件数据失败: {}", e.getMessage(), e);
                 callback.onException(e);
+            } finally {
+                frame.getData().clear();
             }
-        } else if (PING_EVENT.equalsIgnoreCase(line)) {
-            // 心跳事件与 Dify API 文档中描述不一致，返回的不是data开头
+        } else if (PING_EVENT.equalsIgnoreCase(frame.getEvent()) && (subscribedEvents == null || subscribedEvents.contains(EventType.PING))) {
+            // 心跳事件与 Dify API 文档中描述不一致，返回的是不带 data 的 event: ping
             PingEvent pingEvent = new PingEvent();
             pingEvent.setEvent(EventType.PING.getValue());
             callback.onPing(pingEvent);
@@ -511,6 +927,22 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
         return true; // 继续处理
     }
 
+    /**
+     * 解析回调订阅的事件类型
+     *
+     * @param callback 回调接口
+     * @return 订阅的事件类型（始终包含ERROR），null表示全部
+     */
+    private static Set<EventType> resolveSubscribedEvents(BaseStreamCallback callback) {
+        Set<EventType> declared = callback.subscribedEvents();
+        if (declared == null) {
+            return null;
+        }
+        EnumSet<EventType> subscribed = EnumSet.of(EventType.ERROR);
+        subscribed.addAll(declared);
+        return subscribed;
+    }
+
     /**
      * 事件处理器接口
      */
@@ -519,10 +951,9 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
         /**
          * 处理事件
          *
-         * @param data      事件数据
-         * @param eventType 事件类型
+         * @param event 解码后的事件
          */
-        void process(String data, String eventType);
+        void process(DecodedEvent event);
     }
 
     /**
@@ -666,4 +1097,9 @@ public class DefaultDifyClient extends DifyBaseClientImpl implements DifyClient
         int lastDotIndex = fileName.lastIndexOf('.');
         return lastDotIndex > 0 ? fileName.substring(lastDotIndex + 1) : "";
     }
+
+    @Override
+    public <T> CompletableFuture<T> async(DifyCall<DifyClient, T> call) {
+        return executeAsync(this, call);
+    }
 }
@@ -1,7 +1,9 @@
 package io.github.imfangs.dify.client.impl;
 
+import io.github.imfangs.dify.client.DifyCall;
 import io.github.imfangs.dify.client.DifyDatasetsClient;
 import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.model.DifyConfig;
 import io.github.imfangs.dify.client.model.common.SimpleResponse;
 import io.github.imfangs.dify.client.model.datasets.*;
 import io.github.imfangs.dify.client.util.JsonUtils;
@@ -14,6 +16,7 @@ import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Dify 知识库客户端默认实现
@@ -71,6 +74,26 @@ public class DefaultDifyDatasetsClient extends AbstractDifyClient implements Dif
         super(baseUrl, apiKey, httpClient);
     }
 
+    /**
+     * 构造函数
+     * 使用调用方提供的 HTTP 客户端，配置中的超时设置不生效
+     *
+     * @param config     客户端配置
+     * @param httpClient HTTP客户端
+     */
+    public DefaultDifyDatasetsClient(DifyConfig config, OkHttpClient httpClient) {
+        super(config, httpClient);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param config 客户端配置
+     */
+    public DefaultDifyDatasetsClient(DifyConfig config) {
+        super(config);
+    }
+
     @Override
     public DatasetResponse createDataset(CreateDatasetRequest request) throws IOException, DifyApiException {
         return executePost(DATASETS_PATH, request, DatasetResponse.class);
@@ -126,15 +149,17 @@ public class DefaultDifyDatasetsClient extends AbstractDifyClient implements Dif
         String path = DATASETS_PATH + "/" + datasetId;
         Request httpRequest = createDeleteRequest(path, null);
 
-        try (Response response = httpClient.newCall(httpRequest).execute()) {
-            //官网文档返回204，但是实际返回200
-            if (response.code() == 204 || response.code() == 200) {
-                SimpleResponse simpleResponse = new SimpleResponse();
-                simpleResponse.setResult("success");
-                return simpleResponse;
+        return exchange(httpRequest, httpResponse -> {
+            try (Response response = httpResponse) {
+                //官网文档返回204，但是实际返回200
+                if (response.code() == 204 || response.code() == 200) {
+                    SimpleResponse simpleResponse = new SimpleResponse();
+                    simpleResponse.setResult("success");
+                    return simpleResponse;
+                }
+                return handleResponse(response, SimpleResponse.class);
             }
-            return handleResponse(response, SimpleResponse.class);
-        }
+        });
     }
 
     @Override
@@ -305,7 +330,7 @@ public class DefaultDifyDatasetsClient extends AbstractDifyClient implements Dif
     @Override
     public RetrieveResponse retrieveDataset(String datasetId, RetrieveRequest request) throws IOException, DifyApiException {
         String path = DATASETS_PATH + "/" + datasetId + RETRIEVE_PATH;
-        return executePost(path, request, RetrieveResponse.class);
+        return executeIdempotentPost(path, request, RetrieveResponse.class);
     }
 
     @Override
@@ -344,9 +369,11 @@ public class DefaultDifyDatasetsClient extends AbstractDifyClient implements Dif
                 .header("Authorization", "Bearer " + apiKey)
                 .build();
 
-        try (Response response = httpClient.newCall(httpRequest).execute()) {
-            return handleResponse(response, responseClass);
-        }
+        return exchange(httpRequest, httpResponse -> {
+            try (Response response = httpResponse) {
+                return handleResponse(response, responseClass);
+            }
+        });
     }
 
     /**
@@ -508,15 +535,16 @@ public class DefaultDifyDatasetsClient extends AbstractDifyClient implements Dif
         String path = DATASETS_PATH + TAGS_PATH;
         // 根据API文档，返回的是标签数组
         Request request = createGetRequest(path);
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new DifyApiException(response.code(), "HTTP_ERROR", response.message());
+        return exchange(request, httpResponse -> {
+            try (Response response = httpResponse) {
+                if (!response.isSuccessful()) {
+                    throw new DifyApiException(response.code(), "HTTP_ERROR", response.message());
+                }
+                com.fasterxml.jackson.core.type.TypeReference<List<TagResponse>> typeRef =
+                    new com.fasterxml.jackson.core.type.TypeReference<List<TagResponse>>() {};
+                return JsonUtils.readJson(response.body().byteStream(), typeRef);
             }
-            String responseBody = response.body().string();
-            com.fasterxml.jackson.core.type.TypeReference<List<TagResponse>> typeRef =
-                new com.fasterxml.jackson.core.type.TypeReference<List<TagResponse>>() {};
-            return JsonUtils.fromJson(responseBody, typeRef);
-        }
+        });
     }
 
     @Override
@@ -569,4 +597,8 @@ public class DefaultDifyDatasetsClient extends AbstractDifyClient implements Dif
         }
     }
 
+    @Override
+    public <T> CompletableFuture<T> async(DifyCall<DifyDatasetsClient, T> call) {
+        return executeAsync(this, call);
+    }
 }
@@ -2,6 +2,7 @@ package io.github.imfangs.dify.client.impl;
 
 import io.github.imfangs.dify.client.DifyBaseClient;
 import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.model.DifyConfig;
 import io.github.imfangs.dify.client.model.chat.AppInfoResponse;
 import io.github.imfangs.dify.client.model.chat.AppParametersResponse;
 import io.github.imfangs.dify.client.model.chat.AppWebAppSettingResponse;
@@ -49,6 +50,26 @@ public class DifyBaseClientImpl extends AbstractDifyClient implements DifyBaseCl
         super(baseUrl, apiKey, httpClient);
     }
 
+    /**
+     * 构造函数
+     * 使用调用方提供的 HTTP 客户端，配置中的超时设置不生效
+     *
+     * @param config     客户端配置
+     * @param httpClient HTTP客户端
+     */
+    public DifyBaseClientImpl(DifyConfig config, OkHttpClient httpClient) {
+        super(config, httpClient);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param config 客户端配置
+     */
+    public DifyBaseClientImpl(DifyConfig config) {
+        super(config);
+    }
+
     @Override
     public FileUploadResponse uploadFile(File file, String user) throws IOException, DifyApiException {
         RequestBody requestBody = new MultipartBody.Builder()
@@ -154,11 +175,23 @@ public class DifyBaseClientImpl extends AbstractDifyClient implements DifyBaseCl
      * @throws DifyApiException API异常
      */
     private FilePreviewResponse executeFilePreviewRequest(Request request, boolean asAttachment) throws IOException, DifyApiException {
-        Response response = httpClient.newCall(request).execute();
+        return exchange(request, response -> readFilePreviewResponse(response, asAttachment));
+    }
 
+    /**
+     * 解析文件预览响应，成功时响应体以输入流形式交给调用方
+     *
+     * @param response     HTTP响应
+     * @param asAttachment 是否作为附件下载
+     * @return 文件预览响应
+     * @throws IOException      IO异常
+     * @throws DifyApiException API异常
+     */
+    private FilePreviewResponse readFilePreviewResponse(Response response, boolean asAttachment) throws IOException, DifyApiException {
         if (!response.isSuccessful()) {
-            String errorBody = response.body() != null ? response.body().string() : "";
-            throw createApiException(response.code(), errorBody);
+            try (Response failed = response) {
+                throw createApiException(failed);
+            }
         }
 
         ResponseBody responseBody = response.body();
@@ -240,9 +273,4 @@ public class DifyBaseClientImpl extends AbstractDifyClient implements DifyBaseCl
         return null;
     }
 
-    @Override
-    public void close() {
-        // OkHttpClient 不需要显式关闭
-    }
-
 }
@@ -0,0 +1,291 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.metrics.CallTimings;
+import io.github.imfangs.dify.client.metrics.DifyMetrics;
+import io.github.imfangs.dify.client.metrics.EndpointTemplates;
+import io.github.imfangs.dify.client.metrics.RequestMetric;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.*;
+
+import java.io.IOException;
+
+/**
+ * 单个请求的计量器
+ * <p>
+ * 包装请求体与响应体统计实际收发的字节数，请求结束时向 {@link DifyMetrics} 记录一次。
+ * 指标为 {@link DifyMetrics#noop()} 时使用共享的空计量器，不包装也不计时。
+ * 同一请求的各个方法由同一时刻的单个线程调用。
+ */
+final class RequestMeter {
+
+    private static final RequestMeter DISABLED = new RequestMeter(null, null, null, false, null);
+
+    private final DifyMetrics metrics;
+    private final String method;
+    private final String endpoint;
+    private final boolean streaming;
+    private final CallTimings timings;
+    private final long startNanos;
+    private CountingRequestBody requestBody;
+    private CountingSource responseSource;
+    private int status;
+    private boolean finished;
+
+    private RequestMeter(DifyMetrics metrics, String method, String endpoint, boolean streaming, CallTimings timings) {
+        this.metrics = metrics;
+        this.method = method;
+        this.endpoint = endpoint;
+        this.streaming = streaming;
+        this.timings = timings;
+        this.startNanos = metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 创建计量器
+     *
+     * @param metrics   指标实现
+     * @param method    HTTP方法
+     * @param path      请求路径（不含API基础URL的路径前缀）
+     * @param streaming 是否为流式请求
+     * @param timings   连接阶段计时，未采样时为null
+     * @return 计量器
+     */
+    static RequestMeter start(DifyMetrics metrics, String method, String path, boolean streaming, CallTimings timings) {
+        if (!isEnabled(metrics)) {
+            return DISABLED;
+        }
+        return new RequestMeter(metrics, method, EndpointTemplates.of(path), streaming, timings);
+    }
+
+    /**
+     * 指标实现是否需要记录
+     *
+     * @param metrics 指标实现
+     * @return 是否需要记录
+     */
+    static boolean isEnabled(DifyMetrics metrics) {
+        return metrics != null && metrics != DifyMetrics.noop();
+    }
+
+    /**
+     * 获取共享的空计量器
+     *
+     * @return 空计量器
+     */
+    static RequestMeter disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * 包装请求以统计请求体字节数，被采样时附带连接阶段计时标签
+     *
+     * @param request 请求
+     * @return 计量后的请求
+     */
+    Request meter(Request request) {
+        if (metrics == null || (request.body() == null && timings == null)) {
+            return request;
+        }
+        Request.Builder builder = request.newBuilder();
+        if (request.body() != null) {
+            requestBody = new CountingRequestBody(request.body());
+            builder.method(request.method(), requestBody);
+        }
+        if (timings != null) {
+            builder.tag(CallTimings.class, timings);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 包装请求体以统计字节数
+     *
+     * @param body 请求体
+     * @return 计量后的请求体
+     */
+    RequestBody meter(RequestBody body) {
+        if (metrics == null || body == null) {
+            return body;
+        }
+        requestBody = new CountingRequestBody(body);
+        return requestBody;
+    }
+
+    /**
+     * 记录状态码并包装响应体以统计已读取的字节数
+     *
+     * @param response 响应
+     * @return 计量后的响应
+     */
+    Response meter(Response response) {
+        if (metrics == null) {
+            return response;
+        }
+        status = response.code();
+        ResponseBody body = response.body();
+        if (body == null) {
+            return response;
+        }
+        responseSource = new CountingSource(body.source());
+        return response.newBuilder()
+                .body(new CountingResponseBody(body.contentType(), body.contentLength(), Okio.buffer(responseSource)))
+                .build();
+    }
+
+    /**
+     * 请求成功结束
+     */
+    void success() {
+        finish(null);
+    }
+
+    /**
+     * 请求失败结束，API异常取其状态码与错误码，其他异常以异常类名作为错误码
+     *
+     * @param error 异常
+     */
+    void failure(Throwable error) {
+        if (metrics == null) {
+            return;
+        }
+        if (error instanceof DifyApiException) {
+            DifyApiException apiException = (DifyApiException) error;
+            status = apiException.getStatusCode();
+            finish(apiException.getErrorCode());
+        } else {
+            finish(error.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * 请求被主动取消，结束但不记录，例如对冲中落败而被取消的一份
+     */
+    void cancel() {
+        if (metrics != null) {
+            finished = true;
+        }
+    }
+
+    /**
+     * 结束并记录，重复调用只生效一次
+     *
+     * @param errorCode 错误码，成功时为 null
+     */
+    void finish(String errorCode) {
+        if (metrics == null || finished) {
+            return;
+        }
+        finished = true;
+        metrics.recordRequest(RequestMetric.builder()
+                .method(method)
+                .endpoint(endpoint)
+                .streaming(streaming)
+                .status(status)
+                .errorCode(errorCode)
+                .latencyNanos(System.nanoTime() - startNanos)
+                .requestBytes(requestBody != null ? requestBody.bytes : 0)
+                .responseBytes(responseSource != null ? responseSource.bytes : 0)
+                .callTimings(timings)
+                .build());
+    }
+
+    /**
+     * 统计写出字节数的请求体，已知长度时直接取长度
+     */
+    private static final class CountingRequestBody extends RequestBody {
+        private final RequestBody delegate;
+        private long bytes;
+
+        private CountingRequestBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            long length = delegate.contentLength();
+            if (length >= 0) {
+                delegate.writeTo(sink);
+                bytes = length;
+                return;
+            }
+            // 连接重试时会再次写出，只保留最后一次的字节数
+            bytes = 0;
+            BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    bytes += byteCount;
+                }
+            });
+            delegate.writeTo(counting);
+            counting.emit();
+        }
+    }
+
+    /**
+     * 统计已读取字节数的响应体数据源
+     */
+    private static final class CountingSource extends ForwardingSource {
+        private long bytes;
+
+        private CountingSource(Source delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+    }
+
+    private static final class CountingResponseBody extends ResponseBody {
+        private final MediaType contentType;
+        private final long contentLength;
+        private final BufferedSource source;
+
+        private CountingResponseBody(MediaType contentType, long contentLength, BufferedSource source) {
+            this.contentType = contentType;
+            this.contentLength = contentLength;
+            this.source = source;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return contentLength;
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
+}
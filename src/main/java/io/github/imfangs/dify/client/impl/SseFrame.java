@@ -0,0 +1,56 @@
+package io.github.imfangs.dify.client.impl;
+
+import okio.Buffer;
+
+/**
+ * Server-Sent Events 事件帧
+ * data 字段保持为未解码的 UTF-8 字节，由 JSON 解码器直接读取
+ */
+public final class SseFrame {
+
+    private final String event;
+    private final String id;
+    private final Buffer data;
+
+    SseFrame(String event, String id, Buffer data) {
+        this.event = event;
+        this.id = id;
+        this.data = data;
+    }
+
+    /**
+     * 事件名（event 字段），未声明时为null
+     *
+     * @return 事件名
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    /**
+     * 最后一个事件ID（id 字段），未声明时为null
+     *
+     * @return 事件ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 是否包含 data 字段
+     *
+     * @return 是否包含数据
+     */
+    public boolean hasData() {
+        return data.size() > 0;
+    }
+
+    /**
+     * 未解码的 data 字段内容，多行 data 以换行符连接；读取后即被消费
+     *
+     * @return 数据缓冲区
+     */
+    public Buffer getData() {
+        return data;
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.imfangs.dify.client.impl;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+
+/**
+ * Server-Sent Events 帧解析器
+ * <p>
+ * 直接在 okio {@link BufferedSource} 上按 SSE 规范解析：支持多行 data、event、id 字段，
+ * 以空行作为帧边界，忽略注释行与 retry 字段。data 内容以 segment 转移的方式移入帧缓冲区，
+ * 不经过 String 解码，也不为每一行分配 String。
+ * <p>
+ * 与规范不同的是，流结束时仍会分发尚未遇到空行的最后一帧，以兼容未以空行结尾的服务端。
+ */
+public final class SseFrameReader {
+
+    private static final ByteString LINE_TERMINATORS = ByteString.encodeUtf8("\r\n");
+    private static final ByteString FIELD_DATA = ByteString.encodeUtf8("data");
+    private static final ByteString FIELD_EVENT = ByteString.encodeUtf8("event");
+    private static final ByteString FIELD_ID = ByteString.encodeUtf8("id");
+
+    private final BufferedSource source;
+    private Buffer data = new Buffer();
+    private String event;
+    private String lastEventId;
+    private boolean exhausted;
+
+    /**
+     * 构造函数
+     *
+     * @param source 响应体数据源
+     */
+    public SseFrameReader(BufferedSource source) {
+        this.source = source;
+    }
+
+    /**
+     * 读取下一帧，阻塞直到遇到帧边界或流结束
+     *
+     * @return 事件帧，流结束时返回null
+     * @throws IOException IO异常
+     */
+    public SseFrame next() throws IOException {
+        while (!exhausted) {
+            long lineEnd = source.indexOfElement(LINE_TERMINATORS);
+            if (lineEnd == -1) {
+                // 流结束，处理没有行终止符的最后一行
+                exhausted = true;
+                lineEnd = source.getBuffer().size();
+                if (lineEnd > 0) {
+                    processLine(lineEnd);
+                }
+                break;
+            }
+
+            if (lineEnd == 0) {
+                skipLineTerminator();
+                SseFrame frame = dispatch();
+                if (frame != null) {
+                    return frame;
+                }
+                continue;
+            }
+
+            processLine(lineEnd);
+            skipLineTerminator();
+        }
+        return dispatch();
+    }
+
+    private void processLine(long lineEnd) throws IOException {
+        Buffer buffer = source.getBuffer();
+        if (buffer.getByte(0) == ':') {
+            // 注释行
+            source.skip(lineEnd);
+            return;
+        }
+
+        long colon = buffer.indexOf((byte) ':', 0, lineEnd);
+        long fieldLength = colon == -1 ? lineEnd : colon;
+        long valueStart = colon == -1 ? lineEnd : colon + 1;
+        if (valueStart < lineEnd && buffer.getByte(valueStart) == ' ') {
+            valueStart++;
+        }
+        long valueLength = lineEnd - valueStart;
+
+        if (isField(buffer, fieldLength, FIELD_DATA)) {
+            source.skip(valueStart);
+            if (data.size() > 0) {
+                data.writeByte('\n');
+            }
+            data.write(buffer, valueLength);
+        } else if (isField(buffer, fieldLength, FIELD_EVENT)) {
+            source.skip(valueStart);
+            event = source.readUtf8(valueLength);
+        } else if (isField(buffer, fieldLength, FIELD_ID)) {
+            source.skip(valueStart);
+            String id = source.readUtf8(valueLength);
+            if (id.indexOf('\u0000') == -1) {
+                lastEventId = id;
+            }
+        } else {
+            // retry 及未知字段
+            source.skip(lineEnd);
+        }
+    }
+
+    private static boolean isField(Buffer buffer, long fieldLength, ByteString field) {
+        return fieldLength == field.size() && buffer.rangeEquals(0, field);
+    }
+
+    private void skipLineTerminator() throws IOException {
+        if (source.readByte() == '\r' && source.request(1) && source.getBuffer().getByte(0) == '\n') {
+            source.skip(1);
+        }
+    }
+
+    private SseFrame dispatch() {
+        if (data.size() == 0 && event == null) {
+            return null;
+        }
+        SseFrame frame = new SseFrame(event, lastEventId, data);
+        data = new Buffer();
+        event = null;
+        return frame;
+    }
+}
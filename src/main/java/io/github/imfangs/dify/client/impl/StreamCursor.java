@@ -0,0 +1,142 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.event.BaseEvent;
+import io.github.imfangs.dify.client.event.PingEvent;
+import io.github.imfangs.dify.client.transport.AdaptiveLimit;
+import io.github.imfangs.dify.client.transport.LoadBalancer;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
+import okhttp3.Call;
+import okhttp3.Response;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 拉取式流游标
+ * 持有已建立的流式响应，每次调用 {@link #next()} 才从套接字读取并解码下一帧，
+ * 读取发生在调用线程上，没有中间队列
+ */
+final class StreamCursor implements Closeable {
+
+    private static final String PING_EVENT = "ping";
+
+    /**
+     * 读完之前被关闭的流记录的错误码
+     */
+    private static final String CANCELLED = "cancelled";
+
+    private final Call call;
+    private final Response response;
+    private final StreamScheduler.Ticket ticket;
+    private final Set<EventType> terminalEvents;
+    private final RequestMeter meter;
+    private final AdaptiveLimit.Permit concurrency;
+    private final LoadBalancer.Permit replica;
+    private final SseFrameReader reader;
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private boolean finished;
+    private boolean affinityBound;
+
+    StreamCursor(Call call, Response response, StreamScheduler.Ticket ticket, Set<EventType> terminalEvents) {
+        this(call, response, ticket, terminalEvents, RequestMeter.disabled());
+    }
+
+    StreamCursor(Call call, Response response, StreamScheduler.Ticket ticket, Set<EventType> terminalEvents, RequestMeter meter) {
+        this(call, response, ticket, terminalEvents, meter, AdaptiveLimit.Permit.unlimited(), LoadBalancer.Permit.direct());
+    }
+
+    StreamCursor(Call call, Response response, StreamScheduler.Ticket ticket, Set<EventType> terminalEvents, RequestMeter meter,
+                 AdaptiveLimit.Permit concurrency, LoadBalancer.Permit replica) {
+        this.call = call;
+        this.response = response;
+        this.ticket = ticket;
+        this.terminalEvents = terminalEvents;
+        this.meter = meter;
+        this.concurrency = concurrency;
+        this.replica = replica;
+        this.affinityBound = replica.getReplica() == null;
+        this.reader = new SseFrameReader(response.body().source());
+    }
+
+    /**
+     * 读取下一个事件，读到终止事件或流结束后返回null
+     *
+     * @return 事件，流结束时为null
+     * @throws IOException IO异常或流已被取消
+     */
+    BaseEvent next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        try {
+            return read();
+        } catch (IOException | RuntimeException e) {
+            meter.failure(e);
+            throw e;
+        }
+    }
+
+    private BaseEvent read() throws IOException {
+        SseFrame frame;
+        while ((frame = reader.next()) != null) {
+            if (!frame.hasData()) {
+                if (PING_EVENT.equalsIgnoreCase(frame.getEvent())) {
+                    PingEvent pingEvent = new PingEvent();
+                    pingEvent.setEvent(EventType.PING.getValue());
+                    return pingEvent;
+                }
+                continue;
+            }
+
+            DecodedEvent decoded;
+            try {
+                decoded = StreamEventDecoder.decode(frame.getData().inputStream());
+            } finally {
+                frame.getData().clear();
+            }
+            if (!affinityBound) {
+                affinityBound = StreamStatsTracker.bindAffinity(decoded, replica);
+            }
+            if (decoded.getType() != null && terminalEvents.contains(decoded.getType())) {
+                finished = true;
+            }
+            return decoded.bindEvent();
+        }
+        finished = true;
+        return null;
+    }
+
+    /**
+     * 流是否已结束
+     *
+     * @return 是否结束
+     */
+    boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 中止HTTP调用并释放调度名额、并发名额与副本，可在任意线程调用，重复调用无副作用
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            if (!finished) {
+                call.cancel();
+                meter.finish(CANCELLED);
+            } else {
+                meter.success();
+            }
+            try {
+                response.close();
+            } finally {
+                ticket.release();
+                concurrency.release();
+                replica.release();
+            }
+        }
+    }
+}
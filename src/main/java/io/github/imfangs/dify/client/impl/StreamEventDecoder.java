@@ -0,0 +1,125 @@
+package io.github.imfangs.dify.client.impl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.util.JsonUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+/**
+ * 流式事件解码器
+ * <p>
+ * 使用流式 {@link JsonParser} 对事件 JSON 只解析一次：在把 token 复制进 {@link TokenBuffer} 的同时读取顶层 event 字段，
+ * 随后由 {@link DecodedEvent#bind(Class)} 直接从缓冲的 token 绑定具体事件类。
+ * 解析时顺带读取顶层的 task_id 与 conversation_id，供取消流与会话亲和使用。
+ * 指定订阅集合时，读到未订阅的事件类型即停止缓冲 token，只继续扫描顶层字段找出这两个标识，两者都已找到时停止解析。
+ */
+public final class StreamEventDecoder {
+
+    private static final String EVENT_FIELD = "event";
+    private static final String TASK_ID_FIELD = "task_id";
+    private static final String CONVERSATION_ID_FIELD = "conversation_id";
+
+    private StreamEventDecoder() {
+    }
+
+    /**
+     * 解码 UTF-8 编码的事件 JSON
+     *
+     * @param data 事件数据
+     * @return 解码后的事件
+     * @throws IOException JSON 格式错误
+     */
+    public static DecodedEvent decode(InputStream data) throws IOException {
+        return decode(data, null);
+    }
+
+    /**
+     * 解码 UTF-8 编码的事件 JSON，跳过未订阅的事件
+     *
+     * @param data       事件数据
+     * @param subscribed 订阅的事件类型，null表示全部
+     * @return 解码后的事件
+     * @throws IOException JSON 格式错误
+     */
+    public static DecodedEvent decode(InputStream data, Set<EventType> subscribed) throws IOException {
+        try (JsonParser parser = JsonUtils.getObjectMapper().createParser(data)) {
+            return decode(parser, subscribed);
+        }
+    }
+
+    /**
+     * 解码 UTF-8 编码的事件 JSON
+     *
+     * @param data 事件数据
+     * @return 解码后的事件
+     * @throws IOException JSON 格式错误
+     */
+    public static DecodedEvent decode(byte[] data) throws IOException {
+        try (JsonParser parser = JsonUtils.getObjectMapper().createParser(data)) {
+            return decode(parser, null);
+        }
+    }
+
+    private static DecodedEvent decode(JsonParser parser, Set<EventType> subscribed) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("事件数据不是JSON对象: " + parser.currentToken());
+        }
+
+        TokenBuffer tokens = new TokenBuffer(parser);
+        String event = null;
+        String taskId = null;
+        String conversationId = null;
+        tokens.writeStartObject();
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            tokens.writeFieldName(field);
+            JsonToken value = parser.nextToken();
+            if (value != JsonToken.VALUE_STRING) {
+                tokens.copyCurrentStructure(parser);
+                continue;
+            }
+            String text = parser.getText();
+            tokens.writeString(text);
+            if (EVENT_FIELD.equals(field)) {
+                event = text;
+                EventType type = EventType.fromValue(event);
+                if (subscribed != null && type != null && !subscribed.contains(type)) {
+                    return skip(parser, event, taskId, conversationId);
+                }
+            } else if (TASK_ID_FIELD.equals(field)) {
+                taskId = text;
+            } else if (CONVERSATION_ID_FIELD.equals(field)) {
+                conversationId = text;
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("事件数据JSON不完整");
+        }
+        tokens.writeEndObject();
+        return new DecodedEvent(event, tokens, taskId, conversationId);
+    }
+
+    /**
+     * 未订阅的事件不再缓冲 token，只扫描剩余的顶层字段读取标识
+     */
+    private static DecodedEvent skip(JsonParser parser, String event, String taskId, String conversationId) throws IOException {
+        while ((taskId == null || conversationId == null) && parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_STRING && TASK_ID_FIELD.equals(field)) {
+                taskId = parser.getText();
+            } else if (value == JsonToken.VALUE_STRING && CONVERSATION_ID_FIELD.equals(field)) {
+                conversationId = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new DecodedEvent(event, null, taskId, conversationId);
+    }
+}
@@ -1,14 +1,17 @@
 package io.github.imfangs.dify.client.impl;
 
+import io.github.imfangs.dify.client.callback.BaseStreamCallback;
 import io.github.imfangs.dify.client.callback.ChatStreamCallback;
 import io.github.imfangs.dify.client.callback.ChatflowStreamCallback;
 import io.github.imfangs.dify.client.callback.CompletionStreamCallback;
 import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
 import io.github.imfangs.dify.client.enums.EventType;
 import io.github.imfangs.dify.client.event.*;
-import io.github.imfangs.dify.client.util.JsonUtils;
+import io.github.imfangs.dify.client.metrics.StreamStats;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * 流式事件分发器
  * 负责将事件分发到对应的回调方法
@@ -20,117 +23,146 @@ public class StreamEventDispatcher {
      * 分发工作流编排对话事件到对应的回调方法
      *
      * @param callback  回调接口
-     * @param data     事件对象
-     * @param eventType 事件类型
+     * @param data     原始JSON数据
+     * @param eventType 事件类型（以 JSON 中的 event 字段为准）
      */
     public static void dispatchChatFlowEvent(ChatflowStreamCallback callback, String data, String eventType) {
+        DecodedEvent event;
         try {
-            EventType type = EventType.fromValue(eventType);
+            event = StreamEventDecoder.decode(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            handleException(callback, e);
+            return;
+        }
+        dispatchChatFlowEvent(callback, event);
+    }
+
+    /**
+     * 分发工作流编排对话事件到对应的回调方法
+     * 事件 JSON 已由 {@link StreamEventDecoder} 解析一次，此处仅绑定具体事件类
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     */
+    public static void dispatchChatFlowEvent(ChatflowStreamCallback callback, DecodedEvent event) {
+        dispatchChatFlowEvent(callback, event, null);
+    }
+
+    /**
+     * 分发事件并记录流计时，终止事件回调附带 {@link StreamStats}
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     * @param tracker  流计时器，为 null 时不统计
+     */
+    static void dispatchChatFlowEvent(ChatflowStreamCallback callback, DecodedEvent event, StreamStatsTracker tracker) {
+        if (event.isSkipped()) {
+            return;
+        }
+        try {
+            EventType type = event.getType();
             if (type == null) {
-                log.warn("未知事件类型: {}", eventType);
+                log.warn("未知事件类型: {}", event.getEvent());
                 return;
             }
 
             switch (type) {
                 case MESSAGE:
-                    MessageEvent messageEvent = JsonUtils.fromJson(data, MessageEvent.class);
+                    MessageEvent messageEvent = event.bind(MessageEvent.class);
+                    observeToken(tracker, messageEvent);
                     callback.onMessage(messageEvent);
                     break;
                 case MESSAGE_END:
-                    MessageEndEvent messageEndEvent = JsonUtils.fromJson(data, MessageEndEvent.class);
-                    callback.onMessageEnd(messageEndEvent);
+                    MessageEndEvent messageEndEvent = event.bind(MessageEndEvent.class);
+                    callback.onMessageEnd(messageEndEvent, stats(tracker));
                     break;
                 case MESSAGE_FILE:
-                    MessageFileEvent messageFileEvent = JsonUtils.fromJson(data, MessageFileEvent.class);
+                    MessageFileEvent messageFileEvent = event.bind(MessageFileEvent.class);
                     callback.onMessageFile(messageFileEvent);
                     break;
                 case TTS_MESSAGE:
-                    TtsMessageEvent ttsMessageEvent = JsonUtils.fromJson(data, TtsMessageEvent.class);
+                    TtsMessageEvent ttsMessageEvent = event.bind(TtsMessageEvent.class);
                     callback.onTTSMessage(ttsMessageEvent);
                     break;
                 case TTS_MESSAGE_END:
-                    TtsMessageEndEvent ttsMessageEndEvent = JsonUtils.fromJson(data, TtsMessageEndEvent.class);
+                    TtsMessageEndEvent ttsMessageEndEvent = event.bind(TtsMessageEndEvent.class);
                     callback.onTTSMessageEnd(ttsMessageEndEvent);
                     break;
                 case MESSAGE_REPLACE:
-                    MessageReplaceEvent messageReplaceEvent = JsonUtils.fromJson(data, MessageReplaceEvent.class);
+                    MessageReplaceEvent messageReplaceEvent = event.bind(MessageReplaceEvent.class);
                     callback.onMessageReplace(messageReplaceEvent);
                     break;
                 case AGENT_MESSAGE:
-                    AgentMessageEvent agentMessageEvent = JsonUtils.fromJson(data, AgentMessageEvent.class);
+                    AgentMessageEvent agentMessageEvent = event.bind(AgentMessageEvent.class);
+                    observeToken(tracker, agentMessageEvent);
                     callback.onAgentMessage(agentMessageEvent);
                     break;
                 case AGENT_THOUGHT:
-                    AgentThoughtEvent agentThoughtEvent = JsonUtils.fromJson(data, AgentThoughtEvent.class);
+                    AgentThoughtEvent agentThoughtEvent = event.bind(AgentThoughtEvent.class);
                     callback.onAgentThought(agentThoughtEvent);
                     break;
                 case WORKFLOW_STARTED:
-                    WorkflowStartedEvent workflowStartedEvent = JsonUtils.fromJson(data, WorkflowStartedEvent.class);
+                    WorkflowStartedEvent workflowStartedEvent = event.bind(WorkflowStartedEvent.class);
                     callback.onWorkflowStarted(workflowStartedEvent);
                     break;
                 case NODE_STARTED:
-                    NodeStartedEvent nodeStartedEvent = JsonUtils.fromJson(data, NodeStartedEvent.class);
+                    NodeStartedEvent nodeStartedEvent = event.bind(NodeStartedEvent.class);
                     callback.onNodeStarted(nodeStartedEvent);
                     break;
                 case NODE_FINISHED:
-                    NodeFinishedEvent nodeFinishedEvent = JsonUtils.fromJson(data, NodeFinishedEvent.class);
+                    NodeFinishedEvent nodeFinishedEvent = event.bind(NodeFinishedEvent.class);
                     callback.onNodeFinished(nodeFinishedEvent);
                     break;
                 case NODE_RETRY:
-                    NodeRetryEvent nodeRetryEvent = JsonUtils.fromJson(data, NodeRetryEvent.class);
+                    NodeRetryEvent nodeRetryEvent = event.bind(NodeRetryEvent.class);
                     callback.onNodeRetry(nodeRetryEvent);
                     break;
                 case WORKFLOW_FINISHED:
-                    WorkflowFinishedEvent workflowFinishedEvent = JsonUtils.fromJson(data, WorkflowFinishedEvent.class);
-                    callback.onWorkflowFinished(workflowFinishedEvent);
+                    WorkflowFinishedEvent workflowFinishedEvent = event.bind(WorkflowFinishedEvent.class);
+                    callback.onWorkflowFinished(workflowFinishedEvent, stats(tracker));
                     break;
                 case ITERATION_STARTED:
-                    IterationStartedEvent iterationStartedEvent = JsonUtils.fromJson(data, IterationStartedEvent.class);
+                    IterationStartedEvent iterationStartedEvent = event.bind(IterationStartedEvent.class);
                     callback.onIterationStarted(iterationStartedEvent);
                     break;
                 case ITERATION_NEXT:
-                    IterationNextEvent iterationNextEvent = JsonUtils.fromJson(data, IterationNextEvent.class);
+                    IterationNextEvent iterationNextEvent = event.bind(IterationNextEvent.class);
                     callback.onIterationNext(iterationNextEvent);
                     break;
                 case ITERATION_COMPLETED:
-                    IterationCompletedEvent iterationCompletedEvent = JsonUtils.fromJson(data, IterationCompletedEvent.class);
+                    IterationCompletedEvent iterationCompletedEvent = event.bind(IterationCompletedEvent.class);
                     callback.onIterationCompleted(iterationCompletedEvent);
                     break;
                 case LOOP_STARTED:
-                    LoopStartedEvent loopStartedEvent = JsonUtils.fromJson(data, LoopStartedEvent.class);
+                    LoopStartedEvent loopStartedEvent = event.bind(LoopStartedEvent.class);
                     callback.onLoopStarted(loopStartedEvent);
                     break;
                 case LOOP_NEXT:
-                    LoopNextEvent loopNextEvent = JsonUtils.fromJson(data, LoopNextEvent.class);
+                    LoopNextEvent loopNextEvent = event.bind(LoopNextEvent.class);
                     callback.onLoopNext(loopNextEvent);
                     break;
                 case LOOP_COMPLETED:
-                    LoopCompletedEvent loopCompletedEvent = JsonUtils.fromJson(data, LoopCompletedEvent.class);
+                    LoopCompletedEvent loopCompletedEvent = event.bind(LoopCompletedEvent.class);
                     callback.onLoopCompleted(loopCompletedEvent);
                     break;
                 case AGENT_LOG:
-                    AgentLogEvent agentLogEvent = JsonUtils.fromJson(data, AgentLogEvent.class);
+                    AgentLogEvent agentLogEvent = event.bind(AgentLogEvent.class);
                     callback.onAgentLog(agentLogEvent);
                     break;
                 case ERROR:
-                    ErrorEvent errorEvent = JsonUtils.fromJson(data, ErrorEvent.class);
+                    ErrorEvent errorEvent = event.bind(ErrorEvent.class);
                     callback.onError(errorEvent);
                     break;
                 case PING:
-                    PingEvent pingEvent = JsonUtils.fromJson(data, PingEvent.class);
+                    PingEvent pingEvent = event.bind(PingEvent.class);
                     callback.onPing(pingEvent);
                     break;
                 default:
-                    log.warn("未处理的事件类型: {}", eventType);
+                    log.warn("未处理的事件类型: {}", event.getEvent());
                     break;
             }
         } catch (Exception e) {
-            log.error("处理事件回调时发生异常: {}", e.getMessage(), e);
-            try {
-                callback.onException(e);
-            } catch (Exception ex) {
-                log.error("调用onError回调时发生异常", ex);
-            }
+            handleException(callback, e);
         }
     }
 
@@ -139,72 +171,101 @@ public class StreamEventDispatcher {
      *
      * @param callback  回调接口
      * @param data      原始JSON数据
-     * @param eventType 事件类型
+     * @param eventType 事件类型（以 JSON 中的 event 字段为准）
      */
     public static void dispatchChatEvent(ChatStreamCallback callback, String data, String eventType) {
+        DecodedEvent event;
+        try {
+            event = StreamEventDecoder.decode(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            handleException(callback, e);
+            return;
+        }
+        dispatchChatEvent(callback, event);
+    }
+
+    /**
+     * 分发聊天事件到对应的回调方法
+     * 事件 JSON 已由 {@link StreamEventDecoder} 解析一次，此处仅绑定具体事件类
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     */
+    public static void dispatchChatEvent(ChatStreamCallback callback, DecodedEvent event) {
+        dispatchChatEvent(callback, event, null);
+    }
+
+    /**
+     * 分发事件并记录流计时，终止事件回调附带 {@link StreamStats}
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     * @param tracker  流计时器，为 null 时不统计
+     */
+    static void dispatchChatEvent(ChatStreamCallback callback, DecodedEvent event, StreamStatsTracker tracker) {
+        if (event.isSkipped()) {
+            return;
+        }
         try {
-            EventType type = EventType.fromValue(eventType);
+            EventType type = event.getType();
             if (type == null) {
-                log.warn("未知事件类型: {}", eventType);
+                log.warn("未知事件类型: {}", event.getEvent());
                 return;
             }
 
             switch (type) {
                 case MESSAGE:
-                    MessageEvent messageEvent = JsonUtils.fromJson(data, MessageEvent.class);
+                    MessageEvent messageEvent = event.bind(MessageEvent.class);
+                    observeToken(tracker, messageEvent);
                     callback.onMessage(messageEvent);
                     break;
                 case MESSAGE_END:
-                    MessageEndEvent messageEndEvent = JsonUtils.fromJson(data, MessageEndEvent.class);
-                    callback.onMessageEnd(messageEndEvent);
+                    MessageEndEvent messageEndEvent = event.bind(MessageEndEvent.class);
+                    callback.onMessageEnd(messageEndEvent, stats(tracker));
                     break;
                 case MESSAGE_FILE:
-                    MessageFileEvent messageFileEvent = JsonUtils.fromJson(data, MessageFileEvent.class);
+                    MessageFileEvent messageFileEvent = event.bind(MessageFileEvent.class);
                     callback.onMessageFile(messageFileEvent);
                     break;
                 case TTS_MESSAGE:
-                    TtsMessageEvent ttsMessageEvent = JsonUtils.fromJson(data, TtsMessageEvent.class);
+                    TtsMessageEvent ttsMessageEvent = event.bind(TtsMessageEvent.class);
                     callback.onTTSMessage(ttsMessageEvent);
                     break;
                 case TTS_MESSAGE_END:
-                    TtsMessageEndEvent ttsMessageEndEvent = JsonUtils.fromJson(data, TtsMessageEndEvent.class);
+                    TtsMessageEndEvent ttsMessageEndEvent = event.bind(TtsMessageEndEvent.class);
                     callback.onTTSMessageEnd(ttsMessageEndEvent);
                     break;
                 case MESSAGE_REPLACE:
-                    MessageReplaceEvent messageReplaceEvent = JsonUtils.fromJson(data, MessageReplaceEvent.class);
+                    MessageReplaceEvent messageReplaceEvent = event.bind(MessageReplaceEvent.class);
                     callback.onMessageReplace(messageReplaceEvent);
                     break;
                 case AGENT_MESSAGE:
-                    AgentMessageEvent agentMessageEvent = JsonUtils.fromJson(data, AgentMessageEvent.class);
+                    AgentMessageEvent agentMessageEvent = event.bind(AgentMessageEvent.class);
+                    observeToken(tracker, agentMessageEvent);
                     callback.onAgentMessage(agentMessageEvent);
                     break;
                 case AGENT_THOUGHT:
-                    AgentThoughtEvent agentThoughtEvent = JsonUtils.fromJson(data, AgentThoughtEvent.class);
+                    AgentThoughtEvent agentThoughtEvent = event.bind(AgentThoughtEvent.class);
                     callback.onAgentThought(agentThoughtEvent);
                     break;
                 case AGENT_LOG:
-                    AgentLogEvent agentLogEvent = JsonUtils.fromJson(data, AgentLogEvent.class);
+                    AgentLogEvent agentLogEvent = event.bind(AgentLogEvent.class);
                     callback.onAgentLog(agentLogEvent);
                     break;
                 case ERROR:
-                    ErrorEvent errorEvent = JsonUtils.fromJson(data, ErrorEvent.class);
+                    ErrorEvent errorEvent = event.bind(ErrorEvent.class);
                     callback.onError(errorEvent);
                     break;
                 case PING:
-                    PingEvent pingEvent = JsonUtils.fromJson(data, PingEvent.class);
+                    PingEvent pingEvent = event.bind(PingEvent.class);
                     callback.onPing(pingEvent);
                     break;
                 default:
-                    log.warn("未处理的事件类型: {}", eventType);
+                    log.warn("未处理的事件类型: {}", event.getEvent());
                     break;
             }
         } catch (Exception e) {
-            log.error("处理事件回调时发生异常: {}", e.getMessage(), e);
-            try {
-                callback.onException(e);
-            } catch (Exception ex) {
-                log.error("调用onError回调时发生异常", ex);
-            }
+            handleException(callback, e);
         }
     }
 
@@ -215,67 +276,88 @@ public class StreamEventDispatcher {
      * @param data     原始JSON数据
      */
     public static void dispatchCompletionEvent(CompletionStreamCallback callback, String data) {
+        DecodedEvent event;
         try {
-            BaseEvent baseEvent = JsonUtils.fromJson(data, BaseEvent.class);
-            if (baseEvent == null) {
-                log.warn("解析事件数据为null: {}", data);
-                return;
-            }
+            event = StreamEventDecoder.decode(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            handleException(callback, e);
+            return;
+        }
+        dispatchCompletionEvent(callback, event);
+    }
 
-            String eventTypeStr = baseEvent.getEvent();
-            EventType type = eventTypeStr != null ? EventType.fromValue(eventTypeStr) : null;
+    /**
+     * 分发文本生成事件到对应的回调方法
+     * 事件 JSON 已由 {@link StreamEventDecoder} 解析一次，此处仅绑定具体事件类
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     */
+    public static void dispatchCompletionEvent(CompletionStreamCallback callback, DecodedEvent event) {
+        dispatchCompletionEvent(callback, event, null);
+    }
 
+    /**
+     * 分发事件并记录流计时，终止事件回调附带 {@link StreamStats}
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     * @param tracker  流计时器，为 null 时不统计
+     */
+    static void dispatchCompletionEvent(CompletionStreamCallback callback, DecodedEvent event, StreamStatsTracker tracker) {
+        if (event.isSkipped()) {
+            return;
+        }
+        try {
+            EventType type = event.getType();
             if (type == null) {
                 // 普通消息块
-                MessageEvent messageEvent = JsonUtils.fromJson(data, MessageEvent.class);
+                MessageEvent messageEvent = event.bind(MessageEvent.class);
+                observeToken(tracker, messageEvent);
                 callback.onMessage(messageEvent);
                 return;
             }
 
             switch (type) {
                 case MESSAGE:
-                    MessageEvent messageEvent = JsonUtils.fromJson(data, MessageEvent.class);
+                    MessageEvent messageEvent = event.bind(MessageEvent.class);
+                    observeToken(tracker, messageEvent);
                     callback.onMessage(messageEvent);
                     break;
                 case MESSAGE_END:
-                    MessageEndEvent messageEndEvent = JsonUtils.fromJson(data, MessageEndEvent.class);
-                    callback.onMessageEnd(messageEndEvent);
+                    MessageEndEvent messageEndEvent = event.bind(MessageEndEvent.class);
+                    callback.onMessageEnd(messageEndEvent, stats(tracker));
                     break;
                 case TTS_MESSAGE:
-                    TtsMessageEvent ttsMessageEvent = JsonUtils.fromJson(data, TtsMessageEvent.class);
+                    TtsMessageEvent ttsMessageEvent = event.bind(TtsMessageEvent.class);
                     callback.onTtsMessage(ttsMessageEvent);
                     break;
                 case TTS_MESSAGE_END:
-                    TtsMessageEndEvent ttsMessageEndEvent = JsonUtils.fromJson(data, TtsMessageEndEvent.class);
+                    TtsMessageEndEvent ttsMessageEndEvent = event.bind(TtsMessageEndEvent.class);
                     callback.onTtsMessageEnd(ttsMessageEndEvent);
                     break;
                 case MESSAGE_REPLACE:
-                    MessageReplaceEvent messageReplaceEvent = JsonUtils.fromJson(data, MessageReplaceEvent.class);
+                    MessageReplaceEvent messageReplaceEvent = event.bind(MessageReplaceEvent.class);
                     callback.onMessageReplace(messageReplaceEvent);
                     break;
                 case AGENT_LOG:
-                    AgentLogEvent agentLogEvent = JsonUtils.fromJson(data, AgentLogEvent.class);
+                    AgentLogEvent agentLogEvent = event.bind(AgentLogEvent.class);
                     callback.onAgentLog(agentLogEvent);
                     break;
                 case ERROR:
-                    ErrorEvent errorEvent = JsonUtils.fromJson(data, ErrorEvent.class);
+                    ErrorEvent errorEvent = event.bind(ErrorEvent.class);
                     callback.onError(errorEvent);
                     break;
                 case PING:
-                    PingEvent pingEvent = JsonUtils.fromJson(data, PingEvent.class);
+                    PingEvent pingEvent = event.bind(PingEvent.class);
                     callback.onPing(pingEvent);
                     break;
                 default:
-                    log.warn("未处理的事件类型: {}", eventTypeStr);
+                    log.warn("未处理的事件类型: {}", event.getEvent());
                     break;
             }
         } catch (Exception e) {
-            log.error("处理事件回调时发生异常: {}", e.getMessage(), e);
-            try {
-                callback.onException(e);
-            } catch (Exception ex) {
-                log.error("调用onError回调时发生异常", ex);
-            }
+            handleException(callback, e);
         }
     }
 
@@ -286,101 +368,140 @@ public class StreamEventDispatcher {
      * @param data     原始JSON数据
      */
     public static void dispatchWorkflowEvent(WorkflowStreamCallback callback, String data) {
+        DecodedEvent event;
         try {
-            BaseEvent baseEvent = JsonUtils.fromJson(data, BaseEvent.class);
-            if (baseEvent == null) {
-                log.warn("解析事件数据为null: {}", data);
-                return;
-            }
+            event = StreamEventDecoder.decode(data.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            handleException(callback, e);
+            return;
+        }
+        dispatchWorkflowEvent(callback, event);
+    }
 
-            String eventTypeStr = baseEvent.getEvent();
-            EventType type = EventType.fromValue(eventTypeStr);
+    /**
+     * 分发工作流事件到对应的回调方法
+     * 事件 JSON 已由 {@link StreamEventDecoder} 解析一次，此处仅绑定具体事件类
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     */
+    public static void dispatchWorkflowEvent(WorkflowStreamCallback callback, DecodedEvent event) {
+        dispatchWorkflowEvent(callback, event, null);
+    }
 
+    /**
+     * 分发事件并记录流计时，终止事件回调附带 {@link StreamStats}
+     *
+     * @param callback 回调接口
+     * @param event    解码后的事件
+     * @param tracker  流计时器，为 null 时不统计
+     */
+    static void dispatchWorkflowEvent(WorkflowStreamCallback callback, DecodedEvent event, StreamStatsTracker tracker) {
+        if (event.isSkipped()) {
+            return;
+        }
+        try {
+            EventType type = event.getType();
             if (type == null) {
-                log.warn("未知事件类型: {}", eventTypeStr);
+                log.warn("未知事件类型: {}", event.getEvent());
                 return;
             }
 
             switch (type) {
                 case WORKFLOW_STARTED:
-                    WorkflowStartedEvent workflowStartedEvent = JsonUtils.fromJson(data, WorkflowStartedEvent.class);
+                    WorkflowStartedEvent workflowStartedEvent = event.bind(WorkflowStartedEvent.class);
                     callback.onWorkflowStarted(workflowStartedEvent);
                     break;
                 case NODE_STARTED:
-                    NodeStartedEvent nodeStartedEvent = JsonUtils.fromJson(data, NodeStartedEvent.class);
+                    NodeStartedEvent nodeStartedEvent = event.bind(NodeStartedEvent.class);
                     callback.onNodeStarted(nodeStartedEvent);
                     break;
                 case NODE_FINISHED:
-                    NodeFinishedEvent nodeFinishedEvent = JsonUtils.fromJson(data, NodeFinishedEvent.class);
+                    NodeFinishedEvent nodeFinishedEvent = event.bind(NodeFinishedEvent.class);
                     callback.onNodeFinished(nodeFinishedEvent);
                     break;
                 case NODE_RETRY:
-                    NodeRetryEvent workflowNodeRetryEvent = JsonUtils.fromJson(data, NodeRetryEvent.class);
+                    NodeRetryEvent workflowNodeRetryEvent = event.bind(NodeRetryEvent.class);
                     callback.onNodeRetry(workflowNodeRetryEvent);
                     break;
                 case WORKFLOW_FINISHED:
-                    WorkflowFinishedEvent workflowFinishedEvent = JsonUtils.fromJson(data, WorkflowFinishedEvent.class);
-                    callback.onWorkflowFinished(workflowFinishedEvent);
+                    WorkflowFinishedEvent workflowFinishedEvent = event.bind(WorkflowFinishedEvent.class);
+                    callback.onWorkflowFinished(workflowFinishedEvent, stats(tracker));
                     break;
                 case ITERATION_STARTED:
-                    IterationStartedEvent iterationStartedEvent = JsonUtils.fromJson(data, IterationStartedEvent.class);
+                    IterationStartedEvent iterationStartedEvent = event.bind(IterationStartedEvent.class);
                     callback.onIterationStarted(iterationStartedEvent);
                     break;
                 case ITERATION_NEXT:
-                    IterationNextEvent iterationNextEvent = JsonUtils.fromJson(data, IterationNextEvent.class);
+                    IterationNextEvent iterationNextEvent = event.bind(IterationNextEvent.class);
                     callback.onIterationNext(iterationNextEvent);
                     break;
                 case ITERATION_COMPLETED:
-                    IterationCompletedEvent iterationCompletedEvent = JsonUtils.fromJson(data, IterationCompletedEvent.class);
+                    IterationCompletedEvent iterationCompletedEvent = event.bind(IterationCompletedEvent.class);
                     callback.onIterationCompleted(iterationCompletedEvent);
                     break;
                 case LOOP_STARTED:
-                    LoopStartedEvent loopStartedEvent = JsonUtils.fromJson(data, LoopStartedEvent.class);
+                    LoopStartedEvent loopStartedEvent = event.bind(LoopStartedEvent.class);
                     callback.onLoopStarted(loopStartedEvent);
                     break;
                 case LOOP_NEXT:
-                    LoopNextEvent loopNextEvent = JsonUtils.fromJson(data, LoopNextEvent.class);
+                    LoopNextEvent loopNextEvent = event.bind(LoopNextEvent.class);
                     callback.onLoopNext(loopNextEvent);
                     break;
                 case LOOP_COMPLETED:
-                    LoopCompletedEvent loopCompletedEvent = JsonUtils.fromJson(data, LoopCompletedEvent.class);
+                    LoopCompletedEvent loopCompletedEvent = event.bind(LoopCompletedEvent.class);
                     callback.onLoopCompleted(loopCompletedEvent);
                     break;
                 case WORKFLOW_TEXT_CHUNK:
-                    WorkflowTextChunkEvent workflowTextChunkEvent = JsonUtils.fromJson(data, WorkflowTextChunkEvent.class);
+                    WorkflowTextChunkEvent workflowTextChunkEvent = event.bind(WorkflowTextChunkEvent.class);
+                    observeToken(tracker, workflowTextChunkEvent);
                     callback.onWorkflowTextChunk(workflowTextChunkEvent);
                     break;
                 case AGENT_LOG:
-                    AgentLogEvent agentLogEvent = JsonUtils.fromJson(data, AgentLogEvent.class);
+                    AgentLogEvent agentLogEvent = event.bind(AgentLogEvent.class);
                     callback.onAgentLog(agentLogEvent);
                     break;
                 case TTS_MESSAGE:
-                    TtsMessageEvent ttsMessageEvent = JsonUtils.fromJson(data, TtsMessageEvent.class);
+                    TtsMessageEvent ttsMessageEvent = event.bind(TtsMessageEvent.class);
                     callback.onTtsMessage(ttsMessageEvent);
                     break;
                 case TTS_MESSAGE_END:
-                    TtsMessageEndEvent ttsMessageEndEvent = JsonUtils.fromJson(data, TtsMessageEndEvent.class);
+                    TtsMessageEndEvent ttsMessageEndEvent = event.bind(TtsMessageEndEvent.class);
                     callback.onTtsMessageEnd(ttsMessageEndEvent);
                     break;
                 case PING:
-                    PingEvent pingEvent = JsonUtils.fromJson(data, PingEvent.class);
+                    PingEvent pingEvent = event.bind(PingEvent.class);
                     callback.onPing(pingEvent);
                     break;
                 case ERROR:
-                    ErrorEvent errorEvent = JsonUtils.fromJson(data, ErrorEvent.class);
+                    ErrorEvent errorEvent = event.bind(ErrorEvent.class);
                     callback.onError(errorEvent);
                     break;
                 default:
-                    log.warn("未处理的事件类型: {}", eventTypeStr);
+                    log.warn("未处理的事件类型: {}", event.getEvent());
                     break;
             }
         } catch (Exception e) {
-            log.error("处理事件回调时发生异常: {}", e.getMessage(), e);
-            try {
-                callback.onException(e);
-            } catch (Exception ex) {
-                log.error("调用onError回调时发生异常", ex);
-            }
+            handleException(callback, e);
+        }
+    }
+
+    private static void observeToken(StreamStatsTracker tracker, BaseEvent event) {
+        if (tracker != null) {
+            tracker.onTokenEvent(event);
+        }
+    }
+
+    private static StreamStats stats(StreamStatsTracker tracker) {
+        return tracker != null ? tracker.stats() : null;
+    }
+
+    private static void handleException(BaseStreamCallback callback, Exception e) {
+        log.error("处理事件回调时发生异常: {}", e.getMessage(), e);
+        try {
+            callback.onException(e);
+        } catch (Exception ex) {
+            log.error("调用onError回调时发生异常", ex);
         }
     }
 }
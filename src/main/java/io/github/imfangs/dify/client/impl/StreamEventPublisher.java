@@ -0,0 +1,189 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.event.BaseEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式事件发布者
+ * <p>
+ * 仅在下游有需求时才从套接字读取下一帧，下游未请求时 TCP 接收窗口自然形成背压。
+ * 首次 request 时才发起HTTP调用；取消订阅会中止底层 {@link okhttp3.Call}。
+ * 每个发布者只允许订阅一次。
+ */
+@Slf4j
+final class StreamEventPublisher implements Publisher<BaseEvent> {
+
+    /**
+     * 流游标打开器
+     */
+    @FunctionalInterface
+    interface CursorOpener {
+        /**
+         * 发起流式请求并返回游标
+         *
+         * @return 流游标
+         * @throws Exception 请求失败
+         */
+        StreamCursor open() throws Exception;
+    }
+
+    private final CursorOpener opener;
+    private final Executor executor;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    StreamEventPublisher(CursorOpener opener, Executor executor) {
+        this.opener = opener;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super BaseEvent> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("流式事件发布者只允许订阅一次"));
+            return;
+        }
+        subscriber.onSubscribe(new EventSubscription(subscriber));
+    }
+
+    private final class EventSubscription implements Subscription {
+        private final Subscriber<? super BaseEvent> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile StreamCursor cursor;
+        private volatile IllegalArgumentException invalidRequest;
+        private boolean done;
+
+        private EventSubscription(Subscriber<? super BaseEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // 错误信号由读取循环串行发出，不能在请求线程上直接回调
+                if (invalidRequest == null) {
+                    invalidRequest = new IllegalArgumentException("request 数量必须为正数: " + n);
+                }
+                cancel();
+                return;
+            }
+            demand.accumulateAndGet(n, (current, add) -> {
+                long sum = current + add;
+                return sum < 0 ? Long.MAX_VALUE : sum;
+            });
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            StreamCursor current = cursor;
+            if (current != null) {
+                current.close();
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * 串行读取循环，同一时刻只有一个线程执行
+         */
+        private void drain() {
+            int missed = 1;
+            try {
+                while (true) {
+                    if (!done) {
+                        pump();
+                    }
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            } catch (Throwable t) {
+                log.error("流式事件发布失败: {}", t.getMessage(), t);
+            }
+        }
+
+        private void pump() {
+            try {
+                if (cancelled) {
+                    finishCancelled();
+                    return;
+                }
+                if (cursor == null) {
+                    cursor = opener.open();
+                    if (cancelled) {
+                        finishCancelled();
+                        return;
+                    }
+                }
+                while (demand.get() > 0 && !cancelled) {
+                    BaseEvent event = cursor.next();
+                    if (event == null) {
+                        finish();
+                        subscriber.onComplete();
+                        return;
+                    }
+                    demand.decrementAndGet();
+                    subscriber.onNext(event);
+                }
+                if (cancelled) {
+                    finishCancelled();
+                }
+            } catch (Exception e) {
+                if (cancelled) {
+                    finishCancelled();
+                } else {
+                    finish();
+                    subscriber.onError(e);
+                }
+            }
+        }
+
+        /**
+         * 因取消而结束，取消来自非法的 request 参数时发出一次错误信号
+         */
+        private void finishCancelled() {
+            finish();
+            IllegalArgumentException error = invalidRequest;
+            if (error != null) {
+                subscriber.onError(error);
+            }
+        }
+
+        private void finish() {
+            done = true;
+            StreamCursor current = cursor;
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+}
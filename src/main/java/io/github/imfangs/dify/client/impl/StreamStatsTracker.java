@@ -0,0 +1,191 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.event.BaseEvent;
+import io.github.imfangs.dify.client.metrics.CallTimings;
+import io.github.imfangs.dify.client.metrics.StreamLatency;
+import io.github.imfangs.dify.client.metrics.StreamStats;
+import io.github.imfangs.dify.client.transport.AdaptiveLimit;
+import io.github.imfangs.dify.client.transport.LoadBalancer;
+
+/**
+ * 单个流的计时器
+ * <p>
+ * 由读取线程顺序调用，逐帧路径只读取时钟和累加计数，不分配对象。
+ * 相邻 token 间隔实时记录到聚合直方图，其余指标在流结束时一次性记录。
+ * 同时携带本次流占用的并发名额与副本，分别回报时延样本与绑定会话亲和。
+ */
+final class StreamStatsTracker {
+
+    private final String app;
+    private final String endpoint;
+    private final StreamLatency latency;
+    private final CallTimings callTimings;
+    private final long startNanos = System.nanoTime();
+    private AdaptiveLimit.Permit concurrency = AdaptiveLimit.Permit.unlimited();
+    private long concurrencyHeadersNanos = -1;
+    private LoadBalancer.Permit replica;
+    private long queueWaitNanos;
+    private long responseHeadersNanos = -1;
+    private long firstTokenNanos = -1;
+    private long lastTokenNanos = -1;
+    private long maxGapNanos;
+    private int frameCount;
+    private int tokenCount;
+    private Long serverLagMillis;
+    private boolean finished;
+
+    /**
+     * 构造函数
+     *
+     * @param app         应用名称
+     * @param endpoint    接口路径
+     * @param latency     聚合，为 null 时不做聚合
+     * @param callTimings 连接阶段计时，未采样时为 null
+     */
+    StreamStatsTracker(String app, String endpoint, StreamLatency latency, CallTimings callTimings) {
+        this.app = app;
+        this.endpoint = endpoint;
+        this.latency = latency;
+        this.callTimings = callTimings;
+    }
+
+    CallTimings getCallTimings() {
+        return callTimings;
+    }
+
+    void onAdmitted(long queueWaitNanos) {
+        this.queueWaitNanos = queueWaitNanos;
+    }
+
+    /**
+     * 绑定自适应并发名额，首个 token 到达时回报时延样本
+     *
+     * @param concurrency 并发名额
+     */
+    void bindConcurrency(AdaptiveLimit.Permit concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * 绑定服务本次流的副本，首个带任务或会话标识的事件到达时将标识绑定到该副本
+     *
+     * @param replica 副本许可
+     */
+    void bindReplica(LoadBalancer.Permit replica) {
+        this.replica = replica.getReplica() != null ? replica : null;
+    }
+
+    /**
+     * 收到一个事件（含未订阅而跳过的事件），只在第一次读到标识时绑定会话亲和
+     *
+     * @param event 事件
+     */
+    void onDecoded(DecodedEvent event) {
+        if (replica == null || !bindAffinity(event, replica)) {
+            return;
+        }
+        replica = null;
+    }
+
+    /**
+     * 将事件中的任务与会话标识绑定到副本
+     *
+     * @param event   解码后的事件
+     * @param replica 副本许可
+     * @return 事件是否带有标识
+     */
+    static boolean bindAffinity(DecodedEvent event, LoadBalancer.Permit replica) {
+        if (event.getTaskId() == null && event.getConversationId() == null) {
+            return false;
+        }
+        replica.bind(event.getTaskId());
+        replica.bind(event.getConversationId());
+        return true;
+    }
+
+    void onResponseHeaders() {
+        responseHeadersNanos = System.nanoTime() - startNanos;
+        concurrencyHeadersNanos = concurrency.elapsedNanos();
+    }
+
+    /**
+     * 收到一个带数据的事件帧
+     *
+     * @param type 事件类型，未知类型为 null
+     */
+    void onFrame(EventType type) {
+        frameCount++;
+        if (type != EventType.MESSAGE && type != EventType.AGENT_MESSAGE && type != EventType.WORKFLOW_TEXT_CHUNK) {
+            return;
+        }
+        long now = System.nanoTime() - startNanos;
+        if (firstTokenNanos < 0) {
+            firstTokenNanos = now;
+            concurrency.sample(false);
+        } else {
+            long gap = now - lastTokenNanos;
+            if (gap > maxGapNanos) {
+                maxGapNanos = gap;
+            }
+            if (latency != null) {
+                latency.getInterTokenGap().record(gap);
+            }
+        }
+        lastTokenNanos = now;
+        tokenCount++;
+    }
+
+    /**
+     * 观察已绑定的 token 事件，用第一个 token 的 created_at 计算服务端延迟
+     *
+     * @param event 事件
+     */
+    void onTokenEvent(BaseEvent event) {
+        if (serverLagMillis == null && event.getCreatedAt() != null && event.getCreatedAt() > 0) {
+            serverLagMillis = System.currentTimeMillis() - event.getCreatedAt() * 1000;
+        }
+    }
+
+    /**
+     * 导出截至当前的统计
+     *
+     * @return 流统计
+     */
+    StreamStats stats() {
+        long gapCount = tokenCount - 1;
+        long tokenSpan = lastTokenNanos - firstTokenNanos;
+        return StreamStats.builder()
+                .app(app)
+                .endpoint(endpoint)
+                .queueWaitNanos(queueWaitNanos)
+                .responseHeadersNanos(responseHeadersNanos)
+                .timeToFirstTokenNanos(firstTokenNanos)
+                .durationNanos(System.nanoTime() - startNanos)
+                .frameCount(frameCount)
+                .tokenCount(tokenCount)
+                .maxInterTokenGapNanos(maxGapNanos)
+                .meanInterTokenGapNanos(gapCount > 0 ? tokenSpan / gapCount : -1)
+                .tokensPerSecond(gapCount > 0 && tokenSpan > 0 ? gapCount * 1e9 / tokenSpan : 0)
+                .serverLagMillis(serverLagMillis)
+                .callTimings(callTimings)
+                .build();
+    }
+
+    /**
+     * 流结束时记录到聚合，重复调用只生效一次
+     *
+     * @param completed 是否收到终止事件
+     */
+    void finish(boolean completed) {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        // 没有 token 的流（如不输出文本的工作流）以响应头时延作为样本，未收到终止事件按失败计入
+        concurrency.sample(concurrencyHeadersNanos >= 0 ? concurrencyHeadersNanos : concurrency.elapsedNanos(), !completed);
+        if (latency != null) {
+            latency.record(stats(), completed);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.github.imfangs.dify.client.metrics;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * 把OkHttp调用事件记录到请求标签中的 {@link CallTimings}
+ * <p>
+ * 只有带 {@link CallTimings} 标签的请求才会创建监听器，其他调用得到 {@link EventListener#NONE}，
+ * 因此采样由客户端在创建请求时决定，未采样的调用没有额外开销。
+ * 客户端内部创建的 OkHttpClient 默认安装本监听器，自定义 OkHttpClient 可通过
+ * {@code builder.eventListenerFactory(CallTimingListener.factory())} 启用。
+ */
+public final class CallTimingListener extends EventListener {
+
+    private static final EventListener.Factory FACTORY = call -> {
+        CallTimings timings = call.request().tag(CallTimings.class);
+        return timings != null ? new CallTimingListener(timings) : EventListener.NONE;
+    };
+
+    private final CallTimings timings;
+
+    private CallTimingListener(CallTimings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * 获取监听器工厂
+     *
+     * @return 监听器工厂
+     */
+    public static EventListener.Factory factory() {
+        return FACTORY;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        timings.callStart(System.nanoTime());
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        timings.dnsStart(System.nanoTime());
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        timings.dnsEnd(System.nanoTime());
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        timings.connectStart(System.nanoTime());
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        timings.secureConnectStart(System.nanoTime());
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        timings.secureConnectEnd(System.nanoTime());
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        timings.connectEnd(System.nanoTime());
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        timings.connectionAcquired(System.nanoTime());
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        // 有请求体时以请求体写完为准
+        if (request.body() == null) {
+            timings.requestSent(System.nanoTime());
+        }
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        timings.requestSent(System.nanoTime());
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        timings.responseHeadersStart(System.nanoTime());
+    }
+}
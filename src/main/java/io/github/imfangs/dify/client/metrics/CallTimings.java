@@ -0,0 +1,112 @@
+package io.github.imfangs.dify.client.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 单个HTTP调用的连接阶段耗时，由 {@link CallTimingListener} 填充
+ * <p>
+ * 客户端对被采样的请求创建本对象并作为请求标签附带，安装了 {@link CallTimingListener#factory()} 的
+ * OkHttpClient 在调用过程中写入各阶段时间。单位纳秒，未发生的阶段为 -1；
+ * 复用连接的调用没有 DNS、连接与 TLS 阶段。
+ * 各字段由执行调用的线程写入，应在响应回调或调用结束后读取。
+ */
+@Getter
+@ToString
+public final class CallTimings {
+
+    /**
+     * DNS 解析耗时
+     */
+    private long dnsNanos = -1;
+
+    /**
+     * 建立连接耗时，含 TLS 握手
+     */
+    private long connectNanos = -1;
+
+    /**
+     * TLS 握手耗时
+     */
+    private long tlsNanos = -1;
+
+    /**
+     * 从调用开始到拿到连接的耗时，含 DNS 与建连
+     */
+    private long connectionAcquiredNanos = -1;
+
+    /**
+     * 从调用开始到请求发送完毕的耗时
+     */
+    private long requestSentNanos = -1;
+
+    /**
+     * 从请求发送完毕到开始收到响应头的耗时，即服务端处理时间加一次网络往返
+     */
+    private long timeToFirstByteNanos = -1;
+
+    /**
+     * 是否复用了连接池中的连接
+     */
+    private boolean connectionReused;
+
+    /**
+     * 各阶段的起始时刻（System.nanoTime），仅供计算耗时
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private long callStart;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private long dnsStart;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private long connectStart = -1;
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private long secureConnectStart;
+
+    void callStart(long now) {
+        callStart = now;
+    }
+
+    void dnsStart(long now) {
+        dnsStart = now;
+    }
+
+    void dnsEnd(long now) {
+        dnsNanos = now - dnsStart;
+    }
+
+    void connectStart(long now) {
+        connectStart = now;
+    }
+
+    void secureConnectStart(long now) {
+        secureConnectStart = now;
+    }
+
+    void secureConnectEnd(long now) {
+        tlsNanos = now - secureConnectStart;
+    }
+
+    void connectEnd(long now) {
+        connectNanos = now - connectStart;
+    }
+
+    void connectionAcquired(long now) {
+        connectionAcquiredNanos = now - callStart;
+        connectionReused = connectStart < 0;
+    }
+
+    void requestSent(long now) {
+        requestSentNanos = now - callStart;
+    }
+
+    void responseHeadersStart(long now) {
+        if (requestSentNanos >= 0) {
+            timeToFirstByteNanos = now - callStart - requestSentNanos;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.imfangs.dify.client.metrics;
+
+import io.github.imfangs.dify.client.transport.CircuitState;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 熔断器状态变化事件
+ * <p>
+ * 熔断器按HTTP方法、接口模板与主机区分。由关闭进入打开时附带触发时窗口内的失败率与慢调用率，
+ * 其他变化的比例为 -1。
+ */
+@Getter
+@Builder
+@ToString
+public class CircuitStateChange {
+
+    /**
+     * HTTP方法
+     */
+    private final String method;
+
+    /**
+     * 接口模板
+     */
+    private final String endpoint;
+
+    /**
+     * 主机，包含端口
+     */
+    private final String host;
+
+    /**
+     * 变化前状态
+     */
+    private final CircuitState from;
+
+    /**
+     * 变化后状态
+     */
+    private final CircuitState to;
+
+    /**
+     * 窗口内失败率，取值 0~1，未计算时为 -1
+     */
+    private final double failureRate;
+
+    /**
+     * 窗口内慢调用率，取值 0~1，未计算时为 -1
+     */
+    private final double slowCallRate;
+
+    /**
+     * 变化时间（毫秒时间戳）
+     */
+    private final long timestampMillis;
+}
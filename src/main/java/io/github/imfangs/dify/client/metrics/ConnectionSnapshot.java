@@ -0,0 +1,39 @@
+package io.github.imfangs.dify.client.metrics;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 连接建立阶段的指标快照，不区分接口，只包含被连接阶段计时采样的请求
+ */
+@Getter
+@Builder
+@ToString
+public class ConnectionSnapshot {
+
+    /**
+     * 复用连接池连接的请求数
+     */
+    private final long reusedConnections;
+
+    /**
+     * 新建连接的请求数
+     */
+    private final long newConnections;
+
+    /**
+     * DNS 解析耗时分布（纳秒）
+     */
+    private final HistogramSnapshot dns;
+
+    /**
+     * 建立连接耗时分布（纳秒），含 TLS 握手
+     */
+    private final HistogramSnapshot connect;
+
+    /**
+     * TLS 握手耗时分布（纳秒）
+     */
+    private final HistogramSnapshot tls;
+}
@@ -0,0 +1,37 @@
+package io.github.imfangs.dify.client.metrics;
+
+/**
+ * 请求指标扩展点
+ * <p>
+ * 客户端在每个HTTP请求结束时调用 {@link #recordRequest(RequestMetric)}，调用发生在请求线程或
+ * OkHttp回调线程上，实现需线程安全且不应阻塞。启用熔断时，熔断器状态变化通过
+ * {@link #recordCircuitStateChange(CircuitStateChange)} 发布。默认实现为 {@link #noop()}，
+ * 库内提供基于直方图的 {@link InMemoryDifyMetrics}，接入 Micrometer、JMX 等监控系统时实现本接口转发即可。
+ */
+@FunctionalInterface
+public interface DifyMetrics {
+
+    /**
+     * 记录一个已结束的请求
+     *
+     * @param metric 请求指标
+     */
+    void recordRequest(RequestMetric metric);
+
+    /**
+     * 记录一次熔断器状态变化，默认忽略
+     *
+     * @param change 状态变化
+     */
+    default void recordCircuitStateChange(CircuitStateChange change) {
+    }
+
+    /**
+     * 获取不做任何记录的实现，客户端识别该实例后跳过计时与字节统计
+     *
+     * @return 空实现
+     */
+    static DifyMetrics noop() {
+        return NoopDifyMetrics.INSTANCE;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.imfangs.dify.client.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个接口的请求聚合，所有计数均为 {@link LongAdder}，并发记录不加锁
+ */
+final class EndpointMetrics {
+
+    private static final int MAX_STATUS = 600;
+
+    /**
+     * 单个接口保留的不同错误码数量上限，超出部分计入 {@link #OTHER_ERROR_CODE}
+     */
+    static final int MAX_ERROR_CODES = 64;
+
+    static final String OTHER_ERROR_CODE = "other";
+
+    private final String method;
+    private final String endpoint;
+    private final boolean streaming;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LongAdder newConnections = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(MAX_STATUS);
+    private final ConcurrentMap<String, LongAdder> errorCodes = new ConcurrentHashMap<>();
+
+    EndpointMetrics(String method, String endpoint, boolean streaming) {
+        this.method = method;
+        this.endpoint = endpoint;
+        this.streaming = streaming;
+    }
+
+    void record(RequestMetric metric) {
+        requests.increment();
+        latency.record(metric.getLatencyNanos());
+        requestBytes.add(metric.getRequestBytes());
+        responseBytes.add(metric.getResponseBytes());
+        status(metric.getStatus()).increment();
+        if (metric.isError()) {
+            errors.increment();
+        }
+        if (metric.getErrorCode() != null) {
+            errorCode(metric.getErrorCode()).increment();
+        }
+        CallTimings timings = metric.getCallTimings();
+        if (timings != null) {
+            if (timings.getTimeToFirstByteNanos() >= 0) {
+                timeToFirstByte.record(timings.getTimeToFirstByteNanos());
+            }
+            if (timings.getConnectionAcquiredNanos() >= 0 && !timings.isConnectionReused()) {
+                newConnections.increment();
+            }
+        }
+    }
+
+    private LongAdder status(int status) {
+        int index = status > 0 && status < MAX_STATUS ? status : 0;
+        LongAdder adder = statuses.get(index);
+        if (adder == null) {
+            statuses.compareAndSet(index, null, new LongAdder());
+            adder = statuses.get(index);
+        }
+        return adder;
+    }
+
+    private LongAdder errorCode(String code) {
+        LongAdder adder = errorCodes.get(code);
+        if (adder != null) {
+            return adder;
+        }
+        if (errorCodes.size() >= MAX_ERROR_CODES) {
+            code = OTHER_ERROR_CODE;
+        }
+        return errorCodes.computeIfAbsent(code, k -> new LongAdder());
+    }
+
+    EndpointSnapshot snapshot() {
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        for (int i = 0; i < MAX_STATUS; i++) {
+            LongAdder adder = statuses.get(i);
+            if (adder != null) {
+                statusCounts.put(i, adder.sum());
+            }
+        }
+        Map<String, Long> errorCodeCounts = new TreeMap<>();
+        errorCodes.forEach((code, adder) -> errorCodeCounts.put(code, adder.sum()));
+        return EndpointSnapshot.builder()
+                .method(method)
+                .endpoint(endpoint)
+                .streaming(streaming)
+                .requests(requests.sum())
+                .errors(errors.sum())
+                .latency(latency.snapshot())
+                .timeToFirstByte(timeToFirstByte.snapshot())
+                .newConnections(newConnections.sum())
+                .statusCounts(Collections.unmodifiableMap(statusCounts))
+                .errorCodeCounts(Collections.unmodifiableMap(errorCodeCounts))
+                .requestBytes(requestBytes.sum())
+                .responseBytes(responseBytes.sum())
+                .build();
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.imfangs.dify.client.metrics;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Map;
+
+/**
+ * 单个接口的指标快照，不可变
+ */
+@Getter
+@Builder
+@ToString
+public class EndpointSnapshot {
+
+    /**
+     * HTTP方法
+     */
+    private final String method;
+
+    /**
+     * 接口模板
+     */
+    private final String endpoint;
+
+    /**
+     * 是否为流式请求
+     */
+    private final boolean streaming;
+
+    /**
+     * 请求总数
+     */
+    private final long requests;
+
+    /**
+     * 失败请求数，判定规则见 {@link RequestMetric#isError()}
+     */
+    private final long errors;
+
+    /**
+     * 耗时分布（纳秒）
+     */
+    private final HistogramSnapshot latency;
+
+    /**
+     * 首字节时间分布（纳秒），只包含被连接阶段计时采样的请求，见 {@link CallTimings#getTimeToFirstByteNanos()}
+     */
+    private final HistogramSnapshot timeToFirstByte;
+
+    /**
+     * 被采样请求中新建连接的次数
+     */
+    private final long newConnections;
+
+    /**
+     * 按HTTP状态码的请求数，键 0 表示未收到响应
+     */
+    private final Map<Integer, Long> statusCounts;
+
+    /**
+     * 按错误码的请求数
+     */
+    private final Map<String, Long> errorCodeCounts;
+
+    /**
+     * 请求体总字节数
+     */
+    private final long requestBytes;
+
+    /**
+     * 响应体总字节数
+     */
+    private final long responseBytes;
+}
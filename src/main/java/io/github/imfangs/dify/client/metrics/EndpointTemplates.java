@@ -0,0 +1,81 @@
+package io.github.imfangs.dify.client.metrics;
+
+/**
+ * 接口模板
+ * <p>
+ * 把请求路径中的资源ID段替换为 {@code {id}}，使指标按接口而不是按URL分组，
+ * 例如 {@code /datasets/6c1f.../documents/9a2e.../segments} 变为 {@code /datasets/{id}/documents/{id}/segments}。
+ * ID段指纯数字段，以及长度不小于 20 且同时包含字母和数字的段（UUID、Dify 的各类资源ID）。
+ * 段内只允许字母、数字、连字符与下划线，其他字符的段原样保留。
+ */
+public final class EndpointTemplates {
+
+    /**
+     * ID段占位符
+     */
+    public static final String ID = "{id}";
+
+    private static final int OPAQUE_ID_MIN_LENGTH = 20;
+
+    private EndpointTemplates() {
+    }
+
+    /**
+     * 获取路径对应的接口模板
+     *
+     * @param path 请求路径，不含查询参数
+     * @return 接口模板
+     */
+    public static String of(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        StringBuilder template = null;
+        int start = path.charAt(0) == '/' ? 1 : 0;
+        while (start <= path.length()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+            if (isId(path, start, end)) {
+                if (template == null) {
+                    template = new StringBuilder(path.length()).append(path, 0, start);
+                }
+                template.append(ID);
+            } else if (template != null) {
+                template.append(path, start, end);
+            }
+            if (end == path.length()) {
+                break;
+            }
+            if (template != null) {
+                template.append('/');
+            }
+            start = end + 1;
+        }
+        return template != null ? template.toString() : path;
+    }
+
+    private static boolean isId(String path, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return false;
+        }
+        boolean digits = false;
+        boolean letters = false;
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                letters = true;
+            } else if (c != '-' && c != '_') {
+                return false;
+            }
+        }
+        if (!letters) {
+            return digits;
+        }
+        return digits && length >= OPAQUE_ID_MIN_LENGTH;
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.imfangs.dify.client.metrics;
+
+/**
+ * 直方图快照，不可变
+ */
+public final class HistogramSnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    HistogramSnapshot(long[] counts, long count, long sum, long max) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+    }
+
+    /**
+     * 获取记录数量
+     *
+     * @return 数量
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 获取记录值之和
+     *
+     * @return 总和
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * 获取最大值
+     *
+     * @return 最大值，没有记录时为0
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * 获取平均值
+     *
+     * @return 平均值，没有记录时为0
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * 获取分位值，返回所在桶的上界（不超过最大值）
+     *
+     * @param percentile 百分位，取值 0~100
+     * @return 分位值，没有记录时为0
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramSnapshot{count=" + count + ", mean=" + String.format("%.1f", getMean())
+                + ", p50=" + getValueAtPercentile(50) + ", p99=" + getValueAtPercentile(99) + ", max=" + max + '}';
+    }
+}
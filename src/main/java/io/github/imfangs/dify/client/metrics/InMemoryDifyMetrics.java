@@ -0,0 +1,157 @@
+package io.github.imfangs.dify.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内请求指标实现
+ * <p>
+ * 按HTTP方法、接口模板与是否流式分组，每组包含耗时直方图、状态码与错误码计数以及收发字节数。
+ * 接口模板已去除ID段，分组数量有界；超过 {@link #MAX_ENDPOINTS} 的新分组合并到 {@link #OTHER_ENDPOINT}。
+ * 被连接阶段计时采样的请求另外按连接建立阶段汇总，见 {@link #connectionSnapshot()}；
+ * 每个熔断器保留最近一次状态变化，见 {@link #circuitSnapshot()}。
+ * 可在多个客户端之间共享同一实例。
+ */
+public final class InMemoryDifyMetrics implements DifyMetrics {
+
+    /**
+     * 分组数量上限
+     */
+    public static final int MAX_ENDPOINTS = 256;
+
+    /**
+     * 超出上限后合并使用的接口模板
+     */
+    public static final String OTHER_ENDPOINT = "other";
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final LatencyHistogram dns = new LatencyHistogram();
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram tls = new LatencyHistogram();
+    private final LongAdder reusedConnections = new LongAdder();
+    private final LongAdder newConnections = new LongAdder();
+    private final ConcurrentMap<String, CircuitStateChange> circuits = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordRequest(RequestMetric metric) {
+        endpoint(metric.getMethod(), metric.getEndpoint(), metric.isStreaming()).record(metric);
+        CallTimings timings = metric.getCallTimings();
+        if (timings != null && timings.getConnectionAcquiredNanos() >= 0) {
+            recordConnection(timings);
+        }
+    }
+
+    @Override
+    public void recordCircuitStateChange(CircuitStateChange change) {
+        // 熔断器数量已由注册表限制，这里无需再设上限
+        circuits.merge(change.getMethod() + ' ' + change.getEndpoint() + '@' + change.getHost(), change,
+                (previous, next) -> next.getTimestampMillis() >= previous.getTimestampMillis() ? next : previous);
+    }
+
+    private void recordConnection(CallTimings timings) {
+        if (timings.isConnectionReused()) {
+            reusedConnections.increment();
+            return;
+        }
+        newConnections.increment();
+        if (timings.getDnsNanos() >= 0) {
+            dns.record(timings.getDnsNanos());
+        }
+        if (timings.getConnectNanos() >= 0) {
+            connect.record(timings.getConnectNanos());
+        }
+        if (timings.getTlsNanos() >= 0) {
+            tls.record(timings.getTlsNanos());
+        }
+    }
+
+    private EndpointMetrics endpoint(String method, String endpoint, boolean streaming) {
+        String key = key(method, endpoint, streaming);
+        EndpointMetrics metrics = endpoints.get(key);
+        if (metrics != null) {
+            return metrics;
+        }
+        if (endpoints.size() >= MAX_ENDPOINTS) {
+            return endpoints.computeIfAbsent(key(method, OTHER_ENDPOINT, streaming), k -> new EndpointMetrics(method, OTHER_ENDPOINT, streaming));
+        }
+        return endpoints.computeIfAbsent(key, k -> new EndpointMetrics(method, endpoint, streaming));
+    }
+
+    private static String key(String method, String endpoint, boolean streaming) {
+        return streaming ? method + ' ' + endpoint + " stream" : method + ' ' + endpoint;
+    }
+
+    /**
+     * 导出全部分组的快照，按接口模板与方法排序
+     *
+     * @return 快照列表
+     */
+    public List<EndpointSnapshot> snapshot() {
+        List<EndpointSnapshot> snapshots = new ArrayList<>(endpoints.size());
+        for (EndpointMetrics metrics : endpoints.values()) {
+            snapshots.add(metrics.snapshot());
+        }
+        snapshots.sort(Comparator.comparing(EndpointSnapshot::getEndpoint)
+                .thenComparing(EndpointSnapshot::getMethod)
+                .thenComparing(EndpointSnapshot::isStreaming));
+        return snapshots;
+    }
+
+    /**
+     * 导出单个分组的快照
+     *
+     * @param method    HTTP方法
+     * @param endpoint  接口模板
+     * @param streaming 是否流式
+     * @return 快照，不存在时返回 null
+     */
+    public EndpointSnapshot snapshot(String method, String endpoint, boolean streaming) {
+        EndpointMetrics metrics = endpoints.get(key(method, endpoint, streaming));
+        return metrics != null ? metrics.snapshot() : null;
+    }
+
+    /**
+     * 导出连接建立阶段的快照
+     *
+     * @return 快照
+     */
+    public ConnectionSnapshot connectionSnapshot() {
+        return ConnectionSnapshot.builder()
+                .reusedConnections(reusedConnections.sum())
+                .newConnections(newConnections.sum())
+                .dns(dns.snapshot())
+                .connect(connect.snapshot())
+                .tls(tls.snapshot())
+                .build();
+    }
+
+    /**
+     * 导出各熔断器最近一次状态变化，按接口模板、方法与主机排序
+     *
+     * @return 状态变化列表
+     */
+    public List<CircuitStateChange> circuitSnapshot() {
+        List<CircuitStateChange> changes = new ArrayList<>(circuits.values());
+        changes.sort(Comparator.comparing(CircuitStateChange::getEndpoint)
+                .thenComparing(CircuitStateChange::getMethod)
+                .thenComparing(CircuitStateChange::getHost));
+        return changes;
+    }
+
+    /**
+     * 清空全部分组、连接阶段统计与熔断状态
+     */
+    public void reset() {
+        endpoints.clear();
+        dns.reset();
+        connect.reset();
+        tls.reset();
+        reusedConnections.reset();
+        newConnections.reset();
+        circuits.clear();
+    }
+}
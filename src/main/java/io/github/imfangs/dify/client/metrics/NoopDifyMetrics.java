@@ -0,0 +1,16 @@
+package io.github.imfangs.dify.client.metrics;
+
+/**
+ * 空指标实现
+ */
+final class NoopDifyMetrics implements DifyMetrics {
+
+    static final NoopDifyMetrics INSTANCE = new NoopDifyMetrics();
+
+    private NoopDifyMetrics() {
+    }
+
+    @Override
+    public void recordRequest(RequestMetric metric) {
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.imfangs.dify.client.metrics;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 单个请求的指标
+ * <p>
+ * 未收到响应（连接失败、被调度器拒绝等）时状态码为 0。错误码取自 {@code DifyApiException.getErrorCode()}，
+ * 其他异常取异常类名，成功时为 null。流式请求的耗时覆盖整个流，字节数为实际读取的响应体字节。
+ */
+@Getter
+@Builder
+@ToString
+public class RequestMetric {
+
+    /**
+     * HTTP方法
+     */
+    private final String method;
+
+    /**
+     * 接口模板，路径中的ID段替换为 {id}，见 {@link EndpointTemplates}
+     */
+    private final String endpoint;
+
+    /**
+     * 是否为流式请求
+     */
+    private final boolean streaming;
+
+    /**
+     * HTTP状态码，未收到响应时为 0
+     */
+    private final int status;
+
+    /**
+     * 错误码，成功时为 null
+     */
+    private final String errorCode;
+
+    /**
+     * 从发起请求到响应处理完毕的耗时（纳秒）
+     */
+    private final long latencyNanos;
+
+    /**
+     * 请求体字节数
+     */
+    private final long requestBytes;
+
+    /**
+     * 已读取的响应体字节数
+     */
+    private final long responseBytes;
+
+    /**
+     * 连接阶段耗时，未被采样或HTTP客户端未安装 {@link CallTimingListener} 时为 null
+     */
+    private final CallTimings callTimings;
+
+    /**
+     * 是否失败：未收到响应、状态码不小于 400 或带有错误码
+     *
+     * @return 是否失败
+     */
+    public boolean isError() {
+        return status == 0 || status >= 400 || errorCode != null;
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.imfangs.dify.client.metrics;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 同一应用与接口下所有流的时延聚合
+ * <p>
+ * 耗时类直方图单位为纳秒，服务端延迟单位为毫秒，生成速率单位为 token/秒。
+ * 首字节时间与新建连接数只统计被连接阶段计时采样的流。
+ */
+@Getter
+public final class StreamLatency {
+
+    private final String app;
+    private final String endpoint;
+    private final LatencyHistogram responseHeaders = new LatencyHistogram();
+    private final LatencyHistogram timeToFirstToken = new LatencyHistogram();
+    private final LatencyHistogram interTokenGap = new LatencyHistogram();
+    private final LatencyHistogram duration = new LatencyHistogram();
+    private final LatencyHistogram serverLag = new LatencyHistogram();
+    private final LatencyHistogram tokensPerSecond = new LatencyHistogram();
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+    private final LongAdder newConnections = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    StreamLatency(String app, String endpoint) {
+        this.app = app;
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * 记录一个已结束的流，相邻 token 间隔在读取过程中已实时记录
+     *
+     * @param stats     流统计
+     * @param completed 是否收到终止事件
+     */
+    public void record(StreamStats stats, boolean completed) {
+        if (!completed) {
+            failed.increment();
+            return;
+        }
+        this.completed.increment();
+        if (stats.getResponseHeadersNanos() >= 0) {
+            responseHeaders.record(stats.getResponseHeadersNanos());
+        }
+        if (stats.getTimeToFirstTokenNanos() >= 0) {
+            timeToFirstToken.record(stats.getTimeToFirstTokenNanos());
+        }
+        duration.record(stats.getDurationNanos());
+        if (stats.getServerLagMillis() != null) {
+            serverLag.record(stats.getServerLagMillis());
+        }
+        if (stats.getTokenCount() > 1) {
+            tokensPerSecond.record(Math.round(stats.getTokensPerSecond()));
+        }
+        CallTimings timings = stats.getCallTimings();
+        if (timings != null) {
+            if (timings.getTimeToFirstByteNanos() >= 0) {
+                timeToFirstByte.record(timings.getTimeToFirstByteNanos());
+            }
+            if (timings.getConnectionAcquiredNanos() >= 0 && !timings.isConnectionReused()) {
+                newConnections.increment();
+            }
+        }
+    }
+}
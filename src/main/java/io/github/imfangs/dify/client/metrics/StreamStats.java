@@ -0,0 +1,83 @@
+package io.github.imfangs.dify.client.metrics;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 单个流式请求的时延统计
+ * <p>
+ * 所有耗时均以调用流式接口的时刻为起点，单位纳秒；尚未发生的阶段为 -1。
+ * token 帧指 message、agent_message 与 text_chunk 事件。
+ */
+@Getter
+@Builder
+@ToString
+public final class StreamStats {
+
+    /**
+     * 应用名称，来自 {@code DifyConfig.appName}
+     */
+    private final String app;
+
+    /**
+     * 接口路径，如 /chat-messages
+     */
+    private final String endpoint;
+
+    /**
+     * 在流式调度器中排队等待名额的时间
+     */
+    private final long queueWaitNanos;
+
+    /**
+     * 收到响应头的时间
+     */
+    private final long responseHeadersNanos;
+
+    /**
+     * 收到第一个 token 帧的时间（首 token 延迟）
+     */
+    private final long timeToFirstTokenNanos;
+
+    /**
+     * 收到终止事件（统计导出时刻）的时间
+     */
+    private final long durationNanos;
+
+    /**
+     * 收到的事件帧数量
+     */
+    private final int frameCount;
+
+    /**
+     * 收到的 token 帧数量
+     */
+    private final int tokenCount;
+
+    /**
+     * 相邻 token 帧之间的最大间隔
+     */
+    private final long maxInterTokenGapNanos;
+
+    /**
+     * 相邻 token 帧之间的平均间隔，token 少于两个时为 -1
+     */
+    private final long meanInterTokenGapNanos;
+
+    /**
+     * 从第一个到最后一个 token 帧之间的生成速率（token/秒），token 少于两个时为0
+     */
+    private final double tokensPerSecond;
+
+    /**
+     * 服务端到客户端的延迟（毫秒）：收到第一个 token 帧时的本地时间减去事件的 created_at。
+     * created_at 只精确到秒且依赖两端时钟同步，只适合观察趋势；未知时为 null
+     */
+    private final Long serverLagMillis;
+
+    /**
+     * 连接阶段耗时，可区分 DNS、新建连接与服务端处理时间；未被采样时为 null
+     */
+    private final CallTimings callTimings;
+}
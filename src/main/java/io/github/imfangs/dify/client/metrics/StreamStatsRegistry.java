@@ -0,0 +1,68 @@
+package io.github.imfangs.dify.client.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 流式时延聚合注册表，按应用与接口路径分组
+ * <p>
+ * 接口路径取自客户端内部的路径常量，分组数量有界。查找只在流开始时发生一次。
+ */
+public final class StreamStatsRegistry {
+
+    private static final StreamStatsRegistry DEFAULT = new StreamStatsRegistry();
+
+    private final ConcurrentMap<String, StreamLatency> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * 获取进程级共享注册表
+     *
+     * @return 注册表
+     */
+    public static StreamStatsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 获取或创建应用与接口对应的聚合
+     *
+     * @param app      应用名称
+     * @param endpoint 接口路径
+     * @return 聚合
+     */
+    public StreamLatency latency(String app, String endpoint) {
+        String key = app + ' ' + endpoint;
+        StreamLatency latency = latencies.get(key);
+        return latency != null ? latency : latencies.computeIfAbsent(key, k -> new StreamLatency(app, endpoint));
+    }
+
+    /**
+     * 获取已有的聚合
+     *
+     * @param app      应用名称
+     * @param endpoint 接口路径
+     * @return 聚合，不存在时返回 null
+     */
+    public StreamLatency get(String app, String endpoint) {
+        return latencies.get(app + ' ' + endpoint);
+    }
+
+    /**
+     * 获取全部聚合
+     *
+     * @return 聚合列表
+     */
+    public Collection<StreamLatency> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(latencies.values()));
+    }
+
+    /**
+     * 清空全部聚合
+     */
+    public void clear() {
+        latencies.clear();
+    }
+}
@@ -1,5 +1,14 @@
 package io.github.imfangs.dify.client.model;
 
+import io.github.imfangs.dify.client.metrics.DifyMetrics;
+import io.github.imfangs.dify.client.metrics.StreamStatsRegistry;
+import io.github.imfangs.dify.client.transport.AdaptiveConcurrencyLimiter;
+import io.github.imfangs.dify.client.transport.CircuitBreakerRegistry;
+import io.github.imfangs.dify.client.transport.LoadBalancer;
+import io.github.imfangs.dify.client.transport.RateLimiter;
+import io.github.imfangs.dify.client.transport.RequestHedger;
+import io.github.imfangs.dify.client.transport.RetryPolicy;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,7 +23,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class DifyConfig {
     /**
-     * API基础URL
+     * API基础URL，配置了 {@link #loadBalancer} 时可不设置，默认取第一个副本
      */
     private String baseUrl;
 
@@ -40,4 +49,89 @@ public class DifyConfig {
      */
     @Builder.Default
     private int writeTimeout = 30000;
+
+    /**
+     * 流式请求调度器，控制每主机与全局并发流数量，默认使用进程级共享调度器
+     */
+    @Builder.Default
+    private StreamScheduler streamScheduler = StreamScheduler.getDefault();
+
+    /**
+     * 流式请求备用API基础URL，调度器饱和策略为 SPILLOVER 时使用
+     */
+    private String streamSpilloverBaseUrl;
+
+    /**
+     * 回调式流式请求的整体截止时间（毫秒），从发起请求开始计算，包括排队时间；超过后取消流并通知服务端停止任务，0 表示不限制
+     */
+    @Builder.Default
+    private long streamDeadlineMillis = 0;
+
+    /**
+     * 是否在虚拟线程上执行异步调用、流式读取与回调，需要 Java 21+，不支持时回退到平台线程
+     */
+    @Builder.Default
+    private boolean virtualThreads = false;
+
+    /**
+     * 非流式异步调用（含对冲请求）的最大在途数量，超出时排队等待，不大于 0 时不限制；流式请求由 {@link #streamScheduler} 控制
+     */
+    @Builder.Default
+    private int maxAsyncRequests = 64;
+
+    /**
+     * 应用名称，作为流式时延统计的分组标签，未设置时为 default
+     */
+    private String appName;
+
+    /**
+     * 流式时延聚合注册表，默认使用进程级共享注册表，设为 null 时只向回调提供单流统计
+     */
+    @Builder.Default
+    private StreamStatsRegistry streamStatsRegistry = StreamStatsRegistry.getDefault();
+
+    /**
+     * 请求指标，默认不记录，可使用 {@link io.github.imfangs.dify.client.metrics.InMemoryDifyMetrics} 或自行实现
+     */
+    @Builder.Default
+    private DifyMetrics metrics = DifyMetrics.noop();
+
+    /**
+     * 连接阶段计时（DNS、建连、TLS、首字节）的采样比例，取值 0~1，0 表示关闭。
+     * 只有存在指标或流式统计消费方的请求才会采样，高负载下可调低以减少开销
+     */
+    @Builder.Default
+    private double callTracingSampleRate = 1.0;
+
+    /**
+     * 阻塞与异步请求的重试策略，默认不重试；只作用于GET与幂等POST，流式请求不重试
+     */
+    @Builder.Default
+    private RetryPolicy retryPolicy = RetryPolicy.none();
+
+    /**
+     * 熔断器注册表，按HTTP方法、接口模板与主机熔断，默认为 null 不熔断；
+     * 状态变化发布到 {@link #metrics}
+     */
+    private CircuitBreakerRegistry circuitBreakers;
+
+    /**
+     * 客户端限流器，按API密钥、接口类别与终端用户限流，默认为 null 不限流
+     */
+    private RateLimiter rateLimiter;
+
+    /**
+     * 自适应并发限制器，按接口模板根据时延与失败率调整并发上限，默认为 null 不限制
+     */
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * 多副本负载均衡器，在各副本间按最少在途请求分配请求并摘除故障副本，默认为 null 只使用 {@link #baseUrl}
+     */
+    private LoadBalancer loadBalancer;
+
+    /**
+     * 对冲请求，幂等请求超过接口近期时延分位仍未返回时再发出一份，默认为 null 不对冲
+     */
+    private RequestHedger hedger;
 }
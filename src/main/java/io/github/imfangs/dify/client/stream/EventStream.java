@@ -0,0 +1,38 @@
+package io.github.imfangs.dify.client.stream;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 拉取式流式事件迭代器
+ * <p>
+ * 每次调用 {@link #hasNext()} 时才在调用线程上读取并解码下一个 SSE 帧，没有中间队列和线程切换，
+ * 调用方不读取时 TCP 接收窗口自然形成背压。读到终止事件或流结束后自动释放连接；
+ * 提前结束时必须调用 {@link #close()} 中止HTTP调用，建议配合 try-with-resources 使用。
+ * <p>
+ * 读取过程中的IO异常以 {@link java.io.UncheckedIOException} 抛出。该对象不是线程安全的，
+ * 但 {@link #close()} 可以在其他线程调用以中断阻塞中的读取。
+ *
+ * @param <T> 事件类型
+ */
+public interface EventStream<T> extends Iterator<T>, AutoCloseable {
+
+    /**
+     * 中止HTTP调用并释放连接，重复调用无副作用
+     */
+    @Override
+    void close();
+
+    /**
+     * 以 {@link Stream} 形式顺序消费剩余事件，关闭返回的流会关闭本迭代器
+     *
+     * @return 事件流
+     */
+    default Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+}
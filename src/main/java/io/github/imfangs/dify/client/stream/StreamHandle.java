@@ -0,0 +1,59 @@
+package io.github.imfangs.dify.client.stream;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回调式流式请求的控制句柄
+ * <p>
+ * {@link #cancel()} 中止HTTP调用；已从首个事件中取得 task_id 时（回调未订阅的事件同样读取），同时异步调用对应的停止接口，
+ * 让服务端立即停止生成，不再为已无人接收的回答消耗 token。取消前尚未收到任何事件时只中止连接。
+ * 主动取消的流不再回调 {@code onException}；超过 {@code DifyConfig.streamDeadlineMillis} 的流同样被取消，
+ * 并以 {@link java.io.InterruptedIOException} 回调一次 {@code onException}。
+ * <p>
+ * 所有方法均可在任意线程调用。
+ */
+public interface StreamHandle {
+
+    /**
+     * 取消流式请求，重复调用或流已结束时无副作用
+     */
+    void cancel();
+
+    /**
+     * 是否已被取消，包括超过截止时间
+     *
+     * @return 是否已取消
+     */
+    boolean isCancelled();
+
+    /**
+     * 流是否已结束，结束后不会再有回调
+     *
+     * @return 是否已结束
+     */
+    boolean isDone();
+
+    /**
+     * 获取服务端任务 ID
+     *
+     * @return 任务 ID，尚未收到事件时为 null
+     */
+    String getTaskId();
+
+    /**
+     * 等待流结束，包括正常结束、失败与取消
+     *
+     * @throws InterruptedException 等待被中断
+     */
+    void awaitCompletion() throws InterruptedException;
+
+    /**
+     * 在指定时间内等待流结束
+     *
+     * @param timeout 等待时间
+     * @param unit    时间单位
+     * @return 流是否已结束
+     * @throws InterruptedException 等待被中断
+     */
+    boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException;
+}
@@ -0,0 +1,79 @@
+package io.github.imfangs.dify.client.transport;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 自适应并发限制器
+ * <p>
+ * 按HTTP方法与接口模板维护各自的 {@link AdaptiveLimit}，轻量的对话接口与重量的工作流接口各自收敛到
+ * 服务端吞吐拐点附近的并发，而不是使用一个对谁都不合适的固定上限。
+ * 接口模板已去除ID段，数量有界；超过 {@link #MAX_ENDPOINTS} 的新接口合并到 {@link #OTHER_ENDPOINT}。
+ * 多个客户端共享同一限制器时也共享并发上限与在途计数。
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 接口数量上限
+     */
+    public static final int MAX_ENDPOINTS = 256;
+
+    /**
+     * 超出上限后合并使用的接口模板
+     */
+    public static final String OTHER_ENDPOINT = "other";
+
+    private final AdaptiveLimitPolicy policy;
+    private final ConcurrentMap<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param policy 自适应并发限制策略
+     */
+    public AdaptiveConcurrencyLimiter(AdaptiveLimitPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * 获取限制策略
+     *
+     * @return 限制策略
+     */
+    public AdaptiveLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 获取接口的并发上限，不存在时创建
+     *
+     * @param method   HTTP方法
+     * @param endpoint 接口模板
+     * @return 并发上限
+     */
+    public AdaptiveLimit get(String method, String endpoint) {
+        String key = method + ' ' + endpoint;
+        AdaptiveLimit limit = limits.get(key);
+        if (limit != null) {
+            return limit;
+        }
+        if (limits.size() >= MAX_ENDPOINTS) {
+            return limits.computeIfAbsent(method + ' ' + OTHER_ENDPOINT, k -> new AdaptiveLimit(method, OTHER_ENDPOINT, policy));
+        }
+        return limits.computeIfAbsent(key, k -> new AdaptiveLimit(method, endpoint, policy));
+    }
+
+    /**
+     * 获取全部已创建的并发上限，按接口模板与方法排序
+     *
+     * @return 并发上限列表
+     */
+    public List<AdaptiveLimit> getLimits() {
+        List<AdaptiveLimit> result = new ArrayList<>(limits.values());
+        result.sort(Comparator.comparing(AdaptiveLimit::getEndpoint).thenComparing(AdaptiveLimit::getMethod));
+        return result;
+    }
+}
@@ -0,0 +1,307 @@
+package io.github.imfangs.dify.client.transport;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个接口的自适应并发上限
+ * <p>
+ * 取得与归还名额只对在途计数做 CAS，不加锁；时延样本在请求结束时到达，调整上限时对本对象加锁。
+ * 无负载基线取近期最小时延，每 {@link #BASELINE_WINDOW} 个样本向窗口内最小值缓慢靠拢，
+ * 服务端时延整体变化（如更换模型）后基线随之漂移，不会把正常时延长期误判为拥塞。
+ * {@link #getLimit()} 与 {@link #getInFlight()} 可直接注册为监控系统的 gauge。
+ */
+@Slf4j
+public final class AdaptiveLimit {
+
+    /**
+     * 基线重新评估的样本间隔
+     */
+    private static final int BASELINE_WINDOW = 100;
+
+    @Getter
+    private final String method;
+    @Getter
+    private final String endpoint;
+    private final AdaptiveLimitPolicy policy;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final ReentrantLock waitLock = new ReentrantLock();
+    private final Condition released = waitLock.newCondition();
+    private volatile int waiters;
+    private volatile double limit;
+    private long baselineNanos = -1;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private int windowSamples;
+    private long lastDecreaseNanos = System.nanoTime();
+
+    /**
+     * 构造函数
+     *
+     * @param method   HTTP方法
+     * @param endpoint 接口模板
+     * @param policy   自适应并发限制策略
+     */
+    public AdaptiveLimit(String method, String endpoint, AdaptiveLimitPolicy policy) {
+        if (policy.getMinLimit() <= 0 || policy.getMaxLimit() < policy.getMinLimit()
+                || policy.getBackoffRatio() <= 0 || policy.getBackoffRatio() >= 1 || policy.getLatencyTolerance() < 1) {
+            throw new IllegalArgumentException("自适应并发限制策略参数无效");
+        }
+        this.method = method;
+        this.endpoint = endpoint;
+        this.policy = policy;
+        this.limit = Math.max(policy.getMinLimit(), Math.min(policy.getMaxLimit(), policy.getInitialLimit()));
+    }
+
+    /**
+     * 当前并发上限
+     *
+     * @return 并发上限
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 当前在途请求数
+     *
+     * @return 在途请求数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 累计被拒绝的请求数
+     *
+     * @return 被拒绝的请求数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 当前无负载时延基线
+     *
+     * @return 基线（纳秒），尚无样本时为 -1
+     */
+    public synchronized long getBaselineLatencyNanos() {
+        return baselineNanos;
+    }
+
+    /**
+     * 尝试取得一个名额，不等待
+     *
+     * @return 名额，已达上限时为 null
+     */
+    public Permit tryAcquire() {
+        Permit permit = acquireNow();
+        if (permit == null) {
+            rejected.increment();
+        }
+        return permit;
+    }
+
+    /**
+     * 取得一个名额，已达上限时最多等待指定时间
+     *
+     * @param maxWaitNanos 最长等待时间（纳秒）
+     * @return 名额，等待超时为 null
+     * @throws InterruptedException 等待被中断
+     */
+    public Permit acquire(long maxWaitNanos) throws InterruptedException {
+        Permit permit = acquireNow();
+        if (permit != null || maxWaitNanos <= 0) {
+            if (permit == null) {
+                rejected.increment();
+            }
+            return permit;
+        }
+        long remaining = maxWaitNanos;
+        waitLock.lock();
+        try {
+            waiters++;
+            while ((permit = acquireNow()) == null) {
+                if (remaining <= 0) {
+                    rejected.increment();
+                    return null;
+                }
+                remaining = released.awaitNanos(remaining);
+            }
+            return permit;
+        } finally {
+            waiters--;
+            waitLock.unlock();
+        }
+    }
+
+    private Permit acquireNow() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return new Permit(this, current + 1);
+            }
+        }
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        if (waiters > 0) {
+            waitLock.lock();
+            try {
+                released.signal();
+            } finally {
+                waitLock.unlock();
+            }
+        }
+    }
+
+    private synchronized void onSample(long latencyNanos, boolean failed, int inFlightAtStart) {
+        if (!failed) {
+            updateBaseline(latencyNanos);
+        }
+        double current = limit;
+        boolean congested = failed || latencyNanos > baselineNanos * policy.getLatencyTolerance();
+        if (congested) {
+            long now = System.nanoTime();
+            // 每个基线时延周期最多下调一次，避免同一批慢请求连续缩减
+            if (now - lastDecreaseNanos < Math.max(baselineNanos, 0)) {
+                return;
+            }
+            lastDecreaseNanos = now;
+            double next = Math.max(policy.getMinLimit(), current * policy.getBackoffRatio());
+            if ((int) next != (int) current) {
+                log.debug("并发上限下调: {} {}, {} -> {}, 时延={}ms, 失败={}", method, endpoint, (int) current, (int) next,
+                        TimeUnit.NANOSECONDS.toMillis(latencyNanos), failed);
+            }
+            limit = next;
+        } else if (inFlightAtStart * 2 >= current) {
+            // 只有并发确实接近上限时才上调，空闲时的低时延不能说明服务端还有余量
+            limit = Math.min(policy.getMaxLimit(), current + 1);
+        }
+    }
+
+    private void updateBaseline(long latencyNanos) {
+        if (baselineNanos < 0 || latencyNanos < baselineNanos) {
+            baselineNanos = latencyNanos;
+        }
+        windowMinNanos = Math.min(windowMinNanos, latencyNanos);
+        if (++windowSamples >= BASELINE_WINDOW) {
+            if (windowMinNanos > baselineNanos) {
+                baselineNanos += (windowMinNanos - baselineNanos) / 10;
+            }
+            windowMinNanos = Long.MAX_VALUE;
+            windowSamples = 0;
+        }
+    }
+
+    /**
+     * 一个在途名额
+     * 请求得到时延样本时回报一次，结束时归还；同一名额的方法由同一时刻的单个线程调用
+     */
+    public static final class Permit {
+        private static final Permit UNLIMITED = new Permit(null, 0);
+
+        private final AdaptiveLimit owner;
+        private final int inFlightAtStart;
+        private final long startNanos;
+        private boolean sampled;
+        private boolean released;
+
+        private Permit(AdaptiveLimit owner, int inFlightAtStart) {
+            this.owner = owner;
+            this.inFlightAtStart = inFlightAtStart;
+            this.startNanos = owner != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * 获取不受并发限制的共享名额，所有回报均忽略
+         *
+         * @return 空名额
+         */
+        public static Permit unlimited() {
+            return UNLIMITED;
+        }
+
+        /**
+         * 取得名额以来经过的时间
+         *
+         * @return 经过时间（纳秒）
+         */
+        public long elapsedNanos() {
+            return owner != null ? System.nanoTime() - startNanos : 0;
+        }
+
+        /**
+         * 以取得名额至今的耗时作为时延样本
+         *
+         * @param failed 是否失败
+         */
+        public void sample(boolean failed) {
+            sample(elapsedNanos(), failed);
+        }
+
+        /**
+         * 回报时延样本，只有第一次回报生效，归还后回报无效
+         *
+         * @param latencyNanos 时延（纳秒）
+         * @param failed       是否失败
+         */
+        public void sample(long latencyNanos, boolean failed) {
+            if (owner == null || sampled || released) {
+                return;
+            }
+            sampled = true;
+            owner.onSample(latencyNanos, failed, inFlightAtStart);
+        }
+
+        /**
+         * 收到响应，按状态码回报样本
+         *
+         * @param statusCode HTTP状态码
+         */
+        public void onResponse(int statusCode) {
+            if (owner != null) {
+                sample(owner.policy.isFailureStatus(statusCode));
+            }
+        }
+
+        /**
+         * 请求失败
+         *
+         * @param error 异常
+         */
+        public void onError(Throwable error) {
+            if (owner != null) {
+                sample(owner.policy.isFailure(error));
+            }
+        }
+
+        /**
+         * 请求被主动取消，丢弃样本，名额仍需通过 {@link #release()} 归还
+         */
+        public void onCancel() {
+            sampled = true;
+        }
+
+        /**
+         * 归还名额，重复调用只生效一次
+         */
+        public void release() {
+            if (owner == null || released) {
+                return;
+            }
+            released = true;
+            owner.release();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * 自适应并发限制策略
+ * <p>
+ * 每个接口模板维护一个并发上限：请求成功且时延不超过无负载基线的 {@link #latencyTolerance} 倍、
+ * 并且并发确实接近上限时，上限加一；时延超出容忍范围或出现失败（5xx、429、连接失败、超时）时，
+ * 上限乘以 {@link #backoffRatio}，每个基线时延周期最多下调一次。
+ * 阻塞请求的时延为收到响应头的耗时，流式请求为首个 token 的耗时（没有 token 的流取响应头耗时）。
+ */
+@Getter
+@Builder
+public final class AdaptiveLimitPolicy {
+
+    /**
+     * 初始并发上限
+     */
+    @Builder.Default
+    private final int initialLimit = 20;
+
+    /**
+     * 并发上限的下限
+     */
+    @Builder.Default
+    private final int minLimit = 1;
+
+    /**
+     * 并发上限的上限
+     */
+    @Builder.Default
+    private final int maxLimit = 200;
+
+    /**
+     * 时延容忍倍数，超过无负载基线的该倍数视为拥塞
+     */
+    @Builder.Default
+    private final double latencyTolerance = 2.0;
+
+    /**
+     * 拥塞时并发上限的缩减比例
+     */
+    @Builder.Default
+    private final double backoffRatio = 0.9;
+
+    /**
+     * 阻塞请求达到并发上限时的最长等待时间（毫秒），0 表示立即拒绝；异步与回调式流式请求不等待
+     */
+    @Builder.Default
+    private final long maxWaitMillis = 0;
+
+    /**
+     * 状态码是否计为失败
+     *
+     * @param statusCode HTTP状态码
+     * @return 是否计为失败
+     */
+    public boolean isFailureStatus(int statusCode) {
+        return statusCode >= 500 || statusCode == 429;
+    }
+
+    /**
+     * 异常是否计为失败，解码失败与其他客户端异常不计入
+     *
+     * @param error 异常
+     * @return 是否计为失败
+     */
+    public boolean isFailure(Throwable error) {
+        if (error instanceof DifyApiException) {
+            return isFailureStatus(((DifyApiException) error).getStatusCode());
+        }
+        return error instanceof IOException && !(error instanceof DifyDecodeException);
+    }
+}
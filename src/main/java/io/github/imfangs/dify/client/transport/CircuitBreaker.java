@@ -0,0 +1,295 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.metrics.CircuitStateChange;
+import io.github.imfangs.dify.client.metrics.DifyMetrics;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单个接口与主机的熔断器
+ * <p>
+ * 当前状态保存在不可变的阶段对象中，状态切换通过 CAS 替换阶段对象完成。关闭阶段的滑动窗口是一个环形数组，
+ * 每个槽位以位标记保存一次调用的结果，写入时用 getAndSet 取回被覆盖的旧结果并增量修正失败数与慢调用数，
+ * 全程无锁。重新关闭时换用新的窗口，旧阶段发放的许可在其结束时被忽略，不会污染新窗口。
+ * <p>
+ * 每次调用先通过 {@link #tryAcquire(DifyMetrics)} 取得许可，收到响应或失败时通过许可回报结果。
+ */
+@Slf4j
+public final class CircuitBreaker {
+
+    private static final int RECORDED = 1;
+    private static final int FAILED = 2;
+    private static final int SLOW = 4;
+
+    @Getter
+    private final String method;
+    @Getter
+    private final String endpoint;
+    @Getter
+    private final String host;
+    private final CircuitBreakerPolicy policy;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final AtomicReference<Phase> phase;
+
+    /**
+     * 构造函数
+     *
+     * @param method   HTTP方法
+     * @param endpoint 接口模板
+     * @param host     主机，包含端口
+     * @param policy   熔断策略
+     */
+    public CircuitBreaker(String method, String endpoint, String host, CircuitBreakerPolicy policy) {
+        if (policy.getWindowSize() <= 0 || policy.getMinimumCalls() <= 0 || policy.getHalfOpenProbes() <= 0) {
+            throw new IllegalArgumentException("熔断策略参数无效");
+        }
+        this.method = method;
+        this.endpoint = endpoint;
+        this.host = host;
+        this.policy = policy;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(policy.getSlowCallDurationMillis());
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(policy.getOpenDurationMillis());
+        this.phase = new AtomicReference<>(closed());
+    }
+
+    /**
+     * 获取当前状态，打开时间已结束但尚无请求到达时仍为 {@link CircuitState#OPEN}
+     *
+     * @return 当前状态
+     */
+    public CircuitState getState() {
+        return phase.get().state;
+    }
+
+    /**
+     * 尝试取得一次调用许可
+     * 打开时间结束后由第一个到达的请求切换为半开
+     *
+     * @param metrics 接收状态变化的指标实现，可为 null
+     * @return 许可，被拒绝时为 null
+     */
+    public Permit tryAcquire(DifyMetrics metrics) {
+        while (true) {
+            Phase current = phase.get();
+            switch (current.state) {
+                case CLOSED:
+                    return new Permit(this, current, metrics);
+                case OPEN:
+                    if (System.nanoTime() - current.sinceNanos < openNanos) {
+                        return null;
+                    }
+                    transition(current, new Phase(CircuitState.HALF_OPEN, null, policy.getHalfOpenProbes()), -1, -1, metrics);
+                    break;
+                default:
+                    int permits;
+                    do {
+                        permits = current.permits.get();
+                        if (permits <= 0) {
+                            return null;
+                        }
+                    } while (!current.permits.compareAndSet(permits, permits - 1));
+                    return new Permit(this, current, metrics);
+            }
+        }
+    }
+
+    /**
+     * 距离进入半开的剩余时间
+     *
+     * @return 剩余时间（毫秒），不处于打开状态时为 0
+     */
+    public long getRemainingOpenMillis() {
+        Phase current = phase.get();
+        if (current.state != CircuitState.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openNanos - (System.nanoTime() - current.sinceNanos)));
+    }
+
+    private void record(Phase owner, boolean failed, boolean slow, DifyMetrics metrics) {
+        if (phase.get() != owner) {
+            return;
+        }
+        if (owner.state == CircuitState.HALF_OPEN) {
+            if (failed || slow) {
+                transition(owner, new Phase(CircuitState.OPEN, null, 0), -1, -1, metrics);
+            } else if (owner.successes.incrementAndGet() >= policy.getHalfOpenProbes()) {
+                transition(owner, closed(), -1, -1, metrics);
+            }
+            return;
+        }
+        if (owner.state != CircuitState.CLOSED) {
+            return;
+        }
+        Window window = owner.window;
+        int outcome = RECORDED | (failed ? FAILED : 0) | (slow ? SLOW : 0);
+        int index = (int) (window.cursor.getAndIncrement() % window.slots.length());
+        int previous = window.slots.getAndSet(index, outcome);
+        int calls = previous == 0 ? window.calls.incrementAndGet() : window.calls.get();
+        int failures = window.failures.addAndGet(bit(outcome, FAILED) - bit(previous, FAILED));
+        int slowCalls = window.slowCalls.addAndGet(bit(outcome, SLOW) - bit(previous, SLOW));
+        if (calls < policy.getMinimumCalls()) {
+            return;
+        }
+        double failureRate = (double) failures / calls;
+        double slowCallRate = (double) slowCalls / calls;
+        if (failureRate >= policy.getFailureRateThreshold() || slowCallRate >= policy.getSlowCallRateThreshold()) {
+            transition(owner, new Phase(CircuitState.OPEN, null, 0), failureRate, slowCallRate, metrics);
+        }
+    }
+
+    private void release(Phase owner) {
+        if (owner.state == CircuitState.HALF_OPEN && phase.get() == owner) {
+            owner.permits.incrementAndGet();
+        }
+    }
+
+    private void transition(Phase from, Phase to, double failureRate, double slowCallRate, DifyMetrics metrics) {
+        if (!phase.compareAndSet(from, to)) {
+            return;
+        }
+        if (to.state == CircuitState.OPEN) {
+            log.warn("熔断器打开: {} {} @ {}, 失败率={}, 慢调用率={}", method, endpoint, host, failureRate, slowCallRate);
+        } else {
+            log.info("熔断器状态变化: {} {} @ {}, {} -> {}", method, endpoint, host, from.state, to.state);
+        }
+        if (metrics == null) {
+            return;
+        }
+        metrics.recordCircuitStateChange(CircuitStateChange.builder()
+                .method(method)
+                .endpoint(endpoint)
+                .host(host)
+                .from(from.state)
+                .to(to.state)
+                .failureRate(failureRate)
+                .slowCallRate(slowCallRate)
+                .timestampMillis(System.currentTimeMillis())
+                .build());
+    }
+
+    private Phase closed() {
+        return new Phase(CircuitState.CLOSED, new Window(policy.getWindowSize()), 0);
+    }
+
+    private static int bit(int outcome, int flag) {
+        return (outcome & flag) != 0 ? 1 : 0;
+    }
+
+    /**
+     * 一次调用的许可，结果只回报一次
+     * 同一许可的方法由同一时刻的单个线程调用
+     */
+    public static final class Permit {
+        private static final Permit UNGUARDED = new Permit(null, null, null);
+
+        private final CircuitBreaker breaker;
+        private final Phase owner;
+        private final DifyMetrics metrics;
+        private final long startNanos;
+        private boolean done;
+
+        private Permit(CircuitBreaker breaker, Phase owner, DifyMetrics metrics) {
+            this.breaker = breaker;
+            this.owner = owner;
+            this.metrics = metrics;
+            this.startNanos = breaker != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * 获取不受熔断保护的共享许可，所有回报均忽略
+         *
+         * @return 空许可
+         */
+        public static Permit unguarded() {
+            return UNGUARDED;
+        }
+
+        /**
+         * 收到响应，按状态码回报成功或失败
+         *
+         * @param statusCode HTTP状态码
+         */
+        public void onResponse(int statusCode) {
+            if (breaker != null) {
+                complete(breaker.policy.isFailureStatus(statusCode));
+            }
+        }
+
+        /**
+         * 调用失败
+         *
+         * @param error 异常
+         */
+        public void onError(Throwable error) {
+            if (breaker != null) {
+                complete(breaker.policy.isFailure(error));
+            }
+        }
+
+        /**
+         * 调用被主动取消，归还许可而不计入结果
+         */
+        public void onCancel() {
+            release();
+        }
+
+        /**
+         * 放弃许可，不计入结果
+         */
+        public void release() {
+            if (breaker == null || done) {
+                return;
+            }
+            done = true;
+            breaker.release(owner);
+        }
+
+        private void complete(boolean failed) {
+            if (done) {
+                return;
+            }
+            done = true;
+            breaker.record(owner, failed, System.nanoTime() - startNanos >= breaker.slowCallNanos, metrics);
+        }
+    }
+
+    /**
+     * 熔断器阶段，切换状态时整体替换
+     */
+    private static final class Phase {
+        private final CircuitState state;
+        private final long sinceNanos = System.nanoTime();
+        private final Window window;
+        private final AtomicInteger permits;
+        private final AtomicInteger successes = new AtomicInteger();
+
+        private Phase(CircuitState state, Window window, int permits) {
+            this.state = state;
+            this.window = window;
+            this.permits = new AtomicInteger(permits);
+        }
+    }
+
+    /**
+     * 滑动窗口，槽位为 0 表示尚未写入
+     */
+    private static final class Window {
+        private final AtomicIntegerArray slots;
+        private final AtomicLong cursor = new AtomicLong();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicInteger slowCalls = new AtomicInteger();
+
+        private Window(int size) {
+            this.slots = new AtomicIntegerArray(size);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * 熔断策略
+ * <p>
+ * 每个熔断器在最近 {@link #windowSize} 次调用的滑动窗口上计算失败率与慢调用率，
+ * 窗口内调用数达到 {@link #minimumCalls} 且任一比例达到阈值时打开。
+ * 失败指连接失败、超时以及状态码为 5xx、408、429 的响应；4xx 业务错误说明服务端仍在正常处理，按成功计入。
+ * 慢调用按收到响应头的耗时判定，流式请求因此只计建连与排队时间，不含生成时间。
+ */
+@Getter
+@Builder
+public final class CircuitBreakerPolicy {
+
+    /**
+     * 滑动窗口大小（调用次数）
+     */
+    @Builder.Default
+    private final int windowSize = 100;
+
+    /**
+     * 计算比例所需的最少调用次数，窗口内不足时不会打开
+     */
+    @Builder.Default
+    private final int minimumCalls = 20;
+
+    /**
+     * 失败率阈值，取值 0~1
+     */
+    @Builder.Default
+    private final double failureRateThreshold = 0.5;
+
+    /**
+     * 慢调用率阈值，取值 0~1，默认只有窗口内全部为慢调用时才打开
+     */
+    @Builder.Default
+    private final double slowCallRateThreshold = 1.0;
+
+    /**
+     * 慢调用判定时间（毫秒）
+     */
+    @Builder.Default
+    private final long slowCallDurationMillis = 30_000;
+
+    /**
+     * 打开状态持续时间（毫秒），结束后进入半开
+     */
+    @Builder.Default
+    private final long openDurationMillis = 30_000;
+
+    /**
+     * 半开状态放行的探测请求数，全部成功后关闭
+     */
+    @Builder.Default
+    private final int halfOpenProbes = 5;
+
+    /**
+     * 状态码是否计为失败
+     *
+     * @param statusCode HTTP状态码
+     * @return 是否计为失败
+     */
+    public boolean isFailureStatus(int statusCode) {
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    /**
+     * 异常是否计为失败，解码失败与其他客户端异常不计入
+     *
+     * @param error 异常
+     * @return 是否计为失败
+     */
+    public boolean isFailure(Throwable error) {
+        if (error instanceof DifyApiException) {
+            return isFailureStatus(((DifyApiException) error).getStatusCode());
+        }
+        return error instanceof IOException && !(error instanceof DifyDecodeException);
+    }
+}
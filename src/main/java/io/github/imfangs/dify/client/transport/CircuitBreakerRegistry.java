@@ -0,0 +1,71 @@
+package io.github.imfangs.dify.client.transport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 熔断器注册表
+ * <p>
+ * 按HTTP方法、接口模板与主机创建熔断器，同一注册表内的熔断器共享同一熔断策略。
+ * 接口模板已去除ID段，熔断器数量有界；超过 {@link #MAX_BREAKERS} 的新接口合并到
+ * {@link #OTHER_ENDPOINT}。多个客户端共享同一注册表时也共享熔断状态。
+ */
+public final class CircuitBreakerRegistry {
+
+    /**
+     * 熔断器数量上限
+     */
+    public static final int MAX_BREAKERS = 256;
+
+    /**
+     * 超出上限后合并使用的接口模板
+     */
+    public static final String OTHER_ENDPOINT = "other";
+
+    private final CircuitBreakerPolicy policy;
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * 构造函数
+     *
+     * @param policy 熔断策略
+     */
+    public CircuitBreakerRegistry(CircuitBreakerPolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * 获取熔断器，不存在时创建
+     *
+     * @param method   HTTP方法
+     * @param endpoint 接口模板
+     * @param host     主机，包含端口
+     * @return 熔断器
+     */
+    public CircuitBreaker get(String method, String endpoint, String host) {
+        String key = key(method, endpoint, host);
+        CircuitBreaker breaker = breakers.get(key);
+        if (breaker != null) {
+            return breaker;
+        }
+        if (breakers.size() >= MAX_BREAKERS) {
+            return breakers.computeIfAbsent(key(method, OTHER_ENDPOINT, host), k -> new CircuitBreaker(method, OTHER_ENDPOINT, host, policy));
+        }
+        return breakers.computeIfAbsent(key, k -> new CircuitBreaker(method, endpoint, host, policy));
+    }
+
+    /**
+     * 获取全部已创建的熔断器
+     *
+     * @return 熔断器列表
+     */
+    public List<CircuitBreaker> getBreakers() {
+        return new ArrayList<>(breakers.values());
+    }
+
+    private static String key(String method, String endpoint, String host) {
+        return method + ' ' + endpoint + '@' + host;
+    }
+}
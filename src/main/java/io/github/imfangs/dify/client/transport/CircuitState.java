@@ -0,0 +1,21 @@
+package io.github.imfangs.dify.client.transport;
+
+/**
+ * 熔断器状态
+ */
+public enum CircuitState {
+    /**
+     * 关闭：请求正常放行，按滑动窗口统计失败率与慢调用率
+     */
+    CLOSED,
+
+    /**
+     * 打开：请求直接失败，不发送到服务端，等待时间结束后进入半开
+     */
+    OPEN,
+
+    /**
+     * 半开：只放行有限个探测请求，全部成功则关闭，任一失败或超慢则重新打开
+     */
+    HALF_OPEN
+}
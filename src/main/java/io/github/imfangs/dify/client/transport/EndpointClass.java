@@ -0,0 +1,53 @@
+package io.github.imfangs.dify.client.transport;
+
+/**
+ * 接口类别，限流时按类别使用独立的令牌桶
+ */
+public enum EndpointClass {
+    /**
+     * 对话与文本生成：/chat-messages、/completion-messages、/messages、/conversations
+     */
+    CHAT,
+
+    /**
+     * 工作流：/workflows
+     */
+    WORKFLOW,
+
+    /**
+     * 知识库：/datasets
+     */
+    DATASETS,
+
+    /**
+     * 其他接口，如应用信息、文件上传、语音转换
+     */
+    OTHER;
+
+    /**
+     * 按请求路径判定接口类别
+     *
+     * @param path 请求路径（不含API基础URL的路径前缀）
+     * @return 接口类别
+     */
+    public static EndpointClass of(String path) {
+        if (path == null) {
+            return OTHER;
+        }
+        if (startsWithSegment(path, "/chat-messages") || startsWithSegment(path, "/completion-messages")
+                || startsWithSegment(path, "/messages") || startsWithSegment(path, "/conversations")) {
+            return CHAT;
+        }
+        if (startsWithSegment(path, "/workflows")) {
+            return WORKFLOW;
+        }
+        if (startsWithSegment(path, "/datasets")) {
+            return DATASETS;
+        }
+        return OTHER;
+    }
+
+    private static boolean startsWithSegment(String path, String prefix) {
+        return path.startsWith(prefix) && (path.length() == prefix.length() || path.charAt(prefix.length()) == '/');
+    }
+}
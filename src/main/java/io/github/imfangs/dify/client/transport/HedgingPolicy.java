@@ -0,0 +1,58 @@
+package io.github.imfangs.dify.client.transport;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * 对冲请求策略
+ * <p>
+ * 幂等请求发出后若在该接口近期时延的 {@link #percentile} 分位内仍未返回，再发出一份相同的请求，取先成功的响应并取消另一份。
+ * 时延在最近 {@link #windowMillis} 左右的窗口内统计，样本少于 {@link #minSamples} 时不对冲。
+ * 对冲带来的额外请求由预算限制在首次请求数的 {@link #budgetRatio} 倍以内。
+ */
+@Getter
+@Builder
+public final class HedgingPolicy {
+
+    /**
+     * 触发对冲的时延分位，取值 0~100
+     */
+    @Builder.Default
+    private final double percentile = 95;
+
+    /**
+     * 计算分位所需的最少样本数
+     */
+    @Builder.Default
+    private final int minSamples = 20;
+
+    /**
+     * 对冲延迟下限（毫秒），避免时延极低的接口几乎同时发出两份请求
+     */
+    @Builder.Default
+    private final long minDelayMillis = 5;
+
+    /**
+     * 对冲延迟上限（毫秒）
+     */
+    @Builder.Default
+    private final long maxDelayMillis = 10_000;
+
+    /**
+     * 时延统计窗口（毫秒），窗口轮换后旧窗口在样本不足时继续使用
+     */
+    @Builder.Default
+    private final long windowMillis = 60_000;
+
+    /**
+     * 对冲请求占首次请求的比例上限，如 0.05 表示额外负载不超过 5%
+     */
+    @Builder.Default
+    private final double budgetRatio = 0.05;
+
+    /**
+     * 预算的最大积累量，即空闲后允许连续对冲的次数
+     */
+    @Builder.Default
+    private final int maxBurst = 10;
+}
@@ -0,0 +1,254 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.metrics.CallTimingListener;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 进程级 HTTP 传输层注册表
+ * <p>
+ * 相同主机、相同超时配置的客户端共享同一个 {@link ConnectionPool} 与 {@link Dispatcher}，
+ * 所有 {@link OkHttpClient} 均通过 {@link OkHttpClient#newBuilder()} 从同一个根客户端派生。
+ * 每个共享条目按引用计数管理，最后一个租约释放时回收连接池并关闭调度线程池。
+ */
+@Slf4j
+public final class HttpTransportRegistry {
+
+    private static final HttpTransportRegistry INSTANCE = new HttpTransportRegistry();
+
+    /**
+     * 所有共享客户端的派生根，安装了连接阶段计时监听器
+     */
+    private final OkHttpClient rootClient = new OkHttpClient.Builder()
+            .eventListenerFactory(CallTimingListener.factory())
+            .build();
+
+    private final Map<TransportKey, SharedTransport> transports = new ConcurrentHashMap<>();
+
+    /**
+     * 获取全局注册表
+     *
+     * @return 注册表实例
+     */
+    public static HttpTransportRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 租用共享传输层
+     *
+     * @param baseUrl        API基础URL，用于确定主机
+     * @param connectTimeout 连接超时时间（毫秒）
+     * @param readTimeout    读取超时时间（毫秒）
+     * @param writeTimeout   写入超时时间（毫秒）
+     * @return 租约，使用完毕后必须调用 {@link Lease#close()}
+     */
+    public Lease acquire(String baseUrl, int connectTimeout, int readTimeout, int writeTimeout) {
+        return acquire(baseUrl, connectTimeout, readTimeout, writeTimeout, false);
+    }
+
+    /**
+     * 租用共享传输层
+     *
+     * @param baseUrl        API基础URL，用于确定主机
+     * @param connectTimeout 连接超时时间（毫秒）
+     * @param readTimeout    读取超时时间（毫秒）
+     * @param writeTimeout   写入超时时间（毫秒）
+     * @param virtualThreads 是否在虚拟线程上执行异步调用，运行时不支持时回退到平台线程
+     * @return 租约，使用完毕后必须调用 {@link Lease#close()}
+     */
+    public Lease acquire(String baseUrl, int connectTimeout, int readTimeout, int writeTimeout, boolean virtualThreads) {
+        TransportKey key = new TransportKey(hostKey(baseUrl), connectTimeout, readTimeout, writeTimeout,
+                virtualThreads && VirtualThreads.isSupported());
+        if (virtualThreads && !key.virtualThreads) {
+            log.warn("当前运行时不支持虚拟线程，回退到平台线程调度器");
+        }
+        SharedTransport transport = transports.compute(key, (k, existing) -> {
+            SharedTransport target = existing != null ? existing : createTransport(k);
+            target.refCount++;
+            return target;
+        });
+        return new Lease(key, transport.client);
+    }
+
+    /**
+     * 当前共享条目数量
+     *
+     * @return 条目数量
+     */
+    public int size() {
+        return transports.size();
+    }
+
+    /**
+     * 查询指定配置的引用计数
+     *
+     * @param baseUrl        API基础URL
+     * @param connectTimeout 连接超时时间（毫秒）
+     * @param readTimeout    读取超时时间（毫秒）
+     * @param writeTimeout   写入超时时间（毫秒）
+     * @return 引用计数，不存在时返回0
+     */
+    public int referenceCount(String baseUrl, int connectTimeout, int readTimeout, int writeTimeout) {
+        return referenceCount(baseUrl, connectTimeout, readTimeout, writeTimeout, false);
+    }
+
+    /**
+     * 查询指定配置的引用计数
+     *
+     * @param baseUrl        API基础URL
+     * @param connectTimeout 连接超时时间（毫秒）
+     * @param readTimeout    读取超时时间（毫秒）
+     * @param writeTimeout   写入超时时间（毫秒）
+     * @param virtualThreads 是否为虚拟线程传输层，与 {@link #acquire} 一样在运行时不支持时按平台线程查询
+     * @return 引用计数，不存在时返回0
+     */
+    public int referenceCount(String baseUrl, int connectTimeout, int readTimeout, int writeTimeout, boolean virtualThreads) {
+        SharedTransport transport = transports.get(new TransportKey(hostKey(baseUrl), connectTimeout, readTimeout, writeTimeout,
+                virtualThreads && VirtualThreads.isSupported()));
+        return transport != null ? transport.refCount : 0;
+    }
+
+    private SharedTransport createTransport(TransportKey key) {
+        log.debug("创建共享传输层: {}", key);
+        // 并发上限不由 Dispatcher 统一控制：流式请求由 StreamScheduler 限制，非流式异步调用（含对冲请求）由客户端按
+        // DifyConfig#maxAsyncRequests 准入；两者若共用 Dispatcher 每主机上限，长时间的流会挤占普通异步调用，反之亦然
+        // 虚拟线程模式下每个异步调用（含流式读取循环与用户回调）运行在独立虚拟线程上，长时间的流不再占用平台线程
+        Dispatcher dispatcher = key.virtualThreads
+                ? new Dispatcher(VirtualThreads.newThreadPerTaskExecutor("OkHttp Dispatcher (virtual) "))
+                : new Dispatcher();
+        dispatcher.setMaxRequests(Integer.MAX_VALUE);
+        dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+        OkHttpClient client = rootClient.newBuilder()
+                .connectionPool(new ConnectionPool())
+                .dispatcher(dispatcher)
+                .connectTimeout(key.connectTimeout, TimeUnit.MILLISECONDS)
+                .readTimeout(key.readTimeout, TimeUnit.MILLISECONDS)
+                .writeTimeout(key.writeTimeout, TimeUnit.MILLISECONDS)
+                .build();
+        return new SharedTransport(client);
+    }
+
+    private void release(TransportKey key) {
+        transports.computeIfPresent(key, (k, transport) -> {
+            if (--transport.refCount > 0) {
+                return transport;
+            }
+            log.debug("释放共享传输层: {}", k);
+            transport.client.connectionPool().evictAll();
+            transport.client.dispatcher().executorService().shutdown();
+            return null;
+        });
+    }
+
+    /**
+     * 计算主机标识（scheme://host:port）
+     *
+     * @param baseUrl API基础URL
+     * @return 主机标识
+     */
+    static String hostKey(String baseUrl) {
+        HttpUrl url = baseUrl != null ? HttpUrl.parse(baseUrl) : null;
+        if (url == null) {
+            return String.valueOf(baseUrl);
+        }
+        return url.scheme() + "://" + url.host() + ":" + url.port();
+    }
+
+    /**
+     * 共享传输层租约
+     */
+    public final class Lease implements AutoCloseable {
+        private final TransportKey key;
+        private final OkHttpClient client;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(TransportKey key, OkHttpClient client) {
+            this.key = key;
+            this.client = client;
+        }
+
+        /**
+         * 获取共享的HTTP客户端
+         *
+         * @return HTTP客户端
+         */
+        public OkHttpClient getClient() {
+            return client;
+        }
+
+        /**
+         * 释放租约，重复调用无副作用
+         */
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(key);
+            }
+        }
+    }
+
+    /**
+     * 共享条目，引用计数仅在 {@link ConcurrentHashMap#compute} 内修改
+     */
+    private static final class SharedTransport {
+        private final OkHttpClient client;
+        private volatile int refCount;
+
+        private SharedTransport(OkHttpClient client) {
+            this.client = client;
+        }
+    }
+
+    private static final class TransportKey {
+        private final String host;
+        private final int connectTimeout;
+        private final int readTimeout;
+        private final int writeTimeout;
+        private final boolean virtualThreads;
+
+        private TransportKey(String host, int connectTimeout, int readTimeout, int writeTimeout, boolean virtualThreads) {
+            this.host = host;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.writeTimeout = writeTimeout;
+            this.virtualThreads = virtualThreads;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TransportKey)) {
+                return false;
+            }
+            TransportKey that = (TransportKey) o;
+            return connectTimeout == that.connectTimeout
+                    && readTimeout == that.readTimeout
+                    && writeTimeout == that.writeTimeout
+                    && virtualThreads == that.virtualThreads
+                    && host.equals(that.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, connectTimeout, readTimeout, writeTimeout, virtualThreads);
+        }
+
+        @Override
+        public String toString() {
+            return host + "[connect=" + connectTimeout + "ms, read=" + readTimeout + "ms, write=" + writeTimeout + "ms"
+                    + (virtualThreads ? ", virtual" : "") + "]";
+        }
+    }
+}
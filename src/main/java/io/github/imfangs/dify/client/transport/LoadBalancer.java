@@ -0,0 +1,260 @@
+package io.github.imfangs.dify.client.transport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多副本负载均衡器
+ * <p>
+ * 在没有共享负载均衡的多个 Dify API 副本之间分配请求。每次随机取两个健康副本，选择当前同类在途请求较少的一个
+ * （power of two choices）。这样无需全局排序，也不会让所有客户端同时涌向同一个
+ * "最空闲"的副本。连续失败或变慢的副本被摘除，摘除时间结束后以单个探测请求重新检验；全部副本都被摘除时在全部副本中选择。
+ * <p>
+ * 会话与任务可以绑定到服务它的副本：{@link #bind} 记录标识与副本的对应关系，之后以该标识选择副本时优先使用绑定的副本，
+ * 绑定的副本被摘除时按常规选择其他副本。绑定记录保存在分段加锁的有界LRU映射中。可在多个客户端之间共享。
+ */
+@Slf4j
+public final class LoadBalancer {
+
+    private final LoadBalancerPolicy policy;
+    private final Replica[] replicas;
+    private final long slowCallNanos;
+    private final StripedLruMap<String, Replica> affinity;
+
+    /**
+     * 构造函数
+     *
+     * @param baseUrls 各副本的API基础URL
+     * @param policy   负载均衡策略
+     */
+    public LoadBalancer(List<String> baseUrls, LoadBalancerPolicy policy) {
+        if (baseUrls == null || baseUrls.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个副本");
+        }
+        if (policy.getConsecutiveFailures() <= 0 || policy.getBaseEjectionMillis() <= 0 || policy.getSlowCallDurationMillis() < 0) {
+            throw new IllegalArgumentException("负载均衡策略参数无效");
+        }
+        this.policy = policy;
+        this.replicas = new Replica[baseUrls.size()];
+        for (int i = 0; i < replicas.length; i++) {
+            String baseUrl = baseUrls.get(i);
+            replicas[i] = new Replica(baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl);
+        }
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(policy.getSlowCallDurationMillis());
+        this.affinity = new StripedLruMap<>(policy.getMaxAffinityEntries());
+    }
+
+    /**
+     * 获取负载均衡策略
+     *
+     * @return 负载均衡策略
+     */
+    public LoadBalancerPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 获取全部副本，顺序与构造时一致
+     *
+     * @return 副本列表
+     */
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(Arrays.asList(replicas));
+    }
+
+    /**
+     * 选择一个副本
+     *
+     * @param streaming   是否为流式请求
+     * @param affinityKey 会话或任务标识，没有时为 null
+     * @return 选中副本的许可，请求结束后必须归还
+     */
+    public Permit select(boolean streaming, String affinityKey) {
+        if (affinityKey != null) {
+            Replica bound = affinity.get(affinityKey);
+            if (bound != null && !bound.isEjected()) {
+                return new Permit(this, bound, streaming, false);
+            }
+        }
+        long now = System.nanoTime();
+        List<Replica> healthy = new ArrayList<>(replicas.length);
+        for (Replica replica : replicas) {
+            if (!replica.isEjected()) {
+                healthy.add(replica);
+            } else if (replica.tryStartProbe(now)) {
+                log.info("副本摘除时间结束，发送探测请求: {}", replica);
+                return new Permit(this, replica, streaming, true);
+            }
+        }
+        if (healthy.isEmpty()) {
+            // 全部副本都被摘除时仍要发送请求，由服务端给出实际结果
+            Collections.addAll(healthy, replicas);
+        }
+        int count = healthy.size();
+        if (count == 1) {
+            return new Permit(this, healthy.get(0), streaming, false);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(count);
+        int second = random.nextInt(count - 1);
+        if (second >= first) {
+            second++;
+        }
+        return new Permit(this, better(healthy.get(first), healthy.get(second), streaming), streaming, false);
+    }
+
+    /**
+     * 将会话或任务标识绑定到副本
+     *
+     * @param key     会话或任务标识，为 null 时忽略
+     * @param replica 副本
+     */
+    public void bind(String key, Replica replica) {
+        if (key != null && !key.isEmpty() && replica != null) {
+            affinity.put(key, replica);
+        }
+    }
+
+    /**
+     * 获取标识绑定的副本
+     *
+     * @param key 会话或任务标识
+     * @return 副本，未绑定时为 null
+     */
+    public Replica getAffinity(String key) {
+        return key != null ? affinity.get(key) : null;
+    }
+
+    private static Replica better(Replica a, Replica b, boolean streaming) {
+        // 在途数相同时取随机抽中的第一个，不按失败次数择优，否则偶发一次失败的副本在低负载下再也得不到请求
+        return b.inFlight(streaming) < a.inFlight(streaming) ? b : a;
+    }
+
+    private void record(Replica replica, boolean failed, boolean probe) {
+        boolean wasEjected = replica.isEjected();
+        if (!replica.record(failed, probe, policy)) {
+            return;
+        }
+        if (replica.isEjected()) {
+            log.warn("副本被摘除: {}, 累计摘除 {} 次", replica, replica.getEjections());
+        } else if (wasEjected) {
+            log.info("副本探测成功，恢复使用: {}", replica);
+        }
+    }
+
+    /**
+     * 一次请求对副本的占用
+     * 收到响应或失败时回报一次结果，结束时归还；归还后的回报无效。同一许可的方法由同一时刻的单个线程调用
+     */
+    public static final class Permit {
+        private static final Permit DIRECT = new Permit(null, null, false, false);
+
+        private final LoadBalancer owner;
+        private final Replica replica;
+        private final boolean streaming;
+        private final boolean probe;
+        private final long startNanos;
+        private boolean reported;
+        private boolean released;
+
+        private Permit(LoadBalancer owner, Replica replica, boolean streaming, boolean probe) {
+            this.owner = owner;
+            this.replica = replica;
+            this.streaming = streaming;
+            this.probe = probe;
+            this.startNanos = owner != null ? System.nanoTime() : 0;
+            if (replica != null) {
+                replica.acquire(streaming);
+            }
+        }
+
+        /**
+         * 获取不经过负载均衡的共享许可，请求发往客户端配置的API基础URL，所有回报均忽略
+         *
+         * @return 空许可
+         */
+        public static Permit direct() {
+            return DIRECT;
+        }
+
+        /**
+         * 获取选中的副本
+         *
+         * @return 副本，不经过负载均衡时为 null
+         */
+        public Replica getReplica() {
+            return replica;
+        }
+
+        /**
+         * 是否为摘除结束后的探测请求
+         *
+         * @return 是否为探测请求
+         */
+        public boolean isProbe() {
+            return probe;
+        }
+
+        /**
+         * 将会话或任务标识绑定到本次请求的副本，许可归还后仍可调用
+         *
+         * @param key 会话或任务标识，为 null 时忽略
+         */
+        public void bind(String key) {
+            if (owner != null) {
+                owner.bind(key, replica);
+            }
+        }
+
+        /**
+         * 收到响应，按状态码与耗时回报结果
+         *
+         * @param statusCode HTTP状态码
+         */
+        public void onResponse(int statusCode) {
+            if (owner != null) {
+                boolean slow = owner.slowCallNanos > 0 && System.nanoTime() - startNanos >= owner.slowCallNanos;
+                report(owner.policy.isFailureStatus(statusCode) || slow);
+            }
+        }
+
+        /**
+         * 请求失败
+         *
+         * @param error 异常
+         */
+        public void onError(Throwable error) {
+            if (owner != null) {
+                report(owner.policy.isFailure(error));
+            }
+        }
+
+        /**
+         * 归还许可，重复调用只生效一次；探测请求未回报结果即归还时让出探测名额
+         */
+        public void release() {
+            if (owner == null || released) {
+                return;
+            }
+            released = true;
+            replica.release(streaming);
+            if (probe && !reported) {
+                replica.endProbe();
+            }
+        }
+
+        private void report(boolean failed) {
+            if (reported || released) {
+                return;
+            }
+            reported = true;
+            owner.record(replica, failed, probe);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * 多副本负载均衡策略
+ * <p>
+ * 副本连续失败 {@link #consecutiveFailures} 次后被摘除，摘除时间从 {@link #baseEjectionMillis} 开始，
+ * 每次连续摘除翻倍，不超过 {@link #maxEjectionMillis}；摘除时间结束后放行一个探测请求，成功则恢复，失败则继续摘除。
+ * 失败指连接失败、超时以及状态码为 5xx、429 的响应；设置了 {@link #slowCallDurationMillis} 时，
+ * 收到响应头的耗时超过该值的调用也按失败计入，流式请求因此只计建连与排队时间，不含生成时间。
+ */
+@Getter
+@Builder
+public final class LoadBalancerPolicy {
+
+    /**
+     * 摘除副本所需的连续失败次数
+     */
+    @Builder.Default
+    private final int consecutiveFailures = 3;
+
+    /**
+     * 慢调用判定时间（毫秒），0 表示不按时延摘除
+     */
+    @Builder.Default
+    private final long slowCallDurationMillis = 0;
+
+    /**
+     * 首次摘除时间（毫秒）
+     */
+    @Builder.Default
+    private final long baseEjectionMillis = 10_000;
+
+    /**
+     * 最长摘除时间（毫秒）
+     */
+    @Builder.Default
+    private final long maxEjectionMillis = 300_000;
+
+    /**
+     * 会话亲和记录的数量上限，超出时淘汰最久未使用的记录
+     */
+    @Builder.Default
+    private final int maxAffinityEntries = 100_000;
+
+    /**
+     * 状态码是否计为失败
+     *
+     * @param statusCode HTTP状态码
+     * @return 是否计为失败
+     */
+    public boolean isFailureStatus(int statusCode) {
+        return statusCode >= 500 || statusCode == 429;
+    }
+
+    /**
+     * 异常是否计为失败，解码失败与其他客户端异常不计入
+     *
+     * @param error 异常
+     * @return 是否计为失败
+     */
+    public boolean isFailure(Throwable error) {
+        if (error instanceof DifyApiException) {
+            return isFailureStatus(((DifyApiException) error).getStatusCode());
+        }
+        return error instanceof IOException && !(error instanceof DifyDecodeException);
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.imfangs.dify.client.transport;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 单个令牌桶的限流速率，不可变
+ */
+@Getter
+@ToString
+public final class RateLimit {
+
+    /**
+     * 每秒补充的令牌数
+     */
+    private final double permitsPerSecond;
+
+    /**
+     * 桶容量，即允许的突发请求数
+     */
+    private final int burst;
+
+    private RateLimit(double permitsPerSecond, int burst) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * 创建限流速率
+     *
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @param burst            允许的突发请求数
+     * @return 限流速率
+     */
+    public static RateLimit of(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst <= 0) {
+            throw new IllegalArgumentException("限流速率参数无效: " + permitsPerSecond + "/s, burst=" + burst);
+        }
+        return new RateLimit(permitsPerSecond, burst);
+    }
+
+    /**
+     * 创建突发请求数等于每秒速率的限流速率
+     *
+     * @param permitsPerSecond 每秒补充的令牌数
+     * @return 限流速率
+     */
+    public static RateLimit perSecond(int permitsPerSecond) {
+        return of(permitsPerSecond, permitsPerSecond);
+    }
+}
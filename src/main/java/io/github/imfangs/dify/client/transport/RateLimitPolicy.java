@@ -0,0 +1,57 @@
+package io.github.imfangs.dify.client.transport;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+
+import java.util.Map;
+
+/**
+ * 客户端限流策略
+ * <p>
+ * 一次请求需要同时从以下令牌桶取得令牌，未配置的层级不限流：
+ * <ul>
+ *     <li>每个API密钥一个桶：{@link #apiKeyLimit}</li>
+ *     <li>每个API密钥的每个接口类别一个桶：{@link #endpointLimits}</li>
+ *     <li>每个API密钥的每个终端用户一个桶：{@link #userLimit}，用户取自请求体或查询参数中的 {@code user} 字段</li>
+ * </ul>
+ * 令牌不足时，等待时间不超过 {@link #maxWaitMillis} 则等待后发送，否则立即抛出
+ * {@link io.github.imfangs.dify.client.exception.DifyRateLimitedException}。
+ */
+@Getter
+@Builder
+public final class RateLimitPolicy {
+
+    /**
+     * 默认终端用户令牌桶数量上限
+     */
+    public static final int DEFAULT_MAX_USER_BUCKETS = 100_000;
+
+    /**
+     * 每个API密钥的限流速率，为 null 时不限
+     */
+    private final RateLimit apiKeyLimit;
+
+    /**
+     * 每个API密钥按接口类别的限流速率，未配置的类别不限
+     */
+    @Singular
+    private final Map<EndpointClass, RateLimit> endpointLimits;
+
+    /**
+     * 每个终端用户的限流速率，为 null 时不按用户限流
+     */
+    private final RateLimit userLimit;
+
+    /**
+     * 令牌不足时最长等待时间（毫秒），0 表示不等待立即拒绝
+     */
+    @Builder.Default
+    private final long maxWaitMillis = 0;
+
+    /**
+     * 终端用户令牌桶数量上限，超过时淘汰最久未使用的桶
+     */
+    @Builder.Default
+    private final int maxUserBuckets = DEFAULT_MAX_USER_BUCKETS;
+}
@@ -0,0 +1,214 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyRateLimitedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 客户端限流器
+ * <p>
+ * 按 {@link RateLimitPolicy} 为API密钥、接口类别与终端用户分别维护令牌桶，请求在发送前需同时取得各层令牌，
+ * 以免突发流量撞上服务端的应用级限流、白白消耗一次往返。令牌桶采用 GCRA 算法，状态只有一个理论到达时间，
+ * 以 {@link AtomicLong} 无锁更新；多层取令牌时若某层不足，已取得的令牌会归还。
+ * 终端用户的桶保存在分段加锁的有界LRU映射中，用户数量再多也不会无限增长。
+ * <p>
+ * 提供三种取令牌方式：不等待的 {@link #tryAcquire}、返回需等待时间的 {@link #reserve}，
+ * 以及等待在计时线程上完成、不占用调用线程的 {@link #acquireAsync}。可在多个客户端之间共享。
+ */
+public final class RateLimiter {
+
+    /**
+     * API密钥与接口类别令牌桶的数量上限
+     */
+    private static final int MAX_SHARED_BUCKETS = 4096;
+
+    private final RateLimitPolicy policy;
+    private final long maxWaitNanos;
+    private final StripedLruMap<String, Bucket> sharedBuckets = new StripedLruMap<>(MAX_SHARED_BUCKETS);
+    private final StripedLruMap<String, Bucket> userBuckets;
+
+    /**
+     * 构造函数
+     *
+     * @param policy 限流策略
+     */
+    public RateLimiter(RateLimitPolicy policy) {
+        if (policy.getMaxWaitMillis() < 0) {
+            throw new IllegalArgumentException("最长等待时间不能为负数: " + policy.getMaxWaitMillis());
+        }
+        this.policy = policy;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(policy.getMaxWaitMillis());
+        this.userBuckets = policy.getUserLimit() != null ? new StripedLruMap<>(policy.getMaxUserBuckets()) : null;
+    }
+
+    /**
+     * 获取限流策略
+     *
+     * @return 限流策略
+     */
+    public RateLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 是否按终端用户限流
+     *
+     * @return 是否按终端用户限流
+     */
+    public boolean isPerUser() {
+        return userBuckets != null;
+    }
+
+    /**
+     * 尝试立即取得令牌，不等待
+     *
+     * @param apiKey API密钥
+     * @param path   请求路径（不含API基础URL的路径前缀）
+     * @param user   终端用户，没有时为 null
+     * @return 是否取得令牌
+     */
+    public boolean tryAcquire(String apiKey, String path, String user) {
+        return reserve(apiKey, EndpointClass.of(path), user, 0) == 0;
+    }
+
+    /**
+     * 预订令牌，调用方需在返回的时间之后再发送请求
+     *
+     * @param apiKey API密钥
+     * @param path   请求路径（不含API基础URL的路径前缀）
+     * @param user   终端用户，没有时为 null
+     * @return 需等待的时间（纳秒），0 表示可立即发送
+     * @throws DifyRateLimitedException 所需等待时间超过策略允许的最长等待时间
+     */
+    public long reserve(String apiKey, String path, String user) throws DifyRateLimitedException {
+        EndpointClass endpointClass = EndpointClass.of(path);
+        long wait = reserve(apiKey, endpointClass, user, maxWaitNanos);
+        if (wait < 0) {
+            long retryAfterMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(-wait - 1));
+            throw new DifyRateLimitedException("客户端限流: " + endpointClass + (user != null ? ", user=" + user : ""), retryAfterMillis);
+        }
+        return wait;
+    }
+
+    /**
+     * 异步取得令牌，需要等待时在计时线程上完成
+     *
+     * @param apiKey API密钥
+     * @param path   请求路径（不含API基础URL的路径前缀）
+     * @param user   终端用户，没有时为 null
+     * @return 取得令牌时完成；超过最长等待时间时以 {@link DifyRateLimitedException} 异常完成
+     */
+    public CompletableFuture<Void> acquireAsync(String apiKey, String path, String user) {
+        long wait;
+        try {
+            wait = reserve(apiKey, path, user);
+        } catch (DifyRateLimitedException e) {
+            CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+        if (wait == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> acquired = new CompletableFuture<>();
+        Timer.INSTANCE.schedule(() -> acquired.complete(null), wait, TimeUnit.NANOSECONDS);
+        return acquired;
+    }
+
+    /**
+     * 从各层令牌桶预订令牌
+     *
+     * @return 需等待的时间（纳秒）；被拒绝时为所需等待时间的相反数减一，且不占用任何令牌
+     */
+    private long reserve(String apiKey, EndpointClass endpointClass, String user, long maxWait) {
+        String key = apiKey != null ? apiKey : "";
+        Bucket[] buckets = new Bucket[3];
+        int count = 0;
+        if (policy.getApiKeyLimit() != null) {
+            buckets[count++] = sharedBuckets.computeIfAbsent(key, k -> new Bucket(policy.getApiKeyLimit()));
+        }
+        RateLimit endpointLimit = policy.getEndpointLimits().get(endpointClass);
+        if (endpointLimit != null) {
+            buckets[count++] = sharedBuckets.computeIfAbsent(key + '\u0000' + endpointClass.name(), k -> new Bucket(endpointLimit));
+        }
+        if (userBuckets != null && user != null) {
+            buckets[count++] = userBuckets.computeIfAbsent(key + '\u0000' + user, k -> new Bucket(policy.getUserLimit()));
+        }
+
+        long now = System.nanoTime();
+        long wait = 0;
+        for (int i = 0; i < count; i++) {
+            long bucketWait = buckets[i].reserve(now, maxWait);
+            if (bucketWait > maxWait) {
+                for (int j = 0; j < i; j++) {
+                    buckets[j].refund();
+                }
+                return -bucketWait - 1;
+            }
+            wait = Math.max(wait, bucketWait);
+        }
+        return wait;
+    }
+
+    /**
+     * GCRA 令牌桶
+     * 理论到达时间 tat 之前最多容许 (burst - 1) 个间隔的提前量，超出部分即需要等待的时间
+     */
+    private static final class Bucket {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong theoreticalArrival;
+
+        private Bucket(RateLimit limit) {
+            this.intervalNanos = Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / limit.getPermitsPerSecond()));
+            this.toleranceNanos = (limit.getBurst() - 1) * intervalNanos;
+            this.theoreticalArrival = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * 预订一个令牌
+         *
+         * @param now     当前时间（纳秒）
+         * @param maxWait 最长等待时间（纳秒）
+         * @return 需等待的时间，超过 maxWait 时不预订
+         */
+        private long reserve(long now, long maxWait) {
+            while (true) {
+                long current = theoreticalArrival.get();
+                long start = current - now > 0 ? current : now;
+                long wait = Math.max(0, start - now - toleranceNanos);
+                if (wait > maxWait) {
+                    return wait;
+                }
+                if (theoreticalArrival.compareAndSet(current, start + intervalNanos)) {
+                    return wait;
+                }
+            }
+        }
+
+        private void refund() {
+            theoreticalArrival.addAndGet(-intervalNanos);
+        }
+    }
+
+    /**
+     * 异步等待令牌的计时线程
+     */
+    private static final class Timer {
+        private static final ScheduledExecutorService INSTANCE = createTimer();
+
+        private static ScheduledExecutorService createTimer() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "dify-rate-limiter");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            return executor;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.imfangs.dify.client.transport;
+
+import lombok.Getter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 负载均衡中的一个服务副本
+ * <p>
+ * 阻塞与流式请求的在途数分别计数，两类流量各自按最少在途请求均衡，长时间占用连接的流不会挤占阻塞请求的选择。
+ * 摘除状态只有一个截止时间，为 0 表示健康；截止时间过后由第一个到达的请求作为探测请求发送。
+ * {@link #getBlockingInFlight()}、{@link #getStreamingInFlight()} 与 {@link #isEjected()} 可直接注册为监控系统的 gauge。
+ */
+public final class Replica {
+
+    /**
+     * API基础URL
+     */
+    @Getter
+    private final String baseUrl;
+    private final AtomicInteger blockingInFlight = new AtomicInteger();
+    private final AtomicInteger streamingInFlight = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private final LongAdder ejections = new LongAdder();
+    private volatile long ejectedUntilNanos;
+    private int ejectionStreak;
+
+    Replica(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * 在途阻塞请求数
+     *
+     * @return 在途阻塞请求数
+     */
+    public int getBlockingInFlight() {
+        return blockingInFlight.get();
+    }
+
+    /**
+     * 在途流式请求数
+     *
+     * @return 在途流式请求数
+     */
+    public int getStreamingInFlight() {
+        return streamingInFlight.get();
+    }
+
+    /**
+     * 当前连续失败次数
+     *
+     * @return 连续失败次数
+     */
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * 累计被摘除的次数
+     *
+     * @return 摘除次数
+     */
+    public long getEjections() {
+        return ejections.sum();
+    }
+
+    /**
+     * 是否处于摘除状态，摘除时间已结束但探测请求尚未成功时仍为摘除
+     *
+     * @return 是否被摘除
+     */
+    public boolean isEjected() {
+        return ejectedUntilNanos != 0;
+    }
+
+    int inFlight(boolean streaming) {
+        return streaming ? streamingInFlight.get() : blockingInFlight.get();
+    }
+
+    void acquire(boolean streaming) {
+        (streaming ? streamingInFlight : blockingInFlight).incrementAndGet();
+    }
+
+    void release(boolean streaming) {
+        (streaming ? streamingInFlight : blockingInFlight).decrementAndGet();
+    }
+
+    /**
+     * 摘除时间已结束时尝试占用唯一的探测名额
+     */
+    boolean tryStartProbe(long now) {
+        long until = ejectedUntilNanos;
+        return until != 0 && now - until >= 0 && probing.compareAndSet(false, true);
+    }
+
+    void endProbe() {
+        probing.set(false);
+    }
+
+    /**
+     * 记录一次调用结果
+     *
+     * @return 是否因此发生摘除或恢复
+     */
+    synchronized boolean record(boolean failed, boolean probe, LoadBalancerPolicy policy) {
+        if (probe) {
+            probing.set(false);
+            if (failed) {
+                eject(policy);
+            } else {
+                ejectedUntilNanos = 0;
+                ejectionStreak = 0;
+                consecutiveFailures.set(0);
+            }
+            return true;
+        }
+        if (!failed) {
+            consecutiveFailures.set(0);
+            return false;
+        }
+        // 摘除前已发出的请求陆续失败时不再延长摘除时间
+        if (isEjected() || consecutiveFailures.incrementAndGet() < policy.getConsecutiveFailures()) {
+            return false;
+        }
+        eject(policy);
+        return true;
+    }
+
+    private void eject(LoadBalancerPolicy policy) {
+        long duration = policy.getBaseEjectionMillis() << Math.min(ejectionStreak, 20);
+        duration = Math.min(duration, Math.max(policy.getBaseEjectionMillis(), policy.getMaxEjectionMillis()));
+        ejectionStreak++;
+        ejections.increment();
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+        ejectedUntilNanos = until != 0 ? until : 1;
+    }
+
+    @Override
+    public String toString() {
+        return baseUrl;
+    }
+}
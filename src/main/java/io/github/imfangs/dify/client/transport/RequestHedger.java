@@ -0,0 +1,203 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.metrics.LatencyHistogram;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对冲请求的时延统计与预算
+ * <p>
+ * 按HTTP方法与接口模板分别统计时延，对冲延迟取窗口内的分位值，每秒至多重新计算一次，取延迟的路径只读取缓存值。
+ * 对冲预算复用 {@link RetryBudget} 的令牌桶：每个首次请求存入 {@link HedgingPolicy#getBudgetRatio()} 个令牌，
+ * 每次对冲取出一个。接口数量超过 {@link #MAX_ENDPOINTS} 后新接口合并到 {@link #OTHER_ENDPOINT}。可在多个客户端之间共享。
+ */
+public final class RequestHedger {
+
+    /**
+     * 接口数量上限
+     */
+    public static final int MAX_ENDPOINTS = 256;
+
+    /**
+     * 超出上限后合并使用的接口模板
+     */
+    public static final String OTHER_ENDPOINT = "other";
+
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final HedgingPolicy policy;
+    private final RetryBudget budget;
+    private final ConcurrentMap<String, EndpointLatency> latencies = new ConcurrentHashMap<>();
+    private final LongAdder hedged = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+
+    /**
+     * 构造函数
+     *
+     * @param policy 对冲策略
+     */
+    public RequestHedger(HedgingPolicy policy) {
+        if (policy.getPercentile() <= 0 || policy.getPercentile() > 100 || policy.getMinSamples() <= 0
+                || policy.getWindowMillis() <= 0 || policy.getMaxDelayMillis() < policy.getMinDelayMillis()) {
+            throw new IllegalArgumentException("对冲策略参数无效");
+        }
+        this.policy = policy;
+        this.budget = new RetryBudget(policy.getBudgetRatio(), 0, Math.max(1, policy.getMaxBurst()));
+    }
+
+    /**
+     * 获取对冲策略
+     *
+     * @return 对冲策略
+     */
+    public HedgingPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * 获取接口当前的对冲延迟
+     *
+     * @param method   HTTP方法
+     * @param endpoint 接口模板
+     * @return 延迟（纳秒），样本不足时为 -1
+     */
+    public long getDelayNanos(String method, String endpoint) {
+        return latency(method, endpoint).delayNanos(policy);
+    }
+
+    /**
+     * 记录一次成功请求的时延
+     *
+     * @param method       HTTP方法
+     * @param endpoint     接口模板
+     * @param latencyNanos 时延（纳秒）
+     */
+    public void record(String method, String endpoint, long latencyNanos) {
+        latency(method, endpoint).record(latencyNanos, policy);
+    }
+
+    /**
+     * 记录一次首次请求，存入对冲预算
+     */
+    public void onRequest() {
+        budget.onRequest();
+    }
+
+    /**
+     * 尝试取出一次对冲所需的预算
+     *
+     * @return 是否允许对冲
+     */
+    public boolean tryHedge() {
+        if (!budget.tryAcquire()) {
+            return false;
+        }
+        hedged.increment();
+        return true;
+    }
+
+    /**
+     * 记录一次对冲请求先于原请求成功
+     */
+    public void onHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    /**
+     * 累计发出的对冲请求数
+     *
+     * @return 对冲请求数
+     */
+    public long getHedged() {
+        return hedged.sum();
+    }
+
+    /**
+     * 累计先于原请求成功的对冲请求数
+     *
+     * @return 对冲成功数
+     */
+    public long getHedgeWins() {
+        return hedgeWins.sum();
+    }
+
+    /**
+     * 当前可用的对冲次数
+     *
+     * @return 可用次数
+     */
+    public double getAvailableBudget() {
+        return budget.getAvailable();
+    }
+
+    private EndpointLatency latency(String method, String endpoint) {
+        String key = method + ' ' + endpoint;
+        EndpointLatency latency = latencies.get(key);
+        if (latency != null) {
+            return latency;
+        }
+        if (latencies.size() >= MAX_ENDPOINTS) {
+            return latencies.computeIfAbsent(method + ' ' + OTHER_ENDPOINT, k -> new EndpointLatency());
+        }
+        return latencies.computeIfAbsent(key, k -> new EndpointLatency());
+    }
+
+    /**
+     * 单个接口的时延窗口
+     * 当前窗口到期后成为上一窗口，当前窗口样本不足时用上一窗口计算分位
+     */
+    private static final class EndpointLatency {
+        private volatile LatencyHistogram current = new LatencyHistogram();
+        private volatile LatencyHistogram previous;
+        private volatile long windowStartNanos = System.nanoTime();
+        private volatile long delayNanos = -1;
+        private volatile long refreshedNanos = System.nanoTime() - REFRESH_NANOS;
+
+        private void record(long latencyNanos, HedgingPolicy policy) {
+            long now = System.nanoTime();
+            if (now - windowStartNanos >= TimeUnit.MILLISECONDS.toNanos(policy.getWindowMillis())) {
+                rotate(now, policy);
+            }
+            current.record(latencyNanos);
+        }
+
+        private synchronized void rotate(long now, HedgingPolicy policy) {
+            if (now - windowStartNanos < TimeUnit.MILLISECONDS.toNanos(policy.getWindowMillis())) {
+                return;
+            }
+            previous = current;
+            current = new LatencyHistogram();
+            windowStartNanos = now;
+        }
+
+        private long delayNanos(HedgingPolicy policy) {
+            long now = System.nanoTime();
+            // 预热期内样本一够就立即计算，不等到下一次刷新
+            if (now - refreshedNanos >= REFRESH_NANOS || (delayNanos < 0 && current.getCount() >= policy.getMinSamples())) {
+                refresh(now, policy);
+            }
+            return delayNanos;
+        }
+
+        private synchronized void refresh(long now, HedgingPolicy policy) {
+            if (now - refreshedNanos < REFRESH_NANOS && delayNanos >= 0) {
+                return;
+            }
+            refreshedNanos = now;
+            LatencyHistogram histogram = current;
+            if (histogram.getCount() < policy.getMinSamples()) {
+                histogram = previous;
+            }
+            if (histogram == null || histogram.getCount() < policy.getMinSamples()) {
+                delayNanos = -1;
+                return;
+            }
+            long value = histogram.snapshot().getValueAtPercentile(policy.getPercentile());
+            delayNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(policy.getMinDelayMillis()),
+                    Math.min(TimeUnit.MILLISECONDS.toNanos(policy.getMaxDelayMillis()), value));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package io.github.imfangs.dify.client.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 重试预算，限制重试带来的请求放大
+ * <p>
+ * 令牌桶：每个首次请求存入 {@code ratio} 个令牌，每次重试取出一个令牌，另外每秒补充
+ * {@code minRetriesPerSecond} 个令牌保证低流量时也能重试，桶容量为 {@code maxTokens}。
+ * 服务端大面积失败时重试次数被限制在首次请求数的 {@code ratio} 倍左右，不会形成重试风暴。
+ * 令牌以千分之一为单位保存在 {@link AtomicLong} 中，存取均为无锁 CAS。
+ */
+public final class RetryBudget {
+
+    private static final long SCALE = 1000;
+    private static final long MAX_REFILL_INTERVAL_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private final long depositPerRequest;
+    private final long refillPerSecond;
+    private final long capacity;
+    private final AtomicLong tokens;
+    private final AtomicLong lastRefillNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * 构造函数
+     *
+     * @param ratio               每个首次请求存入的令牌数，即允许的重试占比，如 0.1
+     * @param minRetriesPerSecond 每秒补充的令牌数
+     * @param maxTokens           桶容量
+     */
+    public RetryBudget(double ratio, int minRetriesPerSecond, int maxTokens) {
+        if (ratio < 0 || minRetriesPerSecond < 0 || maxTokens <= 0) {
+            throw new IllegalArgumentException("重试预算参数无效");
+        }
+        this.depositPerRequest = Math.round(ratio * SCALE);
+        this.refillPerSecond = minRetriesPerSecond * SCALE;
+        this.capacity = maxTokens * SCALE;
+        this.tokens = new AtomicLong(capacity);
+    }
+
+    /**
+     * 记录一次首次请求，存入令牌
+     */
+    public void onRequest() {
+        add(depositPerRequest);
+    }
+
+    /**
+     * 尝试取出一次重试所需的令牌
+     *
+     * @return 是否允许重试
+     */
+    public boolean tryAcquire() {
+        refill();
+        while (true) {
+            long current = tokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (tokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 当前可用的重试次数
+     *
+     * @return 可用次数
+     */
+    public double getAvailable() {
+        refill();
+        return (double) tokens.get() / SCALE;
+    }
+
+    private void refill() {
+        if (refillPerSecond == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastRefillNanos.get();
+        // 长时间空闲时桶早已补满，截断间隔避免乘法溢出
+        long elapsed = Math.min(now - last, MAX_REFILL_INTERVAL_NANOS);
+        long amount = elapsed * refillPerSecond / TimeUnit.SECONDS.toNanos(1);
+        // 不足一个令牌时不推进时间，避免每次调用都竞争 CAS 且丢失零头
+        if (amount < SCALE) {
+            return;
+        }
+        if (lastRefillNanos.compareAndSet(last, now)) {
+            add(amount);
+        }
+    }
+
+    private void add(long amount) {
+        if (amount <= 0) {
+            return;
+        }
+        while (true) {
+            long current = tokens.get();
+            long next = Math.min(capacity, current + amount);
+            if (current == next || tokens.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+}
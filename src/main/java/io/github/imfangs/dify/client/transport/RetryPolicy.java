@@ -0,0 +1,196 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import lombok.Builder;
+import lombok.Getter;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 阻塞请求的重试策略
+ * <p>
+ * 只重试幂等请求：GET 以及客户端显式标记为幂等的 POST（如知识库检索），流式请求不重试。
+ * 是否重试由HTTP状态码与 {@link DifyApiException#getErrorCode()} 共同决定，
+ * 连接失败、超时等传输异常也会重试。退避采用 decorrelated jitter：
+ * {@code delay = min(maxDelay, random(baseDelay, previousDelay * 3))}，
+ * 服务端返回 {@code Retry-After} 时按其等待，超过 {@link #maxRetryAfterMillis} 则放弃重试。
+ * 每次重试还需从 {@link RetryBudget} 取得令牌，预算耗尽时直接返回最后一次失败。
+ */
+@Getter
+@Builder
+public final class RetryPolicy {
+
+    /**
+     * 默认可重试的HTTP状态码
+     */
+    public static final Set<Integer> DEFAULT_RETRYABLE_STATUSES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(408, 429, 500, 502, 503, 504)));
+
+    /**
+     * 默认不重试的错误码：配额耗尽等重试也无法恢复的错误，即使状态码可重试
+     */
+    public static final Set<String> DEFAULT_NON_RETRYABLE_ERROR_CODES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("provider_quota_exceeded", "quota_exceeded")));
+
+    private static final RetryPolicy NONE = RetryPolicy.builder().maxAttempts(1).build();
+
+    /**
+     * 最大尝试次数（含首次请求），1 表示不重试
+     */
+    @Builder.Default
+    private final int maxAttempts = 3;
+
+    /**
+     * 退避基础时间（毫秒）
+     */
+    @Builder.Default
+    private final long baseDelayMillis = 100;
+
+    /**
+     * 退避上限（毫秒）
+     */
+    @Builder.Default
+    private final long maxDelayMillis = 10_000;
+
+    /**
+     * 愿意等待的 Retry-After 上限（毫秒），超过时不再重试
+     */
+    @Builder.Default
+    private final long maxRetryAfterMillis = 30_000;
+
+    /**
+     * 可重试的HTTP状态码
+     */
+    @Builder.Default
+    private final Set<Integer> retryableStatuses = DEFAULT_RETRYABLE_STATUSES;
+
+    /**
+     * 额外可重试的错误码，状态码不在 {@link #retryableStatuses} 中时也重试
+     */
+    @Builder.Default
+    private final Set<String> retryableErrorCodes = Collections.emptySet();
+
+    /**
+     * 不重试的错误码，优先于状态码判断
+     */
+    @Builder.Default
+    private final Set<String> nonRetryableErrorCodes = DEFAULT_NON_RETRYABLE_ERROR_CODES;
+
+    /**
+     * 是否重试连接失败、超时等传输异常
+     */
+    @Builder.Default
+    private final boolean retryOnConnectionFailure = true;
+
+    /**
+     * 重试预算，同一策略实例的所有客户端共享
+     */
+    @Builder.Default
+    private final RetryBudget budget = new RetryBudget(0.1, 10, 100);
+
+    /**
+     * 获取不重试的策略
+     *
+     * @return 策略
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * 是否启用重试
+     *
+     * @return 是否启用
+     */
+    public boolean isEnabled() {
+        return maxAttempts > 1;
+    }
+
+    /**
+     * API错误是否可重试
+     *
+     * @param statusCode HTTP状态码
+     * @param errorCode  错误码，可为 null
+     * @return 是否可重试
+     */
+    public boolean isRetryable(int statusCode, String errorCode) {
+        if (errorCode != null) {
+            if (nonRetryableErrorCodes.contains(errorCode)) {
+                return false;
+            }
+            if (retryableErrorCodes.contains(errorCode)) {
+                return true;
+            }
+        }
+        return retryableStatuses.contains(statusCode);
+    }
+
+    /**
+     * 传输异常是否可重试：解码失败、中断、未知主机与TLS错误不重试，超时与连接失败可重试
+     *
+     * @param error 异常
+     * @return 是否可重试
+     */
+    public boolean isRetryable(IOException error) {
+        if (!retryOnConnectionFailure || error instanceof DifyDecodeException
+                || error instanceof UnknownHostException || error instanceof SSLException) {
+            return false;
+        }
+        // 被取消的调用由调用方转换为 InterruptedIOException，与中断一样不重试
+        if (error instanceof InterruptedIOException) {
+            return error instanceof SocketTimeoutException;
+        }
+        return true;
+    }
+
+    /**
+     * 计算下一次退避时间
+     *
+     * @param previousDelayMillis 上一次退避时间，首次重试传 0
+     * @return 退避时间（毫秒）
+     */
+    public long nextDelayMillis(long previousDelayMillis) {
+        long upper = Math.max(baseDelayMillis, previousDelayMillis * 3);
+        long delay = upper > baseDelayMillis ? ThreadLocalRandom.current().nextLong(baseDelayMillis, upper + 1) : baseDelayMillis;
+        return Math.min(maxDelayMillis, delay);
+    }
+
+    /**
+     * 解析 Retry-After 响应头，支持秒数与HTTP日期两种格式
+     *
+     * @param value 响应头的值
+     * @return 等待时间（毫秒），无法解析时返回 -1
+     */
+    public static long parseRetryAfterMillis(String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            long seconds = Long.parseLong(trimmed);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException e) {
+            // 不是秒数，按HTTP日期解析
+        }
+        try {
+            long millis = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                    - System.currentTimeMillis();
+            return Math.max(0, millis);
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
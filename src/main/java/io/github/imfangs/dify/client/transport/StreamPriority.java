@@ -0,0 +1,16 @@
+package io.github.imfangs.dify.client.transport;
+
+/**
+ * 流式请求调度优先级
+ */
+public enum StreamPriority {
+    /**
+     * 交互式流，如对话与文本生成，等待首个 token 的是终端用户
+     */
+    INTERACTIVE,
+
+    /**
+     * 后台批处理流，如工作流批量执行
+     */
+    BACKGROUND
+}
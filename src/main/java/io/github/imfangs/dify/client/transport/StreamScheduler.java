@@ -0,0 +1,476 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyStreamRejectedException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 流式请求调度器
+ * <p>
+ * 显式控制每主机与全局的并发流数量，替代 OkHttp Dispatcher 隐式的每主机 5 个并发限制。
+ * 饱和时按 {@link SaturationPolicy} 排队、快速拒绝或溢出到备用主机；排队时交互式流优先于后台流。
+ * 调度只发生在流开始与结束时，不在逐 token 的热路径上。
+ */
+@Slf4j
+public final class StreamScheduler {
+
+    /**
+     * 默认每主机最大并发流数量
+     */
+    public static final int DEFAULT_MAX_STREAMS_PER_HOST = 64;
+
+    /**
+     * 默认全局最大并发流数量
+     */
+    public static final int DEFAULT_MAX_STREAMS_TOTAL = 256;
+
+    /**
+     * 默认最大排队数量
+     */
+    public static final int DEFAULT_MAX_QUEUE_DEPTH = 1024;
+
+    private static final StreamScheduler DEFAULT = new StreamScheduler(
+            DEFAULT_MAX_STREAMS_PER_HOST, DEFAULT_MAX_STREAMS_TOTAL, SaturationPolicy.QUEUE, DEFAULT_MAX_QUEUE_DEPTH);
+
+    /**
+     * 饱和策略
+     */
+    public enum SaturationPolicy {
+        /**
+         * 排队等待空闲名额
+         */
+        QUEUE,
+
+        /**
+         * 立即拒绝
+         */
+        REJECT,
+
+        /**
+         * 优先溢出到备用主机，备用主机也饱和时排队
+         */
+        SPILLOVER
+    }
+
+    /**
+     * 流启动器，获得名额后调用
+     */
+    @FunctionalInterface
+    public interface StreamStarter {
+        /**
+         * 启动流，流结束时必须调用 {@link Ticket#release()}
+         *
+         * @param ticket 调度凭证
+         */
+        void start(Ticket ticket);
+    }
+
+    private final int maxStreamsPerHost;
+    private final int maxStreamsTotal;
+    private final SaturationPolicy policy;
+    private final int maxQueueDepth;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Integer> activeByHost = new HashMap<>();
+    private final Deque<Waiter> interactiveQueue = new ArrayDeque<>();
+    private final Deque<Waiter> backgroundQueue = new ArrayDeque<>();
+    private int activeTotal;
+
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong spilloverCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+    /**
+     * 构造函数
+     *
+     * @param maxStreamsPerHost 每主机最大并发流数量
+     * @param maxStreamsTotal   全局最大并发流数量
+     * @param policy            饱和策略
+     * @param maxQueueDepth     最大排队数量，超出时拒绝
+     */
+    public StreamScheduler(int maxStreamsPerHost, int maxStreamsTotal, SaturationPolicy policy, int maxQueueDepth) {
+        if (maxStreamsPerHost <= 0 || maxStreamsTotal <= 0 || maxQueueDepth < 0) {
+            throw new IllegalArgumentException("并发流上限必须为正数，排队数量不能为负数");
+        }
+        this.maxStreamsPerHost = maxStreamsPerHost;
+        this.maxStreamsTotal = maxStreamsTotal;
+        this.policy = policy;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * 获取进程级默认调度器
+     *
+     * @return 默认调度器
+     */
+    public static StreamScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 提交流式请求
+     * 有空闲名额时在当前线程立即启动；排队的请求在其他流释放名额的线程上启动
+     *
+     * @param baseUrl          主机API基础URL
+     * @param spilloverBaseUrl 备用主机API基础URL，可为null
+     * @param priority         优先级
+     * @param starter          流启动器
+     * @param rejectionHandler 拒绝处理器
+     * @return 等待者，排队期间可通过 {@link Waiter#cancel()} 撤回；立即启动或被拒绝时撤回无效
+     */
+    public Waiter submit(String baseUrl, String spilloverBaseUrl, StreamPriority priority,
+                         StreamStarter starter, Consumer<DifyStreamRejectedException> rejectionHandler) {
+        String host = HttpTransportRegistry.hostKey(baseUrl);
+        String spilloverHost = spilloverBaseUrl != null ? HttpTransportRegistry.hostKey(spilloverBaseUrl) : null;
+        Waiter waiter = new Waiter(baseUrl, host, spilloverBaseUrl, spilloverHost, priority, starter, System.nanoTime());
+        Ticket ticket = null;
+        String rejection = null;
+
+        lock.lock();
+        try {
+            if (tryAcquire(host)) {
+                ticket = new Ticket(host, baseUrl, false, 0L);
+            } else if (policy == SaturationPolicy.SPILLOVER && spilloverHost != null && tryAcquire(spilloverHost)) {
+                ticket = new Ticket(spilloverHost, spilloverBaseUrl, true, 0L);
+                spilloverCount.incrementAndGet();
+            } else if (policy == SaturationPolicy.REJECT) {
+                rejection = "并发流已达上限: host=" + host + ", active=" + activeByHost.getOrDefault(host, 0) + ", total=" + activeTotal;
+            } else if (queueDepthLocked() >= maxQueueDepth) {
+                rejection = "流式请求排队已满: queueDepth=" + queueDepthLocked();
+            } else {
+                queueOf(priority).addLast(waiter);
+                queuedCount.incrementAndGet();
+                log.debug("流式请求排队: host={}, priority={}, queueDepth={}", host, priority, queueDepthLocked());
+                return waiter;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (ticket != null) {
+            admittedCount.incrementAndGet();
+            start(starter, ticket);
+        } else {
+            rejectedCount.incrementAndGet();
+            rejectionHandler.accept(new DifyStreamRejectedException(rejection));
+        }
+        return waiter;
+    }
+
+    private Deque<Waiter> queueOf(StreamPriority priority) {
+        return priority == StreamPriority.INTERACTIVE ? interactiveQueue : backgroundQueue;
+    }
+
+    /**
+     * 从队列中撤回等待者，已取得名额或不在队列中时返回false
+     */
+    private boolean withdraw(Waiter waiter) {
+        lock.lock();
+        try {
+            if (!queueOf(waiter.priority).remove(waiter)) {
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        // 撤回的等待时间同样计入，保持平均排队时间的分母一致
+        long waited = System.nanoTime() - waiter.enqueuedAt;
+        totalQueueWaitNanos.addAndGet(waited);
+        maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+        log.debug("流式请求在排队期间被撤回: host={}, waited={}ms", waiter.host, waited / 1_000_000);
+        return true;
+    }
+
+    private boolean tryAcquire(String host) {
+        int active = activeByHost.getOrDefault(host, 0);
+        if (activeTotal >= maxStreamsTotal || active >= maxStreamsPerHost) {
+            return false;
+        }
+        activeByHost.put(host, active + 1);
+        activeTotal++;
+        return true;
+    }
+
+    private void release(String host) {
+        Waiter next;
+        Ticket nextTicket = null;
+        lock.lock();
+        try {
+            int active = activeByHost.getOrDefault(host, 0) - 1;
+            if (active <= 0) {
+                activeByHost.remove(host);
+            } else {
+                activeByHost.put(host, active);
+            }
+            activeTotal--;
+
+            next = pollRunnable(interactiveQueue);
+            if (next == null) {
+                next = pollRunnable(backgroundQueue);
+            }
+            if (next != null) {
+                nextTicket = next.ticket;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (next != null) {
+            long waited = System.nanoTime() - next.enqueuedAt;
+            nextTicket.queueWaitNanos = waited;
+            totalQueueWaitNanos.addAndGet(waited);
+            maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+            admittedCount.incrementAndGet();
+            start(next.starter, nextTicket);
+        }
+    }
+
+    /**
+     * 取出队列中第一个主机有空闲名额的等待者，并为其占用名额
+     */
+    private Waiter pollRunnable(Deque<Waiter> queue) {
+        for (Iterator<Waiter> it = queue.iterator(); it.hasNext(); ) {
+            Waiter waiter = it.next();
+            if (tryAcquire(waiter.host)) {
+                waiter.ticket = new Ticket(waiter.host, waiter.baseUrl, false, 0L);
+            } else if (policy == SaturationPolicy.SPILLOVER && waiter.spilloverHost != null && tryAcquire(waiter.spilloverHost)) {
+                waiter.ticket = new Ticket(waiter.spilloverHost, waiter.spilloverBaseUrl, true, 0L);
+                spilloverCount.incrementAndGet();
+            } else {
+                continue;
+            }
+            it.remove();
+            return waiter;
+        }
+        return null;
+    }
+
+    private void start(StreamStarter starter, Ticket ticket) {
+        try {
+            starter.start(ticket);
+        } catch (RuntimeException e) {
+            ticket.release();
+            throw e;
+        }
+    }
+
+    private int queueDepthLocked() {
+        return interactiveQueue.size() + backgroundQueue.size();
+    }
+
+    /**
+     * 每主机最大并发流数量
+     *
+     * @return 上限
+     */
+    public int getMaxStreamsPerHost() {
+        return maxStreamsPerHost;
+    }
+
+    /**
+     * 全局最大并发流数量
+     *
+     * @return 上限
+     */
+    public int getMaxStreamsTotal() {
+        return maxStreamsTotal;
+    }
+
+    /**
+     * 当前活跃流数量
+     *
+     * @return 活跃流数量
+     */
+    public int getActiveStreams() {
+        lock.lock();
+        try {
+            return activeTotal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 指定主机的活跃流数量
+     *
+     * @param baseUrl API基础URL
+     * @return 活跃流数量
+     */
+    public int getActiveStreams(String baseUrl) {
+        lock.lock();
+        try {
+            return activeByHost.getOrDefault(HttpTransportRegistry.hostKey(baseUrl), 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前排队数量
+     *
+     * @return 排队数量
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queueDepthLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 累计获得名额的流数量
+     *
+     * @return 数量
+     */
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    /**
+     * 累计排队过的流数量
+     *
+     * @return 数量
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * 累计被拒绝的流数量
+     *
+     * @return 数量
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * 累计溢出到备用主机的流数量
+     *
+     * @return 数量
+     */
+    public long getSpilloverCount() {
+        return spilloverCount.get();
+    }
+
+    /**
+     * 排队流的平均等待时间（毫秒）
+     *
+     * @return 平均等待时间，无排队时为0
+     */
+    public double getAverageQueueWaitMillis() {
+        long queued = queuedCount.get() - getQueueDepth();
+        return queued > 0 ? totalQueueWaitNanos.get() / 1_000_000.0 / queued : 0.0;
+    }
+
+    /**
+     * 排队流的最大等待时间（毫秒）
+     *
+     * @return 最大等待时间
+     */
+    public double getMaxQueueWaitMillis() {
+        return maxQueueWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * 调度凭证，代表一个已占用的并发名额
+     */
+    public final class Ticket {
+        private final String host;
+        private final String baseUrl;
+        private final boolean spillover;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long queueWaitNanos;
+
+        private Ticket(String host, String baseUrl, boolean spillover, long queueWaitNanos) {
+            this.host = host;
+            this.baseUrl = baseUrl;
+            this.spillover = spillover;
+            this.queueWaitNanos = queueWaitNanos;
+        }
+
+        /**
+         * 实际使用的API基础URL，溢出时为备用主机
+         *
+         * @return API基础URL
+         */
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        /**
+         * 是否溢出到备用主机
+         *
+         * @return 是否溢出
+         */
+        public boolean isSpillover() {
+            return spillover;
+        }
+
+        /**
+         * 排队等待时间（纳秒），未排队时为0
+         *
+         * @return 等待时间
+         */
+        public long getQueueWaitNanos() {
+            return queueWaitNanos;
+        }
+
+        /**
+         * 释放名额并唤醒下一个排队的流，重复调用无副作用
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                StreamScheduler.this.release(host);
+            }
+        }
+    }
+
+    /**
+     * 一次提交，排队期间可撤回
+     */
+    public final class Waiter {
+        private final String baseUrl;
+        private final String host;
+        private final String spilloverBaseUrl;
+        private final String spilloverHost;
+        private final StreamPriority priority;
+        private final StreamStarter starter;
+        private final long enqueuedAt;
+        private Ticket ticket;
+
+        private Waiter(String baseUrl, String host, String spilloverBaseUrl, String spilloverHost,
+                       StreamPriority priority, StreamStarter starter, long enqueuedAt) {
+            this.baseUrl = baseUrl;
+            this.host = host;
+            this.spilloverBaseUrl = spilloverBaseUrl;
+            this.spilloverHost = spilloverHost;
+            this.priority = priority;
+            this.starter = starter;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * 撤回仍在排队的提交，撤回后启动器与拒绝处理器都不会再被调用
+         *
+         * @return 是否撤回成功，已启动、已被拒绝或已撤回时返回false
+         */
+        public boolean cancel() {
+            return withdraw(this);
+        }
+    }
+}
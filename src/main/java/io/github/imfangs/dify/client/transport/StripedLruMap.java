@@ -0,0 +1,124 @@
+package io.github.imfangs.dify.client.transport;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 分段加锁的有界LRU映射
+ * <p>
+ * 按键的哈希分为固定数量的段，每段是一个按访问顺序排列的 {@link LinkedHashMap}，由段自身加锁；
+ * 段满时淘汰该段最久未访问的条目。不同段之间互不阻塞，总条目数不超过容量。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+final class StripedLruMap<K, V> {
+
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+
+    /**
+     * 构造函数
+     *
+     * @param capacity 总容量
+     */
+    @SuppressWarnings("unchecked")
+    StripedLruMap(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("容量必须大于0: " + capacity);
+        }
+        int count = 1;
+        // 每段至少保留16个条目，避免小容量时段内淘汰过于频繁
+        while (count < MAX_STRIPES && count * 2 * 16 <= capacity) {
+            count *= 2;
+        }
+        stripes = new Stripe[count];
+        int perStripe = Math.max(1, capacity / count);
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>(perStripe);
+        }
+        mask = count - 1;
+    }
+
+    /**
+     * 获取值，不存在时创建，并标记为最近访问
+     *
+     * @param key     键
+     * @param factory 值工厂
+     * @return 值
+     */
+    V computeIfAbsent(K key, Function<? super K, ? extends V> factory) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            V value = stripe.get(key);
+            if (value == null) {
+                value = factory.apply(key);
+                stripe.put(key, value);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 获取值并标记为最近访问
+     *
+     * @param key 键
+     * @return 值，不存在时为 null
+     */
+    V get(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    /**
+     * 写入值，段满时淘汰该段最久未访问的条目
+     *
+     * @param key   键
+     * @param value 值
+     */
+    void put(K key, V value) {
+        Stripe<K, V> stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    /**
+     * 当前条目数
+     *
+     * @return 条目数
+     */
+    int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
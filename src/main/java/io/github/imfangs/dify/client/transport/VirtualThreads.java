@@ -0,0 +1,66 @@
+package io.github.imfangs.dify.client.transport;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程支持
+ * <p>
+ * 基础版本面向 Java 8 编译，通过反射探测 Java 21 的虚拟线程 API；
+ * 在 JDK 21+ 上构建时，多版本 JAR 中 {@code META-INF/versions/21} 下的同名类会直接调用该 API 替换本实现。
+ */
+@Slf4j
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL = findOfVirtual();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程
+     *
+     * @return 是否支持
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * 创建每任务一个虚拟线程的执行器
+     *
+     * @param namePrefix 线程名前缀
+     * @return 执行器
+     * @throws UnsupportedOperationException 运行时不支持虚拟线程
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        if (OF_VIRTUAL == null) {
+            throw new UnsupportedOperationException("当前运行时不支持虚拟线程，需要 Java 21+");
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("创建虚拟线程执行器失败", e);
+        }
+    }
+
+    private static Method findOfVirtual() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            // Java 19/20 中虚拟线程为预览特性，未启用时调用会抛出 UnsupportedOperationException
+            ofVirtual.invoke(null);
+            return ofVirtual;
+        } catch (Exception e) {
+            log.debug("当前运行时不支持虚拟线程: {}", e.toString());
+            return null;
+        }
+    }
+}
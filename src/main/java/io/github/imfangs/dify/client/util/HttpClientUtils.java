@@ -1,5 +1,6 @@
 package io.github.imfangs.dify.client.util;
 
+import io.github.imfangs.dify.client.metrics.CallTimingListener;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 
@@ -14,21 +15,33 @@ public class HttpClientUtils {
      */
     public static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
 
+    /**
+     * 默认连接超时时间（毫秒）
+     */
+    public static final int DEFAULT_CONNECT_TIMEOUT = 30000;
+
+    /**
+     * 默认读取超时时间（毫秒）
+     */
+    public static final int DEFAULT_READ_TIMEOUT = 60000;
+
+    /**
+     * 默认写入超时时间（毫秒）
+     */
+    public static final int DEFAULT_WRITE_TIMEOUT = 60000;
+
     /**
      * 创建默认的OkHttpClient
      *
      * @return OkHttpClient实例
      */
     public static OkHttpClient createDefaultClient() {
-        return new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
-                .writeTimeout(60, TimeUnit.SECONDS)
-                .build();
+        return createClient(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_WRITE_TIMEOUT);
     }
 
     /**
      * 创建自定义超时时间的OkHttpClient
+     * 默认安装 {@link CallTimingListener}，记录被采样请求的连接阶段耗时
      *
      * @param connectTimeout 连接超时时间（毫秒）
      * @param readTimeout    读取超时时间（毫秒）
@@ -40,6 +53,7 @@ public class HttpClientUtils {
                 .connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
                 .readTimeout(readTimeout, TimeUnit.MILLISECONDS)
                 .writeTimeout(writeTimeout, TimeUnit.MILLISECONDS)
+                .eventListenerFactory(CallTimingListener.factory())
                 .build();
     }
 }
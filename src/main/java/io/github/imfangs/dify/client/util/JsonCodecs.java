@@ -0,0 +1,230 @@
+package io.github.imfangs.dify.client.util;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * JSON编解码器注册表
+ * <p>
+ * 按类型缓存预先解析好根序列化器/反序列化器的 {@link ObjectReader} 与 {@link ObjectWriter}，
+ * 避免每次调用重新查找根类型。首次创建客户端时在后台线程预热模型包与事件包下的顶层类型。
+ */
+@Slf4j
+public final class JsonCodecs {
+
+    /**
+     * 预热扫描的包
+     */
+    private static final String[] WARM_UP_PACKAGES = {
+            "io.github.imfangs.dify.client.model",
+            "io.github.imfangs.dify.client.event"
+    };
+
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+    private static final AtomicBoolean WARMED_UP = new AtomicBoolean();
+    private static final CountDownLatch WARM_UP_DONE = new CountDownLatch(1);
+
+    private JsonCodecs() {
+    }
+
+    /**
+     * 获取指定类型的读取器
+     *
+     * @param clazz 目标类型
+     * @return 读取器
+     */
+    public static ObjectReader reader(Class<?> clazz) {
+        return READERS.computeIfAbsent(clazz, type -> JsonUtils.getObjectMapper().readerFor(type));
+    }
+
+    /**
+     * 获取指定根类型的写入器
+     *
+     * @param clazz 根类型
+     * @return 写入器
+     */
+    public static ObjectWriter writer(Class<?> clazz) {
+        return WRITERS.computeIfAbsent(clazz, type -> JsonUtils.getObjectMapper().writerFor(type));
+    }
+
+    /**
+     * 在后台守护线程上预热，只在首次调用时执行；预热期间的并发调用直接按需创建
+     */
+    public static void warmUpAsync() {
+        // 先抢占预热权再创建线程，并发创建客户端时只会启动一个预热线程
+        if (!WARMED_UP.compareAndSet(false, true)) {
+            return;
+        }
+        Thread thread = new Thread(JsonCodecs::doWarmUp, "dify-json-codecs-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 预热模型与事件类型的读取器和写入器，只在首次调用时执行；其他线程正在预热时等待其完成
+     */
+    public static void warmUp() {
+        if (!WARMED_UP.compareAndSet(false, true)) {
+            try {
+                WARM_UP_DONE.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        doWarmUp();
+    }
+
+    private static void doWarmUp() {
+        long start = System.nanoTime();
+        int count = 0;
+        try {
+            for (String packageName : WARM_UP_PACKAGES) {
+                for (Class<?> clazz : findClasses(packageName)) {
+                    try {
+                        reader(clazz);
+                        writer(clazz);
+                        count++;
+                    } catch (RuntimeException e) {
+                        log.debug("跳过无法预热的类型: {}, {}", clazz.getName(), e.toString());
+                    }
+                }
+            }
+        } finally {
+            WARM_UP_DONE.countDown();
+        }
+        log.debug("JSON编解码器预热完成: {}个类型, 耗时{}ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 已缓存的读取器数量
+     *
+     * @return 数量
+     */
+    public static int readerCount() {
+        return READERS.size();
+    }
+
+    /**
+     * 注册类路径上可用的 Jackson 字节码优化模块
+     * Java 11+ 优先使用 Blackbird，其次使用 Afterburner，均不存在时不做处理
+     *
+     * @param mapper 对象映射器
+     * @return 注册的模块名称，未注册时返回null
+     */
+    static String registerOptimizerModule(ObjectMapper mapper) {
+        List<String> candidates = new ArrayList<>();
+        if (isJava11OrLater()) {
+            candidates.add("com.fasterxml.jackson.module.blackbird.BlackbirdModule");
+        }
+        candidates.add("com.fasterxml.jackson.module.afterburner.AfterburnerModule");
+        for (String className : candidates) {
+            try {
+                Class<?> moduleClass = Class.forName(className, true, JsonCodecs.class.getClassLoader());
+                mapper.registerModule((Module) moduleClass.getDeclaredConstructor().newInstance());
+                log.debug("已注册Jackson优化模块: {}", className);
+                return className;
+            } catch (ClassNotFoundException e) {
+                // 类路径上不存在该模块
+            } catch (ReflectiveOperationException | LinkageError e) {
+                log.warn("注册Jackson优化模块失败: {}", className, e);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isJava11OrLater() {
+        String version = System.getProperty("java.specification.version", "1.8");
+        return !version.startsWith("1.");
+    }
+
+    /**
+     * 查找包及其子包下的顶层具体类，嵌套类型只会作为属性出现，不需要根读取器
+     */
+    private static List<Class<?>> findClasses(String packageName) {
+        List<Class<?>> classes = new ArrayList<>();
+        String path = packageName.replace('.', '/');
+        ClassLoader loader = JsonCodecs.class.getClassLoader();
+        try {
+            Enumeration<URL> resources = loader.getResources(path);
+            while (resources.hasMoreElements()) {
+                URL url = resources.nextElement();
+                List<String> classNames = new ArrayList<>();
+                if ("file".equals(url.getProtocol())) {
+                    collectFromDirectory(new File(URLDecoder.decode(url.getFile(), "UTF-8")), packageName, classNames);
+                } else if ("jar".equals(url.getProtocol())) {
+                    JarURLConnection connection = (JarURLConnection) url.openConnection();
+                    connection.setUseCaches(false);
+                    try (JarFile jar = connection.getJarFile()) {
+                        collectFromJar(jar, path, classNames);
+                    }
+                }
+                for (String className : classNames) {
+                    Class<?> clazz = load(className, loader);
+                    if (clazz != null && !clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers())) {
+                        classes.add(clazz);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("扫描包失败: {}, {}", packageName, e.toString());
+        }
+        if (classes.isEmpty()) {
+            log.info("未在类路径上找到可预热的类型: {}，编解码器将在首次使用时创建", packageName);
+        }
+        return classes;
+    }
+
+    private static void collectFromDirectory(File directory, String packageName, List<String> classNames) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                collectFromDirectory(file, packageName + "." + name, classNames);
+            } else if (name.endsWith(".class") && name.indexOf('$') < 0) {
+                classNames.add(packageName + "." + name.substring(0, name.length() - ".class".length()));
+            }
+        }
+    }
+
+    private static void collectFromJar(JarFile jar, String path, List<String> classNames) {
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            String name = entries.nextElement().getName();
+            if (name.startsWith(path + "/") && name.endsWith(".class") && name.indexOf('$') < 0) {
+                classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+            }
+        }
+    }
+
+    private static Class<?> load(String className, ClassLoader loader) {
+        try {
+            return Class.forName(className, false, loader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.imfangs.dify.client.util;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+
+/**
+ * 流式JSON请求体
+ * <p>
+ * 发送时由 Jackson 生成器直接写入连接的 {@link BufferedSink}，请求不会以字符串或字节数组的形式完整驻留在堆中。
+ * 长度未知，使用分块传输编码发送；每次 {@link #writeTo(BufferedSink)} 都会重新序列化，因此可安全重试。
+ */
+public final class JsonRequestBody extends RequestBody {
+
+    private final Object value;
+
+    /**
+     * 构造函数
+     *
+     * @param value 要序列化的对象
+     */
+    public JsonRequestBody(Object value) {
+        this.value = value;
+    }
+
+    /**
+     * 获取要序列化的对象
+     *
+     * @return 请求对象
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return HttpClientUtils.JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        JsonUtils.writeJson(sink.outputStream(), value);
+    }
+}
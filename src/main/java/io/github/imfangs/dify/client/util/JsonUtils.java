@@ -1,15 +1,24 @@
 package io.github.imfangs.dify.client.util;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.Map;
 
 /**
@@ -19,12 +28,20 @@ import java.util.Map;
 public class JsonUtils {
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
+    /**
+     * 共享的对象写入器，须在ObjectMapper配置完成后创建
+     */
+    private static final ObjectWriter WRITER;
+
     static {
         // 配置ObjectMapper
         OBJECT_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         OBJECT_MAPPER.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
         OBJECT_MAPPER.setPropertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE);
         OBJECT_MAPPER.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        // 类路径上存在 Blackbird/Afterburner 时自动启用
+        JsonCodecs.registerOptimizerModule(OBJECT_MAPPER);
+        WRITER = OBJECT_MAPPER.writer();
     }
 
     /**
@@ -53,7 +70,7 @@ public class JsonUtils {
      */
     public static String toJson(Object obj) {
         try {
-            return OBJECT_MAPPER.writeValueAsString(obj);
+            return writerFor(obj).writeValueAsString(obj);
         } catch (JsonProcessingException e) {
             log.error("Failed to convert object to JSON", e);
             throw new RuntimeException("Failed to convert object to JSON", e);
@@ -67,20 +84,41 @@ public class JsonUtils {
      * @param clazz 目标类型
      * @param <T>   泛型类型
      * @return 转换后的对象
+     * @throws UncheckedIOException 解码失败，原因为 {@link DifyDecodeException}
      */
     public static <T> T fromJson(String json, Class<T> clazz) {
         if (json != null && !json.isEmpty()) {
             try {
-                return OBJECT_MAPPER.readValue(json, clazz);
+                return readerFor(clazz).readValue(json);
             } catch (IOException e) {
-                log.error("Failed to convert JSON to object", e);
-                return null;
+                throw new UncheckedIOException(new DifyDecodeException(clazz.getName(), e));
             }
         }else{
             return null;
         }
     }
 
+    /**
+     * 将UTF-8编码的JSON字节转换为指定类型的对象
+     *
+     * @param json  JSON字节
+     * @param clazz 目标类型
+     * @param <T>   泛型类型
+     * @return 转换后的对象
+     * @throws UncheckedIOException 解码失败，原因为 {@link DifyDecodeException}
+     */
+    public static <T> T fromJson(byte[] json, Class<T> clazz) {
+        if (json != null && json.length > 0) {
+            try {
+                return readerFor(clazz).readValue(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(new DifyDecodeException(clazz.getName(), e));
+            }
+        } else {
+            return null;
+        }
+    }
+
     /**
      * 将JSON字符串转换为指定类型引用的对象
      *
@@ -88,40 +126,108 @@ public class JsonUtils {
      * @param typeReference 类型引用
      * @param <T>           泛型类型
      * @return 转换后的对象
+     * @throws UncheckedIOException 解码失败，原因为 {@link DifyDecodeException}
      */
     public static <T> T fromJson(String json, TypeReference<T> typeReference) {
         if (json != null && !json.isEmpty()) {
             try {
-                return OBJECT_MAPPER.readValue(json, typeReference);
+                return OBJECT_MAPPER.readerFor(typeReference).readValue(json);
             } catch (IOException e) {
-                log.error("Failed to convert JSON to object", e);
-                return null;
+                throw new UncheckedIOException(new DifyDecodeException(typeReference.getType().getTypeName(), e));
             }
         }else{
             return null;
         }
     }
 
+    /**
+     * 从UTF-8输入流直接解码为指定类型的对象，不经过中间字符串
+     *
+     * @param in    输入流，由调用方负责关闭
+     * @param clazz 目标类型
+     * @param <T>   泛型类型
+     * @return 转换后的对象，输入为空时返回null
+     * @throws DifyDecodeException JSON格式错误或与目标类型不匹配
+     * @throws IOException         读取输入流失败
+     */
+    public static <T> T readJson(InputStream in, Class<T> clazz) throws IOException {
+        return readJson(in, readerFor(clazz), clazz.getName());
+    }
+
+    /**
+     * 从UTF-8输入流直接解码为指定类型引用的对象，不经过中间字符串
+     *
+     * @param in            输入流，由调用方负责关闭
+     * @param typeReference 类型引用
+     * @param <T>           泛型类型
+     * @return 转换后的对象，输入为空时返回null
+     * @throws DifyDecodeException JSON格式错误或与目标类型不匹配
+     * @throws IOException         读取输入流失败
+     */
+    public static <T> T readJson(InputStream in, TypeReference<T> typeReference) throws IOException {
+        return readJson(in, OBJECT_MAPPER.readerFor(typeReference), typeReference.getType().getTypeName());
+    }
+
+    private static <T> T readJson(InputStream in, ObjectReader reader, String targetType) throws IOException {
+        try (JsonParser parser = reader.createParser(in)) {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return reader.readValue(parser);
+        } catch (JsonProcessingException e) {
+            throw new DifyDecodeException(targetType, e);
+        }
+    }
+
+    /**
+     * 获取指定类型的缓存 {@link ObjectReader}
+     *
+     * @param clazz 目标类型
+     * @return 对象读取器
+     * @see JsonCodecs#reader(Class)
+     */
+    public static ObjectReader readerFor(Class<?> clazz) {
+        return JsonCodecs.reader(clazz);
+    }
+
     /**
      * 将JSON字符串转换为Map
      *
      * @param json JSON字符串
      * @return Map对象
+     * @throws UncheckedIOException 解码失败，原因为 {@link DifyDecodeException}
      */
     public static Map<String, Object> jsonToMap(String json) {
         if (json != null && !json.isEmpty()) {
             try {
-                return OBJECT_MAPPER.readValue(json, new TypeReference<Map<String, Object>>() {
-                });
+                return readerFor(Map.class).readValue(json);
             } catch (IOException e) {
-                log.error("Failed to convert JSON to Map", e);
-                return null;
+                throw new UncheckedIOException(new DifyDecodeException(Map.class.getName(), e));
             }
         }else{
             return null;
         }
     }
 
+    /**
+     * 将对象以UTF-8 JSON直接写入输出流，不生成中间字符串，也不关闭输出流
+     * 生成器关闭时其内部缓冲区归还 Jackson 的 BufferRecycler 以供复用
+     *
+     * @param out 输出流
+     * @param obj 要写入的对象
+     * @throws IOException 序列化或写入失败
+     */
+    public static void writeJson(OutputStream out, Object obj) throws IOException {
+        try (JsonGenerator generator = OBJECT_MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writerFor(obj).writeValue(generator, obj);
+        }
+    }
+
+    private static ObjectWriter writerFor(Object obj) {
+        return obj != null ? JsonCodecs.writer(obj.getClass()) : WRITER;
+    }
+
     /**
      * 获取ObjectMapper实例
      *
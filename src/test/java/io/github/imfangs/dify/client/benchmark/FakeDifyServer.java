@@ -0,0 +1,419 @@
+package io.github.imfangs.dify.client.benchmark;
+
+import io.github.imfangs.dify.client.util.JsonUtils;
+import lombok.Builder;
+import lombok.Getter;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内嵌的模拟 Dify 服务，用于离线压测与端到端测试
+ * <p>
+ * 基于 {@link MockWebServer}，实现 {@code DefaultDifyClient} 与 {@code DefaultDifyDatasetsClient} 常用的接口：
+ * <ul>
+ *     <li>{@code /chat-messages}、{@code /completion-messages}：按 response_mode 返回 SSE 流或阻塞响应</li>
+ *     <li>{@code /workflows/run}：workflow_started → node_started → text_chunk × N → node_finished → workflow_finished</li>
+ *     <li>{@code /datasets/*}：知识库列表、详情、删除、检索、文档列表、文本建档与索引状态，其余路径返回 {@code {"result":"success"}}</li>
+ * </ul>
+ * 通过 {@link Scenario} 配置 token 数量与大小、首 token 延迟、token 速率，以及 5xx、429 和流中途断开的注入比例。
+ * token 速率通过按帧大小限速实现，首尾帧与 token 帧大小不同，因此是近似值。
+ */
+public class FakeDifyServer implements Closeable {
+
+    private static final String API_PREFIX = "/v1";
+
+    private final MockWebServer server = new MockWebServer();
+    private volatile Scenario scenario;
+
+    @Getter
+    private final AtomicLong requests = new AtomicLong();
+    @Getter
+    private final AtomicLong streams = new AtomicLong();
+    @Getter
+    private final AtomicLong injectedErrors = new AtomicLong();
+    @Getter
+    private final AtomicLong injectedRateLimits = new AtomicLong();
+    @Getter
+    private final AtomicLong injectedDisconnects = new AtomicLong();
+
+    /**
+     * 压测场景配置
+     */
+    @Getter
+    @Builder(toBuilder = true)
+    public static class Scenario {
+        /**
+         * 每个流的 token 帧数量
+         */
+        @Builder.Default
+        private int tokens = 50;
+
+        /**
+         * 每个 token 的字符数
+         */
+        @Builder.Default
+        private int tokenSize = 4;
+
+        /**
+         * token 下发速率（每秒），0 表示不限速
+         */
+        @Builder.Default
+        private double tokensPerSecond = 0;
+
+        /**
+         * 首 token 延迟（毫秒）
+         */
+        @Builder.Default
+        private long timeToFirstTokenMillis = 0;
+
+        /**
+         * 知识库与文档列表每页条数
+         */
+        @Builder.Default
+        private int pageSize = 20;
+
+        /**
+         * 返回 500 的比例
+         */
+        @Builder.Default
+        private double errorRate = 0;
+
+        /**
+         * 返回 429 的比例
+         */
+        @Builder.Default
+        private double rateLimitRate = 0;
+
+        /**
+         * 429 响应的 Retry-After 秒数
+         */
+        @Builder.Default
+        private int retryAfterSeconds = 1;
+
+        /**
+         * 流式响应中途断开连接的比例
+         */
+        @Builder.Default
+        private double disconnectRate = 0;
+    }
+
+    /**
+     * 使用默认场景创建
+     */
+    public FakeDifyServer() {
+        this(Scenario.builder().build());
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param scenario 场景配置
+     */
+    public FakeDifyServer(Scenario scenario) {
+        this.scenario = scenario;
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return handle(request);
+            }
+        });
+    }
+
+    /**
+     * 启动服务
+     *
+     * @return 当前实例
+     * @throws IOException 端口绑定失败
+     */
+    public FakeDifyServer start() throws IOException {
+        server.start();
+        return this;
+    }
+
+    /**
+     * 获取 API 基础 URL，形如 {@code http://127.0.0.1:port/v1}
+     *
+     * @return 基础 URL
+     */
+    public String getBaseUrl() {
+        String url = server.url(API_PREFIX).toString();
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * 运行中切换场景，对之后到达的请求生效
+     *
+     * @param scenario 场景配置
+     */
+    public void setScenario(Scenario scenario) {
+        this.scenario = scenario;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse handle(RecordedRequest request) {
+        requests.incrementAndGet();
+        Scenario current = scenario;
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            return error(401, "unauthorized", "Access token is invalid");
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (current.getRateLimitRate() > 0 && random.nextDouble() < current.getRateLimitRate()) {
+            injectedRateLimits.incrementAndGet();
+            return error(429, "too_many_requests", "Rate limit exceeded")
+                    .setHeader("Retry-After", String.valueOf(current.getRetryAfterSeconds()));
+        }
+        if (current.getErrorRate() > 0 && random.nextDouble() < current.getErrorRate()) {
+            injectedErrors.incrementAndGet();
+            return error(500, "internal_server_error", "Injected failure");
+        }
+
+        String path = path(request);
+        String method = request.getMethod();
+        switch (path) {
+            case "/chat-messages":
+            case "/completion-messages":
+                return isStreaming(request) ? stream(current, chatFrames(current), "message") : json(chatResponse(current));
+            case "/workflows/run":
+                return isStreaming(request) ? stream(current, workflowFrames(current), "text_chunk") : json(workflowResponse(current));
+            default:
+                if (path.startsWith("/datasets")) {
+                    return datasets(current, method, path);
+                }
+                return error(404, "not_found", "The requested URL was not found on the server.");
+        }
+    }
+
+    private MockResponse stream(Scenario current, Buffer body, String tokenType) {
+        streams.incrementAndGet();
+        MockResponse response = new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setHeader("Cache-Control", "no-cache")
+                .setBody(body);
+        if (current.getTimeToFirstTokenMillis() > 0) {
+            response.setBodyDelay(current.getTimeToFirstTokenMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (current.getTokensPerSecond() > 0) {
+            long frameBytes = frame(tokenEvent(current, tokenType)).getBytes(StandardCharsets.UTF_8).length;
+            response.throttleBody(frameBytes, (long) (1_000_000_000L / current.getTokensPerSecond()), TimeUnit.NANOSECONDS);
+        }
+        if (current.getDisconnectRate() > 0 && ThreadLocalRandom.current().nextDouble() < current.getDisconnectRate()) {
+            injectedDisconnects.incrementAndGet();
+            response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+        }
+        return response;
+    }
+
+    private Buffer chatFrames(Scenario current) {
+        Buffer body = new Buffer();
+        String token = frame(tokenEvent(current, "message"));
+        for (int i = 0; i < current.getTokens(); i++) {
+            body.writeUtf8(token);
+        }
+        Map<String, Object> end = event("message_end");
+        end.put("id", "msg-1");
+        end.put("message_id", "msg-1");
+        end.put("conversation_id", "conv-1");
+        end.put("metadata", Collections.singletonMap("usage", usage(current)));
+        return body.writeUtf8(frame(end));
+    }
+
+    private Buffer workflowFrames(Scenario current) {
+        Buffer body = new Buffer();
+        Map<String, Object> started = event("workflow_started");
+        started.put("workflow_run_id", "run-1");
+        started.put("data", mapOf("id", "run-1", "workflow_id", "wf-1", "sequence_number", 1, "created_at", 1705407629));
+        body.writeUtf8(frame(started));
+
+        Map<String, Object> nodeStarted = event("node_started");
+        nodeStarted.put("workflow_run_id", "run-1");
+        nodeStarted.put("data", mapOf("id", "node-exec-1", "node_id", "llm", "node_type", "llm", "title", "LLM", "index", 1, "created_at", 1705407629));
+        body.writeUtf8(frame(nodeStarted));
+
+        String token = frame(tokenEvent(current, "text_chunk"));
+        for (int i = 0; i < current.getTokens(); i++) {
+            body.writeUtf8(token);
+        }
+
+        String text = answer(current);
+        Map<String, Object> nodeFinished = event("node_finished");
+        nodeFinished.put("workflow_run_id", "run-1");
+        nodeFinished.put("data", mapOf("id", "node-exec-1", "node_id", "llm", "node_type", "llm", "title", "LLM", "index", 1,
+                "status", "succeeded", "outputs", Collections.singletonMap("text", text), "elapsed_time", 1.0, "created_at", 1705407629));
+        body.writeUtf8(frame(nodeFinished));
+
+        Map<String, Object> finished = event("workflow_finished");
+        finished.put("workflow_run_id", "run-1");
+        finished.put("data", mapOf("id", "run-1", "workflow_id", "wf-1", "status", "succeeded",
+                "outputs", Collections.singletonMap("text", text), "elapsed_time", 1.0, "total_tokens", current.getTokens(),
+                "total_steps", 3, "created_at", 1705407629, "finished_at", 1705407630));
+        return body.writeUtf8(frame(finished));
+    }
+
+    private Map<String, Object> tokenEvent(Scenario current, String type) {
+        Map<String, Object> event = event(type);
+        if ("text_chunk".equals(type)) {
+            event.put("workflow_run_id", "run-1");
+            event.put("data", mapOf("text", token(current), "from_variable_selector", Arrays.asList("llm", "text")));
+        } else {
+            event.put("id", "msg-1");
+            event.put("message_id", "msg-1");
+            event.put("conversation_id", "conv-1");
+            event.put("answer", token(current));
+        }
+        return event;
+    }
+
+    private Map<String, Object> chatResponse(Scenario current) {
+        Map<String, Object> body = mapOf("event", "message", "task_id", "task-1", "id", "msg-1", "message_id", "msg-1",
+                "conversation_id", "conv-1", "mode", "chat", "answer", answer(current), "created_at", 1705395332);
+        body.put("metadata", Collections.singletonMap("usage", usage(current)));
+        return body;
+    }
+
+    private Map<String, Object> workflowResponse(Scenario current) {
+        return mapOf("workflow_run_id", "run-1", "task_id", "task-1",
+                "data", mapOf("id", "run-1", "workflow_id", "wf-1", "status", "succeeded",
+                        "outputs", Collections.singletonMap("text", answer(current)), "elapsed_time", 1.0,
+                        "total_tokens", current.getTokens(), "total_steps", 3, "created_at", 1705407629, "finished_at", 1705407630));
+    }
+
+    private MockResponse datasets(Scenario current, String method, String path) {
+        String[] segments = path.substring(1).split("/");
+        if (segments.length == 1) {
+            if ("POST".equals(method)) {
+                return json(dataset("dataset-new"));
+            }
+            List<Object> data = new ArrayList<>();
+            for (int i = 0; i < current.getPageSize(); i++) {
+                data.add(dataset("dataset-" + i));
+            }
+            return json(mapOf("data", data, "has_more", false, "limit", current.getPageSize(), "total", current.getPageSize(), "page", 1));
+        }
+        String datasetId = segments[1];
+        if (segments.length == 2) {
+            if ("DELETE".equals(method)) {
+                return new MockResponse().setResponseCode(204);
+            }
+            return json(dataset(datasetId));
+        }
+        if (path.endsWith("/retrieve")) {
+            List<Object> records = new ArrayList<>();
+            for (int i = 0; i < current.getPageSize(); i++) {
+                records.add(mapOf("score", 0.9 - i * 0.01, "segment", mapOf("id", "segment-" + i, "position", i + 1,
+                        "document_id", "document-" + i, "content", answer(current), "word_count", current.getTokens(),
+                        "tokens", current.getTokens(), "status", "completed",
+                        "document", mapOf("id", "document-" + i, "data_source_type", "upload_file", "name", "document-" + i + ".txt"))));
+            }
+            return json(mapOf("query", Collections.singletonMap("content", "query"), "records", records));
+        }
+        if (path.endsWith("/documents") && "GET".equals(method)) {
+            List<Object> data = new ArrayList<>();
+            for (int i = 0; i < current.getPageSize(); i++) {
+                data.add(document("document-" + i));
+            }
+            return json(mapOf("data", data, "has_more", false, "limit", current.getPageSize(), "total", current.getPageSize(), "page", 1));
+        }
+        if (path.contains("/document/create-by-text")) {
+            return json(mapOf("document", document("document-new"), "batch", "batch-1"));
+        }
+        if (path.endsWith("/indexing-status")) {
+            return json(Collections.singletonMap("data", Collections.singletonList(mapOf("id", "document-new",
+                    "indexing_status", "completed", "completed_segments", 1, "total_segments", 1))));
+        }
+        return json(Collections.singletonMap("result", "success"));
+    }
+
+    private static Map<String, Object> dataset(String id) {
+        return mapOf("id", id, "name", id, "description", "fake dataset", "permission", "only_me",
+                "data_source_type", "upload_file", "indexing_technique", "high_quality", "document_count", 1,
+                "word_count", 1000, "created_at", 1705407629, "updated_at", 1705407629);
+    }
+
+    private static Map<String, Object> document(String id) {
+        return mapOf("id", id, "position", 1, "data_source_type", "upload_file", "name", id + ".txt",
+                "indexing_status", "completed", "enabled", true, "archived", false, "word_count", 1000,
+                "tokens", 1200, "display_status", "available", "created_at", 1705407629);
+    }
+
+    private static Map<String, Object> usage(Scenario current) {
+        return mapOf("prompt_tokens", 100, "completion_tokens", current.getTokens(),
+                "total_tokens", 100 + current.getTokens(), "currency", "USD", "latency", 1.0);
+    }
+
+    private static Map<String, Object> event(String type) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("event", type);
+        event.put("task_id", "task-1");
+        event.put("created_at", 1705395332);
+        return event;
+    }
+
+    private static String token(Scenario current) {
+        char[] chars = new char[current.getTokenSize()];
+        Arrays.fill(chars, 'x');
+        return new String(chars);
+    }
+
+    private static String answer(Scenario current) {
+        StringBuilder builder = new StringBuilder(current.getTokens() * current.getTokenSize());
+        String token = token(current);
+        for (int i = 0; i < current.getTokens(); i++) {
+            builder.append(token);
+        }
+        return builder.toString();
+    }
+
+    private static String frame(Map<String, Object> event) {
+        return "data: " + JsonUtils.toJson(event) + "\n\n";
+    }
+
+    private static MockResponse json(Object body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setBody(JsonUtils.toJson(body));
+    }
+
+    private static MockResponse error(int status, String code, String message) {
+        return json(mapOf("code", code, "message", message, "status", status)).setResponseCode(status);
+    }
+
+    private static boolean isStreaming(RecordedRequest request) {
+        Map<String, Object> body = JsonUtils.jsonToMap(request.getBody().readUtf8());
+        return body != null && "streaming".equals(body.get("response_mode"));
+    }
+
+    private static String path(RecordedRequest request) {
+        String path = request.getPath() == null ? "" : request.getPath();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        return path.startsWith(API_PREFIX) ? path.substring(API_PREFIX.length()) : path;
+    }
+
+    private static Map<String, Object> mapOf(Object... keyValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.imfangs.dify.client.benchmark;
+
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.DifyClientFactory;
+import io.github.imfangs.dify.client.DifyDatasetsClient;
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.event.WorkflowFinishedEvent;
+import io.github.imfangs.dify.client.event.WorkflowTextChunkEvent;
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.datasets.DatasetListResponse;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证模拟 Dify 服务的流式响应与故障注入可被客户端正确消费
+ */
+public class FakeDifyServerTest {
+
+    private FakeDifyServer server;
+    private DifyClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new FakeDifyServer(FakeDifyServer.Scenario.builder().tokens(10).pageSize(3).build()).start();
+        client = DifyClientFactory.createClient(DifyConfig.builder().baseUrl(server.getBaseUrl()).apiKey("test-key").build());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void shouldStreamConfiguredTokensAndTerminalEvent() throws Exception {
+        AtomicInteger tokens = new AtomicInteger();
+        CompletableFuture<MessageEndEvent> end = new CompletableFuture<>();
+        client.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onMessage(MessageEvent event) {
+                tokens.incrementAndGet();
+            }
+
+            @Override
+            public void onMessageEnd(MessageEndEvent event) {
+                end.complete(event);
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                end.completeExceptionally(throwable);
+            }
+        });
+
+        assertEquals("msg-1", end.get(5, TimeUnit.SECONDS).getMessageId());
+        assertEquals(10, tokens.get());
+    }
+
+    @Test
+    public void shouldStreamWorkflowTextChunks() throws Exception {
+        AtomicInteger chunks = new AtomicInteger();
+        CompletableFuture<WorkflowFinishedEvent> finished = new CompletableFuture<>();
+        client.runWorkflowStream(WorkflowRunRequest.builder().user("test-user").responseMode(ResponseMode.STREAMING).build(),
+                new WorkflowStreamCallback() {
+                    @Override
+                    public void onWorkflowTextChunk(WorkflowTextChunkEvent event) {
+                        chunks.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onWorkflowFinished(WorkflowFinishedEvent event) {
+                        finished.complete(event);
+                    }
+
+                    @Override
+                    public void onException(Throwable throwable) {
+                        finished.completeExceptionally(throwable);
+                    }
+                });
+
+        assertEquals("succeeded", finished.get(5, TimeUnit.SECONDS).getData().getStatus());
+        assertEquals(10, chunks.get());
+    }
+
+    @Test
+    public void shouldInjectRateLimit() {
+        server.setScenario(FakeDifyServer.Scenario.builder().rateLimitRate(1).build());
+
+        DifyApiException e = assertThrows(DifyApiException.class,
+                () -> client.sendChatMessage(ChatMessage.builder().query("你好").user("test-user").build()));
+
+        assertEquals(429, e.getStatusCode());
+        assertEquals("too_many_requests", e.getErrorCode());
+        assertEquals(1, server.getInjectedRateLimits().get());
+    }
+
+    @Test
+    public void shouldDisconnectMidStream() throws Exception {
+        server.setScenario(FakeDifyServer.Scenario.builder().tokens(100).disconnectRate(1).build());
+        CompletableFuture<Throwable> failure = new CompletableFuture<>();
+        client.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onMessageEnd(MessageEndEvent event) {
+                failure.complete(null);
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                failure.complete(throwable);
+            }
+        });
+
+        assertTrue(failure.get(5, TimeUnit.SECONDS) instanceof IOException, "中途断开应以IO异常结束而不是正常结束");
+    }
+
+    @Test
+    public void shouldServeDatasetEndpoints() throws Exception {
+        try (DifyDatasetsClient datasets = DifyClientFactory.createDatasetsClient(server.getBaseUrl(), "dataset-key")) {
+            DatasetListResponse list = datasets.getDatasets(1, 3);
+            assertEquals(3, list.getData().size());
+            assertEquals("success", datasets.deleteDataset(list.getData().get(0).getId()).getResult());
+        }
+    }
+
+    private static ChatMessage chatMessage() {
+        return ChatMessage.builder().query("你好").user("test-user").responseMode(ResponseMode.STREAMING).build();
+    }
+}
@@ -0,0 +1,387 @@
+package io.github.imfangs.dify.client.benchmark;
+
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.DifyClientFactory;
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.callback.CompletionStreamCallback;
+import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.event.*;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.completion.CompletionRequest;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunRequest;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
+import io.github.imfangs.dify.client.transport.VirtualThreads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于 {@link FakeDifyServer} 的流式压测驱动
+ * <p>
+ * 支持两种负载模型：
+ * <ul>
+ *     <li>closed：N 个并发通道，每个通道上一个流结束后立即发起下一个，测量给定并发下的吞吐上限</li>
+ *     <li>open：按固定到达率发起流，与完成情况无关；首 token 延迟从计划发起时刻算起，排队时间会计入结果，避免协同遗漏</li>
+ * </ul>
+ * 输出首 token 延迟与完整流耗时的 p50/p99、流与 token 吞吐、客户端进程 CPU 占用、堆内存峰值与客户端平台线程峰值，
+ * 以及按异常类型统计的失败数。
+ * <p>
+ * 运行方式：
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=io.github.imfangs.dify.client.benchmark.StreamLoadDriver \
+ *     -Dexec.args="closed 200 30" -Dtokens=100 -DtokensPerSecond=50 -DttftMillis=300
+ * </pre>
+ * 参数依次为：负载模型、并发流数量、持续秒数、open 模式下每秒到达数（默认与并发数相同）。
+ * 场景通过系统属性配置：endpoint（chat/completion/workflow）、tokens、tokenSize、tokensPerSecond、ttftMillis、
+ * errorRate、rateLimitRate、disconnectRate。virtualThreads 为 true 时客户端使用虚拟线程，为 compare 时对同一场景
+ * 先后以平台线程和虚拟线程各运行一次（需要 Java 21+，并发上万时需调大文件句柄上限）。
+ */
+public class StreamLoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "closed";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int durationSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        double arrivalRate = args.length > 3 ? Double.parseDouble(args[3]) : concurrency;
+        String endpoint = System.getProperty("endpoint", "chat");
+        String threadMode = System.getProperty("virtualThreads", "false");
+        List<Boolean> threadModes = "compare".equals(threadMode) ? Arrays.asList(false, true)
+                : Collections.singletonList(Boolean.parseBoolean(threadMode));
+
+        FakeDifyServer.Scenario scenario = FakeDifyServer.Scenario.builder()
+                .tokens(Integer.getInteger("tokens", 50))
+                .tokenSize(Integer.getInteger("tokenSize", 4))
+                .tokensPerSecond(Double.parseDouble(System.getProperty("tokensPerSecond", "50")))
+                .timeToFirstTokenMillis(Long.getLong("ttftMillis", 200L))
+                .errorRate(Double.parseDouble(System.getProperty("errorRate", "0")))
+                .rateLimitRate(Double.parseDouble(System.getProperty("rateLimitRate", "0")))
+                .disconnectRate(Double.parseDouble(System.getProperty("disconnectRate", "0")))
+                .build();
+
+        try (FakeDifyServer server = new FakeDifyServer(scenario).start()) {
+            int queueDepth = "open".equals(mode) ? (int) Math.min(Integer.MAX_VALUE, (long) (arrivalRate * durationSeconds)) : concurrency;
+            System.out.printf("模式: %s, 接口: %s, 并发: %d, 持续: %ds%s, token: %d × %d 字符 @ %.0f/s, 首token延迟: %dms%n",
+                    mode, endpoint, concurrency, durationSeconds,
+                    "open".equals(mode) ? String.format(", 到达率: %.1f/s", arrivalRate) : "",
+                    scenario.getTokens(), scenario.getTokenSize(), scenario.getTokensPerSecond(), scenario.getTimeToFirstTokenMillis());
+
+            for (boolean virtualThreads : threadModes) {
+                if (virtualThreads && !VirtualThreads.isSupported()) {
+                    System.out.println("当前运行时不支持虚拟线程，跳过虚拟线程模式");
+                    continue;
+                }
+                DifyConfig config = DifyConfig.builder()
+                        .baseUrl(server.getBaseUrl())
+                        .apiKey("load-test")
+                        .readTimeout(120_000)
+                        .virtualThreads(virtualThreads)
+                        .streamScheduler(new StreamScheduler(concurrency, concurrency, StreamScheduler.SaturationPolicy.QUEUE, queueDepth))
+                        .build();
+                System.out.println("线程: " + (virtualThreads ? "virtual" : "platform"));
+                try (DifyClient client = DifyClientFactory.createClient(config)) {
+                    LoadRun run = new LoadRun(client, endpoint);
+                    run.execute(mode, concurrency, durationSeconds, arrivalRate);
+                    run.report();
+                }
+            }
+            System.out.printf("服务端: 请求=%d 流=%d 注入500=%d 注入429=%d 注入断开=%d%n",
+                    server.getRequests().get(), server.getStreams().get(), server.getInjectedErrors().get(),
+                    server.getInjectedRateLimits().get(), server.getInjectedDisconnects().get());
+        }
+    }
+
+    /**
+     * 一次压测运行的发起逻辑与统计
+     */
+    private static final class LoadRun {
+        private final DifyClient client;
+        private final String endpoint;
+        private final List<Long> ttftNanos = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> durationNanos = Collections.synchronizedList(new ArrayList<>());
+        private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+        private final LongAdder tokens = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong peakHeap = new AtomicLong();
+        private final AtomicInteger peakThreads = new AtomicInteger();
+        private long elapsedNanos;
+        private long cpuNanos;
+
+        private LoadRun(DifyClient client, String endpoint) {
+            this.client = client;
+            this.endpoint = endpoint;
+        }
+
+        private void execute(String mode, int concurrency, int durationSeconds, double arrivalRate) throws InterruptedException {
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            sampler.scheduleAtFixedRate(() -> {
+                peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                peakThreads.accumulateAndGet(clientPlatformThreads(threads), Math::max);
+            }, 0, 100, TimeUnit.MILLISECONDS);
+
+            long cpuStart = processCpuTime(os);
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+            try {
+                if ("open".equals(mode)) {
+                    runOpen(deadline, arrivalRate);
+                } else {
+                    runClosed(deadline, concurrency);
+                }
+                // 等待在途的流结束
+                long drainDeadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(2);
+                while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+                    Thread.sleep(50);
+                }
+                if (inFlight.get() > 0) {
+                    System.out.println("等待超时，未结束的流: " + inFlight.get());
+                }
+            } finally {
+                elapsedNanos = System.nanoTime() - start;
+                cpuNanos = cpuStart < 0 ? -1 : processCpuTime(os) - cpuStart;
+                sampler.shutdownNow();
+            }
+        }
+
+        private void runClosed(long deadline, int concurrency) throws InterruptedException {
+            CountDownLatch lanes = new CountDownLatch(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                new Lane(deadline, lanes).next();
+            }
+            lanes.await(TimeUnit.NANOSECONDS.toMinutes(deadline - System.nanoTime()) + 2, TimeUnit.MINUTES);
+        }
+
+        private void runOpen(long deadline, double arrivalRate) throws InterruptedException {
+            long periodNanos = (long) (1_000_000_000L / arrivalRate);
+            long origin = System.nanoTime();
+            AtomicLong ticks = new AtomicLong();
+            ScheduledExecutorService arrivals = Executors.newSingleThreadScheduledExecutor();
+            arrivals.scheduleAtFixedRate(() -> {
+                // 以计划时刻而非实际发起时刻为起点，发起线程落后时的等待也计入延迟
+                long intended = origin + ticks.getAndIncrement() * periodNanos;
+                if (intended < deadline) {
+                    start(intended, null);
+                }
+            }, 0, periodNanos, TimeUnit.NANOSECONDS);
+            Thread.sleep(TimeUnit.NANOSECONDS.toMillis(Math.max(0, deadline - System.nanoTime())));
+            arrivals.shutdownNow();
+        }
+
+        /**
+         * closed 模式下的一个并发通道
+         */
+        private final class Lane implements Runnable {
+            private final long deadline;
+            private final CountDownLatch lanes;
+
+            private Lane(long deadline, CountDownLatch lanes) {
+                this.deadline = deadline;
+                this.lanes = lanes;
+            }
+
+            private void next() {
+                if (System.nanoTime() < deadline) {
+                    start(System.nanoTime(), this);
+                } else {
+                    lanes.countDown();
+                }
+            }
+
+            @Override
+            public void run() {
+                next();
+            }
+        }
+
+        private void start(long startNanos, Runnable onFinish) {
+            inFlight.incrementAndGet();
+            Probe probe = new Probe(startNanos, onFinish);
+            try {
+                switch (endpoint) {
+                    case "workflow":
+                        client.runWorkflowStream(WorkflowRunRequest.builder()
+                                .user("load-test").responseMode(ResponseMode.STREAMING).build(), new WorkflowStreamCallback() {
+                            @Override
+                            public void onWorkflowTextChunk(WorkflowTextChunkEvent event) {
+                                probe.token();
+                            }
+
+                            @Override
+                            public void onWorkflowFinished(WorkflowFinishedEvent event) {
+                                probe.done();
+                            }
+
+                            @Override
+                            public void onError(ErrorEvent event) {
+                                probe.failed("ErrorEvent");
+                            }
+
+                            @Override
+                            public void onException(Throwable throwable) {
+                                probe.failed(throwable.getClass().getSimpleName());
+                            }
+                        });
+                        break;
+                    case "completion":
+                        client.sendCompletionMessageStream(CompletionRequest.builder()
+                                .user("load-test").responseMode(ResponseMode.STREAMING).build(), new CompletionStreamCallback() {
+                            @Override
+                            public void onMessage(MessageEvent event) {
+                                probe.token();
+                            }
+
+                            @Override
+                            public void onMessageEnd(MessageEndEvent event) {
+                                probe.done();
+                            }
+
+                            @Override
+                            public void onError(ErrorEvent event) {
+                                probe.failed("ErrorEvent");
+                            }
+
+                            @Override
+                            public void onException(Throwable throwable) {
+                                probe.failed(throwable.getClass().getSimpleName());
+                            }
+                        });
+                        break;
+                    default:
+                        client.sendChatMessageStream(ChatMessage.builder()
+                                .query("ping").user("load-test").responseMode(ResponseMode.STREAMING).build(), new ChatStreamCallback() {
+                            @Override
+                            public void onMessage(MessageEvent event) {
+                                probe.token();
+                            }
+
+                            @Override
+                            public void onMessageEnd(MessageEndEvent event) {
+                                probe.done();
+                            }
+
+                            @Override
+                            public void onError(ErrorEvent event) {
+                                probe.failed("ErrorEvent");
+                            }
+
+                            @Override
+                            public void onException(Throwable throwable) {
+                                probe.failed(throwable.getClass().getSimpleName());
+                            }
+                        });
+                }
+            } catch (Exception e) {
+                probe.failed(e.getClass().getSimpleName());
+            }
+        }
+
+        /**
+         * 单个流的计时探针，done 与 failed 只生效一次
+         */
+        private final class Probe {
+            private final long startNanos;
+            private final Runnable onFinish;
+            private final AtomicBoolean finished = new AtomicBoolean();
+            private volatile boolean firstToken = true;
+
+            private Probe(long startNanos, Runnable onFinish) {
+                this.startNanos = startNanos;
+                this.onFinish = onFinish;
+            }
+
+            private void token() {
+                if (firstToken) {
+                    firstToken = false;
+                    ttftNanos.add(System.nanoTime() - startNanos);
+                }
+                tokens.increment();
+            }
+
+            private void done() {
+                if (finished.compareAndSet(false, true)) {
+                    durationNanos.add(System.nanoTime() - startNanos);
+                    completed.increment();
+                    finish();
+                }
+            }
+
+            private void failed(String reason) {
+                if (finished.compareAndSet(false, true)) {
+                    failures.computeIfAbsent(reason, key -> new LongAdder()).increment();
+                    finish();
+                }
+            }
+
+            private void finish() {
+                inFlight.decrementAndGet();
+                if (onFinish != null) {
+                    onFinish.run();
+                }
+            }
+        }
+
+        private void report() {
+            double seconds = elapsedNanos / 1e9;
+            int processors = Runtime.getRuntime().availableProcessors();
+            System.out.printf("完成流: %d, 失败: %d %s%n", completed.sum(),
+                    failures.values().stream().mapToLong(LongAdder::sum).sum(), failures);
+            System.out.printf("首token延迟: p50=%.1fms p99=%.1fms max=%.1fms%n",
+                    percentile(ttftNanos, 50), percentile(ttftNanos, 99), percentile(ttftNanos, 100));
+            System.out.printf("完整流耗时: p50=%.1fms p99=%.1fms max=%.1fms%n",
+                    percentile(durationNanos, 50), percentile(durationNanos, 99), percentile(durationNanos, 100));
+            System.out.printf("吞吐: %.1f 流/s, %.0f token/s, 耗时 %.1fs%n",
+                    completed.sum() / seconds, tokens.sum() / seconds, seconds);
+            System.out.printf("客户端: CPU %.1f%%（%d 核）, 堆峰值 %dMB, 平台线程峰值 %d%n",
+                    cpuNanos < 0 ? -1.0 : 100.0 * cpuNanos / (elapsedNanos * (double) processors), processors,
+                    peakHeap.get() / (1024 * 1024), peakThreads.get());
+        }
+
+        /**
+         * 当前存活的平台线程数量，不含同进程内 MockWebServer 的服务端线程；虚拟线程不在统计范围内
+         */
+        private static int clientPlatformThreads(ThreadMXBean threads) {
+            int count = 0;
+            for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds(), 0)) {
+                if (info != null && !info.getThreadName().startsWith("MockWebServer")) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static double percentile(List<Long> samples, int percentile) {
+            long[] sorted;
+            synchronized (samples) {
+                sorted = samples.stream().mapToLong(Long::longValue).toArray();
+            }
+            if (sorted.length == 0) {
+                return 0;
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+        }
+
+        private static long processCpuTime(OperatingSystemMXBean os) {
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.DifyCall;
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.DifyDatasetsClient;
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.chat.ChatMessageResponse;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import okhttp3.*;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证 async 调用基于 enqueue 执行、可取消且超出并发上限时排队
+ */
+public class AsyncDifyClientTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+
+    @Test
+    public void shouldCompleteOnCallbackThreadWithDecodedResponse() throws Exception {
+        AtomicReference<String> requestThread = new AtomicReference<>();
+        DifyClient client = client(chain -> {
+            requestThread.set(Thread.currentThread().getName());
+            assertEquals("/v1/chat-messages", chain.request().url().encodedPath());
+            return json(chain, 200, "{\"message_id\":\"m1\",\"answer\":\"你好\"}");
+        });
+
+        CompletableFuture<ChatMessageResponse> future = client.async(c -> c.sendChatMessage(message()));
+        ChatMessageResponse response = future.get(5, TimeUnit.SECONDS);
+
+        assertEquals("m1", response.getMessageId());
+        assertEquals("你好", response.getAnswer());
+        assertNotEquals(Thread.currentThread().getName(), requestThread.get());
+    }
+
+    @Test
+    public void shouldCompleteExceptionallyWithApiException() {
+        DifyClient client = client(chain -> json(chain, 400, "{\"code\":\"invalid_param\",\"message\":\"bad\"}"));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> client.async(c -> c.sendChatMessage(message())).get(5, TimeUnit.SECONDS));
+
+        assertTrue(e.getCause() instanceof DifyApiException);
+        assertEquals(400, ((DifyApiException) e.getCause()).getStatusCode());
+    }
+
+    @Test
+    public void shouldCancelCallWhenFutureCancelled() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch canceled = new CountDownLatch(1);
+        DifyClient client = client(chain -> {
+            started.countDown();
+            for (int i = 0; i < 500 && !chain.call().isCanceled(); i++) {
+                sleep();
+            }
+            if (chain.call().isCanceled()) {
+                canceled.countDown();
+            }
+            throw new IOException("Canceled");
+        });
+
+        CompletableFuture<ChatMessageResponse> future = client.async(c -> c.sendChatMessage(message()));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+
+        assertTrue(canceled.await(5, TimeUnit.SECONDS));
+        assertTrue(future.isCancelled());
+    }
+
+    @Test
+    public void shouldRejectCallsThatDoNotIssueExactlyOneRequest() {
+        DifyClient client = client(chain -> fail("不应发出请求"));
+
+        ExecutionException none = assertThrows(ExecutionException.class,
+                () -> client.async(c -> null).get(5, TimeUnit.SECONDS));
+        assertTrue(none.getCause() instanceof IllegalArgumentException);
+
+        ExecutionException stream = assertThrows(ExecutionException.class,
+                () -> client.async(c -> {
+                    c.sendChatMessageStream(message(), new ChatStreamCallback() {
+                    });
+                    return null;
+                }).get(5, TimeUnit.SECONDS));
+        assertTrue(stream.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void shouldRejectCallsThatUseTheBlockingResult() {
+        DifyClient client = client(chain -> fail("不应发出请求"));
+
+        ExecutionException dereference = assertThrows(ExecutionException.class,
+                () -> client.async(c -> c.sendChatMessage(message()).getAnswer()).get(5, TimeUnit.SECONDS));
+        assertTrue(dereference.getCause() instanceof IllegalArgumentException);
+        assertTrue(dereference.getCause().getCause() instanceof NullPointerException);
+
+        ExecutionException transform = assertThrows(ExecutionException.class,
+                () -> client.async(c -> String.valueOf(c.sendChatMessage(message()))).get(5, TimeUnit.SECONDS));
+        assertTrue(transform.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void shouldQueueCallsBeyondMaxAsyncRequests() throws Exception {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch proceed = new CountDownLatch(1);
+        DifyConfig config = DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").maxAsyncRequests(2).build();
+        DifyClient client = new DefaultDifyClient(config, new OkHttpClient.Builder().addInterceptor(chain -> {
+            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                proceed.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            return json(chain, 200, "{\"message_id\":\"m1\",\"answer\":\"你好\"}");
+        }).build());
+
+        List<CompletableFuture<ChatMessageResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            futures.add(client.async(c -> c.sendChatMessage(message())));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (active.get() < 2 && System.nanoTime() < deadline) {
+            sleep();
+        }
+        sleep();
+        assertEquals(2, active.get(), "超出上限的调用应排队，不占用调度线程");
+
+        proceed.countDown();
+        for (CompletableFuture<ChatMessageResponse> future : futures) {
+            assertEquals("m1", future.get(5, TimeUnit.SECONDS).getMessageId());
+        }
+        assertEquals(2, peak.get());
+    }
+
+    @Test
+    public void everyBlockingApiShouldIssueExactlyOneRequestUnderAsync() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        Interceptor interceptor = chain -> {
+            requests.incrementAndGet();
+            return json(chain, 200, "{}");
+        };
+        DifyClient client = client(interceptor);
+        DifyDatasetsClient datasetsClient = new DefaultDifyDatasetsClient(
+                DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").build(),
+                new OkHttpClient.Builder().addInterceptor(interceptor).build());
+
+        List<String> covered = new ArrayList<>();
+        covered.addAll(assertEveryBlockingApi(DifyClient.class, client, requests));
+        covered.addAll(assertEveryBlockingApi(DifyDatasetsClient.class, datasetsClient, requests));
+        assertTrue(covered.size() > 80, "应覆盖全部阻塞API: " + covered.size());
+    }
+
+    private static <C> List<String> assertEveryBlockingApi(Class<C> type, C client, AtomicInteger requests) throws Exception {
+        List<String> covered = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (!isBlockingApi(method)) {
+                continue;
+            }
+            Object[] args = new Object[method.getParameterCount()];
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < args.length; i++) {
+                args[i] = sample(parameterTypes[i]);
+            }
+            String name = method.getName() + Arrays.toString(parameterTypes);
+            int before = requests.get();
+            DifyCall<C, Object> call = c -> {
+                try {
+                    return method.invoke(c, args);
+                } catch (InvocationTargetException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            };
+            CompletableFuture<Object> future = type == DifyClient.class
+                    ? ((DifyClient) client).async((DifyCall<DifyClient, Object>) call)
+                    : ((DifyDatasetsClient) client).async((DifyCall<DifyDatasetsClient, Object>) call);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // 空响应体可能无法解码为目标类型，这里只关心请求是否经由异步捕获发出
+                assertFalse(e.getCause() instanceof IllegalArgumentException || e.getCause() instanceof IllegalStateException
+                        || e.getCause() instanceof NullPointerException, name + ": " + e.getCause());
+            }
+            assertEquals(before + 1, requests.get(), name + " 应发出且只发出一次请求");
+            covered.add(name);
+        }
+        return covered;
+    }
+
+    private static boolean isBlockingApi(Method method) {
+        if (method.isDefault() || Modifier.isStatic(method.getModifiers())) {
+            return false;
+        }
+        String name = method.getName();
+        if (name.equals("async") || name.equals("close")) {
+            return false;
+        }
+        Class<?> returnType = method.getReturnType();
+        return returnType != StreamHandle.class && returnType != Publisher.class && returnType != EventStream.class;
+    }
+
+    private static Object sample(Class<?> type) throws Exception {
+        if (type == String.class || type == Object.class) {
+            // 同时作为文件名使用，取音频扩展名以通过语音接口的格式校验
+            return "x.mp3";
+        }
+        if (type == Integer.class || type == int.class) {
+            return 1;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return true;
+        }
+        if (type == List.class) {
+            return new ArrayList<>();
+        }
+        if (type == File.class) {
+            File file = File.createTempFile("dify-async", ".mp3");
+            file.deleteOnExit();
+            return file;
+        }
+        if (type == InputStream.class) {
+            return new ByteArrayInputStream(new byte[]{1});
+        }
+        try {
+            Object builder = type.getMethod("builder").invoke(null);
+            // 填充字符串字段，避免请求构建时因必填字段为空而失败
+            for (Method setter : builder.getClass().getMethods()) {
+                if (setter.getParameterCount() == 1 && setter.getParameterTypes()[0] == String.class) {
+                    setter.invoke(builder, "x.mp3");
+                }
+            }
+            return builder.getClass().getMethod("build").invoke(builder);
+        } catch (NoSuchMethodException e) {
+            return type.getConstructor().newInstance();
+        }
+    }
+
+    private static DifyClient client(Interceptor interceptor) {
+        return new DefaultDifyClient(BASE_URL, "test-key", new OkHttpClient.Builder().addInterceptor(interceptor).build());
+    }
+
+    private static ChatMessage message() {
+        return ChatMessage.builder().query("你好").user("test-user").build();
+    }
+
+    private static Response json(Interceptor.Chain chain, int code, String body) {
+        return new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code == 200 ? "OK" : "Bad Request")
+                .body(ResponseBody.create(body, MediaType.get("application/json")))
+                .build();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyCircuitOpenException;
+import io.github.imfangs.dify.client.metrics.CircuitStateChange;
+import io.github.imfangs.dify.client.metrics.InMemoryDifyMetrics;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.transport.CircuitBreakerPolicy;
+import io.github.imfangs.dify.client.transport.CircuitBreakerRegistry;
+import io.github.imfangs.dify.client.transport.CircuitState;
+import io.github.imfangs.dify.client.transport.RetryPolicy;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证客户端按接口与主机熔断，打开时不发送请求并抛出熔断异常，状态变化发布到请求指标
+ */
+public class CircuitBreakingClientTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+
+    private final StubTransport transport = new StubTransport();
+    private final InMemoryDifyMetrics metrics = new InMemoryDifyMetrics();
+
+    @Test
+    public void openCircuitShouldFailFastWithoutSendingRequests() throws Exception {
+        DefaultDifyClient client = client(registry(), 503);
+
+        for (int i = 0; i < 2; i++) {
+            DifyApiException exception = assertThrows(DifyApiException.class, client::getAppInfo);
+            assertFalse(exception instanceof DifyCircuitOpenException);
+        }
+        DifyCircuitOpenException exception = assertThrows(DifyCircuitOpenException.class, client::getAppInfo);
+
+        assertEquals(2, transport.getCalls(), "熔断后请求不应发送到服务端");
+        assertEquals(DifyCircuitOpenException.ERROR_CODE, exception.getErrorCode());
+        assertTrue(exception.getRetryAfterMillis() > 0);
+        assertEquals(2, metrics.snapshot("GET", "/info", false).getRequests(), "被熔断拒绝的请求不计入请求指标");
+
+        List<CircuitStateChange> circuits = metrics.circuitSnapshot();
+        assertEquals(1, circuits.size());
+        assertEquals("/info", circuits.get(0).getEndpoint());
+        assertEquals("dify.test:80", circuits.get(0).getHost());
+        assertEquals(CircuitState.OPEN, circuits.get(0).getTo());
+    }
+
+    @Test
+    public void circuitsShouldBeKeyedByEndpointTemplate() throws Exception {
+        DefaultDifyClient client = client(registry(), 503);
+
+        assertThrows(DifyApiException.class, () -> client.getWorkflowRun("11111111111111111111aaaa"));
+        assertThrows(DifyApiException.class, () -> client.getWorkflowRun("22222222222222222222bbbb"));
+        assertThrows(DifyCircuitOpenException.class, () -> client.getWorkflowRun("33333333333333333333cccc"));
+        assertEquals(2, transport.getCalls());
+
+        // 其他接口不受影响
+        assertThrows(DifyApiException.class, client::getAppInfo);
+        assertEquals(3, transport.getCalls());
+    }
+
+    @Test
+    public void retriesShouldStopAtOpenCircuit() {
+        DifyConfig config = config(registry());
+        config.setRetryPolicy(RetryPolicy.builder().baseDelayMillis(1).maxAttempts(5).build());
+        DefaultDifyClient client = new DefaultDifyClient(config, httpClient(503));
+
+        assertThrows(DifyCircuitOpenException.class, client::getAppInfo);
+        assertEquals(2, transport.getCalls());
+    }
+
+    @Test
+    public void asyncCallsShouldFailFast() throws Exception {
+        DefaultDifyClient client = client(registry(), 500);
+        assertThrows(DifyApiException.class, client::getAppInfo);
+        assertThrows(DifyApiException.class, client::getAppInfo);
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> client.async(c -> c.getAppInfo()).get(10, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof DifyCircuitOpenException);
+        assertEquals(2, transport.getCalls());
+    }
+
+    @Test
+    public void clientErrorsShouldNotOpenCircuit() {
+        DefaultDifyClient client = client(registry(), 404);
+
+        for (int i = 0; i < 5; i++) {
+            assertThrows(DifyApiException.class, client::getAppInfo);
+        }
+        assertEquals(5, transport.getCalls());
+        assertTrue(metrics.circuitSnapshot().isEmpty());
+    }
+
+    private static CircuitBreakerRegistry registry() {
+        return new CircuitBreakerRegistry(CircuitBreakerPolicy.builder().windowSize(2).minimumCalls(2).openDurationMillis(60_000).build());
+    }
+
+    private DifyConfig config(CircuitBreakerRegistry registry) {
+        return DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").metrics(metrics).circuitBreakers(registry).build();
+    }
+
+    private DefaultDifyClient client(CircuitBreakerRegistry registry, int status) {
+        return new DefaultDifyClient(config(registry), httpClient(status));
+    }
+
+    private OkHttpClient httpClient(int status) {
+        return transport.otherwise(chain -> StubTransport.response(status, "{\"code\":\"unavailable\"}")).httpClient();
+    }
+}
@@ -0,0 +1,136 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.event.BaseEvent;
+import io.github.imfangs.dify.client.exception.DifyConcurrencyLimitedException;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.transport.AdaptiveConcurrencyLimiter;
+import io.github.imfangs.dify.client.transport.AdaptiveLimit;
+import io.github.imfangs.dify.client.transport.AdaptiveLimitPolicy;
+import io.github.imfangs.dify.client.transport.StreamPriority;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证客户端按接口模板限制在途请求，达到上限时阻塞请求等待或拒绝，请求结束后归还名额；
+ * 在调度器中排队的流不占用并发名额
+ */
+public class ConcurrencyLimitedClientTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    @Test
+    public void requestsBeyondLimitShouldBeRejected() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveLimitPolicy.builder().initialLimit(1).build());
+        DefaultDifyClient client = client(limiter);
+
+        CompletableFuture<?> inFlight = client.async(c -> c.getAppInfo());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        AdaptiveLimit limit = limiter.get("GET", "/info");
+        assertEquals(1, limit.getInFlight());
+
+        assertThrows(DifyConcurrencyLimitedException.class, client::getAppInfo);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> client.async(c -> c.getAppInfo()).get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof DifyConcurrencyLimitedException);
+        assertEquals(2, limit.getRejected());
+        // 其他接口不受影响
+        assertNotNull(client.getAppParameters());
+
+        proceed.countDown();
+        inFlight.get(5, TimeUnit.SECONDS);
+        assertEquals(0, limit.getInFlight(), "请求结束后应归还名额");
+        assertNotNull(client.getAppInfo());
+    }
+
+    @Test
+    public void blockingRequestsShouldWaitForSlot() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveLimitPolicy.builder().initialLimit(1).maxWaitMillis(5_000).build());
+        DefaultDifyClient client = client(limiter);
+
+        CompletableFuture<?> inFlight = client.async(c -> c.getAppInfo());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+            }
+            proceed.countDown();
+        }).start();
+
+        long start = System.nanoTime();
+        assertNotNull(client.getAppInfo());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40), "应等待在途请求结束");
+        inFlight.get(5, TimeUnit.SECONDS);
+        assertEquals(0, limiter.get("GET", "/info").getInFlight());
+    }
+
+    @Test
+    public void queuedStreamShouldNotHoldConcurrencySlot() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveLimitPolicy.builder().initialLimit(1).build());
+        StreamScheduler scheduler = new StreamScheduler(1, 1, StreamScheduler.SaturationPolicy.QUEUE, 10);
+        DifyConfig config = DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").concurrencyLimiter(limiter).streamScheduler(scheduler).build();
+        DefaultDifyClient client = new DefaultDifyClient(config, httpClient());
+        AtomicReference<StreamScheduler.Ticket> occupied = new AtomicReference<>();
+        scheduler.submit(BASE_URL, null, StreamPriority.INTERACTIVE, occupied::set, e -> fail(e));
+
+        CompletableFuture<EventStream<BaseEvent>> opened = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.openChatStream(ChatMessage.builder().query("你好").user("test-user").build());
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getQueueDepth() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, scheduler.getQueueDepth());
+        AdaptiveLimit limit = limiter.get("POST", "/chat-messages");
+        assertEquals(0, limit.getInFlight(), "排队中的流不应占用并发名额");
+
+        occupied.get().release();
+        try (EventStream<BaseEvent> stream = opened.get(5, TimeUnit.SECONDS)) {
+            assertNotNull(stream);
+            assertEquals(1, limit.getInFlight());
+        }
+        assertEquals(0, limit.getInFlight());
+    }
+
+    private DefaultDifyClient client(AdaptiveConcurrencyLimiter limiter) {
+        DifyConfig config = DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").concurrencyLimiter(limiter).build();
+        return new DefaultDifyClient(config, httpClient());
+    }
+
+    /**
+     * 第一个 /info 请求阻塞到 proceed 放行，其余请求立即返回
+     */
+    private OkHttpClient httpClient() {
+        return new StubTransport()
+                .otherwise(chain -> {
+                    if (chain.request().url().encodedPath().endsWith("/info") && entered.getCount() > 0) {
+                        entered.countDown();
+                        try {
+                            proceed.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    return StubTransport.response(200, "{\"name\":\"app\"}");
+                })
+                .httpClient();
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.event.BaseEvent;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.transport.StreamPriority;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
+import okhttp3.*;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证拉取式事件迭代器按需读取并及时释放连接
+ */
+public class CursorEventStreamTest {
+
+    private static final String BASE_URL = "http://localhost:1/v1";
+    private static final String BODY = "data: {\"event\":\"message\",\"answer\":\"a\"}\n\n"
+            + "event: ping\n\n"
+            + "data: {\"event\":\"message\",\"answer\":\"b\"}\n\n"
+            + "data: {\"event\":\"message_end\"}\n\n"
+            + "data: {\"event\":\"message\",\"answer\":\"after end\"}\n\n";
+
+    private final StreamScheduler scheduler = new StreamScheduler(4, 4, StreamScheduler.SaturationPolicy.REJECT, 0);
+    private final OkHttpClient httpClient = new OkHttpClient();
+
+    @Test
+    public void shouldReadLazilyAndReleaseAfterTerminalEvent() {
+        Buffer body = new Buffer().writeUtf8(BODY);
+        long total = body.size();
+        EventStream<BaseEvent> stream = new CursorEventStream(cursor(newCall(), body));
+
+        assertEquals(total, body.size(), "未迭代前不应读取");
+        assertEquals("a", ((MessageEvent) stream.next()).getAnswer());
+        assertTrue(body.size() < total);
+        assertEquals(EventType.PING.getValue(), stream.next().getEvent());
+        assertEquals("b", ((MessageEvent) stream.next()).getAnswer());
+        assertEquals(1, scheduler.getActiveStreams());
+
+        assertTrue(stream.next() instanceof MessageEndEvent);
+        assertEquals(0, scheduler.getActiveStreams(), "读到终止事件后应立即归还名额");
+        assertFalse(stream.hasNext());
+        assertThrows(NoSuchElementException.class, stream::next);
+    }
+
+    @Test
+    public void shouldCancelCallWhenClosedEarly() {
+        Call call = newCall();
+        EventStream<BaseEvent> stream = new CursorEventStream(cursor(call, new Buffer().writeUtf8(BODY)));
+
+        assertTrue(stream.hasNext());
+        stream.close();
+        stream.close();
+
+        assertTrue(call.isCanceled());
+        assertEquals(0, scheduler.getActiveStreams());
+    }
+
+    @Test
+    public void shouldExposeEventsAsJavaStream() {
+        try (EventStream<BaseEvent> events = new CursorEventStream(cursor(newCall(), new Buffer().writeUtf8(BODY)))) {
+            List<String> answers = events.stream()
+                    .filter(MessageEvent.class::isInstance)
+                    .map(event -> ((MessageEvent) event).getAnswer())
+                    .collect(Collectors.toList());
+            assertEquals(2, answers.size());
+            assertEquals("a", answers.get(0));
+            assertEquals("b", answers.get(1));
+        }
+        assertEquals(0, scheduler.getActiveStreams());
+    }
+
+    private StreamCursor cursor(Call call, Buffer body) {
+        AtomicReference<StreamScheduler.Ticket> ticket = new AtomicReference<>();
+        scheduler.submit(BASE_URL, null, StreamPriority.INTERACTIVE, ticket::set, e -> fail(e));
+        Response response = new Response.Builder()
+                .request(call.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, MediaType.get("text/event-stream"), -1))
+                .build();
+        return new StreamCursor(call, response, ticket.get(), EnumSet.of(EventType.MESSAGE_END, EventType.ERROR));
+    }
+
+    private Call newCall() {
+        return httpClient.newCall(new Request.Builder().url(BASE_URL + "/chat-messages").build());
+    }
+}
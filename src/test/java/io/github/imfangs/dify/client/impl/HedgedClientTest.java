@@ -0,0 +1,157 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.metrics.RequestMetric;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.datasets.RetrieveRequest;
+import io.github.imfangs.dify.client.transport.HedgingPolicy;
+import io.github.imfangs.dify.client.transport.RequestHedger;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证幂等请求超过对冲延迟后发出第二份请求、取先返回的结果并取消较慢的一份
+ */
+public class HedgedClientTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+
+    private final StubTransport transport = new StubTransport();
+    private final AtomicBoolean slowNext = new AtomicBoolean();
+    private final CountDownLatch slowCancelled = new CountDownLatch(1);
+
+    @Test
+    public void slowIdempotentRequestShouldBeHedged() throws Exception {
+        RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().minSamples(5).minDelayMillis(20).build());
+        DefaultDifyDatasetsClient client = new DefaultDifyDatasetsClient(config(hedger), httpClient());
+        warmUp(client);
+        int before = transport.getCalls();
+
+        slowNext.set(true);
+        long start = System.nanoTime();
+        assertNotNull(client.retrieveDataset("ds-1", RetrieveRequest.builder().query("q").build()));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis < 2_000, "应由对冲请求返回: " + elapsedMillis + "ms");
+        assertEquals(before + 2, transport.getCalls());
+        assertEquals(1, hedger.getHedged());
+        assertEquals(1, hedger.getHedgeWins());
+        assertTrue(slowCancelled.await(5, TimeUnit.SECONDS), "较慢的一份应被取消");
+    }
+
+    @Test
+    public void asyncCallsShouldBeHedged() throws Exception {
+        RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().minSamples(5).minDelayMillis(20).build());
+        DefaultDifyDatasetsClient client = new DefaultDifyDatasetsClient(config(hedger), httpClient());
+        warmUp(client);
+
+        slowNext.set(true);
+        assertNotNull(client.async(c -> c.retrieveDataset("ds-1", RetrieveRequest.builder().query("q").build())).get(2, TimeUnit.SECONDS));
+        assertEquals(1, hedger.getHedgeWins());
+        assertTrue(slowCancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void lostHedgeShouldNotBeRecordedAsFailure() throws Exception {
+        RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().minSamples(5).minDelayMillis(20).build());
+        List<RequestMetric> metrics = new CopyOnWriteArrayList<>();
+        DifyConfig config = DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").hedger(hedger).metrics(metrics::add).build();
+        DefaultDifyDatasetsClient client = new DefaultDifyDatasetsClient(config, httpClient());
+        warmUp(client);
+
+        slowNext.set(true);
+        assertNotNull(client.retrieveDataset("ds-1", RetrieveRequest.builder().query("q").build()));
+        assertTrue(slowCancelled.await(5, TimeUnit.SECONDS));
+        // 等待落败一份的取消回调执行完毕
+        Thread.sleep(200);
+
+        assertEquals(1, hedger.getHedgeWins());
+        assertEquals(11, metrics.size(), "落败被取消的一份不应记录");
+        assertTrue(metrics.stream().noneMatch(RequestMetric::isError));
+    }
+
+    @Test
+    public void nonIdempotentRequestShouldNotBeHedged() throws Exception {
+        RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().minSamples(1).minDelayMillis(1).build());
+        hedger.record("POST", "/chat-messages", TimeUnit.MILLISECONDS.toNanos(1));
+        DefaultDifyClient client = new DefaultDifyClient(config(hedger), httpClient());
+
+        slowNext.set(true);
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            slowCancelled.countDown();
+        }).start();
+        client.sendChatMessage(ChatMessage.builder().query("hi").user("u").responseMode(ResponseMode.BLOCKING).build());
+
+        assertEquals(1, transport.getCalls());
+        assertEquals(0, hedger.getHedged());
+    }
+
+    @Test
+    public void exhaustedBudgetShouldNotHedge() throws Exception {
+        RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().minSamples(5).minDelayMillis(20).budgetRatio(0).maxBurst(1).build());
+        hedger.tryHedge();
+        DefaultDifyDatasetsClient client = new DefaultDifyDatasetsClient(config(hedger), httpClient());
+        warmUp(client);
+        int before = transport.getCalls();
+
+        slowNext.set(true);
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+            }
+            slowCancelled.countDown();
+        }).start();
+        client.retrieveDataset("ds-1", RetrieveRequest.builder().query("q").build());
+
+        assertEquals(before + 1, transport.getCalls(), "预算耗尽时只发出原请求");
+    }
+
+    private static DifyConfig config(RequestHedger hedger) {
+        return DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").hedger(hedger).build();
+    }
+
+    private static void warmUp(DefaultDifyDatasetsClient client) throws Exception {
+        for (int i = 0; i < 10; i++) {
+            client.retrieveDataset("ds-1", RetrieveRequest.builder().query("q").build());
+        }
+    }
+
+    /**
+     * slowNext 置位后的下一个请求阻塞到被取消（或测试放行），其余请求立即返回
+     */
+    private OkHttpClient httpClient() {
+        return transport
+                .otherwise(chain -> {
+                    if (slowNext.compareAndSet(true, false)) {
+                        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                        while (!chain.call().isCanceled() && slowCancelled.getCount() > 0 && System.nanoTime() < deadline) {
+                            try {
+                                Thread.sleep(5);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                break;
+                            }
+                        }
+                        if (chain.call().isCanceled()) {
+                            slowCancelled.countDown();
+                        }
+                    }
+                    return StubTransport.response(200, "{\"query\":{\"content\":\"q\"},\"records\":[],\"answer\":\"ok\"}");
+                })
+                .httpClient();
+    }
+}
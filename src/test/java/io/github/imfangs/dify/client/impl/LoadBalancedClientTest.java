@@ -0,0 +1,172 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.event.BaseEvent;
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.stream.EventStream;
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import io.github.imfangs.dify.client.transport.LoadBalancer;
+import io.github.imfangs.dify.client.transport.LoadBalancerPolicy;
+import io.github.imfangs.dify.client.transport.Replica;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.imfangs.dify.client.impl.StubTransport.response;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证多副本客户端在副本间分配请求、摘除故障副本，并将会话与任务调用发往服务它的副本
+ */
+public class LoadBalancedClientTest {
+
+    private static final List<String> REPLICAS = Arrays.asList("http://r1.test/v1", "http://r2.test/v1", "http://r3.test/v1");
+
+    private final List<String> hosts = new CopyOnWriteArrayList<>();
+    private volatile String failingHost;
+
+    @Test
+    public void requestsShouldSpreadAcrossReplicas() throws Exception {
+        DefaultDifyClient client = client(new LoadBalancer(REPLICAS, LoadBalancerPolicy.builder().build()));
+
+        for (int i = 0; i < 60; i++) {
+            client.getAppInfo();
+        }
+        client.async(c -> c.getAppInfo()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(new HashSet<>(Arrays.asList("r1.test", "r2.test", "r3.test")), new HashSet<>(hosts));
+        assertTrue(hosts.stream().allMatch(host -> host.endsWith(".test")));
+    }
+
+    @Test
+    public void failingReplicaShouldBeEjected() throws Exception {
+        LoadBalancer balancer = new LoadBalancer(REPLICAS, LoadBalancerPolicy.builder().consecutiveFailures(2).build());
+        DefaultDifyClient client = client(balancer);
+        failingHost = "r2.test";
+
+        for (int i = 0; i < 60; i++) {
+            try {
+                client.getAppInfo();
+            } catch (DifyApiException e) {
+                assertEquals(503, e.getStatusCode());
+            }
+        }
+        Replica failing = balancer.getReplicas().get(1);
+        assertTrue(failing.isEjected());
+
+        hosts.clear();
+        for (int i = 0; i < 30; i++) {
+            client.getAppInfo();
+        }
+        assertFalse(hosts.contains("r2.test"), "摘除期间不应再发往故障副本");
+        for (Replica replica : balancer.getReplicas()) {
+            assertEquals(0, replica.getBlockingInFlight());
+        }
+    }
+
+    @Test
+    public void conversationCallsShouldStickToServingReplica() throws Exception {
+        LoadBalancer balancer = new LoadBalancer(REPLICAS, LoadBalancerPolicy.builder().build());
+        DefaultDifyClient client = client(balancer);
+
+        client.sendChatMessage(ChatMessage.builder().query("hi").user("u").responseMode(ResponseMode.BLOCKING).build());
+        String servingHost = hosts.get(hosts.size() - 1);
+
+        hosts.clear();
+        for (int i = 0; i < 10; i++) {
+            client.getMessages("conv-1", "u", null, 20);
+            client.sendChatMessage(ChatMessage.builder().query("again").user("u").conversationId("conv-1").responseMode(ResponseMode.BLOCKING).build());
+        }
+        assertEquals(1, new HashSet<>(hosts).size());
+        assertEquals(servingHost, hosts.get(0));
+    }
+
+    @Test
+    public void stopShouldGoToReplicaServingStream() throws Exception {
+        LoadBalancer balancer = new LoadBalancer(REPLICAS, LoadBalancerPolicy.builder().build());
+        DefaultDifyClient client = client(balancer);
+
+        String streamHost;
+        try (EventStream<BaseEvent> events = client.openChatStream(ChatMessage.builder().query("hi").user("u").build())) {
+            assertEquals("task-1", events.next().getTaskId());
+            streamHost = hosts.get(hosts.size() - 1);
+            for (Replica replica : balancer.getReplicas()) {
+                assertEquals(replica.getBaseUrl().contains(streamHost) ? 1 : 0, replica.getStreamingInFlight());
+            }
+            hosts.clear();
+            for (int i = 0; i < 10; i++) {
+                client.stopChatMessage("task-1", "u");
+            }
+        }
+
+        Set<String> stopHosts = new HashSet<>(hosts);
+        assertEquals(1, stopHosts.size());
+        assertTrue(stopHosts.contains(streamHost));
+        for (Replica replica : balancer.getReplicas()) {
+            assertEquals(0, replica.getStreamingInFlight(), "关闭流后应归还副本");
+        }
+    }
+
+    @Test
+    public void filteredStreamShouldStillBindServingReplica() throws Exception {
+        LoadBalancer balancer = new LoadBalancer(REPLICAS, LoadBalancerPolicy.builder().build());
+        DefaultDifyClient client = client(balancer);
+
+        // 只订阅 message_end 时，携带会话标识的 message 事件被跳过，仍应从中绑定副本
+        StreamHandle handle = client.sendChatMessageStream(ChatMessage.builder().query("hi").user("u").build(), new ChatStreamCallback() {
+            @Override
+            public Set<EventType> subscribedEvents() {
+                return EnumSet.of(EventType.MESSAGE_END);
+            }
+        });
+        assertTrue(handle.awaitCompletion(5, TimeUnit.SECONDS));
+        String streamHost = hosts.get(hosts.size() - 1);
+
+        assertNotNull(balancer.getAffinity("conv-2"));
+        assertTrue(balancer.getAffinity("conv-2").getBaseUrl().contains(streamHost));
+        assertSame(balancer.getAffinity("conv-2"), balancer.getAffinity("task-1"));
+    }
+
+    private DefaultDifyClient client(LoadBalancer balancer) {
+        DifyConfig config = DifyConfig.builder()
+                .apiKey("test-key")
+                .loadBalancer(balancer)
+                .streamScheduler(new StreamScheduler(8, 8, StreamScheduler.SaturationPolicy.REJECT, 0))
+                .build();
+        return new DefaultDifyClient(config, httpClient());
+    }
+
+    private OkHttpClient httpClient() {
+        return new StubTransport()
+                .otherwise(chain -> {
+                    Request request = chain.request();
+                    String host = request.url().host();
+                    hosts.add(host);
+                    if (host.equals(failingHost)) {
+                        return response(503, "{\"code\":\"unavailable\",\"message\":\"down\"}");
+                    }
+                    if (request.url().encodedPath().equals("/v1/chat-messages") && request.header("Accept") != null) {
+                        return response(200, "data: {\"event\":\"message\",\"task_id\":\"task-1\",\"conversation_id\":\"conv-2\",\"answer\":\"a\"}\n\n"
+                                + "data: {\"event\":\"message_end\",\"task_id\":\"task-1\"}\n\n", "text/event-stream");
+                    }
+                    if (request.url().encodedPath().equals("/v1/chat-messages")) {
+                        return response(200, "{\"conversation_id\":\"conv-1\",\"answer\":\"ok\"}");
+                    }
+                    return response(200, "{\"result\":\"success\",\"data\":[]}");
+                })
+                .httpClient();
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.exception.DifyRateLimitedException;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.transport.EndpointClass;
+import io.github.imfangs.dify.client.transport.RateLimit;
+import io.github.imfangs.dify.client.transport.RateLimitPolicy;
+import io.github.imfangs.dify.client.transport.RateLimiter;
+import io.github.imfangs.dify.client.transport.RetryPolicy;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证客户端在发送前限流，被拒绝的请求不发送到服务端，按终端用户限流与异步等待
+ */
+public class RateLimitedClientTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+    private static final String CHAT_BODY = "{\"message_id\":\"m1\",\"answer\":\"hi\"}";
+
+    private final StubTransport transport = new StubTransport().otherwise(chain ->
+            StubTransport.response(200, chain.request().url().encodedPath().endsWith("/info") ? "{\"name\":\"app\"}" : CHAT_BODY));
+
+    @Test
+    public void rejectedRequestsShouldNotBeSent() throws Exception {
+        DefaultDifyClient client = client(RateLimitPolicy.builder().apiKeyLimit(RateLimit.of(0.5, 2)).build());
+
+        client.getAppInfo();
+        client.getAppInfo();
+        DifyRateLimitedException exception = assertThrows(DifyRateLimitedException.class, client::getAppInfo);
+
+        assertEquals(DifyRateLimitedException.ERROR_CODE, exception.getErrorCode());
+        assertEquals(2, transport.getCalls());
+    }
+
+    @Test
+    public void rejectionShouldNotBeRetried() {
+        DifyConfig config = config(RateLimitPolicy.builder().apiKeyLimit(RateLimit.of(0.5, 1)).build());
+        config.setRetryPolicy(RetryPolicy.builder().baseDelayMillis(1).build());
+        DefaultDifyClient client = new DefaultDifyClient(config, httpClient());
+
+        assertDoesNotThrow(client::getAppInfo);
+        assertThrows(DifyRateLimitedException.class, client::getAppInfo);
+        assertEquals(1, transport.getCalls());
+    }
+
+    @Test
+    public void endUsersShouldBeLimitedSeparately() throws Exception {
+        DefaultDifyClient client = client(RateLimitPolicy.builder()
+                .endpointLimit(EndpointClass.CHAT, RateLimit.of(100, 100))
+                .userLimit(RateLimit.of(0.5, 1))
+                .build());
+
+        client.sendChatMessage(message("alice"));
+        assertThrows(DifyRateLimitedException.class, () -> client.sendChatMessage(message("alice")));
+        client.sendChatMessage(message("bob"));
+        // GET 请求的终端用户取自查询参数
+        assertThrows(DifyRateLimitedException.class, () -> client.getConversations("alice", null, 20, null));
+        assertEquals(2, transport.getCalls());
+    }
+
+    @Test
+    public void waitModeShouldDelayInsteadOfRejecting() throws Exception {
+        DefaultDifyClient client = client(RateLimitPolicy.builder()
+                .apiKeyLimit(RateLimit.of(20, 1))
+                .maxWaitMillis(1000)
+                .build());
+
+        long start = System.nanoTime();
+        client.getAppInfo();
+        client.getAppInfo();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40), "阻塞调用应等待令牌");
+
+        start = System.nanoTime();
+        client.async(c -> c.getAppInfo()).get(5, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(40), "异步调用应等待令牌");
+        assertEquals(3, transport.getCalls());
+    }
+
+    @Test
+    public void asyncRejectionShouldFailFuture() throws Exception {
+        DefaultDifyClient client = client(RateLimitPolicy.builder().apiKeyLimit(RateLimit.of(0.5, 1)).build());
+        client.getAppInfo();
+
+        ExecutionException exception = assertThrows(ExecutionException.class,
+                () -> client.async(c -> c.getAppInfo()).get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof DifyRateLimitedException);
+        assertEquals(1, transport.getCalls());
+    }
+
+    private static ChatMessage message(String user) {
+        return ChatMessage.builder().query("你好").user(user).responseMode(ResponseMode.BLOCKING).build();
+    }
+
+    private DifyConfig config(RateLimitPolicy policy) {
+        return DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").rateLimiter(new RateLimiter(policy)).build();
+    }
+
+    private DefaultDifyClient client(RateLimitPolicy policy) {
+        return new DefaultDifyClient(config(policy), httpClient());
+    }
+
+    private OkHttpClient httpClient() {
+        return transport.httpClient();
+    }
+}
@@ -0,0 +1,155 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.metrics.EndpointSnapshot;
+import io.github.imfangs.dify.client.metrics.InMemoryDifyMetrics;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import okhttp3.*;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证客户端按接口模板记录请求耗时、状态码、错误码与收发字节数
+ */
+public class RequestMeterTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+
+    private final InMemoryDifyMetrics metrics = new InMemoryDifyMetrics();
+
+    @Test
+    public void blockingRequestShouldRecordStatusAndBytes() throws Exception {
+        String body = "{\"result\":\"success\"}";
+        DifyClient client = client(request -> respond(request, 200, body));
+
+        client.stopChatMessage("a8cf3a2c-9a4b-4f4e-8f6f-0d8d2b1c5e3a", "test-user");
+
+        EndpointSnapshot snapshot = metrics.snapshot("POST", "/chat-messages/{id}/stop", false);
+        assertNotNull(snapshot, "接口路径应去除基础路径并替换ID段: " + metrics.snapshot());
+        assertEquals(1, snapshot.getRequests());
+        assertEquals(0, snapshot.getErrors());
+        assertEquals(1L, snapshot.getStatusCounts().get(200));
+        assertEquals("{\"user\":\"test-user\"}".length(), snapshot.getRequestBytes());
+        assertEquals(body.length(), snapshot.getResponseBytes());
+        assertEquals(1, snapshot.getLatency().getCount());
+    }
+
+    @Test
+    public void apiErrorShouldRecordErrorCode() {
+        DifyClient client = client(request -> respond(request, 400,
+                "{\"code\":\"invalid_param\",\"message\":\"bad\",\"status\":400}"));
+
+        assertThrows(DifyApiException.class, client::getAppInfo);
+
+        EndpointSnapshot snapshot = metrics.snapshot("GET", "/info", false);
+        assertEquals(1, snapshot.getErrors());
+        assertEquals(1L, snapshot.getStatusCounts().get(400));
+        assertEquals(1L, snapshot.getErrorCodeCounts().get("invalid_param"));
+    }
+
+    @Test
+    public void transportFailureShouldRecordExceptionName() {
+        DifyClient client = client(request -> {
+            throw new IOException("connection reset");
+        });
+
+        assertThrows(IOException.class, client::getAppInfo);
+
+        EndpointSnapshot snapshot = metrics.snapshot("GET", "/info", false);
+        assertEquals(1L, snapshot.getStatusCounts().get(0));
+        assertEquals(1L, snapshot.getErrorCodeCounts().get("IOException"));
+    }
+
+    @Test
+    public void asyncRequestShouldBeRecorded() throws Exception {
+        DifyClient client = client(request -> respond(request, 200, "{\"name\":\"app\"}"));
+
+        client.async(DifyClient::getAppInfo).get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, metrics.snapshot("GET", "/info", false).getRequests());
+    }
+
+    @Test
+    public void streamShouldRecordWholeStream() throws Exception {
+        String body = "data: {\"event\":\"message\",\"answer\":\"a\"}\n\n"
+                + "data: {\"event\":\"message_end\",\"message_id\":\"m1\"}\n\n";
+        DifyClient client = client(request -> respond(request, 200, body));
+        CompletableFuture<Void> done = new CompletableFuture<>();
+
+        client.sendChatMessageStream(ChatMessage.builder().query("你好").user("test-user").responseMode(ResponseMode.STREAMING).build(),
+                new ChatStreamCallback() {
+                    @Override
+                    public void onMessageEnd(MessageEndEvent event) {
+                        done.complete(null);
+                    }
+
+                    @Override
+                    public void onException(Throwable throwable) {
+                        done.completeExceptionally(throwable);
+                    }
+                });
+        done.get(10, TimeUnit.SECONDS);
+
+        EndpointSnapshot snapshot = awaitSnapshot("POST", "/chat-messages", true);
+        assertEquals(0, snapshot.getErrors());
+        assertEquals(body.length(), snapshot.getResponseBytes());
+        assertTrue(snapshot.getRequestBytes() > 0);
+    }
+
+    /**
+     * 流式请求在回调返回后才记录，等待读取线程完成
+     */
+    private EndpointSnapshot awaitSnapshot(String method, String endpoint, boolean streaming) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            EndpointSnapshot snapshot = metrics.snapshot(method, endpoint, streaming);
+            if (snapshot != null) {
+                return snapshot;
+            }
+            Thread.sleep(10);
+        }
+        fail("请求指标未在期限内记录");
+        return null;
+    }
+
+    private static Response respond(Request request, int code, String body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("OK")
+                .body(ResponseBody.create(new Buffer().writeUtf8(body), MediaType.get("application/json"), -1))
+                .build();
+    }
+
+    private DifyClient client(Responder responder) {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    Request request = chain.request();
+                    // 与真实连接一样把请求体写出，使请求字节数被统计
+                    if (request.body() != null) {
+                        request.body().writeTo(new Buffer());
+                    }
+                    return responder.respond(request);
+                })
+                .build();
+        DifyConfig config = DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").metrics(metrics).build();
+        return new DefaultDifyClient(config, httpClient);
+    }
+
+    @FunctionalInterface
+    private interface Responder {
+        Response respond(Request request) throws IOException;
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.datasets.RetrieveRequest;
+import io.github.imfangs.dify.client.transport.RetryBudget;
+import io.github.imfangs.dify.client.transport.RetryPolicy;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.imfangs.dify.client.impl.StubTransport.response;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证客户端只重试幂等请求，遵守 Retry-After、错误码判定与重试预算
+ */
+public class RetryingClientTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+    private static final String OK_BODY = "{\"name\":\"app\"}";
+
+    private final StubTransport transport = new StubTransport().otherwise(chain -> response(500, ""));
+
+    @Test
+    public void getShouldBeRetriedUntilSuccess() throws Exception {
+        DefaultDifyClient client = client(policy(), response(503, "{\"code\":\"unavailable\"}"), response(502, ""), response(200, OK_BODY));
+
+        assertEquals("app", client.getAppInfo().getName());
+        assertEquals(3, transport.getCalls());
+    }
+
+    @Test
+    public void transportFailuresShouldBeRetried() throws Exception {
+        DefaultDifyClient client = client(policy(), null, response(200, OK_BODY));
+
+        assertEquals("app", client.getAppInfo().getName());
+        assertEquals(2, transport.getCalls());
+    }
+
+    @Test
+    public void shouldGiveUpAfterMaxAttempts() {
+        DefaultDifyClient client = client(policy(), response(503, ""), response(503, ""), response(503, ""), response(200, OK_BODY));
+
+        DifyApiException exception = assertThrows(DifyApiException.class, client::getAppInfo);
+        assertEquals(503, exception.getStatusCode());
+        assertEquals(3, transport.getCalls());
+    }
+
+    @Test
+    public void nonIdempotentPostShouldNotBeRetried() {
+        DefaultDifyClient client = client(policy(), response(503, ""), response(200, "{}"));
+
+        assertThrows(DifyApiException.class, () -> client.sendChatMessage(
+                ChatMessage.builder().query("你好").user("test-user").responseMode(ResponseMode.BLOCKING).build()));
+        assertEquals(1, transport.getCalls());
+    }
+
+    @Test
+    public void retrieveShouldBeRetriedAsIdempotentPost() throws Exception {
+        DefaultDifyDatasetsClient client = new DefaultDifyDatasetsClient(config(policy()),
+                httpClient(response(429, "{\"code\":\"too_many_requests\"}"), response(200, "{\"records\":[]}")));
+
+        assertNotNull(client.retrieveDataset("6c1f4b7e-0d0a-4e55-9e43-3f0a2b1c9d8e", RetrieveRequest.builder().query("q").build()));
+        assertEquals(2, transport.getCalls());
+    }
+
+    @Test
+    public void nonRetryableErrorCodeShouldFailFast() {
+        DefaultDifyClient client = client(policy(), response(429, "{\"code\":\"provider_quota_exceeded\",\"message\":\"quota\"}"), response(200, OK_BODY));
+
+        DifyApiException exception = assertThrows(DifyApiException.class, client::getAppInfo);
+        assertEquals("provider_quota_exceeded", exception.getErrorCode());
+        assertEquals(1, transport.getCalls());
+    }
+
+    @Test
+    public void retryAfterShouldBeHonouredAndCapped() throws Exception {
+        DefaultDifyClient client = client(policy(), response(429, "").newBuilder().header("Retry-After", "1").build(), response(200, OK_BODY));
+        long start = System.nanoTime();
+        client.getAppInfo();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900), "应按 Retry-After 等待");
+
+        transport.resetCalls();
+        RetryPolicy capped = RetryPolicy.builder().baseDelayMillis(1).maxRetryAfterMillis(500).build();
+        DefaultDifyClient impatient = client(capped, response(429, "").newBuilder().header("Retry-After", "120").build(), response(200, OK_BODY));
+        DifyApiException exception = assertThrows(DifyApiException.class, impatient::getAppInfo);
+        assertEquals(120_000, exception.getRetryAfterMillis());
+        assertEquals(1, transport.getCalls());
+    }
+
+    @Test
+    public void exhaustedBudgetShouldStopRetries() {
+        RetryPolicy starved = RetryPolicy.builder().baseDelayMillis(1).budget(new RetryBudget(0, 0, 1)).build();
+        DefaultDifyClient client = client(starved, response(503, ""), response(503, ""), response(503, ""), response(503, ""));
+
+        assertThrows(DifyApiException.class, client::getAppInfo);
+        assertEquals(2, transport.getCalls(), "预算只允许一次重试");
+        assertThrows(DifyApiException.class, client::getAppInfo);
+        assertEquals(3, transport.getCalls(), "预算耗尽后不再重试");
+    }
+
+    @Test
+    public void asyncCallsShouldBeRetried() throws Exception {
+        DefaultDifyClient client = client(policy(), response(503, ""), null, response(200, OK_BODY));
+
+        assertEquals("app", client.async(c -> c.getAppInfo()).get(10, TimeUnit.SECONDS).getName());
+        assertEquals(3, transport.getCalls());
+
+        transport.resetCalls();
+        DefaultDifyClient failing = client(policy(), response(400, "{\"code\":\"invalid_param\"}"));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> failing.async(c -> c.getAppInfo()).get(10, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof DifyApiException);
+        assertEquals(1, transport.getCalls());
+    }
+
+    private static RetryPolicy policy() {
+        return RetryPolicy.builder().baseDelayMillis(1).maxDelayMillis(5).build();
+    }
+
+    private static DifyConfig config(RetryPolicy policy) {
+        return DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").retryPolicy(policy).build();
+    }
+
+    private DefaultDifyClient client(RetryPolicy policy, Response... responses) {
+        return new DefaultDifyClient(config(policy), httpClient(responses));
+    }
+
+    /**
+     * 按顺序返回预设响应，null 表示连接失败，用完后返回 500
+     */
+    private OkHttpClient httpClient(Response... responses) {
+        return transport.enqueue(responses).httpClient();
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.imfangs.dify.client.impl;
+
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证 SSE 帧解析符合规范
+ */
+public class SseFrameReaderTest {
+
+    @Test
+    public void shouldParseDataFramesSeparatedByBlankLines() throws IOException {
+        SseFrameReader reader = reader("data: {\"event\":\"message\",\"answer\":\"你好\"}\n\n"
+                + "data: {\"event\":\"message_end\"}\n\n");
+
+        SseFrame first = reader.next();
+        assertNotNull(first);
+        assertNull(first.getEvent());
+        assertEquals("{\"event\":\"message\",\"answer\":\"你好\"}", first.getData().readUtf8());
+
+        assertEquals("{\"event\":\"message_end\"}", reader.next().getData().readUtf8());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void shouldJoinMultiLineDataAndReadEventAndId() throws IOException {
+        SseFrameReader reader = reader(": comment\r\n"
+                + "event: update\r\n"
+                + "id: 42\r\n"
+                + "retry: 1000\r\n"
+                + "data: line1\r\n"
+                + "data:line2\r\n"
+                + "\r\n");
+
+        SseFrame frame = reader.next();
+        assertEquals("update", frame.getEvent());
+        assertEquals("42", frame.getId());
+        assertEquals("line1\nline2", frame.getData().readUtf8());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void shouldDispatchEventOnlyFramesAndTrailingFrame() throws IOException {
+        SseFrameReader reader = reader("event: ping\n\n\n\ndata: {\"event\":\"message\"}");
+
+        SseFrame ping = reader.next();
+        assertEquals("ping", ping.getEvent());
+        assertFalse(ping.hasData());
+
+        SseFrame trailing = reader.next();
+        assertEquals("{\"event\":\"message\"}", trailing.getData().readUtf8());
+        assertNull(reader.next());
+    }
+
+    private static SseFrameReader reader(String content) {
+        return new SseFrameReader(new Buffer().writeUtf8(content));
+    }
+}
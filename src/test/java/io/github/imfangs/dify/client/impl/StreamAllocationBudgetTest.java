@@ -0,0 +1,184 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.event.WorkflowFinishedEvent;
+import io.github.imfangs.dify.client.event.WorkflowTextChunkEvent;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunRequest;
+import okhttp3.*;
+import okio.Buffer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 纯单元测试：按事件统计流式热路径的分配字节数，超出预算即失败
+ * <p>
+ * 请求经过真实的 executeStreamRequest → SseFrameReader → StreamEventDecoder → StreamEventDispatcher 链路，
+ * 响应体来自拦截器返回的内存 SSE 数据。分配量通过 {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}
+ * 在读取线程上统计，从第一个 token 回调到终止事件回调之间的差值除以 token 数即为每事件分配字节数。
+ * 预算在当前实现的实测值上预留了余量，热路径引入额外的拷贝或装箱时会超出。
+ */
+public class StreamAllocationBudgetTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+    private static final int TOKENS = 2_000;
+    private static final int WARMUP_STREAMS = 20;
+
+    /**
+     * 每个 message 事件的分配预算（字节），当前实测约 2.1KB
+     */
+    private static final long MESSAGE_EVENT_BUDGET = 4 * 1024;
+
+    /**
+     * 每个 text_chunk 事件的分配预算（字节），当前实测约 2.4KB
+     */
+    private static final long TEXT_CHUNK_EVENT_BUDGET = 4 * 1024;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    @BeforeAll
+    public static void checkSupport() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "当前JVM不支持线程分配统计");
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "当前JVM不支持线程分配统计");
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    @Test
+    public void messageEventsShouldStayWithinAllocationBudget() throws Exception {
+        String frame = "data: {\"event\":\"message\",\"conversation_id\":\"45701982-8118-4bc5-8e9b-64562b4555f2\","
+                + "\"message_id\":\"9da23599-e713-473b-982c-4328d4f5c78a\",\"created_at\":1705395332,"
+                + "\"task_id\":\"a8cf3a2c-9a4b-4f4e-8f6f-0d8d2b1c5e3a\",\"id\":\"9da23599-e713-473b-982c-4328d4f5c78a\","
+                + "\"answer\":\"你好\",\"from_variable_selector\":null}\n\n";
+        DifyClient client = client(body(frame, "data: {\"event\":\"message_end\",\"id\":\"9da23599\"}\n\n"));
+
+        for (int i = 0; i < WARMUP_STREAMS; i++) {
+            chatBytesPerEvent(client);
+        }
+        long perEvent = chatBytesPerEvent(client);
+
+        assertTrue(perEvent <= MESSAGE_EVENT_BUDGET,
+                "message 事件分配 " + perEvent + " 字节/事件，超出预算 " + MESSAGE_EVENT_BUDGET);
+    }
+
+    @Test
+    public void textChunkEventsShouldStayWithinAllocationBudget() throws Exception {
+        String frame = "data: {\"event\":\"text_chunk\",\"task_id\":\"a8cf3a2c-9a4b-4f4e-8f6f-0d8d2b1c5e3a\","
+                + "\"workflow_run_id\":\"fbd3b06a-1c6f-4a3e-9d4e-6e1f7d9d1c2b\","
+                + "\"data\":{\"text\":\"你好\",\"from_variable_selector\":[\"1716779934385\",\"text\"]}}\n\n";
+        DifyClient client = client(body(frame, "data: {\"event\":\"workflow_finished\",\"data\":{\"status\":\"succeeded\"}}\n\n"));
+
+        for (int i = 0; i < WARMUP_STREAMS; i++) {
+            workflowBytesPerEvent(client);
+        }
+        long perEvent = workflowBytesPerEvent(client);
+
+        assertTrue(perEvent <= TEXT_CHUNK_EVENT_BUDGET,
+                "text_chunk 事件分配 " + perEvent + " 字节/事件，超出预算 " + TEXT_CHUNK_EVENT_BUDGET);
+    }
+
+    private static long chatBytesPerEvent(DifyClient client) throws Exception {
+        AllocationProbe probe = new AllocationProbe();
+        client.sendChatMessageStream(ChatMessage.builder().query("你好").user("test-user").responseMode(ResponseMode.STREAMING).build(),
+                new ChatStreamCallback() {
+                    @Override
+                    public void onMessage(MessageEvent event) {
+                        probe.onToken();
+                    }
+
+                    @Override
+                    public void onMessageEnd(MessageEndEvent event) {
+                        probe.onEnd();
+                    }
+
+                    @Override
+                    public void onException(Throwable throwable) {
+                        probe.result.completeExceptionally(throwable);
+                    }
+                });
+        return probe.result.get(10, TimeUnit.SECONDS);
+    }
+
+    private static long workflowBytesPerEvent(DifyClient client) throws Exception {
+        AllocationProbe probe = new AllocationProbe();
+        client.runWorkflowStream(WorkflowRunRequest.builder().user("test-user").responseMode(ResponseMode.STREAMING).build(),
+                new WorkflowStreamCallback() {
+                    @Override
+                    public void onWorkflowTextChunk(WorkflowTextChunkEvent event) {
+                        probe.onToken();
+                    }
+
+                    @Override
+                    public void onWorkflowFinished(WorkflowFinishedEvent event) {
+                        probe.onEnd();
+                    }
+
+                    @Override
+                    public void onException(Throwable throwable) {
+                        probe.result.completeExceptionally(throwable);
+                    }
+                });
+        return probe.result.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 在读取线程上记录首个 token 与终止事件之间的分配量
+     */
+    private static final class AllocationProbe {
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+        private long threadId = -1;
+        private long startBytes;
+        private int tokens;
+
+        private void onToken() {
+            if (threadId < 0) {
+                threadId = Thread.currentThread().getId();
+                startBytes = threads.getThreadAllocatedBytes(threadId);
+            }
+            tokens++;
+        }
+
+        private void onEnd() {
+            if (threadId != Thread.currentThread().getId() || tokens != TOKENS) {
+                result.completeExceptionally(new AssertionError("同一个流应在同一线程上读取全部 " + TOKENS + " 个 token，实际 " + tokens));
+                return;
+            }
+            // 首个 token 之前的分配不计入，终止事件本身的分配摊到其余 token 上
+            result.complete((threads.getThreadAllocatedBytes(threadId) - startBytes) / (tokens - 1));
+        }
+    }
+
+    private static byte[] body(String frame, String terminal) {
+        Buffer buffer = new Buffer();
+        for (int i = 0; i < TOKENS; i++) {
+            buffer.writeUtf8(frame);
+        }
+        return buffer.writeUtf8(terminal).readByteArray();
+    }
+
+    private static DifyClient client(byte[] body) {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .body(ResponseBody.create(new Buffer().write(body), MediaType.get("text/event-stream"), -1))
+                        .build())
+                .build();
+        return new DefaultDifyClient(BASE_URL, "test-key", httpClient);
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.event.NodeFinishedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证事件单次解析与绑定
+ */
+public class StreamEventDecoderTest {
+
+    @Test
+    public void shouldReadEventTypeAndBindFromBufferedTokens() throws IOException {
+        String json = "{"
+                + "\"task_id\":\"t1\","
+                + "\"workflow_run_id\":\"wr1\","
+                + "\"data\":{\"id\":\"n1\",\"node_type\":\"llm\",\"outputs\":{\"text\":\"hi\",\"list\":[1,2,{\"a\":null}]}},"
+                + "\"event\":\"node_finished\""
+                + "}";
+
+        DecodedEvent event = StreamEventDecoder.decode(json.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("node_finished", event.getEvent());
+        assertEquals(EventType.NODE_FINISHED, event.getType());
+
+        NodeFinishedEvent bound = event.bind(NodeFinishedEvent.class);
+        assertEquals("t1", bound.getTaskId());
+        assertEquals("node_finished", bound.getEvent());
+        assertEquals("wr1", bound.getWorkflowRunId());
+        assertEquals("hi", bound.getData().getOutputs().get("text"));
+    }
+
+    @Test
+    public void shouldSkipUnsubscribedEventsWithoutBuffering() throws IOException {
+        Set<EventType> subscribed = EnumSet.of(EventType.MESSAGE, EventType.MESSAGE_END);
+        String node = "{\"event\":\"node_finished\",\"data\":{\"outputs\":{\"text\":\"large\"}}}";
+        String message = "{\"event\":\"message\",\"answer\":\"hi\"}";
+
+        DecodedEvent skipped = StreamEventDecoder.decode(new ByteArrayInputStream(node.getBytes(StandardCharsets.UTF_8)), subscribed);
+        assertTrue(skipped.isSkipped());
+        assertEquals(EventType.NODE_FINISHED, skipped.getType());
+        assertThrows(IllegalStateException.class, () -> skipped.bind(NodeFinishedEvent.class));
+
+        DecodedEvent kept = StreamEventDecoder.decode(new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8)), subscribed);
+        assertFalse(kept.isSkipped());
+        assertEquals("hi", kept.bind(MessageEvent.class).getAnswer());
+    }
+
+    @Test
+    public void shouldReadIdentifiersEvenFromSkippedEvents() throws IOException {
+        Set<EventType> subscribed = EnumSet.of(EventType.MESSAGE_END);
+        String message = "{\"event\":\"message\",\"answer\":\"hi\",\"metadata\":{\"task_id\":\"nested\"},"
+                + "\"task_id\":\"t1\",\"conversation_id\":\"c1\"}";
+        String end = "{\"conversation_id\":\"c1\",\"event\":\"message_end\",\"task_id\":\"t1\"}";
+
+        DecodedEvent skipped = StreamEventDecoder.decode(new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8)), subscribed);
+        assertTrue(skipped.isSkipped());
+        assertEquals("t1", skipped.getTaskId());
+        assertEquals("c1", skipped.getConversationId());
+
+        DecodedEvent kept = StreamEventDecoder.decode(new ByteArrayInputStream(end.getBytes(StandardCharsets.UTF_8)), subscribed);
+        assertEquals("t1", kept.getTaskId());
+        assertEquals("c1", kept.getConversationId());
+        assertEquals("t1", kept.bind(MessageEndEvent.class).getTaskId());
+    }
+
+    @Test
+    public void shouldLeaveTypeNullForUnknownOrMissingEvent() throws IOException {
+        assertNull(StreamEventDecoder.decode("{\"answer\":\"x\"}".getBytes(StandardCharsets.UTF_8)).getType());
+        assertNull(StreamEventDecoder.decode("{\"event\":\"brand_new\"}".getBytes(StandardCharsets.UTF_8)).getType());
+        assertThrows(IOException.class, () -> StreamEventDecoder.decode("[1]".getBytes(StandardCharsets.UTF_8)));
+    }
+}
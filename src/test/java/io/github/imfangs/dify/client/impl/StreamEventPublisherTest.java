@@ -0,0 +1,185 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.event.BaseEvent;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.transport.StreamPriority;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
+import okhttp3.*;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证流式事件发布者按需读取、取消与完成语义，以及信号串行、终止后不再发出信号
+ */
+public class StreamEventPublisherTest {
+
+    private static final String BASE_URL = "http://localhost:1/v1";
+
+    private final StreamScheduler scheduler = new StreamScheduler(4, 4, StreamScheduler.SaturationPolicy.REJECT, 0);
+    private final OkHttpClient httpClient = new OkHttpClient();
+
+    @Test
+    public void shouldReadOnlyAsManyFramesAsRequested() {
+        Buffer body = body("data: {\"event\":\"message\",\"answer\":\"a\"}\n\n"
+                + "data: {\"event\":\"message\",\"answer\":\"b\"}\n\n"
+                + "data: {\"event\":\"message_end\"}\n\n");
+        long total = body.size();
+        Call call = newCall();
+        RecordingSubscriber subscriber = subscribe(call, body);
+
+        assertTrue(subscriber.events.isEmpty());
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.events.size());
+        assertEquals("a", ((MessageEvent) subscriber.events.get(0)).getAnswer());
+        assertTrue(body.size() > 0 && body.size() < total, "未请求的帧不应被读取");
+
+        subscriber.subscription.request(Long.MAX_VALUE);
+        assertEquals(3, subscriber.events.size());
+        assertTrue(subscriber.events.get(2) instanceof MessageEndEvent);
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error.get());
+        assertFalse(call.isCanceled());
+        assertEquals(0, scheduler.getActiveStreams());
+    }
+
+    @Test
+    public void shouldCancelCallAndReleaseSlotWhenSubscriptionCancelled() {
+        Buffer body = body("data: {\"event\":\"message\",\"answer\":\"a\"}\n\n"
+                + "data: {\"event\":\"message_end\"}\n\n");
+        Call call = newCall();
+        RecordingSubscriber subscriber = subscribe(call, body);
+
+        subscriber.subscription.request(1);
+        assertEquals(1, scheduler.getActiveStreams());
+        subscriber.subscription.cancel();
+
+        assertTrue(call.isCanceled());
+        assertEquals(0, scheduler.getActiveStreams());
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.events.size());
+        assertFalse(subscriber.completed);
+        assertNull(subscriber.error.get());
+    }
+
+    @Test
+    public void shouldSignalErrorForNonPositiveRequest() {
+        RecordingSubscriber subscriber = subscribe(newCall(), body("data: {\"event\":\"message\"}\n\n"));
+
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+        assertTrue(subscriber.events.isEmpty());
+    }
+
+    @Test
+    public void shouldSignalInvalidRequestSeriallyAfterOnNext() {
+        Buffer body = body("data: {\"event\":\"message\",\"answer\":\"a\"}\n\n"
+                + "data: {\"event\":\"message\",\"answer\":\"b\"}\n\n");
+        AtomicReference<Throwable> errorDuringOnNext = new AtomicReference<>();
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(BaseEvent event) {
+                super.onNext(event);
+                subscription.request(-1);
+                // 非法 request 的错误信号不能在 onNext 返回前发出
+                errorDuringOnNext.set(error.get());
+            }
+        };
+        new StreamEventPublisher(() -> cursor(newCall(), body), Runnable::run).subscribe(subscriber);
+
+        subscriber.subscription.request(2);
+
+        assertNull(errorDuringOnNext.get());
+        assertTrue(subscriber.error.get() instanceof IllegalArgumentException);
+        assertEquals(1, subscriber.events.size(), "错误之后不应再有事件");
+        assertEquals(0, scheduler.getActiveStreams());
+    }
+
+    @Test
+    public void shouldNotSignalAfterCompletion() {
+        RecordingSubscriber subscriber = subscribe(newCall(), body("data: {\"event\":\"message_end\"}\n\n"));
+
+        subscriber.subscription.request(5);
+        assertTrue(subscriber.completed);
+        subscriber.subscription.request(0);
+
+        assertNull(subscriber.error.get(), "终止信号之后不应再发出错误");
+    }
+
+    @Test
+    public void shouldRejectSecondSubscriber() {
+        StreamEventPublisher publisher = new StreamEventPublisher(() -> cursor(newCall(), body("")), Runnable::run);
+        publisher.subscribe(new RecordingSubscriber());
+        RecordingSubscriber second = new RecordingSubscriber();
+
+        publisher.subscribe(second);
+
+        assertTrue(second.error.get() instanceof IllegalStateException);
+    }
+
+    private RecordingSubscriber subscribe(Call call, Buffer body) {
+        StreamEventPublisher publisher = new StreamEventPublisher(() -> cursor(call, body), Runnable::run);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        publisher.subscribe(subscriber);
+        return subscriber;
+    }
+
+    private StreamCursor cursor(Call call, Buffer body) {
+        AtomicReference<StreamScheduler.Ticket> ticket = new AtomicReference<>();
+        scheduler.submit(BASE_URL, null, StreamPriority.INTERACTIVE, ticket::set, e -> fail(e));
+        Response response = new Response.Builder()
+                .request(call.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, MediaType.get("text/event-stream"), -1))
+                .build();
+        return new StreamCursor(call, response, ticket.get(), EnumSet.of(EventType.MESSAGE_END, EventType.ERROR));
+    }
+
+    private Call newCall() {
+        return httpClient.newCall(new Request.Builder().url(BASE_URL + "/chat-messages").build());
+    }
+
+    private static Buffer body(String content) {
+        return new Buffer().writeUtf8(content);
+    }
+
+    private static class RecordingSubscriber implements Subscriber<BaseEvent> {
+        private final List<BaseEvent> events = new ArrayList<>();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Subscription subscription;
+        private boolean completed;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(BaseEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error.set(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
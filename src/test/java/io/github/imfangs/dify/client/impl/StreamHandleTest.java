@@ -0,0 +1,282 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.callback.CompletionStreamCallback;
+import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
+import io.github.imfangs.dify.client.enums.EventType;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.completion.CompletionRequest;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunRequest;
+import io.github.imfangs.dify.client.stream.StreamHandle;
+import io.github.imfangs.dify.client.transport.StreamScheduler;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证流句柄取消时中止连接并以首个事件中的 task_id 通知服务端停止，超过截止时间时同样取消，
+ * 在调度器中排队的流取消或超时时立即撤回
+ */
+public class StreamHandleTest {
+
+    private static final String FIRST_MESSAGE = "data: {\"event\":\"message\",\"task_id\":\"task-1\",\"id\":\"msg-1\",\"answer\":\"a\"}\n\n";
+    private static final String MESSAGE_END = "data: {\"event\":\"message_end\",\"task_id\":\"task-1\",\"id\":\"msg-1\"}\n\n";
+    private static final String WORKFLOW_STARTED = "data: {\"event\":\"workflow_started\",\"task_id\":\"task-2\",\"workflow_run_id\":\"run-1\","
+            + "\"data\":{\"id\":\"run-1\",\"workflow_id\":\"wf-1\"}}\n\n";
+    private static final String WORKFLOW_FINISHED = "data: {\"event\":\"workflow_finished\",\"task_id\":\"task-2\",\"workflow_run_id\":\"run-1\","
+            + "\"data\":{\"id\":\"run-1\",\"status\":\"succeeded\"}}\n\n";
+
+    private final MockWebServer server = new MockWebServer();
+    private final BlockingQueue<RecordedRequest> stops = new LinkedBlockingQueue<>();
+    private volatile boolean stall = true;
+    private DifyClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.endsWith("/stop")) {
+                    stops.add(request);
+                    return new MockResponse().setHeader("Content-Type", "application/json").setBody("{\"result\":\"success\"}");
+                }
+                if (path.startsWith("/v1/completion-messages")) {
+                    // 响应头迟迟不返回，取消发生在收到任何事件之前
+                    return stream(FIRST_MESSAGE, MESSAGE_END).setHeadersDelay(2, TimeUnit.SECONDS);
+                }
+                if (path.startsWith("/v1/workflows/run")) {
+                    return stream(WORKFLOW_STARTED, WORKFLOW_FINISHED);
+                }
+                return stream(FIRST_MESSAGE, MESSAGE_END);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (client != null) {
+            client.close();
+        }
+        server.shutdown();
+    }
+
+    @Test
+    public void cancelShouldAbortStreamAndStopTask() throws Exception {
+        client = client(0);
+        CompletableFuture<Void> firstMessage = new CompletableFuture<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        StreamHandle handle = client.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onMessage(MessageEvent event) {
+                firstMessage.complete(null);
+            }
+
+            @Override
+            public void onMessageEnd(MessageEndEvent event) {
+                fail("取消后不应收到终止事件");
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                error.set(throwable);
+            }
+        });
+
+        firstMessage.get(5, TimeUnit.SECONDS);
+        assertEquals("task-1", handle.getTaskId());
+        handle.cancel();
+        handle.cancel();
+
+        assertTrue(handle.awaitCompletion(5, TimeUnit.SECONDS));
+        assertTrue(handle.isCancelled());
+        RecordedRequest stop = stops.poll(5, TimeUnit.SECONDS);
+        assertNotNull(stop, "应调用停止接口");
+        assertEquals("/v1/chat-messages/task-1/stop", stop.getPath());
+        assertTrue(stop.getBody().readUtf8().contains("\"user\":\"test-user\""));
+        assertNull(stops.poll(200, TimeUnit.MILLISECONDS), "停止接口只应调用一次");
+        assertNull(error.get(), "主动取消不应回调异常");
+    }
+
+    @Test
+    public void cancelShouldStopTaskWhenFirstEventIsNotSubscribed() throws Exception {
+        client = client(0);
+        StreamHandle handle = client.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public Set<EventType> subscribedEvents() {
+                return EnumSet.of(EventType.MESSAGE_END);
+            }
+        });
+
+        // 首个 message 事件未被订阅，task_id 仍应被读取
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (handle.getTaskId() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("task-1", handle.getTaskId());
+        handle.cancel();
+
+        assertTrue(handle.awaitCompletion(5, TimeUnit.SECONDS));
+        RecordedRequest stop = stops.poll(5, TimeUnit.SECONDS);
+        assertNotNull(stop, "应调用停止接口");
+        assertEquals("/v1/chat-messages/task-1/stop", stop.getPath());
+    }
+
+    @Test
+    public void deadlineShouldCancelStreamAndReportTimeout() throws Exception {
+        client = client(300);
+        CompletableFuture<Throwable> error = new CompletableFuture<>();
+        StreamHandle handle = client.runWorkflowStream(WorkflowRunRequest.builder().user("test-user").build(), new WorkflowStreamCallback() {
+            @Override
+            public void onException(Throwable throwable) {
+                error.complete(throwable);
+            }
+        });
+
+        assertTrue(error.get(5, TimeUnit.SECONDS) instanceof InterruptedIOException);
+        assertTrue(handle.awaitCompletion(5, TimeUnit.SECONDS));
+        assertTrue(handle.isCancelled());
+        RecordedRequest stop = stops.poll(5, TimeUnit.SECONDS);
+        assertNotNull(stop, "超过截止时间应调用停止接口");
+        assertEquals("/v1/workflows/tasks/task-2/stop", stop.getPath());
+    }
+
+    @Test
+    public void cancelBeforeFirstEventShouldOnlyAbortCall() throws Exception {
+        client = client(0);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        StreamHandle handle = client.sendCompletionMessageStream(CompletionRequest.builder().user("test-user").build(), new CompletionStreamCallback() {
+            @Override
+            public void onException(Throwable throwable) {
+                error.set(throwable);
+            }
+        });
+
+        handle.cancel();
+
+        assertTrue(handle.awaitCompletion(5, TimeUnit.SECONDS));
+        assertNull(handle.getTaskId());
+        assertNull(stops.poll(200, TimeUnit.MILLISECONDS), "没有 task_id 时不应调用停止接口");
+        assertNull(error.get());
+    }
+
+    @Test
+    public void cancelOrDeadlineWhileQueuedShouldWithdrawImmediately() throws Exception {
+        StreamScheduler scheduler = new StreamScheduler(1, 1, StreamScheduler.SaturationPolicy.QUEUE, 10);
+        client = client(0, scheduler);
+        // 第一个流占住唯一的名额，首个事件之后停顿 2 秒
+        CompletableFuture<Void> firstMessage = new CompletableFuture<>();
+        StreamHandle running = client.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onMessage(MessageEvent event) {
+                firstMessage.complete(null);
+            }
+        });
+        firstMessage.get(5, TimeUnit.SECONDS);
+
+        AtomicReference<Throwable> cancelError = new AtomicReference<>();
+        StreamHandle queued = client.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onException(Throwable throwable) {
+                cancelError.set(throwable);
+            }
+        });
+        assertEquals(1, scheduler.getQueueDepth());
+        queued.cancel();
+        assertTrue(queued.awaitCompletion(200, TimeUnit.MILLISECONDS), "排队中的流取消后应立即结束");
+        assertEquals(0, scheduler.getQueueDepth());
+        assertNull(cancelError.get());
+
+        try (DifyClient deadlineClient = client(300, scheduler)) {
+            CompletableFuture<Throwable> error = new CompletableFuture<>();
+            long start = System.nanoTime();
+            StreamHandle expiring = deadlineClient.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+                @Override
+                public void onException(Throwable throwable) {
+                    error.complete(throwable);
+                }
+            });
+
+            assertTrue(error.get(5, TimeUnit.SECONDS) instanceof InterruptedIOException);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_500, "截止时间应在排队期间生效");
+            assertTrue(expiring.awaitCompletion(200, TimeUnit.MILLISECONDS));
+            assertEquals(0, scheduler.getQueueDepth());
+        }
+        assertFalse(running.isDone());
+        assertEquals(1, server.getRequestCount(), "撤回的流不应发出请求");
+    }
+
+    @Test
+    public void cancelAfterCompletionShouldBeNoop() throws Exception {
+        stall = false;
+        client = client(0);
+        CompletableFuture<MessageEndEvent> end = new CompletableFuture<>();
+        StreamHandle handle = client.sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onMessageEnd(MessageEndEvent event) {
+                end.complete(event);
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                end.completeExceptionally(throwable);
+            }
+        });
+
+        end.get(5, TimeUnit.SECONDS);
+        handle.awaitCompletion();
+        handle.cancel();
+
+        assertTrue(handle.isDone());
+        assertFalse(handle.isCancelled());
+        assertNull(stops.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private MockResponse stream(String first, String rest) {
+        MockResponse response = new MockResponse()
+                .setHeader("Content-Type", "text/event-stream")
+                .setBody(new Buffer().writeUtf8(first).writeUtf8(rest));
+        if (stall) {
+            // 首个事件之后停顿，模拟仍在生成的长回答
+            response.throttleBody(first.getBytes(StandardCharsets.UTF_8).length, 2, TimeUnit.SECONDS);
+        }
+        return response;
+    }
+
+    private DifyClient client(long deadlineMillis) {
+        return client(deadlineMillis, StreamScheduler.getDefault());
+    }
+
+    private DifyClient client(long deadlineMillis, StreamScheduler scheduler) {
+        String baseUrl = server.url("/v1").toString();
+        return new DefaultDifyClient(DifyConfig.builder().baseUrl(baseUrl).apiKey("test-key").streamDeadlineMillis(deadlineMillis)
+                .streamScheduler(scheduler).build());
+    }
+
+    private static ChatMessage chatMessage() {
+        return ChatMessage.builder().query("你好").user("test-user").build();
+    }
+}
@@ -0,0 +1,194 @@
+package io.github.imfangs.dify.client.impl;
+
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.callback.ChatStreamCallback;
+import io.github.imfangs.dify.client.callback.WorkflowStreamCallback;
+import io.github.imfangs.dify.client.enums.ResponseMode;
+import io.github.imfangs.dify.client.event.ErrorEvent;
+import io.github.imfangs.dify.client.event.MessageEndEvent;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.event.WorkflowFinishedEvent;
+import io.github.imfangs.dify.client.metrics.StreamLatency;
+import io.github.imfangs.dify.client.metrics.StreamStats;
+import io.github.imfangs.dify.client.metrics.StreamStatsRegistry;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import io.github.imfangs.dify.client.model.workflow.WorkflowRunRequest;
+import okhttp3.*;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证流式请求的单流统计会传给终止事件回调，并按应用与接口路径聚合
+ */
+public class StreamStatsTrackerTest {
+
+    private static final String BASE_URL = "http://dify.test/v1";
+
+    @Test
+    public void chatStreamShouldReportStatsOnMessageEnd() throws Exception {
+        long createdAt = System.currentTimeMillis() / 1000;
+        String body = "data: {\"event\":\"ping\"}\n\n"
+                + "data: {\"event\":\"message\",\"answer\":\"a\",\"created_at\":" + createdAt + "}\n\n"
+                + "data: {\"event\":\"message\",\"answer\":\"b\",\"created_at\":" + createdAt + "}\n\n"
+                + "data: {\"event\":\"message\",\"answer\":\"c\",\"created_at\":" + createdAt + "}\n\n"
+                + "data: {\"event\":\"message_end\",\"message_id\":\"m1\"}\n\n";
+        StreamStatsRegistry registry = new StreamStatsRegistry();
+        CompletableFuture<StreamStats> result = new CompletableFuture<>();
+
+        client(body, "chat-app", registry).sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onMessageEnd(MessageEndEvent event, StreamStats stats) {
+                result.complete(stats);
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+        StreamStats stats = result.get(10, TimeUnit.SECONDS);
+
+        assertEquals("chat-app", stats.getApp());
+        assertEquals("/chat-messages", stats.getEndpoint());
+        assertEquals(5, stats.getFrameCount());
+        assertEquals(3, stats.getTokenCount());
+        assertTrue(stats.getResponseHeadersNanos() >= 0);
+        assertTrue(stats.getTimeToFirstTokenNanos() >= stats.getResponseHeadersNanos());
+        assertTrue(stats.getDurationNanos() >= stats.getTimeToFirstTokenNanos());
+        assertTrue(stats.getMaxInterTokenGapNanos() >= stats.getMeanInterTokenGapNanos());
+        assertNotNull(stats.getServerLagMillis());
+
+        StreamLatency latency = awaitLatency(registry, "chat-app", "/chat-messages", 1);
+        assertEquals(1, latency.getCompleted().sum());
+        assertEquals(0, latency.getFailed().sum());
+        assertEquals(1, latency.getTimeToFirstToken().getCount());
+        assertEquals(2, latency.getInterTokenGap().getCount());
+        assertEquals(1, latency.getServerLag().getCount());
+    }
+
+    @Test
+    public void workflowStreamShouldCountTextChunksAsTokens() throws Exception {
+        String body = "data: {\"event\":\"workflow_started\",\"data\":{}}\n\n"
+                + "data: {\"event\":\"text_chunk\",\"data\":{\"text\":\"a\"}}\n\n"
+                + "data: {\"event\":\"text_chunk\",\"data\":{\"text\":\"b\"}}\n\n"
+                + "data: {\"event\":\"workflow_finished\",\"data\":{\"status\":\"succeeded\"}}\n\n";
+        StreamStatsRegistry registry = new StreamStatsRegistry();
+        CompletableFuture<StreamStats> result = new CompletableFuture<>();
+
+        client(body, null, registry).runWorkflowStream(workflowRequest(), new WorkflowStreamCallback() {
+            @Override
+            public void onWorkflowFinished(WorkflowFinishedEvent event, StreamStats stats) {
+                result.complete(stats);
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+        StreamStats stats = result.get(10, TimeUnit.SECONDS);
+
+        assertEquals("default", stats.getApp());
+        assertEquals(4, stats.getFrameCount());
+        assertEquals(2, stats.getTokenCount());
+        assertNull(stats.getServerLagMillis());
+        assertEquals(1, awaitLatency(registry, "default", "/workflows/run", 1).getCompleted().sum());
+    }
+
+    @Test
+    public void errorEventShouldBeCountedAsFailure() throws Exception {
+        String body = "data: {\"event\":\"message\",\"answer\":\"a\"}\n\n"
+                + "data: {\"event\":\"error\",\"status\":500,\"code\":\"internal_error\",\"message\":\"boom\"}\n\n";
+        StreamStatsRegistry registry = new StreamStatsRegistry();
+        CompletableFuture<Void> result = new CompletableFuture<>();
+
+        client(body, "chat-app", registry).sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onError(ErrorEvent event) {
+                result.complete(null);
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+        result.get(10, TimeUnit.SECONDS);
+
+        StreamLatency latency = awaitLatency(registry, "chat-app", "/chat-messages", 1);
+        assertEquals(0, latency.getCompleted().sum());
+        assertEquals(1, latency.getFailed().sum());
+        assertEquals(0, latency.getTimeToFirstToken().getCount());
+    }
+
+    @Test
+    public void legacyCallbackShouldStillReceiveMessageEnd() throws Exception {
+        String body = "data: {\"event\":\"message\",\"answer\":\"a\"}\n\n"
+                + "data: {\"event\":\"message_end\",\"message_id\":\"m1\"}\n\n";
+        CompletableFuture<String> result = new CompletableFuture<>();
+
+        client(body, null, null).sendChatMessageStream(chatMessage(), new ChatStreamCallback() {
+            @Override
+            public void onMessage(MessageEvent event) {
+            }
+
+            @Override
+            public void onMessageEnd(MessageEndEvent event) {
+                result.complete(event.getMessageId());
+            }
+
+            @Override
+            public void onException(Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+        });
+
+        assertEquals("m1", result.get(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 聚合在回调返回后记录，等待读取线程完成
+     */
+    private static StreamLatency awaitLatency(StreamStatsRegistry registry, String app, String endpoint, long streams)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            StreamLatency latency = registry.get(app, endpoint);
+            if (latency != null && latency.getCompleted().sum() + latency.getFailed().sum() >= streams) {
+                return latency;
+            }
+            Thread.sleep(10);
+        }
+        fail("流统计未在期限内聚合");
+        return null;
+    }
+
+    private static ChatMessage chatMessage() {
+        return ChatMessage.builder().query("你好").user("test-user").responseMode(ResponseMode.STREAMING).build();
+    }
+
+    private static WorkflowRunRequest workflowRequest() {
+        return WorkflowRunRequest.builder().user("test-user").responseMode(ResponseMode.STREAMING).build();
+    }
+
+    private static DifyClient client(String body, String appName, StreamStatsRegistry registry) {
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .addInterceptor(chain -> new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .body(ResponseBody.create(new Buffer().writeUtf8(body), MediaType.get("text/event-stream"), -1))
+                        .build())
+                .build();
+        DifyConfig config = DifyConfig.builder().baseUrl(BASE_URL).apiKey("test-key").appName(appName)
+                .streamStatsRegistry(registry).build();
+        return new DefaultDifyClient(config, httpClient);
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.imfangs.dify.client.impl;
+
+import okhttp3.*;
+import okio.Buffer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试用的HTTP传输桩：按顺序返回预设响应，预设响应用完后交给兜底处理，并统计发出的请求数
+ */
+final class StubTransport {
+
+    private static final Request PLACEHOLDER = new Request.Builder().url("http://dify.test/v1").build();
+
+    private final Deque<Response> script = new LinkedList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile Interceptor fallback = chain -> response(200, "{}");
+
+    /**
+     * 追加预设响应，null 表示连接失败
+     *
+     * @param responses 响应
+     * @return 当前实例
+     */
+    StubTransport enqueue(Response... responses) {
+        synchronized (script) {
+            script.addAll(Arrays.asList(responses));
+        }
+        return this;
+    }
+
+    /**
+     * 设置预设响应用完后的兜底处理，默认返回 200 与空对象
+     *
+     * @param fallback 兜底处理
+     * @return 当前实例
+     */
+    StubTransport otherwise(Interceptor fallback) {
+        this.fallback = fallback;
+        return this;
+    }
+
+    /**
+     * 创建经过此桩发送请求的HTTP客户端
+     *
+     * @return HTTP客户端
+     */
+    OkHttpClient httpClient() {
+        return new OkHttpClient.Builder()
+                .addInterceptor(chain -> {
+                    calls.incrementAndGet();
+                    Response next;
+                    boolean scripted;
+                    synchronized (script) {
+                        scripted = !script.isEmpty();
+                        next = script.poll();
+                    }
+                    if (!scripted) {
+                        next = fallback.intercept(chain);
+                    } else if (next == null) {
+                        throw new IOException("connection reset");
+                    }
+                    return next.newBuilder().request(chain.request()).build();
+                })
+                .build();
+    }
+
+    /**
+     * 已发出的请求数
+     *
+     * @return 请求数
+     */
+    int getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * 清零请求计数
+     */
+    void resetCalls() {
+        calls.set(0);
+    }
+
+    /**
+     * 构造JSON响应，请求在发送时替换为实际请求
+     *
+     * @param code 状态码
+     * @param body 响应体
+     * @return 响应
+     */
+    static Response response(int code, String body) {
+        return response(code, body, "application/json");
+    }
+
+    /**
+     * 构造指定内容类型的响应，请求在发送时替换为实际请求
+     *
+     * @param code 状态码
+     * @param body 响应体
+     * @param contentType 内容类型
+     * @return 响应
+     */
+    static Response response(int code, String body, String contentType) {
+        return new Response.Builder()
+                .request(PLACEHOLDER)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("status " + code)
+                .body(ResponseBody.create(new Buffer().writeUtf8(body), MediaType.get(contentType), -1))
+                .build();
+    }
+}
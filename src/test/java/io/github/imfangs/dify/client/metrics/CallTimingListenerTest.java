@@ -0,0 +1,122 @@
+package io.github.imfangs.dify.client.metrics;
+
+import io.github.imfangs.dify.client.impl.DefaultDifyClient;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import io.github.imfangs.dify.client.util.HttpClientUtils;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证连接阶段计时监听器记录建连与首字节时间、识别连接复用，并按采样比例汇总到请求指标
+ */
+public class CallTimingListenerTest {
+
+    private MockWebServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void shouldRecordPhasesAndConnectionReuse() throws IOException {
+        OkHttpClient client = HttpClientUtils.createDefaultClient();
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        CallTimings first = execute(client);
+        CallTimings second = execute(client);
+
+        assertFalse(first.isConnectionReused());
+        assertTrue(first.getConnectNanos() >= 0);
+        assertEquals(-1, first.getTlsNanos());
+        assertTrue(first.getConnectionAcquiredNanos() >= first.getConnectNanos());
+        assertTrue(first.getRequestSentNanos() >= first.getConnectionAcquiredNanos());
+        assertTrue(first.getTimeToFirstByteNanos() >= 0);
+
+        assertTrue(second.isConnectionReused());
+        assertEquals(-1, second.getConnectNanos());
+        assertEquals(-1, second.getDnsNanos());
+        assertTrue(second.getTimeToFirstByteNanos() >= 0);
+    }
+
+    @Test
+    public void untaggedCallsShouldNotBeTraced() throws IOException {
+        OkHttpClient client = HttpClientUtils.createDefaultClient();
+        server.enqueue(new MockResponse().setBody("{}"));
+        Request request = new Request.Builder().url(server.url("/v1/info")).build();
+
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals(200, response.code());
+            assertNull(response.request().tag(CallTimings.class));
+        }
+    }
+
+    @Test
+    public void clientShouldAttachTimingsToRequestMetrics() throws Exception {
+        InMemoryDifyMetrics metrics = new InMemoryDifyMetrics();
+        server.enqueue(new MockResponse().setBody("{\"name\":\"app\"}"));
+        server.enqueue(new MockResponse().setBody("{\"name\":\"app\"}"));
+
+        DefaultDifyClient client = new DefaultDifyClient(DifyConfig.builder()
+                .baseUrl(server.url("/v1").toString()).apiKey("test-key").metrics(metrics).build());
+        try {
+            client.getAppInfo();
+            client.getAppInfo();
+        } finally {
+            client.close();
+        }
+
+        EndpointSnapshot endpoint = metrics.snapshot("GET", "/info", false);
+        assertEquals(2, endpoint.getTimeToFirstByte().getCount());
+        assertEquals(1, endpoint.getNewConnections());
+        ConnectionSnapshot connections = metrics.connectionSnapshot();
+        assertEquals(1, connections.getNewConnections());
+        assertEquals(1, connections.getReusedConnections());
+        assertEquals(1, connections.getConnect().getCount());
+    }
+
+    @Test
+    public void zeroSampleRateShouldDisableTracing() throws Exception {
+        InMemoryDifyMetrics metrics = new InMemoryDifyMetrics();
+        server.enqueue(new MockResponse().setBody("{\"name\":\"app\"}"));
+
+        DefaultDifyClient client = new DefaultDifyClient(DifyConfig.builder()
+                .baseUrl(server.url("/v1").toString()).apiKey("test-key").metrics(metrics).callTracingSampleRate(0).build());
+        try {
+            client.getAppInfo();
+        } finally {
+            client.close();
+        }
+
+        EndpointSnapshot endpoint = metrics.snapshot("GET", "/info", false);
+        assertEquals(1, endpoint.getRequests());
+        assertEquals(0, endpoint.getTimeToFirstByte().getCount());
+        assertEquals(0, metrics.connectionSnapshot().getNewConnections());
+    }
+
+    private CallTimings execute(OkHttpClient client) throws IOException {
+        CallTimings timings = new CallTimings();
+        Request request = new Request.Builder().url(server.url("/v1/info")).tag(CallTimings.class, timings).build();
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals("{}", response.body().string());
+        }
+        return timings;
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.imfangs.dify.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证请求路径到接口模板的归一化
+ */
+public class EndpointTemplatesTest {
+
+    @Test
+    public void shouldKeepStaticPaths() {
+        assertEquals("/chat-messages", EndpointTemplates.of("/chat-messages"));
+        assertEquals("/workflows/run", EndpointTemplates.of("/workflows/run"));
+        assertEquals("/apps/annotation-reply/enable", EndpointTemplates.of("/apps/annotation-reply/enable"));
+        assertEquals("/v1/info", EndpointTemplates.of("/v1/info"));
+    }
+
+    @Test
+    public void shouldReplaceIdSegments() {
+        assertEquals("/datasets/{id}/retrieve", EndpointTemplates.of("/datasets/6c1f4b7e-0d0a-4e55-9e43-3f0a2b1c9d8e/retrieve"));
+        assertEquals("/datasets/{id}/documents/{id}/segments/{id}",
+                EndpointTemplates.of("/datasets/6c1f4b7e-0d0a-4e55-9e43-3f0a2b1c9d8e/documents/9a2e61d4-7b3c-4f10-8a5d-2e6c7f8b9a01/segments/3b7c9d2e-1f4a-4c6b-8e0d-5a7b9c1d3e2f"));
+        assertEquals("/chat-messages/{id}/stop", EndpointTemplates.of("/chat-messages/a8cf3a2c-9a4b-4f4e-8f6f-0d8d2b1c5e3a/stop"));
+        assertEquals("/datasets/{id}/documents/{id}/indexing-status", EndpointTemplates.of("/datasets/42/documents/20250101123456789012/indexing-status"));
+        assertEquals("/files/{id}/preview", EndpointTemplates.of("/files/abcdef0123456789abcdef/preview"));
+    }
+
+    @Test
+    public void shouldHandleEdgeCases() {
+        assertEquals("/", EndpointTemplates.of(""));
+        assertEquals("/", EndpointTemplates.of(null));
+        assertEquals("/", EndpointTemplates.of("/"));
+        assertEquals("/messages/", EndpointTemplates.of("/messages/"));
+        assertEquals("/messages/{id}/", EndpointTemplates.of("/messages/123/"));
+        assertEquals("/files/report%20v2", EndpointTemplates.of("/files/report%20v2"));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.imfangs.dify.client.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证进程内请求指标的分组、状态码与错误码计数以及分组上限
+ */
+public class InMemoryDifyMetricsTest {
+
+    @Test
+    public void shouldAggregateByMethodEndpointAndStreaming() {
+        InMemoryDifyMetrics metrics = new InMemoryDifyMetrics();
+
+        metrics.recordRequest(metric("POST", "/chat-messages", false, 200, null, 1_000_000));
+        metrics.recordRequest(metric("POST", "/chat-messages", false, 200, null, 3_000_000));
+        metrics.recordRequest(metric("POST", "/chat-messages", false, 400, "invalid_param", 500_000));
+        metrics.recordRequest(metric("POST", "/chat-messages", true, 200, null, 9_000_000));
+        metrics.recordRequest(metric("GET", "/info", false, 0, "ConnectException", 100_000));
+
+        List<EndpointSnapshot> snapshots = metrics.snapshot();
+        assertEquals(3, snapshots.size());
+
+        EndpointSnapshot blocking = metrics.snapshot("POST", "/chat-messages", false);
+        assertEquals(3, blocking.getRequests());
+        assertEquals(1, blocking.getErrors());
+        assertEquals(2L, blocking.getStatusCounts().get(200));
+        assertEquals(1L, blocking.getStatusCounts().get(400));
+        assertEquals(1L, blocking.getErrorCodeCounts().get("invalid_param"));
+        assertEquals(3, blocking.getLatency().getCount());
+        assertEquals(3_000_000, blocking.getLatency().getMax());
+        assertEquals(30, blocking.getRequestBytes());
+        assertEquals(300, blocking.getResponseBytes());
+
+        EndpointSnapshot streaming = metrics.snapshot("POST", "/chat-messages", true);
+        assertEquals(1, streaming.getRequests());
+        assertEquals(0, streaming.getErrors());
+
+        EndpointSnapshot failed = metrics.snapshot("GET", "/info", false);
+        assertEquals(1, failed.getErrors());
+        assertEquals(1L, failed.getStatusCounts().get(0));
+
+        metrics.reset();
+        assertTrue(metrics.snapshot().isEmpty());
+    }
+
+    @Test
+    public void shouldBoundEndpointsAndErrorCodes() {
+        InMemoryDifyMetrics metrics = new InMemoryDifyMetrics();
+
+        for (int i = 0; i < InMemoryDifyMetrics.MAX_ENDPOINTS + 10; i++) {
+            metrics.recordRequest(metric("GET", "/path-" + i, false, 200, null, 1));
+        }
+        for (int i = 0; i < EndpointMetrics.MAX_ERROR_CODES + 10; i++) {
+            metrics.recordRequest(metric("GET", "/path-0", false, 500, "code-" + i, 1));
+        }
+
+        assertEquals(InMemoryDifyMetrics.MAX_ENDPOINTS + 1, metrics.snapshot().size());
+        assertEquals(10, metrics.snapshot("GET", InMemoryDifyMetrics.OTHER_ENDPOINT, false).getRequests());
+        EndpointSnapshot first = metrics.snapshot("GET", "/path-0", false);
+        assertEquals(EndpointMetrics.MAX_ERROR_CODES + 1, first.getErrorCodeCounts().size());
+        assertEquals(10L, first.getErrorCodeCounts().get(EndpointMetrics.OTHER_ERROR_CODE));
+    }
+
+    private static RequestMetric metric(String method, String endpoint, boolean streaming, int status, String errorCode, long latencyNanos) {
+        return RequestMetric.builder()
+                .method(method)
+                .endpoint(endpoint)
+                .streaming(streaming)
+                .status(status)
+                .errorCode(errorCode)
+                .latencyNanos(latencyNanos)
+                .requestBytes(10)
+                .responseBytes(100)
+                .build();
+    }
+}
@@ -0,0 +1,174 @@
+package io.github.imfangs.dify.client.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证自适应并发上限的上调、按时延与失败下调、名额等待以及按接口区分
+ */
+public class AdaptiveLimitTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void shouldRejectAtLimitAndReleaseSlots() {
+        AdaptiveLimit limit = limit(AdaptiveLimitPolicy.builder().initialLimit(2).build());
+
+        AdaptiveLimit.Permit first = limit.tryAcquire();
+        AdaptiveLimit.Permit second = limit.tryAcquire();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+        assertEquals(1, limit.getRejected());
+
+        first.release();
+        first.release();
+        assertEquals(1, limit.getInFlight(), "重复归还只生效一次");
+        assertNotNull(limit.tryAcquire());
+    }
+
+    @Test
+    public void limitShouldGrowWhileLatencyStaysFlatUnderLoad() {
+        AdaptiveLimit limit = limit(AdaptiveLimitPolicy.builder().initialLimit(4).maxLimit(10).build());
+
+        for (int round = 0; round < 20; round++) {
+            List<AdaptiveLimit.Permit> permits = fill(limit);
+            for (AdaptiveLimit.Permit permit : permits) {
+                permit.sample(100 * MILLIS, false);
+                permit.release();
+            }
+        }
+
+        assertEquals(10, limit.getLimit(), "时延平稳且并发打满时应增长到上限");
+        assertEquals(100 * MILLIS, limit.getBaselineLatencyNanos());
+    }
+
+    @Test
+    public void idleTrafficShouldNotGrowLimit() {
+        AdaptiveLimit limit = limit(AdaptiveLimitPolicy.builder().initialLimit(10).build());
+
+        for (int i = 0; i < 50; i++) {
+            AdaptiveLimit.Permit permit = limit.tryAcquire();
+            permit.sample(100 * MILLIS, false);
+            permit.release();
+        }
+
+        assertEquals(10, limit.getLimit(), "并发远低于上限时低时延不能说明还有余量");
+    }
+
+    @Test
+    public void latencyRiseShouldShrinkLimitOncePerBaseline() throws Exception {
+        AdaptiveLimit limit = limit(AdaptiveLimitPolicy.builder().initialLimit(20).backoffRatio(0.5).build());
+        AdaptiveLimit.Permit warm = limit.tryAcquire();
+        warm.sample(MILLIS, false);
+        warm.release();
+        Thread.sleep(5);
+
+        List<AdaptiveLimit.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            permits.add(limit.tryAcquire());
+        }
+        for (AdaptiveLimit.Permit permit : permits) {
+            permit.sample(10 * MILLIS, false);
+            permit.release();
+        }
+
+        assertEquals(10, limit.getLimit(), "同一基线周期内的一批慢请求只下调一次");
+    }
+
+    @Test
+    public void failuresShouldShrinkLimitToMinimum() throws Exception {
+        AdaptiveLimit limit = limit(AdaptiveLimitPolicy.builder().initialLimit(8).minLimit(2).backoffRatio(0.5).build());
+
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(2);
+            AdaptiveLimit.Permit permit = limit.tryAcquire();
+            if (i % 2 == 0) {
+                permit.onResponse(503);
+            } else {
+                permit.onError(new SocketTimeoutException("timeout"));
+            }
+            permit.release();
+        }
+
+        assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    public void clientErrorsAndCancellationShouldNotShrinkLimit() throws Exception {
+        // 微秒级的时延抖动不应影响本用例，放宽时延容忍度只验证失败判定
+        AdaptiveLimit limit = limit(AdaptiveLimitPolicy.builder().initialLimit(8).latencyTolerance(1_000_000).build());
+
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(2);
+            AdaptiveLimit.Permit rejected = limit.tryAcquire();
+            rejected.onResponse(400);
+            rejected.release();
+            AdaptiveLimit.Permit cancelled = limit.tryAcquire();
+            cancelled.onCancel();
+            cancelled.release();
+        }
+
+        assertEquals(8, limit.getLimit());
+    }
+
+    @Test
+    public void blockingAcquireShouldWaitForRelease() throws Exception {
+        AdaptiveLimit limit = limit(AdaptiveLimitPolicy.builder().initialLimit(1).build());
+        AdaptiveLimit.Permit held = limit.acquire(0);
+
+        assertNull(limit.acquire(20 * MILLIS), "等待超时");
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                if (limit.acquire(5_000 * MILLIS) != null) {
+                    acquired.countDown();
+                }
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+        Thread.sleep(20);
+        held.release();
+
+        assertTrue(acquired.await(5, TimeUnit.SECONDS), "归还名额后等待方应被唤醒");
+        waiter.join();
+    }
+
+    @Test
+    public void registryShouldKeepLimitPerEndpoint() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(AdaptiveLimitPolicy.builder().initialLimit(1).build());
+
+        AdaptiveLimit workflow = limiter.get("POST", "/workflows/run");
+        assertSame(workflow, limiter.get("POST", "/workflows/run"));
+        assertNotNull(workflow.tryAcquire());
+        assertNull(workflow.tryAcquire());
+        assertNotNull(limiter.get("POST", "/chat-messages").tryAcquire(), "不同接口的上限互不影响");
+
+        assertEquals(2, limiter.getLimits().size());
+        assertEquals("/chat-messages", limiter.getLimits().get(0).getEndpoint());
+        assertEquals(1, limiter.getLimits().get(1).getInFlight());
+    }
+
+    private static AdaptiveLimit limit(AdaptiveLimitPolicy policy) {
+        return new AdaptiveLimit("POST", "/workflows/run", policy);
+    }
+
+    private static List<AdaptiveLimit.Permit> fill(AdaptiveLimit limit) {
+        List<AdaptiveLimit.Permit> permits = new ArrayList<>();
+        AdaptiveLimit.Permit permit;
+        while ((permit = limit.tryAcquire()) != null) {
+            permits.add(permit);
+        }
+        return permits;
+    }
+}
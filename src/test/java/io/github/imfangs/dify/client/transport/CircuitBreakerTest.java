@@ -0,0 +1,197 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyApiException;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import io.github.imfangs.dify.client.metrics.CircuitStateChange;
+import io.github.imfangs.dify.client.metrics.DifyMetrics;
+import io.github.imfangs.dify.client.metrics.RequestMetric;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证熔断器的滑动窗口统计、打开与半开探测以及状态变化发布
+ */
+public class CircuitBreakerTest {
+
+    private final List<CircuitStateChange> changes = new ArrayList<>();
+    private final DifyMetrics metrics = new DifyMetrics() {
+        @Override
+        public void recordRequest(RequestMetric metric) {
+        }
+
+        @Override
+        public synchronized void recordCircuitStateChange(CircuitStateChange change) {
+            changes.add(change);
+        }
+    };
+
+    @Test
+    public void shouldOpenWhenFailureRateReachesThreshold() {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(10).minimumCalls(4).failureRateThreshold(0.5).build());
+
+        succeed(breaker);
+        fail(breaker, 500);
+        succeed(breaker);
+        assertEquals(CircuitState.CLOSED, breaker.getState(), "未达到最少调用数时不熔断");
+        fail(breaker, 503);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire(metrics));
+        assertTrue(breaker.getRemainingOpenMillis() > 0);
+        assertEquals(1, changes.size());
+        assertEquals(CircuitState.CLOSED, changes.get(0).getFrom());
+        assertEquals(CircuitState.OPEN, changes.get(0).getTo());
+        assertEquals(0.5, changes.get(0).getFailureRate(), 1e-9);
+        assertEquals("/workflows/run", changes.get(0).getEndpoint());
+    }
+
+    @Test
+    public void windowShouldSlideOverOldResults() {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(4).minimumCalls(4).failureRateThreshold(0.75).build());
+
+        fail(breaker, 500);
+        fail(breaker, 500);
+        succeed(breaker);
+        succeed(breaker);
+        // 覆盖最早的两次失败后窗口内只剩一次失败
+        succeed(breaker);
+        succeed(breaker);
+        fail(breaker, 500);
+        fail(breaker, 500);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        fail(breaker, 500);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void clientErrorsShouldCountAsSuccess() {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(4).minimumCalls(4).build());
+
+        for (int i = 0; i < 8; i++) {
+            CircuitBreaker.Permit permit = breaker.tryAcquire(metrics);
+            permit.onError(new DifyApiException(400, "invalid_param", "bad"));
+        }
+        breaker.tryAcquire(metrics).onError(new DifyDecodeException("AppInfoResponse", new IOException("bad json")));
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void slowCallsShouldOpenCircuit() throws Exception {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(2).minimumCalls(2)
+                .slowCallDurationMillis(20).slowCallRateThreshold(1.0).build());
+
+        CircuitBreaker.Permit first = breaker.tryAcquire(metrics);
+        CircuitBreaker.Permit second = breaker.tryAcquire(metrics);
+        Thread.sleep(30);
+        first.onResponse(200);
+        second.onResponse(200);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals(1.0, changes.get(0).getSlowCallRate(), 1e-9);
+    }
+
+    @Test
+    public void halfOpenShouldLimitProbesAndCloseAfterSuccesses() throws Exception {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(2).minimumCalls(2)
+                .openDurationMillis(50).halfOpenProbes(2).build());
+        fail(breaker, 502);
+        fail(breaker, 502);
+        assertEquals(CircuitState.OPEN, breaker.getState());
+
+        Thread.sleep(70);
+        CircuitBreaker.Permit probe1 = breaker.tryAcquire(metrics);
+        CircuitBreaker.Permit probe2 = breaker.tryAcquire(metrics);
+        assertNotNull(probe1);
+        assertNotNull(probe2);
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire(metrics), "探测名额已用完");
+
+        // 被取消的探测归还名额
+        probe2.onCancel();
+        CircuitBreaker.Permit probe3 = breaker.tryAcquire(metrics);
+        assertNotNull(probe3);
+        probe1.onResponse(200);
+        probe3.onResponse(200);
+
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertEquals(CircuitState.HALF_OPEN, changes.get(1).getTo());
+        assertEquals(CircuitState.CLOSED, changes.get(2).getTo());
+        assertEquals(-1, changes.get(2).getFailureRate(), 1e-9);
+        // 关闭后使用新窗口，之前的失败不再计入
+        fail(breaker, 500);
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void failedProbeShouldReopen() throws Exception {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(1).minimumCalls(1)
+                .openDurationMillis(30).build());
+        fail(breaker, 500);
+        Thread.sleep(50);
+
+        CircuitBreaker.Permit probe = breaker.tryAcquire(metrics);
+        probe.onError(new IOException("connection reset"));
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertNull(breaker.tryAcquire(metrics));
+    }
+
+    @Test
+    public void resultsFromPreviousPhaseShouldBeIgnored() {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(2).minimumCalls(2).build());
+        CircuitBreaker.Permit late = breaker.tryAcquire(metrics);
+        fail(breaker, 500);
+        fail(breaker, 500);
+        assertEquals(CircuitState.OPEN, breaker.getState());
+
+        late.onResponse(200);
+        late.onResponse(500);
+
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void concurrentRecordsShouldKeepWindowConsistent() throws Exception {
+        CircuitBreaker breaker = breaker(CircuitBreakerPolicy.builder().windowSize(64).minimumCalls(64).failureRateThreshold(0.9).build());
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    breaker.tryAcquire(metrics).onResponse(i % 4 == 0 ? 500 : 200);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(CircuitState.CLOSED, breaker.getState(), "失败率约 25%，不应熔断");
+        assertTrue(changes.isEmpty());
+    }
+
+    private CircuitBreaker breaker(CircuitBreakerPolicy policy) {
+        return new CircuitBreaker("POST", "/workflows/run", "dify.test:80", policy);
+    }
+
+    private void succeed(CircuitBreaker breaker) {
+        breaker.tryAcquire(metrics).onResponse(200);
+    }
+
+    private void fail(CircuitBreaker breaker, int status) {
+        breaker.tryAcquire(metrics).onResponse(status);
+    }
+}
@@ -0,0 +1,73 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.DifyClient;
+import io.github.imfangs.dify.client.DifyClientFactory;
+import io.github.imfangs.dify.client.model.DifyConfig;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证共享传输层的复用与引用计数
+ */
+public class HttpTransportRegistryTest {
+
+    private final HttpTransportRegistry registry = HttpTransportRegistry.getInstance();
+
+    @Test
+    public void shouldShareConnectionPoolForSameHostAndTimeouts() {
+        try (HttpTransportRegistry.Lease first = registry.acquire("http://share.test/v1", 1000, 2000, 3000);
+             HttpTransportRegistry.Lease second = registry.acquire("http://share.test/v1/", 1000, 2000, 3000);
+             HttpTransportRegistry.Lease other = registry.acquire("http://share.test/v1", 1000, 2000, 4000)) {
+            OkHttpClient a = first.getClient();
+            OkHttpClient b = second.getClient();
+            assertSame(a.connectionPool(), b.connectionPool());
+            assertSame(a.dispatcher(), b.dispatcher());
+            assertNotSame(a.connectionPool(), other.getClient().connectionPool(), "不同超时配置不应共享连接池");
+            assertEquals(2, registry.referenceCount("http://share.test", 1000, 2000, 3000));
+        }
+        assertEquals(0, registry.referenceCount("http://share.test", 1000, 2000, 3000));
+    }
+
+    @Test
+    public void shouldReleaseTransportWhenLastClientClosed() {
+        DifyConfig config = DifyConfig.builder()
+                .baseUrl("http://release.test/v1")
+                .apiKey("app-1")
+                .build();
+        DifyClient first = DifyClientFactory.createClient(config);
+        DifyClient second = DifyClientFactory.createClient(DifyConfig.builder()
+                .baseUrl("http://release.test/v1")
+                .apiKey("app-2")
+                .build());
+        assertEquals(2, registry.referenceCount(config.getBaseUrl(), config.getConnectTimeout(), config.getReadTimeout(), config.getWriteTimeout()));
+
+        first.close();
+        first.close();
+        assertEquals(1, registry.referenceCount(config.getBaseUrl(), config.getConnectTimeout(), config.getReadTimeout(), config.getWriteTimeout()));
+
+        second.close();
+        assertEquals(0, registry.referenceCount(config.getBaseUrl(), config.getConnectTimeout(), config.getReadTimeout(), config.getWriteTimeout()));
+    }
+
+    @Test
+    public void shouldUseSeparateVirtualDispatcherOrFallBackToPlatform() throws Exception {
+        try (HttpTransportRegistry.Lease platform = registry.acquire("http://virtual.test/v1", 1000, 2000, 3000);
+             HttpTransportRegistry.Lease virtual = registry.acquire("http://virtual.test/v1", 1000, 2000, 3000, true)) {
+            int expected = VirtualThreads.isSupported() ? 1 : 2;
+            assertEquals(expected, registry.referenceCount("http://virtual.test/v1", 1000, 2000, 3000, true));
+            assertEquals(expected, registry.referenceCount("http://virtual.test/v1", 1000, 2000, 3000, false));
+            if (!VirtualThreads.isSupported()) {
+                assertSame(platform.getClient().dispatcher(), virtual.getClient().dispatcher(), "不支持虚拟线程时应回退到平台线程调度器");
+                assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.newThreadPerTaskExecutor("test-"));
+                return;
+            }
+            assertNotSame(platform.getClient().dispatcher(), virtual.getClient().dispatcher());
+            Boolean isVirtual = virtual.getClient().dispatcher().executorService()
+                    .submit(() -> (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+                    .get();
+            assertTrue(isVirtual);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package io.github.imfangs.dify.client.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证按最少在途请求选择副本、连续失败与慢调用摘除、探测恢复以及会话亲和
+ */
+public class LoadBalancerTest {
+
+    private static final List<String> URLS = Arrays.asList("http://r1.test/v1", "http://r2.test/v1/");
+
+    @Test
+    public void shouldPreferReplicaWithFewerInFlight() {
+        LoadBalancer balancer = new LoadBalancer(URLS, LoadBalancerPolicy.builder().build());
+        Replica r1 = balancer.getReplicas().get(0);
+        Replica r2 = balancer.getReplicas().get(1);
+        assertEquals("http://r2.test/v1", r2.getBaseUrl(), "应去除末尾斜杠");
+
+        LoadBalancer.Permit held = balancer.select(false, null);
+        Replica first = held.getReplica();
+        for (int i = 0; i < 20; i++) {
+            LoadBalancer.Permit permit = balancer.select(false, null);
+            assertNotSame(first, permit.getReplica(), "两个副本中应选择在途较少的一个");
+            permit.release();
+        }
+        held.release();
+        held.release();
+        assertEquals(0, r1.getBlockingInFlight() + r2.getBlockingInFlight(), "重复归还只生效一次");
+    }
+
+    @Test
+    public void streamingAndBlockingShouldBeBalancedIndependently() {
+        LoadBalancer balancer = new LoadBalancer(URLS, LoadBalancerPolicy.builder().build());
+        List<LoadBalancer.Permit> streams = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            streams.add(balancer.select(true, null));
+        }
+        for (Replica replica : balancer.getReplicas()) {
+            assertEquals(5, replica.getStreamingInFlight(), "流式请求应均匀分配");
+        }
+
+        LoadBalancer.Permit blocking = balancer.select(false, null);
+        assertEquals(1, blocking.getReplica().getBlockingInFlight());
+        LoadBalancer.Permit next = balancer.select(false, null);
+        assertNotSame(blocking.getReplica(), next.getReplica(), "阻塞请求只按阻塞在途数选择");
+        streams.forEach(LoadBalancer.Permit::release);
+    }
+
+    @Test
+    public void consecutiveFailuresShouldEjectAndProbeShouldRestore() throws Exception {
+        LoadBalancer balancer = new LoadBalancer(URLS, LoadBalancerPolicy.builder()
+                .consecutiveFailures(2)
+                .baseEjectionMillis(50)
+                .build());
+        Replica bad = balancer.getReplicas().get(0);
+        Replica good = balancer.getReplicas().get(1);
+
+        fail(balancer, bad, 503);
+        assertFalse(bad.isEjected());
+        fail(balancer, bad, 503);
+        assertTrue(bad.isEjected());
+        assertEquals(1, bad.getEjections());
+        for (int i = 0; i < 10; i++) {
+            LoadBalancer.Permit permit = balancer.select(false, null);
+            assertSame(good, permit.getReplica(), "被摘除的副本不应被选中");
+            permit.release();
+        }
+
+        Thread.sleep(60);
+        LoadBalancer.Permit probe = balancer.select(false, null);
+        assertSame(bad, probe.getReplica());
+        assertTrue(probe.isProbe());
+        LoadBalancer.Permit concurrent = balancer.select(false, null);
+        assertSame(good, concurrent.getReplica(), "同一时刻只放行一个探测请求");
+        concurrent.release();
+        probe.onError(new ConnectException("refused"));
+        probe.release();
+        assertTrue(bad.isEjected(), "探测失败应继续摘除");
+        assertEquals(2, bad.getEjections());
+
+        // 第二次摘除时间翻倍
+        Thread.sleep(60);
+        LoadBalancer.Permit stillEjected = balancer.select(false, null);
+        assertSame(good, stillEjected.getReplica());
+        stillEjected.release();
+        Thread.sleep(60);
+        LoadBalancer.Permit retry = selectUntil(balancer, bad);
+        assertTrue(retry.isProbe());
+        retry.onResponse(200);
+        retry.release();
+        assertFalse(bad.isEjected(), "探测成功应恢复");
+        assertEquals(0, bad.getConsecutiveFailures());
+    }
+
+    @Test
+    public void slowCallsShouldCountAsFailures() throws Exception {
+        LoadBalancer balancer = new LoadBalancer(URLS, LoadBalancerPolicy.builder()
+                .consecutiveFailures(1)
+                .slowCallDurationMillis(5)
+                .build());
+        LoadBalancer.Permit permit = balancer.select(true, null);
+        Thread.sleep(10);
+        permit.onResponse(200);
+        permit.release();
+
+        assertTrue(permit.getReplica().isEjected());
+    }
+
+    @Test
+    public void clientErrorsAndCancellationShouldNotEject() {
+        LoadBalancer balancer = new LoadBalancer(URLS, LoadBalancerPolicy.builder().consecutiveFailures(1).build());
+        Replica replica = balancer.getReplicas().get(0);
+
+        fail(balancer, replica, 400);
+        LoadBalancer.Permit cancelled = selectUntil(balancer, replica);
+        // 被取消的请求由调用方直接归还，不回报结果
+        cancelled.release();
+
+        assertFalse(replica.isEjected());
+    }
+
+    @Test
+    public void affinityShouldStickUntilReplicaIsEjected() {
+        LoadBalancer balancer = new LoadBalancer(URLS, LoadBalancerPolicy.builder().consecutiveFailures(1).build());
+        Replica bound = balancer.getReplicas().get(1);
+        LoadBalancer.Permit first = selectUntil(balancer, bound);
+        first.bind("conversation-1");
+        first.release();
+
+        for (int i = 0; i < 10; i++) {
+            LoadBalancer.Permit permit = balancer.select(false, "conversation-1");
+            assertSame(bound, permit.getReplica());
+            permit.release();
+        }
+        assertSame(bound, balancer.getAffinity("conversation-1"));
+
+        fail(balancer, bound, 502);
+        LoadBalancer.Permit failover = balancer.select(false, "conversation-1");
+        assertNotSame(bound, failover.getReplica(), "绑定的副本被摘除时应改选其他副本");
+        failover.release();
+    }
+
+    @Test
+    public void shouldStillSelectWhenAllReplicasEjected() {
+        LoadBalancer balancer = new LoadBalancer(URLS, LoadBalancerPolicy.builder().consecutiveFailures(1).baseEjectionMillis(60_000).build());
+        for (Replica replica : balancer.getReplicas()) {
+            fail(balancer, replica, 500);
+            assertTrue(replica.isEjected());
+        }
+
+        LoadBalancer.Permit permit = balancer.select(false, null);
+        assertNotNull(permit.getReplica());
+        assertFalse(permit.isProbe());
+        permit.release();
+    }
+
+    private static void fail(LoadBalancer balancer, Replica replica, int statusCode) {
+        LoadBalancer.Permit permit = selectUntil(balancer, replica);
+        permit.onResponse(statusCode);
+        permit.release();
+    }
+
+    /**
+     * 反复选择直到选中指定副本，途中选中的其他副本立即归还
+     */
+    private static LoadBalancer.Permit selectUntil(LoadBalancer balancer, Replica replica) {
+        for (int i = 0; i < 1000; i++) {
+            LoadBalancer.Permit permit = balancer.select(false, null);
+            if (permit.getReplica() == replica) {
+                return permit;
+            }
+            permit.release();
+        }
+        throw new AssertionError("未能选中副本: " + replica);
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyRateLimitedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证令牌桶的突发与速率、各层令牌桶的隔离与归还、等待模式以及用户桶的数量上限
+ */
+public class RateLimiterTest {
+
+    @Test
+    public void endpointClassShouldFollowPathPrefix() {
+        assertEquals(EndpointClass.CHAT, EndpointClass.of("/chat-messages"));
+        assertEquals(EndpointClass.CHAT, EndpointClass.of("/messages/{id}/feedbacks"));
+        assertEquals(EndpointClass.CHAT, EndpointClass.of("/completion-messages/{id}/stop"));
+        assertEquals(EndpointClass.WORKFLOW, EndpointClass.of("/workflows/run"));
+        assertEquals(EndpointClass.DATASETS, EndpointClass.of("/datasets/{id}/retrieve"));
+        assertEquals(EndpointClass.OTHER, EndpointClass.of("/info"));
+        assertEquals(EndpointClass.OTHER, EndpointClass.of("/workflowsx"));
+    }
+
+    @Test
+    public void shouldAllowBurstThenRejectWithoutWaiting() {
+        RateLimiter limiter = new RateLimiter(RateLimitPolicy.builder().apiKeyLimit(RateLimit.of(1, 3)).build());
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.tryAcquire("key", "/info", null));
+        }
+        assertFalse(limiter.tryAcquire("key", "/info", null));
+        assertTrue(limiter.tryAcquire("other-key", "/info", null), "不同API密钥使用独立的桶");
+
+        DifyRateLimitedException exception = assertThrows(DifyRateLimitedException.class, () -> limiter.reserve("key", "/info", null));
+        assertEquals(429, exception.getStatusCode());
+        assertTrue(exception.getRetryAfterMillis() > 0 && exception.getRetryAfterMillis() <= 1000);
+    }
+
+    @Test
+    public void tokensShouldRefillOverTime() throws Exception {
+        RateLimiter limiter = new RateLimiter(RateLimitPolicy.builder().apiKeyLimit(RateLimit.of(50, 1)).build());
+
+        assertTrue(limiter.tryAcquire("key", "/info", null));
+        assertFalse(limiter.tryAcquire("key", "/info", null));
+        Thread.sleep(40);
+        assertTrue(limiter.tryAcquire("key", "/info", null));
+    }
+
+    @Test
+    public void endpointClassesShouldHaveSeparateBuckets() {
+        RateLimiter limiter = new RateLimiter(RateLimitPolicy.builder()
+                .endpointLimit(EndpointClass.WORKFLOW, RateLimit.of(1, 1))
+                .build());
+
+        assertTrue(limiter.tryAcquire("key", "/workflows/run", null));
+        assertFalse(limiter.tryAcquire("key", "/workflows/run", null));
+        assertTrue(limiter.tryAcquire("key", "/chat-messages", null), "未配置的类别不限流");
+        assertTrue(limiter.tryAcquire("key", "/chat-messages", null));
+    }
+
+    @Test
+    public void rejectionShouldRefundTokensTakenFromOtherLayers() {
+        RateLimiter limiter = new RateLimiter(RateLimitPolicy.builder()
+                .apiKeyLimit(RateLimit.of(1, 2))
+                .userLimit(RateLimit.of(1, 1))
+                .build());
+
+        assertTrue(limiter.tryAcquire("key", "/chat-messages", "alice"));
+        assertFalse(limiter.tryAcquire("key", "/chat-messages", "alice"), "alice 的桶已空");
+        // alice 被拒绝时从API密钥桶取得的令牌已归还，bob 仍可使用
+        assertTrue(limiter.tryAcquire("key", "/chat-messages", "bob"));
+        assertFalse(limiter.tryAcquire("key", "/chat-messages", "carol"), "API密钥桶已空");
+    }
+
+    @Test
+    public void reserveShouldReturnWaitWithinMaxWait() throws Exception {
+        RateLimiter limiter = new RateLimiter(RateLimitPolicy.builder()
+                .apiKeyLimit(RateLimit.of(20, 1))
+                .maxWaitMillis(200)
+                .build());
+
+        assertEquals(0, limiter.reserve("key", "/info", null));
+        long wait = limiter.reserve("key", "/info", null);
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(30) && wait <= TimeUnit.MILLISECONDS.toNanos(50), "应等待约一个间隔: " + wait);
+
+        long start = System.nanoTime();
+        limiter.acquireAsync("key", "/info", null).get(5, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(60), "异步模式应在计时线程上等待");
+    }
+
+    @Test
+    public void asyncShouldFailWhenWaitExceedsMax() {
+        RateLimiter limiter = new RateLimiter(RateLimitPolicy.builder()
+                .apiKeyLimit(RateLimit.of(1, 1))
+                .maxWaitMillis(100)
+                .build());
+        assertTrue(limiter.tryAcquire("key", "/info", null));
+
+        CompletableFuture<Void> future = limiter.acquireAsync("key", "/info", null);
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof DifyRateLimitedException);
+    }
+
+    @Test
+    public void userBucketsShouldBeBounded() {
+        StripedLruMap<String, Object> map = new StripedLruMap<>(1024);
+        for (int i = 0; i < 100_000; i++) {
+            map.computeIfAbsent("user-" + i, k -> new Object());
+        }
+        assertTrue(map.size() <= 1024, "条目数不应超过容量: " + map.size());
+
+        Object kept = map.computeIfAbsent("recent", k -> new Object());
+        assertSame(kept, map.computeIfAbsent("recent", k -> new Object()));
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.imfangs.dify.client.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证对冲延迟按接口时延分位计算、预热期不对冲以及对冲预算上限
+ */
+public class RequestHedgerTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void delayShouldFollowPercentileAfterWarmUp() {
+        RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().minSamples(10).percentile(90).build());
+
+        for (int i = 1; i < 10; i++) {
+            hedger.record("POST", "/datasets/{id}/retrieve", i * 10 * MILLIS);
+        }
+        assertEquals(-1, hedger.getDelayNanos("POST", "/datasets/{id}/retrieve"), "样本不足时不对冲");
+
+        hedger.record("POST", "/datasets/{id}/retrieve", 100 * MILLIS);
+        long delay = hedger.getDelayNanos("POST", "/datasets/{id}/retrieve");
+        assertTrue(delay >= 90 * MILLIS && delay <= 100 * MILLIS, "应取第 90 百分位: " + delay);
+        assertEquals(-1, hedger.getDelayNanos("GET", "/datasets/{id}/retrieve"), "不同方法分别统计");
+    }
+
+    @Test
+    public void delayShouldBeClamped() {
+        RequestHedger fast = new RequestHedger(HedgingPolicy.builder().minSamples(1).minDelayMillis(20).build());
+        fast.record("GET", "/info", MILLIS);
+        assertEquals(20 * MILLIS, fast.getDelayNanos("GET", "/info"));
+
+        RequestHedger slow = new RequestHedger(HedgingPolicy.builder().minSamples(1).maxDelayMillis(50).build());
+        slow.record("GET", "/info", TimeUnit.SECONDS.toNanos(5));
+        assertEquals(50 * MILLIS, slow.getDelayNanos("GET", "/info"));
+    }
+
+    @Test
+    public void budgetShouldCapHedgesToRatio() {
+        RequestHedger hedger = new RequestHedger(HedgingPolicy.builder().budgetRatio(0.1).maxBurst(1).build());
+
+        assertTrue(hedger.tryHedge());
+        assertFalse(hedger.tryHedge(), "初始预算用完后需由首次请求积累");
+        for (int i = 0; i < 10; i++) {
+            hedger.onRequest();
+        }
+        assertTrue(hedger.tryHedge(), "每 10 个首次请求允许一次对冲");
+        assertFalse(hedger.tryHedge());
+        assertEquals(2, hedger.getHedged());
+    }
+
+    @Test
+    public void invalidPolicyShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new RequestHedger(HedgingPolicy.builder().percentile(0).build()));
+        assertThrows(IllegalArgumentException.class, () -> new RequestHedger(HedgingPolicy.builder().minDelayMillis(100).maxDelayMillis(10).build()));
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证重试判定、退避抖动范围、Retry-After 解析与重试预算
+ */
+public class RetryPolicyTest {
+
+    private final RetryPolicy policy = RetryPolicy.builder().build();
+
+    @Test
+    public void shouldDecideByStatusAndErrorCode() {
+        assertTrue(policy.isRetryable(429, "too_many_requests"));
+        assertTrue(policy.isRetryable(502, null));
+        assertFalse(policy.isRetryable(400, "invalid_param"));
+        assertFalse(policy.isRetryable(404, null));
+        assertFalse(policy.isRetryable(429, "provider_quota_exceeded"), "配额耗尽时重试无意义");
+
+        RetryPolicy custom = RetryPolicy.builder().retryableErrorCodes(java.util.Collections.singleton("model_busy")).build();
+        assertTrue(custom.isRetryable(400, "model_busy"));
+    }
+
+    @Test
+    public void shouldDecideByTransportError() {
+        assertTrue(policy.isRetryable(new ConnectException("refused")));
+        assertTrue(policy.isRetryable(new SocketTimeoutException("timeout")));
+        assertTrue(policy.isRetryable(new IOException("unexpected end of stream")));
+        assertFalse(policy.isRetryable(new InterruptedIOException("interrupted")));
+        assertFalse(policy.isRetryable(new UnknownHostException("dify.test")));
+        assertFalse(policy.isRetryable(new DifyDecodeException("Map", new IOException("bad json"))));
+        assertFalse(RetryPolicy.builder().retryOnConnectionFailure(false).build().isRetryable(new ConnectException("refused")));
+    }
+
+    @Test
+    public void delaysShouldFollowDecorrelatedJitter() {
+        RetryPolicy jitter = RetryPolicy.builder().baseDelayMillis(100).maxDelayMillis(1_000).build();
+        long previous = 0;
+        for (int i = 0; i < 1_000; i++) {
+            long delay = jitter.nextDelayMillis(previous);
+            assertTrue(delay >= 100 && delay <= Math.min(1_000, Math.max(100, previous * 3)), "退避 " + delay + " 超出范围，上一次 " + previous);
+            previous = delay;
+        }
+        assertFalse(RetryPolicy.none().isEnabled());
+        assertTrue(policy.isEnabled());
+    }
+
+    @Test
+    public void shouldParseRetryAfter() {
+        assertEquals(3_000, RetryPolicy.parseRetryAfterMillis("3"));
+        assertEquals(0, RetryPolicy.parseRetryAfterMillis("0"));
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis(null));
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis("soon"));
+        String date = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(10));
+        long millis = RetryPolicy.parseRetryAfterMillis(date);
+        assertTrue(millis > 8_000 && millis <= 10_000, "HTTP日期解析结果 " + millis);
+    }
+
+    @Test
+    public void budgetShouldCapRetryAmplification() {
+        RetryBudget budget = new RetryBudget(0.5, 0, 2);
+
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire(), "初始令牌用尽后不允许重试");
+
+        budget.onRequest();
+        assertFalse(budget.tryAcquire(), "半个令牌不足以重试一次");
+        budget.onRequest();
+        assertTrue(budget.tryAcquire());
+
+        for (int i = 0; i < 100; i++) {
+            budget.onRequest();
+        }
+        assertEquals(2.0, budget.getAvailable(), 0.001, "令牌不超过桶容量");
+    }
+}
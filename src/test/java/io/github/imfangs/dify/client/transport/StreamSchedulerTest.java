@@ -0,0 +1,107 @@
+package io.github.imfangs.dify.client.transport;
+
+import io.github.imfangs.dify.client.exception.DifyStreamRejectedException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证流式调度器的并发上限、优先级、饱和策略与排队撤回
+ */
+public class StreamSchedulerTest {
+
+    private static final String PRIMARY = "http://primary.test/v1";
+    private static final String SECONDARY = "http://secondary.test/v1";
+
+    @Test
+    public void shouldQueueAndPreferInteractiveStreams() {
+        StreamScheduler scheduler = new StreamScheduler(1, 10, StreamScheduler.SaturationPolicy.QUEUE, 10);
+        List<StreamScheduler.Ticket> running = new ArrayList<>();
+        List<String> started = new ArrayList<>();
+
+        scheduler.submit(PRIMARY, null, StreamPriority.INTERACTIVE, running::add, this::unexpected);
+        scheduler.submit(PRIMARY, null, StreamPriority.BACKGROUND, t -> { started.add("background"); running.add(t); }, this::unexpected);
+        scheduler.submit(PRIMARY, null, StreamPriority.INTERACTIVE, t -> { started.add("interactive"); running.add(t); }, this::unexpected);
+
+        assertEquals(1, scheduler.getActiveStreams(PRIMARY));
+        assertEquals(2, scheduler.getQueueDepth());
+
+        running.get(0).release();
+        assertEquals(1, started.size());
+        assertEquals("interactive", started.get(0), "交互式流应先于后台流出队");
+
+        running.get(1).release();
+        running.get(1).release();
+        assertEquals("background", started.get(1));
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(2, scheduler.getQueuedCount());
+
+        running.get(2).release();
+        assertEquals(0, scheduler.getActiveStreams());
+    }
+
+    @Test
+    public void shouldWithdrawQueuedWaiter() {
+        StreamScheduler scheduler = new StreamScheduler(1, 10, StreamScheduler.SaturationPolicy.QUEUE, 10);
+        List<StreamScheduler.Ticket> running = new ArrayList<>();
+
+        StreamScheduler.Waiter admitted = scheduler.submit(PRIMARY, null, StreamPriority.INTERACTIVE, running::add, this::unexpected);
+        StreamScheduler.Waiter withdrawn = scheduler.submit(PRIMARY, null, StreamPriority.BACKGROUND, t -> fail("撤回后不应启动"), this::unexpected);
+        scheduler.submit(PRIMARY, null, StreamPriority.INTERACTIVE, running::add, this::unexpected);
+        assertEquals(2, scheduler.getQueueDepth());
+
+        assertFalse(admitted.cancel(), "已启动的提交不能撤回");
+        assertTrue(withdrawn.cancel());
+        assertFalse(withdrawn.cancel());
+        assertEquals(1, scheduler.getQueueDepth());
+
+        running.get(0).release();
+        assertEquals(2, running.size());
+        assertEquals(0, scheduler.getQueueDepth());
+        running.get(1).release();
+        assertEquals(0, scheduler.getActiveStreams());
+    }
+
+    @Test
+    public void shouldRejectWhenSaturated() {
+        StreamScheduler scheduler = new StreamScheduler(1, 10, StreamScheduler.SaturationPolicy.REJECT, 10);
+        List<DifyStreamRejectedException> rejected = new ArrayList<>();
+
+        scheduler.submit(PRIMARY, null, StreamPriority.INTERACTIVE, t -> { }, rejected::add);
+        scheduler.submit(PRIMARY, null, StreamPriority.INTERACTIVE, t -> fail("不应启动"), rejected::add);
+        scheduler.submit(SECONDARY, null, StreamPriority.INTERACTIVE, t -> { }, rejected::add);
+
+        assertEquals(1, rejected.size());
+        assertEquals(429, rejected.get(0).getStatusCode());
+        assertEquals(DifyStreamRejectedException.ERROR_CODE, rejected.get(0).getErrorCode());
+        assertEquals(2, scheduler.getActiveStreams());
+    }
+
+    @Test
+    public void shouldSpillOverToSecondaryHost() {
+        StreamScheduler scheduler = new StreamScheduler(1, 10, StreamScheduler.SaturationPolicy.SPILLOVER, 10);
+        List<StreamScheduler.Ticket> tickets = new ArrayList<>();
+
+        scheduler.submit(PRIMARY, SECONDARY, StreamPriority.INTERACTIVE, tickets::add, this::unexpected);
+        scheduler.submit(PRIMARY, SECONDARY, StreamPriority.INTERACTIVE, tickets::add, this::unexpected);
+        scheduler.submit(PRIMARY, SECONDARY, StreamPriority.INTERACTIVE, tickets::add, this::unexpected);
+
+        assertEquals(2, tickets.size());
+        assertFalse(tickets.get(0).isSpillover());
+        assertTrue(tickets.get(1).isSpillover());
+        assertEquals(SECONDARY, tickets.get(1).getBaseUrl());
+        assertEquals(1, scheduler.getQueueDepth(), "两个主机都饱和时应排队");
+
+        tickets.get(1).release();
+        assertEquals(3, tickets.size());
+        assertEquals(SECONDARY, tickets.get(2).getBaseUrl());
+        assertEquals(2, scheduler.getSpilloverCount());
+    }
+
+    private void unexpected(DifyStreamRejectedException e) {
+        fail("不应拒绝: " + e.getMessage());
+    }
+}
@@ -0,0 +1,33 @@
+package io.github.imfangs.dify.client.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.imfangs.dify.client.event.MessageEvent;
+import io.github.imfangs.dify.client.event.NodeFinishedEvent;
+import io.github.imfangs.dify.client.model.datasets.DocumentListResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证编解码器注册表的缓存与预热
+ */
+public class JsonCodecsTest {
+
+    @Test
+    public void shouldWarmUpModelAndEventTypes() {
+        JsonCodecs.warmUp();
+        int warmed = JsonCodecs.readerCount();
+
+        assertTrue(warmed > 40, "模型与事件类型应被预热: " + warmed);
+        assertSame(JsonCodecs.reader(MessageEvent.class), JsonCodecs.reader(MessageEvent.class));
+        assertSame(JsonCodecs.writer(DocumentListResponse.class), JsonCodecs.writer(DocumentListResponse.class));
+        JsonCodecs.reader(NodeFinishedEvent.class);
+        assertEquals(warmed, JsonCodecs.readerCount(), "已预热的类型不应重复创建读取器");
+    }
+
+    @Test
+    public void shouldSkipOptimizerModuleWhenAbsent() {
+        // 核心依赖不包含 Blackbird/Afterburner
+        assertNull(JsonCodecs.registerOptimizerModule(new ObjectMapper()));
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.imfangs.dify.client.util;
+
+import io.github.imfangs.dify.client.model.chat.ChatMessage;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证流式JSON请求体与字符串序列化结果一致且可重复写入
+ */
+public class JsonRequestBodyTest {
+
+    @Test
+    public void shouldWriteSameJsonAsStringSerialization() throws IOException {
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("document", "长文本内容");
+        ChatMessage message = ChatMessage.builder().query("你好").user("u1").inputs(inputs).build();
+        JsonRequestBody body = new JsonRequestBody(message);
+
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+
+        assertEquals(JsonUtils.toJson(message), sink.readUtf8());
+        assertEquals(-1, body.contentLength());
+        assertEquals("application/json; charset=utf-8", body.contentType().toString());
+    }
+
+    @Test
+    public void shouldBeRepeatableAndLeaveSinkOpen() throws IOException {
+        JsonRequestBody body = new JsonRequestBody(ChatMessage.builder().query("q").user("u").build());
+        Buffer sink = new Buffer();
+
+        body.writeTo(sink);
+        long first = sink.size();
+        body.writeTo(sink);
+        sink.writeUtf8("!");
+
+        assertEquals(first * 2 + 1, sink.size());
+        assertFalse(body.isOneShot());
+    }
+}
@@ -0,0 +1,60 @@
+package io.github.imfangs.dify.client.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.github.imfangs.dify.client.exception.DifyDecodeException;
+import io.github.imfangs.dify.client.model.chat.ChatMessageResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 纯单元测试：验证流式JSON解码与类型化的解码失败
+ */
+public class JsonUtilsTest {
+
+    @Test
+    public void shouldDecodeDirectlyFromStream() throws IOException {
+        ChatMessageResponse response = JsonUtils.readJson(stream("{\"message_id\":\"m1\",\"answer\":\"你好\",\"unknown\":1}"), ChatMessageResponse.class);
+
+        assertEquals("m1", response.getMessageId());
+        assertEquals("你好", response.getAnswer());
+        assertSame(JsonUtils.readerFor(ChatMessageResponse.class), JsonUtils.readerFor(ChatMessageResponse.class));
+    }
+
+    @Test
+    public void shouldDecodeGenericTypeFromStream() throws IOException {
+        List<ChatMessageResponse> list = JsonUtils.readJson(stream("[{\"answer\":\"a\"},{\"answer\":\"b\"}]"),
+                new TypeReference<List<ChatMessageResponse>>() {
+                });
+
+        assertEquals(2, list.size());
+        assertEquals("b", list.get(1).getAnswer());
+    }
+
+    @Test
+    public void shouldReturnNullForEmptyBody() throws IOException {
+        assertNull(JsonUtils.readJson(stream(""), ChatMessageResponse.class));
+    }
+
+    @Test
+    public void shouldFailWithTypedExceptionForMalformedJson() {
+        DifyDecodeException e = assertThrows(DifyDecodeException.class,
+                () -> JsonUtils.readJson(stream("<html>502 Bad Gateway</html>"), ChatMessageResponse.class));
+        assertEquals(ChatMessageResponse.class.getName(), e.getTargetType());
+
+        UncheckedIOException legacy = assertThrows(UncheckedIOException.class,
+                () -> JsonUtils.fromJson("{\"answer\":", ChatMessageResponse.class));
+        assertTrue(legacy.getCause() instanceof DifyDecodeException);
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}